@@ -9,6 +9,7 @@ import java.net.URL;
 
 import java.util.HashMap;
 
+import ocss.nmea.ais.AISAssembler;
 import ocss.nmea.ais.AISParser;
 
 public class CustomAISClient
@@ -18,6 +19,7 @@ public class CustomAISClient
     try
     {
       HashMap<Integer, AISParser.AISRecord> map = new HashMap<Integer, AISParser.AISRecord>();
+      AISAssembler assembler = new AISAssembler();
       
       URL aisSFBayURL = new URL("http://207.7.148.216:9009");
       InputStream aisIS = aisSFBayURL.openStream();
@@ -32,7 +34,7 @@ public class CustomAISClient
           {
             try 
             { 
-              AISParser.AISRecord rec = AISParser.parseAIS(line);
+              AISParser.AISRecord rec = AISParser.parseAIS(line, assembler);
               if (rec != null)
               {
                 map.put(rec.getMmsi(), rec);
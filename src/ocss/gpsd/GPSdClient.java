@@ -6,8 +6,16 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 
 import java.net.Socket;
-import java.net.SocketException;
 
+import java.util.concurrent.Executor;
+
+/**
+ * Connects to gpsd, and forwards the TPV strings to a {@link GPSdClientInterface}.
+ * <br>
+ * The protocol is initiated in the constructor, the TPV strings are then read
+ * on a thread of their own, or on the given Executor (like one of virtual threads,
+ * see {@link ocss.nmea.api.NMEAExecutors}).
+ */
 public class GPSdClient
 {
   private GPSdClientInterface parent;
@@ -15,66 +23,64 @@ public class GPSdClient
   private int port = 2497;
   private Socket clientSocket = null;
   BufferedReader inFromServer = null;
-  
-  private boolean keepReading = true;
+
+  private volatile boolean keepReading = true;
   private boolean verbose = false;
-  
+
   public GPSdClient(GPSdClientInterface client, String host, int port) throws Exception
   {
     this(client, host, port, false);
   }
-  
+
   public GPSdClient(GPSdClientInterface client, String host, int port, boolean v) throws Exception
+  {
+    this(client, host, port, v, null);
+  }
+
+  /**
+   * @param executor to read the TPV strings on. null to start a Thread.
+   */
+  public GPSdClient(GPSdClientInterface client, String host, int port, boolean v, Executor executor) throws Exception
   {
     this.parent = client;
     this.hostName = host;
     this.port = port;
     this.verbose = v;
-    try
-    {
-      Thread readerThread = new Thread()
+    initiateProtocol(); // Before reading, no need to synchronize with the reader
+    if (verbose)
+      System.out.println(">>>>> Connection established, now expecting TPV strings <<<<<<");
+    Runnable tpvReader = new Runnable()
+      {
+        public void run()
         {
-          public void run()
-          {
-            if (verbose)
-              System.out.println(".... TPV Reader is starting ....");
-            try
-            {
-              synchronized (this) { this.wait(); }
-            }
-            catch (Exception ex)
-            {
-              ex.printStackTrace();
-            }
-            if (verbose)
-              System.out.println(".... Now expecting TPV ....");
-            while (keepReading)
-            {
-              try
-              {
-                String tpv = inFromServer.readLine();
-                parent.tpvRead(tpv);
-              }
-              catch (SocketException se)
-              {
-                System.err.println(se.getLocalizedMessage());
-              }
-              catch (IOException ioe)
-              {
-                System.err.println(ioe.getLocalizedMessage());
-              }
-            }
-          }
-        };
-      readerThread.start();
-      initiateProtocol();
-      synchronized (readerThread) { readerThread.notify(); }
-      if (verbose)
-        System.out.println(">>>>> Connection established, now expecting TPV strings <<<<<<");
-    }
-    catch (Exception ex)
+          readTPV();
+        }
+      };
+    if (executor != null)
+      executor.execute(tpvReader);
+    else
+      new Thread(tpvReader, "GPSdClient-" + host + ":" + port).start();
+  }
+
+  private void readTPV()
+  {
+    if (verbose)
+      System.out.println(".... Now expecting TPV ....");
+    while (keepReading)
     {
-      throw ex;
+      try
+      {
+        String tpv = inFromServer.readLine();
+        if (tpv == null) // End of stream, the server is gone
+          break;
+        parent.tpvRead(tpv);
+      }
+      catch (IOException ioe) // Closed, or reset, nothing more to read
+      {
+        if (keepReading)
+          System.err.println(ioe.getLocalizedMessage());
+        break;
+      }
     }
   }
 
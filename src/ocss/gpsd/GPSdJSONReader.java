@@ -0,0 +1,719 @@
+package ocss.gpsd;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ocss.nmea.ais.AISLayout;
+import ocss.nmea.ais.AISParser.AISRecord;
+import ocss.nmea.parser.GeoPos;
+import ocss.nmea.parser.NMEANumbers;
+import ocss.nmea.parser.NMEATime;
+import ocss.nmea.parser.RMC;
+import ocss.nmea.parser.SVData;
+
+/**
+ * Parses the JSON objects sent by gpsd, as the bytes come.
+ * <br>
+ * The bytes are accumulated until the end of an object (gpsd sends one per line), which is then
+ * parsed in place: no String is created for the keys, no map is built, the numbers are
+ * parsed directly from the bytes. The values of the known keys are kept in tables, and the
+ * TPV, SKY, AIS, ATT (and ERROR) objects are fired to the {@link GPSdListener}s as
+ * {@link RMC}, {@link SVData}, and {@link AISRecord} objects. The other objects (VERSION, DEVICES, WATCH...)
+ * are skipped.
+ * <br>
+ * The AIS objects are expected unscaled (<code>"scaled":false</code> in the WATCH command), the raw values
+ * are the ones {@link AISRecord} expects.
+ * <br>
+ * Not thread-safe, feed it from one thread.
+ */
+public final class GPSdJSONReader
+{
+  public final static int MAX_LINE_LENGTH = 64 * 1024;
+
+  private final static int MAX_DEPTH = 16;
+  private final static double MS_TO_KNOTS = 3600d / 1852d;
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  // The known keys. A key has one slot, whatever the class of the object.
+  private final static String[] KEYS =
+  {
+    "class", "time", "lat", "lon", "track", "speed", "mode", "heading", "pitch", "roll", "message", "satellites",
+    "PRN", "el", "az", "ss",                                                         // SKY satellites
+    "type", "repeat", "mmsi", "status", "turn", "accuracy", "course", "second",      // AIS
+    "maneuver", "raim", "radio", "year", "month", "day", "hour", "minute", "epfd",
+    "ais_version", "imo", "callsign", "shipname", "shiptype", "to_bow", "to_stern", "to_port",
+    "to_starboard", "eta", "draught", "destination", "dte", "seqno", "dest_mmsi", "retransmit",
+    "dac", "fid", "text", "alt", "vendorid", "mothership_mmsi", "aid_type", "off_position",
+    "virtual_aid", "gnss"
+  };
+  private final static int CLASS      =  0;
+  private final static int TIME       =  1;
+  private final static int LAT        =  2;
+  private final static int LON        =  3;
+  private final static int TRACK      =  4;
+  private final static int SPEED      =  5;
+  private final static int MODE       =  6;
+  private final static int HEADING    =  7;
+  private final static int PITCH      =  8;
+  private final static int ROLL       =  9;
+  private final static int MESSAGE    = 10;
+  private final static int SATELLITES = 11;
+  private final static int PRN        = 12; // to SS, the order of the satellite values
+  private final static int SS         = 15;
+  private final static int TYPE       = 16;
+  private final static int ETA        = 42;
+
+  private final static int NO_KEY = -1;
+  private final static int NO_FIELD = -1;
+
+  private final static byte[][] KEY_BYTES = new byte[KEYS.length][];
+  private final static int[] AIS_FIELD = new int[KEYS.length]; // The AISLayout field of a key, NO_FIELD if none
+  static
+  {
+    for (int i=0; i<KEYS.length; i++)
+    {
+      KEY_BYTES[i] = KEYS[i].getBytes(UTF8);
+      AIS_FIELD[i] = NO_FIELD;
+    }
+    aisField("type",            AISLayout.MESSAGE_TYPE);
+    aisField("repeat",          AISLayout.REPEAT_INDICATOR);
+    aisField("mmsi",            AISLayout.MMSI);
+    aisField("status",          AISLayout.NAV_STATUS);
+    aisField("turn",            AISLayout.ROT);
+    aisField("speed",           AISLayout.SOG);
+    aisField("accuracy",        AISLayout.POS_ACC);
+    aisField("lon",             AISLayout.LONGITUDE);
+    aisField("lat",             AISLayout.LATITUDE);
+    aisField("course",          AISLayout.COG);
+    aisField("heading",         AISLayout.HDG);
+    aisField("second",          AISLayout.TIME_STAMP);
+    aisField("maneuver",        AISLayout.MANEUVER);
+    aisField("raim",            AISLayout.RAIM);
+    aisField("radio",           AISLayout.RADIO);
+    aisField("year",            AISLayout.YEAR);
+    aisField("month",           AISLayout.MONTH);
+    aisField("day",             AISLayout.DAY);
+    aisField("hour",            AISLayout.HOUR);
+    aisField("minute",          AISLayout.MINUTE);
+    aisField("epfd",            AISLayout.EPFD);
+    aisField("ais_version",     AISLayout.AIS_VERSION);
+    aisField("imo",             AISLayout.IMO);
+    aisField("callsign",        AISLayout.CALL_SIGN);
+    aisField("shipname",        AISLayout.SHIP_NAME);
+    aisField("shiptype",        AISLayout.SHIP_TYPE);
+    aisField("to_bow",          AISLayout.TO_BOW);
+    aisField("to_stern",        AISLayout.TO_STERN);
+    aisField("to_port",         AISLayout.TO_PORT);
+    aisField("to_starboard",    AISLayout.TO_STARBOARD);
+    aisField("draught",         AISLayout.DRAUGHT);
+    aisField("destination",     AISLayout.DESTINATION);
+    aisField("dte",             AISLayout.DTE);
+    aisField("seqno",           AISLayout.SEQ_NO);
+    aisField("dest_mmsi",       AISLayout.DEST_MMSI);
+    aisField("retransmit",      AISLayout.RETRANSMIT);
+    aisField("dac",             AISLayout.DAC);
+    aisField("fid",             AISLayout.FID);
+    aisField("text",            AISLayout.TEXT);
+    aisField("alt",             AISLayout.ALTITUDE);
+    aisField("vendorid",        AISLayout.VENDOR_ID);
+    aisField("mothership_mmsi", AISLayout.MOTHERSHIP_MMSI);
+    aisField("aid_type",        AISLayout.AID_TYPE);
+    aisField("off_position",    AISLayout.OFF_POSITION);
+    aisField("virtual_aid",     AISLayout.VIRTUAL_AID);
+    aisField("gnss",            AISLayout.GNSS);
+  }
+
+  private static void aisField(String key, int field)
+  {
+    for (int i=0; i<KEYS.length; i++)
+    {
+      if (KEYS[i].equals(key))
+      {
+        AIS_FIELD[i] = field;
+        return;
+      }
+    }
+    throw new IllegalArgumentException("Unknown key " + key);
+  }
+
+  // Kinds of values
+  private final static byte NONE   = 0;
+  private final static byte NUMBER = 1;
+  private final static byte STRING = 2;
+  private final static byte TRUE   = 3;
+  private final static byte FALSE  = 4;
+
+  private final List<GPSdListener> listeners = new CopyOnWriteArrayList<GPSdListener>();
+
+  // The current line
+  private byte[] line = new byte[1024];
+  private int length = 0;
+  private boolean overflow = false;
+
+  // Parser
+  private int pos;
+  private int limit;
+
+  // Values of the object being parsed, by key
+  private final byte[] kind = new byte[KEYS.length];
+  private final double[] number = new double[KEYS.length];
+  private final int[] stringFrom = new int[KEYS.length];
+  private final int[] stringTo = new int[KEYS.length];
+
+  // SKY satellites
+  private int[] satellites = new int[4 * 32]; // PRN, el, az, ss
+  private int nbSatellites = 0;
+  private boolean inSatellite = false;
+
+  private long objects = 0L;
+  private long errors = 0L;
+
+  public GPSdJSONReader()
+  {
+  }
+
+  public void addListener(GPSdListener l)
+  {
+    listeners.add(l);
+  }
+
+  public void removeListener(GPSdListener l)
+  {
+    listeners.remove(l);
+  }
+
+  List<GPSdListener> getListeners()
+  { return this.listeners; }
+
+  /**
+   * @return the number of objects parsed so far.
+   */
+  public long getObjects()
+  { return this.objects; }
+
+  /**
+   * @return the number of lines that were not valid JSON, or too long.
+   */
+  public long getErrors()
+  { return this.errors; }
+
+  /**
+   * Reads the bytes between the position and the limit of the buffer, and fires the complete objects.
+   */
+  public void feed(ByteBuffer bb)
+  {
+    while (bb.hasRemaining())
+      feed(bb.get());
+  }
+
+  public void feed(byte[] ba, int offset, int len)
+  {
+    for (int i=offset; i<offset + len; i++)
+      feed(ba[i]);
+  }
+
+  private void feed(byte b)
+  {
+    if (b == '\n')
+    {
+      if (overflow)
+        errors++;
+      else if (length > 0)
+        parseLine();
+      length = 0;
+      overflow = false;
+      return;
+    }
+    if (overflow)
+      return;
+    if (length == line.length)
+    {
+      if (length == MAX_LINE_LENGTH)
+      {
+        overflow = true; // Skipped until the next new line
+        return;
+      }
+      byte[] newLine = new byte[Math.min(MAX_LINE_LENGTH, length * 2)];
+      System.arraycopy(line, 0, newLine, 0, length);
+      line = newLine;
+    }
+    line[length++] = b;
+  }
+
+  private void parseLine()
+  {
+    for (int i=0; i<kind.length; i++)
+      kind[i] = NONE;
+    nbSatellites = 0;
+    inSatellite = false;
+    pos = 0;
+    limit = length;
+    try
+    {
+      skipWhiteSpaces();
+      if (pos == limit)
+        return;
+      if (line[pos] != '{')
+        throw new IllegalArgumentException("Object expected");
+      value(0, NO_KEY);
+      skipWhiteSpaces();
+      if (pos != limit)
+        throw new IllegalArgumentException("Unexpected data after the object");
+    }
+    catch (RuntimeException ex) // Not valid JSON
+    {
+      errors++;
+      return;
+    }
+    objects++;
+    fire();
+  }
+
+  // Parser
+
+  /**
+   * Parses the value at the current position.
+   * @param depth of the value, 0 for the whole object
+   * @param key where to keep the value, NO_KEY if it is not kept
+   */
+  private void value(int depth, int key)
+  {
+    if (depth > MAX_DEPTH)
+      throw new IllegalArgumentException("Too deep");
+    skipWhiteSpaces();
+    if (pos == limit)
+      throw new IllegalArgumentException("Value expected");
+    byte c = line[pos];
+    switch (c)
+    {
+      case '{':
+        object(depth);
+        break;
+      case '[':
+        array(depth, key);
+        break;
+      case '"':
+        int from = pos + 1;
+        skipString();
+        store(depth, key, STRING, 0d, from, pos - 1);
+        break;
+      case 't':
+        literal("true");
+        store(depth, key, TRUE, 1d, 0, 0);
+        break;
+      case 'f':
+        literal("false");
+        store(depth, key, FALSE, 0d, 0, 0);
+        break;
+      case 'n':
+        literal("null");
+        break;
+      default:
+        int start = pos;
+        while (pos < limit && isNumberChar(line[pos]))
+          pos++;
+        if (pos == start)
+          throw new IllegalArgumentException("Unexpected character '" + (char)c + "'");
+        if (key != NO_KEY)
+          store(depth, key, NUMBER, NMEANumbers.parseDouble(line, start, pos), 0, 0);
+        break;
+    }
+  }
+
+  private void object(int depth)
+  {
+    pos++; // {
+    skipWhiteSpaces();
+    if (pos < limit && line[pos] == '}')
+    {
+      pos++;
+      return;
+    }
+    while (true)
+    {
+      skipWhiteSpaces();
+      if (pos == limit || line[pos] != '"')
+        throw new IllegalArgumentException("Key expected");
+      int from = pos + 1;
+      skipString();
+      int key = NO_KEY;
+      if (depth == 0 || inSatellite) // The keys of the other nested objects are not needed
+        key = key(from, pos - 1);
+      skipWhiteSpaces();
+      if (pos == limit || line[pos] != ':')
+        throw new IllegalArgumentException("':' expected");
+      pos++;
+      value(depth + 1, key);
+      skipWhiteSpaces();
+      if (pos == limit)
+        throw new IllegalArgumentException("Unterminated object");
+      if (line[pos] == ',')
+      {
+        pos++;
+        continue;
+      }
+      if (line[pos] == '}')
+      {
+        pos++;
+        return;
+      }
+      throw new IllegalArgumentException("',' or '}' expected");
+    }
+  }
+
+  private void array(int depth, int key)
+  {
+    boolean sky = (depth == 1 && key == SATELLITES);
+    if (sky)
+      kind[SATELLITES] = NUMBER;
+    pos++; // [
+    skipWhiteSpaces();
+    if (pos < limit && line[pos] == ']')
+    {
+      pos++;
+      return;
+    }
+    while (true)
+    {
+      skipWhiteSpaces();
+      if (sky && pos < limit && line[pos] == '{')
+      {
+        if (4 * (nbSatellites + 1) > satellites.length)
+        {
+          int[] newSatellites = new int[satellites.length * 2];
+          System.arraycopy(satellites, 0, newSatellites, 0, satellites.length);
+          satellites = newSatellites;
+        }
+        for (int i=0; i<4; i++)
+          satellites[(4 * nbSatellites) + i] = 0;
+        inSatellite = true;
+        object(depth + 1);
+        inSatellite = false;
+        nbSatellites++;
+      }
+      else
+        value(depth + 1, NO_KEY);
+      skipWhiteSpaces();
+      if (pos == limit)
+        throw new IllegalArgumentException("Unterminated array");
+      if (line[pos] == ',')
+      {
+        pos++;
+        continue;
+      }
+      if (line[pos] == ']')
+      {
+        pos++;
+        return;
+      }
+      throw new IllegalArgumentException("',' or ']' expected");
+    }
+  }
+
+  private void store(int depth, int key, byte k, double d, int from, int to)
+  {
+    if (key == NO_KEY)
+      return;
+    if (inSatellite)
+    {
+      if (k == NUMBER && key >= PRN && key <= SS)
+        satellites[(4 * nbSatellites) + (key - PRN)] = (int)d;
+      return;
+    }
+    if (depth != 1)
+      return;
+    kind[key] = k;
+    number[key] = d;
+    stringFrom[key] = from;
+    stringTo[key] = to;
+  }
+
+  /**
+   * Moves after the closing quote.
+   */
+  private void skipString()
+  {
+    pos++; // "
+    while (pos < limit)
+    {
+      byte c = line[pos++];
+      if (c == '"')
+        return;
+      if (c == '\\')
+        pos++;
+    }
+    throw new IllegalArgumentException("Unterminated string");
+  }
+
+  private void literal(String s)
+  {
+    for (int i=0; i<s.length(); i++)
+    {
+      if (pos == limit || line[pos++] != s.charAt(i))
+        throw new IllegalArgumentException(s + " expected");
+    }
+  }
+
+  private void skipWhiteSpaces()
+  {
+    while (pos < limit && (line[pos] == ' ' || line[pos] == '\t' || line[pos] == '\r' || line[pos] == '\n'))
+      pos++;
+  }
+
+  private static boolean isNumberChar(byte c)
+  {
+    return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+  }
+
+  /**
+   * @return the id of the key in [from, to[, NO_KEY if it is not a known one.
+   */
+  private int key(int from, int to)
+  {
+    int len = to - from;
+    for (int k=0; k<KEY_BYTES.length; k++)
+    {
+      byte[] kb = KEY_BYTES[k];
+      if (kb.length != len || kb[0] != line[from])
+        continue;
+      int i = 1;
+      while (i < len && kb[i] == line[from + i])
+        i++;
+      if (i == len)
+        return k;
+    }
+    return NO_KEY;
+  }
+
+  // Values
+
+  private boolean has(int key)
+  { return kind[key] != NONE; }
+
+  private double number(int key)
+  { return (kind[key] == NUMBER ? number[key] : Double.NaN); }
+
+  private boolean is(int key, String value)
+  {
+    if (kind[key] != STRING || stringTo[key] - stringFrom[key] != value.length())
+      return false;
+    for (int i=0; i<value.length(); i++)
+    {
+      if (line[stringFrom[key] + i] != value.charAt(i))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the string value of a key, with its escapes decoded.
+   */
+  private String string(int key)
+  {
+    int from = stringFrom[key];
+    int to = stringTo[key];
+    boolean escaped = false;
+    for (int i=from; i<to && !escaped; i++)
+      escaped = (line[i] == '\\');
+    if (!escaped)
+      return new String(line, from, to - from, UTF8);
+    StringBuffer sb = new StringBuffer(to - from);
+    int start = from;
+    for (int i=from; i<to; i++)
+    {
+      if (line[i] != '\\')
+        continue;
+      sb.append(new String(line, start, i - start, UTF8));
+      char c = (char)line[++i];
+      switch (c)
+      {
+        case 'n':
+          sb.append('\n');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'u':
+          sb.append((char)Integer.parseInt(new String(line, i + 1, 4, UTF8), 16));
+          i += 4;
+          break;
+        default: // " \ /
+          sb.append(c);
+          break;
+      }
+      start = i + 1;
+    }
+    sb.append(new String(line, start, to - start, UTF8));
+    return sb.toString();
+  }
+
+  /**
+   * @return the time of an ISO 8601 value, like <code>2010-04-30T11:48:20.100Z</code>, in ms, -1 if it is not one.
+   */
+  private long time(int key)
+  {
+    int from = stringFrom[key];
+    int to = stringTo[key];
+    if (kind[key] != STRING || to - from < 20 || line[from + 4] != '-' || line[from + 10] != 'T' || line[to - 1] != 'Z')
+      return -1L;
+    try
+    {
+      long ms = NMEATime.dayStart(digits(from, from + 4), digits(from + 5, from + 7), digits(from + 8, from + 10)) +
+                (digits(from + 11, from + 13) * 3600000L) +
+                (digits(from + 14, from + 16) * 60000L) +
+                (digits(from + 17, from + 19) * 1000L);
+      if (line[from + 19] == '.' && to - 1 > from + 20)
+        ms += Math.round(NMEANumbers.parseDouble(line, from + 19, to - 1) * 1000d);
+      return ms;
+    }
+    catch (NumberFormatException nfe)
+    {
+      return -1L;
+    }
+  }
+
+  /**
+   * @return the positive int in [from, to[
+   */
+  private int digits(int from, int to) throws NumberFormatException
+  {
+    int value = 0;
+    for (int i=from; i<to; i++)
+    {
+      int d = line[i] - '0';
+      if (d < 0 || d > 9)
+        throw new NumberFormatException("Digit expected at " + i);
+      value = (value * 10) + d;
+    }
+    return value;
+  }
+
+  // Events
+
+  private void fire()
+  {
+    if (listeners.isEmpty())
+      return;
+    if (is(CLASS, "TPV"))
+      fireTPV();
+    else if (is(CLASS, "SKY"))
+      fireSKY();
+    else if (is(CLASS, "AIS"))
+      fireAIS();
+    else if (is(CLASS, "ATT"))
+    {
+      for (GPSdListener l : listeners)
+        l.attRead(number(HEADING), number(PITCH), number(ROLL));
+    }
+    else if (is(CLASS, "ERROR") && has(MESSAGE))
+    {
+      String message = string(MESSAGE);
+      for (GPSdListener l : listeners)
+        l.errorRead(message);
+    }
+  }
+
+  private void fireTPV()
+  {
+    if (kind[LAT] != NUMBER || kind[LON] != NUMBER) // No fix
+      return;
+    RMC rmc = new RMC();
+    rmc.setGp(new GeoPos(number[LAT], number[LON]));
+    if (kind[TRACK] == NUMBER)
+      rmc.setCog(number[TRACK]);
+    if (kind[SPEED] == NUMBER)
+      rmc.setSog(number[SPEED] * MS_TO_KNOTS); // m/s
+    long time = time(TIME);
+    if (time != -1L)
+      rmc.setRmcDate(new Date(time));
+    int mode = (kind[MODE] == NUMBER ? (int)number[MODE] : 0);
+    for (GPSdListener l : listeners)
+      l.tpvRead(rmc, mode);
+  }
+
+  private void fireSKY()
+  {
+    if (!has(SATELLITES)) // Only the counts
+      return;
+    List<SVData> svs = new ArrayList<SVData>(nbSatellites);
+    for (int i=0; i<nbSatellites; i++)
+      svs.add(new SVData(satellites[4 * i], satellites[(4 * i) + 1], satellites[(4 * i) + 2], satellites[(4 * i) + 3]));
+    for (GPSdListener l : listeners)
+      l.skyRead(svs);
+  }
+
+  private void fireAIS()
+  {
+    int type = (kind[TYPE] == NUMBER ? (int)number[TYPE] : 0);
+    AISRecord record = new AISRecord(System.currentTimeMillis());
+    for (int key=0; key<KEYS.length; key++)
+    {
+      int field = AIS_FIELD[key];
+      if (kind[key] == NONE)
+        continue;
+      if (key == ETA && kind[key] == STRING)
+      {
+        eta(record);
+        continue;
+      }
+      if (field == NO_FIELD)
+        continue;
+      if (kind[key] == STRING)
+      {
+        record.setText(field, string(key));
+        continue;
+      }
+      if (type == 27) // Long range broadcast, other units
+      {
+        if (field == AISLayout.LONGITUDE)
+          field = AISLayout.LR_LONGITUDE;
+        else if (field == AISLayout.LATITUDE)
+          field = AISLayout.LR_LATITUDE;
+        else if (field == AISLayout.SOG)
+          field = AISLayout.SOG_KNOTS;
+        else if (field == AISLayout.COG)
+          field = AISLayout.COG_DEGREES;
+      }
+      else if (type == 9 && field == AISLayout.SOG) // SAR aircraft
+        field = AISLayout.SOG_KNOTS;
+      record.setValue(field, (int)number[key]); // true and false are 1 and 0
+    }
+    for (GPSdListener l : listeners)
+      l.aisRead(record);
+  }
+
+  /**
+   * Like <code>05-14T20:10Z</code>
+   */
+  private void eta(AISRecord record)
+  {
+    int from = stringFrom[ETA];
+    if (stringTo[ETA] - from < 11 || line[from + 5] != 'T')
+      return;
+    try
+    {
+      record.setValue(AISLayout.ETA_MONTH,  digits(from, from + 2));
+      record.setValue(AISLayout.ETA_DAY,    digits(from + 3, from + 5));
+      record.setValue(AISLayout.ETA_HOUR,   digits(from + 6, from + 8));
+      record.setValue(AISLayout.ETA_MINUTE, digits(from + 9, from + 11));
+    }
+    catch (NumberFormatException nfe)
+    {
+      // Not given
+    }
+  }
+}
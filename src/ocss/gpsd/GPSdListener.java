@@ -0,0 +1,61 @@
+package ocss.gpsd;
+
+import java.util.EventListener;
+import java.util.List;
+
+import ocss.nmea.ais.AISParser.AISRecord;
+import ocss.nmea.parser.RMC;
+import ocss.nmea.parser.SVData;
+
+/**
+ * Notified by a {@link GPSdJSONReader}, on the thread reading gpsd. Keep the implementations short.
+ */
+public abstract class GPSdListener implements EventListener
+{
+  /**
+   * A TPV object, with a position.
+   * @param rmc position, time, course, and speed (in knots)
+   * @param mode 2 for a 2D fix, 3 for a 3D fix
+   */
+  public void tpvRead(RMC rmc, int mode)
+  {
+  }
+
+  /**
+   * A SKY object, with its satellites.
+   */
+  public void skyRead(List<SVData> satellites)
+  {
+  }
+
+  /**
+   * An AIS object.
+   */
+  public void aisRead(AISRecord record)
+  {
+  }
+
+  /**
+   * An ATT object. The missing values are NaN.
+   * @param heading in degrees
+   * @param pitch in degrees
+   * @param roll in degrees
+   */
+  public void attRead(double heading, double pitch, double roll)
+  {
+  }
+
+  /**
+   * An ERROR object.
+   */
+  public void errorRead(String message)
+  {
+  }
+
+  /**
+   * @param cause null if gpsd closed the connection, or if the client is closed.
+   */
+  public void disconnected(Exception cause)
+  {
+  }
+}
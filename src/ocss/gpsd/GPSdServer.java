@@ -0,0 +1,408 @@
+package ocss.gpsd;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import java.net.InetSocketAddress;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import ocss.nmea.parser.GeoPos;
+import ocss.nmea.parser.RMC;
+
+/**
+ * A gpsd-compatible server, publishing the position of the boat to any number of clients
+ * (chart plotters, or {@link GPSdStreamClient}s).
+ * <br>
+ * The clients are served by one thread, with non-blocking channels. The VERSION object is sent
+ * on connection, the <code>?WATCH</code>, <code>?POLL;</code>, <code>?VERSION;</code>,
+ * and <code>?DEVICES;</code> commands are answered.
+ * <br>
+ * Each published position is encoded once (see {@link GPSdUtils#produceTPV(Date, GeoPos, double, double)})
+ * in a read-only buffer, shared by all the watching clients: each one only gets a view on it, and its
+ * pending buffers are written in one gathering write. A client too slow to keep up is disconnected.
+ * <pre>
+ * final GPSdServer server = new GPSdServer(GPSdServer.DEFAULT_PORT, "/dev/ttyUSB0");
+ * server.start();
+ * nmeaClient.addNMEAListener(new NMEAListener()
+ *   {
+ *     public void dataDetected(NMEAEvent e)
+ *     {
+ *       if (e.getContent().startsWith("RMC", 3))
+ *         server.publish(StringParsers.parseRMC(e.getContent()));
+ *     }
+ *   });
+ * </pre>
+ */
+public class GPSdServer implements Runnable
+{
+  public final static int DEFAULT_PORT = 2947;
+  public final static String RELEASE = "3.11";
+  public final static int PROTO_MAJOR = 3;
+  public final static int PROTO_MINOR = 11;
+
+  private final static int MAX_PENDING = 256;        // Buffers per client. More, and it is too slow.
+  private final static int MAX_COMMAND_LENGTH = 1024;
+  private final static long SELECT_TIMEOUT = 500L;   // ms, to check keepServing
+  private final static double KNOTS_TO_MS = 1852d / 3600d;
+  private final static byte[] EOL = { '\r', '\n' };
+
+  /**
+   * A connected client.
+   */
+  private final static class Client
+  {
+    final SocketChannel channel;
+    final ByteBuffer command = ByteBuffer.allocate(MAX_COMMAND_LENGTH);
+    final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+    final ByteBuffer[] gather = new ByteBuffer[16];
+    boolean watching = false;
+
+    Client(SocketChannel channel)
+    {
+      this.channel = channel;
+    }
+  }
+
+  private final ServerSocketChannel serverChannel;
+  private final Selector selector;
+  private final String device;
+  private final Date started = new Date();
+  private final ConcurrentLinkedQueue<ByteBuffer> published = new ConcurrentLinkedQueue<ByteBuffer>();
+  private volatile ByteBuffer lastTPV = null; // Read-only, for ?POLL
+  private volatile int clients = 0;
+  private volatile boolean keepServing = true;
+
+  /**
+   * Binds the port.
+   * @param port 0 for any free one, see {@link #getLocalPort()}.
+   * @param device the path of the device the data come from, like <code>/dev/ttyUSB0</code>.
+   */
+  public GPSdServer(int port, String device) throws IOException
+  {
+    this.device = device;
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.configureBlocking(false);
+    serverChannel.socket().setReuseAddress(true);
+    serverChannel.socket().bind(new InetSocketAddress(port));
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+  }
+
+  public int getLocalPort()
+  { return serverChannel.socket().getLocalPort(); }
+
+  /**
+   * @return the number of connected clients.
+   */
+  public int getClientCount()
+  { return this.clients; }
+
+  /**
+   * Serves on a thread of its own.
+   */
+  public void start()
+  {
+    start(null);
+  }
+
+  /**
+   * Serves on the given Executor, null to start a Thread.
+   */
+  public void start(Executor executor)
+  {
+    if (executor != null)
+      executor.execute(this);
+    else
+      new Thread(this, "GPSdServer-" + getLocalPort()).start();
+  }
+
+  public void stopServer()
+  {
+    keepServing = false;
+    selector.wakeup();
+  }
+
+  /**
+   * Sends a position to the watching clients. Can be called from any thread.
+   * @param rmc its speed is in knots, sent in m/s as gpsd does.
+   */
+  public void publish(RMC rmc)
+  {
+    if (rmc == null || rmc.getGp() == null)
+      return;
+    Date date = (rmc.getRmcDate() != null ? rmc.getRmcDate() : new Date());
+    publish(date, rmc.getGp(), rmc.getCog(), rmc.getSog());
+  }
+
+  /**
+   * @param sog in knots
+   */
+  public void publish(Date date, GeoPos gp, double cog, double sog)
+  {
+    String tpv = GPSdUtils.produceTPV(date, gp, cog, sog * KNOTS_TO_MS);
+    ByteBuffer shared = encode(tpv + "\r\n").asReadOnlyBuffer(); // Encoded once, for all the clients
+    lastTPV = shared;
+    published.add(shared);
+    selector.wakeup();
+  }
+
+  public void run()
+  {
+    try
+    {
+      while (keepServing)
+      {
+        selector.select(SELECT_TIMEOUT);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try
+          {
+            if (!key.isValid())
+              continue;
+            if (key.isAcceptable())
+              accept();
+            else
+            {
+              Client client = (Client)key.attachment();
+              if (key.isReadable())
+                readFrom(key, client);
+              if (key.isValid() && key.isWritable())
+                flush(key, client);
+            }
+          }
+          catch (IOException ioe)
+          {
+            close(key);
+          }
+        }
+        fanOut();
+      }
+    }
+    catch (IOException ioe) // The selector
+    {
+      System.err.println(ioe.getLocalizedMessage());
+    }
+    finally
+    {
+      for (SelectionKey key : selector.keys())
+      {
+        try
+        {
+          key.channel().close();
+        }
+        catch (IOException ioe)
+        {
+          // Closing anyway
+        }
+      }
+      try
+      {
+        selector.close();
+      }
+      catch (IOException ioe)
+      {
+        // Closing anyway
+      }
+      clients = 0;
+    }
+  }
+
+  private void accept() throws IOException
+  {
+    SocketChannel channel;
+    while ((channel = serverChannel.accept()) != null)
+    {
+      channel.configureBlocking(false);
+      Client client = new Client(channel);
+      SelectionKey key = channel.register(selector, SelectionKey.OP_READ, client);
+      clients++;
+      enqueue(key, client, encode(version() + "\r\n"));
+    }
+  }
+
+  /**
+   * Gives the published positions to the watching clients.
+   */
+  private void fanOut()
+  {
+    ByteBuffer shared;
+    while ((shared = published.poll()) != null)
+    {
+      for (SelectionKey key : selector.keys())
+      {
+        Object attachment = key.attachment();
+        if (attachment == null || !key.isValid() || !((Client)attachment).watching)
+          continue;
+        try
+        {
+          enqueue(key, (Client)attachment, shared.duplicate()); // Same bytes, own position
+        }
+        catch (IOException ioe)
+        {
+          close(key);
+        }
+      }
+    }
+  }
+
+  private void readFrom(SelectionKey key, Client client) throws IOException
+  {
+    if (client.channel.read(client.command) < 0) // Closed by the client
+    {
+      close(key);
+      return;
+    }
+    ByteBuffer bb = client.command;
+    bb.flip();
+    int start = 0;
+    for (int i=0; i<bb.limit(); i++)
+    {
+      byte b = bb.get(i);
+      if (b == ';' || b == '\n' || b == '\r')
+      {
+        if (i > start)
+          command(key, client, new String(bb.array(), start, i - start, "US-ASCII").trim());
+        start = i + 1;
+      }
+    }
+    bb.position(start);
+    bb.compact();
+    if (!bb.hasRemaining()) // No end of command in sight
+      throw new IOException("Command too long");
+  }
+
+  private void command(SelectionKey key, Client client, String command) throws IOException
+  {
+    if (command.length() == 0)
+      return;
+    if (command.startsWith(GPSdUtils.WATCH) || command.equals("?WATCH"))
+    {
+      if (command.length() > GPSdUtils.WATCH.length()) // ?WATCH; alone only reports
+        client.watching = (command.replace(" ", "").indexOf("\"enable\":false") == -1);
+      enqueue(key, client, encode(devices() + "\r\n" + watch(client.watching) + "\r\n"));
+    }
+    else if (command.equals("?POLL"))
+    {
+      ByteBuffer tpv = lastTPV;
+      String time = "\"time\":\"" + GPSdUtils.produceTime(new Date()) + "\"";
+      if (tpv == null)
+        enqueue(key, client, encode("{\"class\":\"POLL\"," + time + ",\"active\":0,\"tpv\":[],\"sky\":[]}\r\n"));
+      else
+      {
+        ByteBuffer body = tpv.duplicate();
+        body.limit(body.limit() - EOL.length); // The TPV without its end of line
+        enqueue(key, client, encode("{\"class\":\"POLL\"," + time + ",\"active\":1,\"tpv\":["));
+        enqueue(key, client, body);
+        enqueue(key, client, encode("],\"sky\":[]}\r\n"));
+      }
+    }
+    else if (command.equals("?VERSION"))
+      enqueue(key, client, encode(version() + "\r\n"));
+    else if (command.equals("?DEVICES"))
+      enqueue(key, client, encode(devices() + "\r\n"));
+    else
+      enqueue(key, client, encode("{\"class\":\"ERROR\",\"message\":\"Unrecognized request '" + command.replace("\"", "\\\"") + "'\"}\r\n"));
+  }
+
+  private String version()
+  {
+    return GPSdUtils.produceVersion(RELEASE, started, PROTO_MAJOR, PROTO_MINOR);
+  }
+
+  private String devices()
+  {
+    try
+    {
+      return GPSdUtils.produceDevices(new String[] { device }, new Date[] { started }, new int[] { 4800 }, new String[] { "N" }, new int[] { 1 });
+    }
+    catch (GPSdUtils.GPSDException gpsde) // Not with one device
+    {
+      throw new RuntimeException(gpsde);
+    }
+  }
+
+  private static String watch(boolean enable)
+  {
+    return "{\"class\":\"WATCH\",\"enable\":" + enable + ",\"json\":true,\"nmea\":false,\"raw\":0,\"scaled\":false,\"timing\":false}";
+  }
+
+  /**
+   * Queues a buffer for a client, and writes what can be written.
+   */
+  private void enqueue(SelectionKey key, Client client, ByteBuffer bb) throws IOException
+  {
+    if (client.pending.size() == MAX_PENDING)
+      throw new IOException("Client too slow");
+    client.pending.add(bb);
+    flush(key, client);
+  }
+
+  /**
+   * Writes the pending buffers of a client, at once.
+   */
+  private void flush(SelectionKey key, Client client) throws IOException
+  {
+    while (!client.pending.isEmpty())
+    {
+      int n = 0;
+      for (ByteBuffer bb : client.pending)
+      {
+        client.gather[n++] = bb;
+        if (n == client.gather.length)
+          break;
+      }
+      long written = client.channel.write(client.gather, 0, n);
+      for (int i=0; i<n; i++)
+        client.gather[i] = null;
+      while (!client.pending.isEmpty() && !client.pending.peek().hasRemaining())
+        client.pending.poll();
+      if (written == 0L || (!client.pending.isEmpty() && client.pending.peek().position() > 0))
+        break; // The socket buffer is full
+    }
+    if (client.pending.isEmpty())
+      key.interestOps(SelectionKey.OP_READ);
+    else
+      key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+  }
+
+  private void close(SelectionKey key)
+  {
+    if (key.attachment() != null && key.isValid())
+      clients--;
+    key.cancel();
+    try
+    {
+      key.channel().close();
+    }
+    catch (IOException ioe)
+    {
+      // Closing anyway
+    }
+  }
+
+  private static ByteBuffer encode(String s)
+  {
+    try
+    {
+      return ByteBuffer.wrap(s.getBytes("UTF-8"));
+    }
+    catch (UnsupportedEncodingException uee) // Always supported
+    {
+      throw new RuntimeException(uee);
+    }
+  }
+}
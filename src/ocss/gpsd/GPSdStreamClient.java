@@ -0,0 +1,134 @@
+package ocss.gpsd;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Connects to gpsd, and streams its JSON objects to {@link GPSdListener}s.
+ * <br>
+ * Unlike {@link GPSdClient}, nothing is polled: the WATCH command is sent when connected,
+ * without waiting for the VERSION and DEVICES answers, and gpsd then sends its objects as they come.
+ * The bytes read from the socket go straight into a {@link GPSdJSONReader}.
+ * <pre>
+ * GPSdStreamClient client = new GPSdStreamClient("localhost", GPSdStreamClient.DEFAULT_PORT);
+ * client.addListener(new GPSdListener()
+ *   {
+ *     public void tpvRead(RMC rmc, int mode)
+ *     {
+ *       ...
+ *     }
+ *   });
+ * client.start();
+ * </pre>
+ */
+public class GPSdStreamClient
+{
+  public final static int DEFAULT_PORT = 2947;
+  public final static String STREAM = GPSdUtils.WATCH + "{\"enable\":true,\"json\":true,\"scaled\":false};";
+
+  private final static int READ_BUFFER_SIZE = 16 * 1024;
+
+  private final String hostName;
+  private final int port;
+  private final GPSdJSONReader reader = new GPSdJSONReader();
+  private SocketChannel channel = null;
+  private volatile boolean keepReading = true;
+
+  public GPSdStreamClient(String host, int port)
+  {
+    this.hostName = host;
+    this.port = port;
+  }
+
+  public void addListener(GPSdListener l)
+  {
+    reader.addListener(l);
+  }
+
+  public void removeListener(GPSdListener l)
+  {
+    reader.removeListener(l);
+  }
+
+  public GPSdJSONReader getReader()
+  { return this.reader; }
+
+  /**
+   * Connects, and reads on a thread of its own.
+   */
+  public void start() throws IOException
+  {
+    start(null);
+  }
+
+  /**
+   * Connects, and reads on the given Executor (like one of virtual threads,
+   * see {@link ocss.nmea.api.NMEAExecutors}), null to start a Thread.
+   */
+  public void start(Executor executor) throws IOException
+  {
+    channel = SocketChannel.open(new InetSocketAddress(hostName, port));
+    ByteBuffer watch = ByteBuffer.wrap((STREAM + "\n").getBytes("US-ASCII"));
+    while (watch.hasRemaining())
+      channel.write(watch);
+    Runnable streamReader = new Runnable()
+      {
+        public void run()
+        {
+          read();
+        }
+      };
+    if (executor != null)
+      executor.execute(streamReader);
+    else
+      new Thread(streamReader, "GPSdStreamClient-" + hostName + ":" + port).start();
+  }
+
+  private void read()
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    Exception cause = null;
+    try
+    {
+      while (keepReading)
+      {
+        buffer.clear();
+        if (channel.read(buffer) < 0) // End of stream, the server is gone
+          break;
+        buffer.flip();
+        reader.feed(buffer);
+      }
+    }
+    catch (IOException ioe)
+    {
+      if (keepReading) // Not closed by closeClient
+        cause = ioe;
+    }
+    finally
+    {
+      try
+      {
+        channel.close();
+      }
+      catch (IOException ioe)
+      {
+        // Closing anyway
+      }
+    }
+    for (GPSdListener l : reader.getListeners())
+      l.disconnected(cause);
+  }
+
+  public void closeClient() throws IOException
+  {
+    keepReading = false;
+    if (channel != null)
+      channel.close();
+  }
+}
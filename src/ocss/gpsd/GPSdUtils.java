@@ -5,18 +5,37 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import java.util.HashMap;
+import java.util.TimeZone;
 
 import ocss.nmea.parser.GeoPos;
 import ocss.nmea.parser.RMC;
 
+/**
+ * Produces and parses the gpsd json objects.
+ * Thread safe, the date formats are per thread.
+ */
 public class GPSdUtils
 {
   public final static String VERSION = "?VERSION;";
   public final static String WATCH   = "?WATCH=";
   public final static String POLL    = "?POLL;";
 
-  private final static SimpleDateFormat TO_DURATION = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SS'Z'");
-  private final static SimpleDateFormat FOR_VERSION = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+  private final static ThreadLocal<SimpleDateFormat> TO_DURATION = new ThreadLocal<SimpleDateFormat>()
+    {
+      protected SimpleDateFormat initialValue()
+      {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"); // .SS would print 5 ms as .05
+        sdf.setTimeZone(TimeZone.getTimeZone("Etc/UTC")); // As the trailing Z says
+        return sdf;
+      }
+    };
+  private final static ThreadLocal<SimpleDateFormat> FOR_VERSION = new ThreadLocal<SimpleDateFormat>()
+    {
+      protected SimpleDateFormat initialValue()
+      {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+      }
+    };
 
   /**
    * TVP Track Velocity Position
@@ -31,7 +50,7 @@ public class GPSdUtils
   public static String produceTPV(Date dataDate, GeoPos gp, double cog, double sog)
   {
     String gpsdTPVString = "";
-    String time = TO_DURATION.format(dataDate);
+    String time = TO_DURATION.get().format(dataDate);
     gpsdTPVString = "{\"class\":\"TPV\",\"tag\":\"MID2\",\"time\":\"" + time + 
                     "\",\"ept\":0.00,\"lat\":" + gp.lat + 
                     ",\"lon\":" + gp.lng + 
@@ -41,6 +60,14 @@ public class GPSdUtils
     return gpsdTPVString;
   }
   
+  /**
+   * @return the UTC time, as found in the gpsd objects, like <code>2010-04-30T11:48:20.100Z</code>
+   */
+  public static String produceTime(Date date)
+  {
+    return TO_DURATION.get().format(date);
+  }
+  
   public static RMC parseTPV(String gpsdTPVString) throws GPSDException
   {
     RMC rmc = null;
@@ -66,7 +93,7 @@ public class GPSdUtils
                            Double.parseDouble(tpvMap.get("lon"))));
       rmc.setCog(Double.parseDouble(tpvMap.get("track")));
       rmc.setSog(Double.parseDouble(tpvMap.get("speed")));
-      rmc.setRmcDate(TO_DURATION.parse(tpvMap.get("time")));
+      rmc.setRmcDate(TO_DURATION.get().parse(tpvMap.get("time")));
     }
     catch (Exception ex)
     {
@@ -79,7 +106,7 @@ public class GPSdUtils
   public static String produceVersion(String verNum, Date revDate, int major, int minor)
   {
     String version = "{\"class\":\"VERSION\",\"release\":\"" + verNum + 
-                     "\",\"rev\":\"" + FOR_VERSION.format(revDate) + 
+                     "\",\"rev\":\"" + FOR_VERSION.get().format(revDate) + 
                      "\",\"proto_major\":" + Integer.toString(major) + 
                      ",\"proto_minor\":" + Integer.toString(minor) + "}";    
     return version;
@@ -103,7 +130,7 @@ public class GPSdUtils
     for (int i=0; i<path.length; i++)
     {
       devices += "{\"class\":\"DEVICE\",\"path\":\"" + path[i] + 
-                                       "\",\"activated\":\"" + TO_DURATION.format(activated[i]) + 
+                                       "\",\"activated\":\"" + TO_DURATION.get().format(activated[i]) + 
                                        "\",\"native\":0,\"bps\":" + Integer.toString(br[i]) + 
                                        ",\"parity\":\"" + parity[i] + 
                                        "\",\"stopbits\":" + Integer.toString(stopbit[i]) + 
@@ -0,0 +1,184 @@
+package ocss.nmea.ais;
+
+/**
+ * Re-assembles the multi-sentence AIS messages (like the type 5, static and voyage data).
+ * <pre>
+ * !AIVDM,2,1,3,B,55P5TL01VIaAL@7WKO@mBplU@&lt;PDhh000000001S;AJ::4A80?4i@E53,0*3E
+ * !AIVDM,2,2,3,B,1@0000000000000,2*55
+ *        | | | |
+ *        | | | Channel
+ *        | | Sequential message id, 0-9, or empty
+ *        | Fragment number
+ *        Number of fragments
+ * </pre>
+ * The pending messages are kept in a fixed table, one slot per sequential id, channel, and
+ * VDM/VDO, so each fragment costs one lookup, and the memory used does not depend on what is received.
+ * A message that is not completed within the timeout is dropped, as well as the ones
+ * with a missing or out of order fragment.
+ * <br>
+ * The fragments are unpacked in the slot's {@link AISPayload} as they arrive.
+ * <br>
+ * Not thread safe, one assembler per data source.
+ */
+public final class AISAssembler
+{
+  public final static long DEFAULT_TIMEOUT = 5000L; // in ms
+  public final static int MAX_FRAGMENTS = 9;
+
+  private final static int NB_SEQ_IDS  = 11; // 0-9, and none
+  private final static int NB_CHANNELS = 5;  // A, B, 1, 2, and none (or other)
+
+  private final long timeout;
+
+  private final AISPayload[] payloads = new AISPayload[2 * NB_SEQ_IDS * NB_CHANNELS];
+  private final AISPayload single = new AISPayload(); // The one-fragment messages, the slots are left alone
+  private final int[]  nbFragments  = new int[payloads.length];  // 0 when the slot is free
+  private final int[]  nextFragment = new int[payloads.length];
+  private final long[] started      = new long[payloads.length];
+  private int pending = 0;
+  private long lastSweep = 0L;
+
+  private long dropped = 0L;
+
+  public AISAssembler()
+  {
+    this(DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * @param timeout max time between the first and the last fragment of a message, in ms.
+   */
+  public AISAssembler(long timeout)
+  {
+    this.timeout = timeout;
+  }
+
+  public long getTimeout()
+  { return this.timeout; }
+
+  /**
+   * @return the number of incomplete messages, and of orphan fragments, dropped so far.
+   */
+  public long getDropped()
+  { return this.dropped; }
+
+  /**
+   * @return the number of messages waiting for their next fragment.
+   */
+  public int getPending()
+  { return this.pending; }
+
+  /**
+   * Adds a fragment.
+   *
+   * @param own true for a VDO sentence (own vessel), false for VDM.
+   * @param count number of fragments of the message
+   * @param number number of this fragment, starting at 1
+   * @param seqId the sequential message id ('0' to '9'), 0 if empty
+   * @param channel the radio channel ('A', 'B', ...), 0 if empty
+   * @param armored the sentence, or the payload
+   * @param from where the payload starts in armored
+   * @param to where the payload ends in armored
+   * @param now current time, in ms
+   * @return the complete payload after the last fragment (valid until the next call), null otherwise.
+   */
+  public AISPayload add(boolean own, int count, int number, char seqId, char channel,
+                        CharSequence armored, int from, int to, long now)
+  {
+    if (now - lastSweep > timeout)
+      evict(now);
+    if (count < 1 || count > MAX_FRAGMENTS || number < 1 || number > count)
+    {
+      dropped++;
+      return null;
+    }
+    if (count == 1) // Can come between the fragments of another message, with the same id and channel
+    {
+      single.reset(armored, from, to);
+      return single;
+    }
+    int slot = slot(own, seqId, channel);
+    if (number == 1)
+    {
+      if (nbFragments[slot] != 0) // A new message replaces the one that never completed
+        free(slot, true);
+      if (payloads[slot] == null)
+        payloads[slot] = new AISPayload();
+      payloads[slot].reset(armored, from, to);
+      nbFragments[slot]  = count;
+      nextFragment[slot] = 2;
+      started[slot]      = now;
+      pending++;
+      return null;
+    }
+    if (nbFragments[slot] != count || nextFragment[slot] != number || now - started[slot] > timeout)
+    {
+      if (nbFragments[slot] != 0)
+        free(slot, true);
+      else
+        dropped++; // The beginning was missed
+      return null;
+    }
+    payloads[slot].append(armored, from, to);
+    if (number == count)
+    {
+      free(slot, false);
+      return payloads[slot];
+    }
+    nextFragment[slot]++;
+    return null;
+  }
+
+  /**
+   * Drops the messages older than the timeout. Done anyway when adding the fragments.
+   */
+  public void evict(long now)
+  {
+    lastSweep = now;
+    for (int i=0; pending>0 && i<nbFragments.length; i++)
+    {
+      if (nbFragments[i] != 0 && now - started[i] > timeout)
+        free(i, true);
+    }
+  }
+
+  public void reset()
+  {
+    for (int i=0; i<nbFragments.length; i++)
+      nbFragments[i] = 0;
+    pending = 0;
+  }
+
+  private void free(int slot, boolean drop)
+  {
+    nbFragments[slot] = 0;
+    pending--;
+    if (drop)
+      dropped++;
+  }
+
+  private static int slot(boolean own, char seqId, char channel)
+  {
+    int seq = (seqId >= '0' && seqId <= '9' ? seqId - '0' : NB_SEQ_IDS - 1);
+    int chan;
+    switch (channel)
+    {
+      case 'A':
+        chan = 0;
+        break;
+      case 'B':
+        chan = 1;
+        break;
+      case '1':
+        chan = 2;
+        break;
+      case '2':
+        chan = 3;
+        break;
+      default:
+        chan = NB_CHANNELS - 1;
+        break;
+    }
+    return (((own ? 1 : 0) * NB_SEQ_IDS) + seq) * NB_CHANNELS + chan;
+  }
+}
@@ -0,0 +1,433 @@
+package ocss.nmea.ais;
+
+/**
+ * The field layouts of the AIS messages, types 1 to 27.
+ * <br>
+ * See http://gpsd.berlios.de/AIVDM.html
+ * <br>
+ * Each layout is a precomputed <code>int[]</code>: the min length of the payload (in bits), followed by
+ * one <code>{ field id, from, to, kind }</code> group per field, <code>[from, to[</code> being the bit offsets
+ * (starting at 0, like in {@link AISParser.AISData}).
+ * The layout of a message is found with {@link #layout(int, AISPayload)}, in one switch.
+ */
+public final class AISLayout
+{
+  // Field ids
+  public final static int MESSAGE_TYPE      =  0;
+  public final static int REPEAT_INDICATOR  =  1;
+  public final static int MMSI              =  2;
+  public final static int NAV_STATUS        =  3;
+  public final static int ROT               =  4;
+  public final static int SOG               =  5; // 1/10 knot
+  public final static int POS_ACC           =  6;
+  public final static int LONGITUDE         =  7; // 1/10000 minute
+  public final static int LATITUDE          =  8; // 1/10000 minute
+  public final static int COG               =  9; // 1/10 degree
+  public final static int HDG               = 10;
+  public final static int TIME_STAMP        = 11; // UTC second
+  public final static int MANEUVER          = 12;
+  public final static int RAIM              = 13;
+  public final static int RADIO             = 14;
+  public final static int YEAR              = 15;
+  public final static int MONTH             = 16;
+  public final static int DAY               = 17;
+  public final static int HOUR              = 18;
+  public final static int MINUTE            = 19;
+  public final static int EPFD              = 20;
+  public final static int AIS_VERSION       = 21;
+  public final static int IMO               = 22;
+  public final static int CALL_SIGN         = 23;
+  public final static int SHIP_NAME         = 24;
+  public final static int SHIP_TYPE         = 25;
+  public final static int TO_BOW            = 26;
+  public final static int TO_STERN          = 27;
+  public final static int TO_PORT           = 28;
+  public final static int TO_STARBOARD      = 29;
+  public final static int ETA_MONTH         = 30;
+  public final static int ETA_DAY           = 31;
+  public final static int ETA_HOUR          = 32;
+  public final static int ETA_MINUTE        = 33;
+  public final static int DRAUGHT           = 34; // 1/10 meter
+  public final static int DESTINATION       = 35;
+  public final static int DTE               = 36;
+  public final static int SEQ_NO            = 37;
+  public final static int DEST_MMSI         = 38;
+  public final static int RETRANSMIT        = 39;
+  public final static int DAC               = 40;
+  public final static int FID               = 41;
+  public final static int TEXT              = 42;
+  public final static int ALTITUDE          = 43;
+  public final static int SOG_KNOTS         = 44; // knot
+  public final static int PART_NUMBER       = 45;
+  public final static int VENDOR_ID         = 46;
+  public final static int MOTHERSHIP_MMSI   = 47;
+  public final static int AID_TYPE          = 48;
+  public final static int OFF_POSITION      = 49;
+  public final static int VIRTUAL_AID       = 50;
+  public final static int LR_LONGITUDE      = 51; // 1/10 minute
+  public final static int LR_LATITUDE       = 52; // 1/10 minute
+  public final static int COG_DEGREES       = 53; // degree
+  public final static int GNSS              = 54;
+
+  public final static int NB_FIELDS         = 55;
+
+  // Kinds
+  public final static int UNSIGNED      = 0;
+  public final static int SIGNED        = 1; // Two's complement
+  public final static int LEGACY_SIGNED = 2; // value - (2^n - 1), as AISParser has always decoded lat, lng, and rot of types 1 to 3 only
+  public final static int TEXT_6BIT     = 3;
+
+  public final static int FIELD_ID   = 0;
+  public final static int FIELD_FROM = 1;
+  public final static int FIELD_TO   = 2;
+  public final static int FIELD_KIND = 3;
+  public final static int GROUP_SIZE = 4;
+
+  private final static int HEADER_LENGTH = 38;
+
+  private final static int[] HEADER =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED
+  };
+
+  // Types 1, 2, 3. Min length is the one of the legacy AISData layout.
+  private final static int[] POSITION_REPORT_CLASS_A =
+  {
+    143,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    NAV_STATUS,        38,  42, UNSIGNED,
+    ROT,               42,  50, LEGACY_SIGNED,
+    SOG,               50,  60, UNSIGNED,
+    POS_ACC,           60,  61, UNSIGNED,
+    LONGITUDE,         61,  89, LEGACY_SIGNED,
+    LATITUDE,          89, 116, LEGACY_SIGNED,
+    COG,              116, 128, UNSIGNED,
+    HDG,              128, 137, UNSIGNED,
+    TIME_STAMP,       137, 143, UNSIGNED,
+    MANEUVER,         143, 145, UNSIGNED,
+    RAIM,             148, 149, UNSIGNED,
+    RADIO,            149, 168, UNSIGNED
+  };
+
+  // Types 4, 11
+  private final static int[] BASE_STATION_REPORT =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    YEAR,              38,  52, UNSIGNED,
+    MONTH,             52,  56, UNSIGNED,
+    DAY,               56,  61, UNSIGNED,
+    HOUR,              61,  66, UNSIGNED,
+    MINUTE,            66,  72, UNSIGNED,
+    TIME_STAMP,        72,  78, UNSIGNED,
+    POS_ACC,           78,  79, UNSIGNED,
+    LONGITUDE,         79, 107, SIGNED,
+    LATITUDE,         107, 134, SIGNED,
+    EPFD,             134, 138, UNSIGNED,
+    RAIM,             148, 149, UNSIGNED,
+    RADIO,            149, 168, UNSIGNED
+  };
+
+  // Type 5
+  private final static int[] STATIC_AND_VOYAGE_DATA =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    AIS_VERSION,       38,  40, UNSIGNED,
+    IMO,               40,  70, UNSIGNED,
+    CALL_SIGN,         70, 112, TEXT_6BIT,
+    SHIP_NAME,        112, 232, TEXT_6BIT,
+    SHIP_TYPE,        232, 240, UNSIGNED,
+    TO_BOW,           240, 249, UNSIGNED,
+    TO_STERN,         249, 258, UNSIGNED,
+    TO_PORT,          258, 264, UNSIGNED,
+    TO_STARBOARD,     264, 270, UNSIGNED,
+    EPFD,             270, 274, UNSIGNED,
+    ETA_MONTH,        274, 278, UNSIGNED,
+    ETA_DAY,          278, 283, UNSIGNED,
+    ETA_HOUR,         283, 288, UNSIGNED,
+    ETA_MINUTE,       288, 294, UNSIGNED,
+    DRAUGHT,          294, 302, UNSIGNED,
+    DESTINATION,      302, 422, TEXT_6BIT,
+    DTE,              422, 423, UNSIGNED
+  };
+
+  // Type 6
+  private final static int[] ADDRESSED_BINARY =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    SEQ_NO,            38,  40, UNSIGNED,
+    DEST_MMSI,         40,  70, UNSIGNED,
+    RETRANSMIT,        70,  71, UNSIGNED,
+    DAC,               72,  82, UNSIGNED,
+    FID,               82,  88, UNSIGNED
+  };
+
+  // Types 7, 10, 13, 15, 16: the first (or only) destination
+  private final static int[] ADDRESSED =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    DEST_MMSI,         40,  70, UNSIGNED
+  };
+
+  // Type 8
+  private final static int[] BROADCAST_BINARY =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    DAC,               40,  50, UNSIGNED,
+    FID,               50,  56, UNSIGNED
+  };
+
+  // Type 9
+  private final static int[] SAR_AIRCRAFT_POSITION =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    ALTITUDE,          38,  50, UNSIGNED,
+    SOG_KNOTS,         50,  60, UNSIGNED,
+    POS_ACC,           60,  61, UNSIGNED,
+    LONGITUDE,         61,  89, SIGNED,
+    LATITUDE,          89, 116, SIGNED,
+    COG,              116, 128, UNSIGNED,
+    TIME_STAMP,       128, 134, UNSIGNED,
+    RAIM,             147, 148, UNSIGNED,
+    RADIO,            148, 168, UNSIGNED
+  };
+
+  // Type 12
+  private final static int[] ADDRESSED_SAFETY =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    SEQ_NO,            38,  40, UNSIGNED,
+    DEST_MMSI,         40,  70, UNSIGNED,
+    RETRANSMIT,        70,  71, UNSIGNED,
+    TEXT,              72, 1008, TEXT_6BIT
+  };
+
+  // Type 14
+  private final static int[] BROADCAST_SAFETY =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    TEXT,              40, 1008, TEXT_6BIT
+  };
+
+  // Type 18
+  private final static int[] POSITION_REPORT_CLASS_B =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    SOG,               46,  56, UNSIGNED,
+    POS_ACC,           56,  57, UNSIGNED,
+    LONGITUDE,         57,  85, SIGNED,
+    LATITUDE,          85, 112, SIGNED,
+    COG,              112, 124, UNSIGNED,
+    HDG,              124, 133, UNSIGNED,
+    TIME_STAMP,       133, 139, UNSIGNED,
+    RAIM,             147, 148, UNSIGNED,
+    RADIO,            148, 168, UNSIGNED
+  };
+
+  // Type 19
+  private final static int[] EXTENDED_POSITION_REPORT_CLASS_B =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    SOG,               46,  56, UNSIGNED,
+    POS_ACC,           56,  57, UNSIGNED,
+    LONGITUDE,         57,  85, SIGNED,
+    LATITUDE,          85, 112, SIGNED,
+    COG,              112, 124, UNSIGNED,
+    HDG,              124, 133, UNSIGNED,
+    TIME_STAMP,       133, 139, UNSIGNED,
+    SHIP_NAME,        143, 263, TEXT_6BIT,
+    SHIP_TYPE,        263, 271, UNSIGNED,
+    TO_BOW,           271, 280, UNSIGNED,
+    TO_STERN,         280, 289, UNSIGNED,
+    TO_PORT,          289, 295, UNSIGNED,
+    TO_STARBOARD,     295, 301, UNSIGNED,
+    EPFD,             301, 305, UNSIGNED,
+    RAIM,             305, 306, UNSIGNED
+  };
+
+  // Type 21
+  private final static int[] AID_TO_NAVIGATION =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    AID_TYPE,          38,  43, UNSIGNED,
+    SHIP_NAME,         43, 163, TEXT_6BIT,
+    POS_ACC,          163, 164, UNSIGNED,
+    LONGITUDE,        164, 192, SIGNED,
+    LATITUDE,         192, 219, SIGNED,
+    TO_BOW,           219, 228, UNSIGNED,
+    TO_STERN,         228, 237, UNSIGNED,
+    TO_PORT,          237, 243, UNSIGNED,
+    TO_STARBOARD,     243, 249, UNSIGNED,
+    EPFD,             249, 253, UNSIGNED,
+    TIME_STAMP,       253, 259, UNSIGNED,
+    OFF_POSITION,     259, 260, UNSIGNED,
+    RAIM,             268, 269, UNSIGNED,
+    VIRTUAL_AID,      269, 270, UNSIGNED
+  };
+
+  // Type 23
+  private final static int[] GROUP_ASSIGNMENT =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    SHIP_TYPE,        114, 122, UNSIGNED
+  };
+
+  // Type 24, part A
+  private final static int[] STATIC_DATA_REPORT_A =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    PART_NUMBER,       38,  40, UNSIGNED,
+    SHIP_NAME,         40, 160, TEXT_6BIT
+  };
+
+  // Type 24, part B
+  private final static int[] STATIC_DATA_REPORT_B =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    PART_NUMBER,       38,  40, UNSIGNED,
+    SHIP_TYPE,         40,  48, UNSIGNED,
+    VENDOR_ID,         48,  66, TEXT_6BIT,
+    CALL_SIGN,         90, 132, TEXT_6BIT,
+    TO_BOW,           132, 141, UNSIGNED,
+    TO_STERN,         141, 150, UNSIGNED,
+    TO_PORT,          150, 156, UNSIGNED,
+    TO_STARBOARD,     156, 162, UNSIGNED
+  };
+
+  // Type 24, part B, auxiliary craft (MMSI 98XXXYYYY): the dimensions are replaced by the mothership MMSI
+  private final static int[] STATIC_DATA_REPORT_B_AUXILIARY =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    PART_NUMBER,       38,  40, UNSIGNED,
+    SHIP_TYPE,         40,  48, UNSIGNED,
+    VENDOR_ID,         48,  66, TEXT_6BIT,
+    CALL_SIGN,         90, 132, TEXT_6BIT,
+    MOTHERSHIP_MMSI,  132, 162, UNSIGNED
+  };
+
+  // Type 27
+  private final static int[] LONG_RANGE_BROADCAST =
+  {
+    HEADER_LENGTH,
+    MESSAGE_TYPE,       0,   6, UNSIGNED,
+    REPEAT_INDICATOR,   6,   8, UNSIGNED,
+    MMSI,               8,  38, UNSIGNED,
+    POS_ACC,           38,  39, UNSIGNED,
+    RAIM,              39,  40, UNSIGNED,
+    NAV_STATUS,        40,  44, UNSIGNED,
+    LR_LONGITUDE,      44,  62, SIGNED,
+    LR_LATITUDE,       62,  79, SIGNED,
+    SOG_KNOTS,         79,  85, UNSIGNED,
+    COG_DEGREES,       85,  94, UNSIGNED,
+    GNSS,              94,  95, UNSIGNED
+  };
+
+  private AISLayout()
+  {
+  }
+
+  /**
+   * @param type the message type (the first 6 bits of the payload)
+   * @param payload the payload, for the messages having several layouts (type 24)
+   * @return the layout. The header only (type, repeat, MMSI) for the types without specific fields (17, 20, 22, 25, 26), and the unknown ones.
+   */
+  public static int[] layout(int type, AISPayload payload)
+  {
+    switch (type)
+    {
+      case 1:
+      case 2:
+      case 3:
+        return POSITION_REPORT_CLASS_A;
+      case 4:
+      case 11:
+        return BASE_STATION_REPORT;
+      case 5:
+        return STATIC_AND_VOYAGE_DATA;
+      case 6:
+        return ADDRESSED_BINARY;
+      case 7:
+      case 10:
+      case 13:
+      case 15:
+      case 16:
+        return ADDRESSED;
+      case 8:
+        return BROADCAST_BINARY;
+      case 9:
+        return SAR_AIRCRAFT_POSITION;
+      case 12:
+        return ADDRESSED_SAFETY;
+      case 14:
+        return BROADCAST_SAFETY;
+      case 18:
+        return POSITION_REPORT_CLASS_B;
+      case 19:
+        return EXTENDED_POSITION_REPORT_CLASS_B;
+      case 21:
+        return AID_TO_NAVIGATION;
+      case 23:
+        return GROUP_ASSIGNMENT;
+      case 24:
+        if (payload.length() < 40 || payload.unsignedInt(38, 40) == 0)
+          return STATIC_DATA_REPORT_A;
+        else if (payload.unsignedInt(8, 38) / 10000000 == 98)
+          return STATIC_DATA_REPORT_B_AUXILIARY;
+        else
+          return STATIC_DATA_REPORT_B;
+      case 27:
+        return LONG_RANGE_BROADCAST;
+      default: // 17, 20, 22, 25, 26, and unknown
+        return HEADER;
+    }
+  }
+}
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 
 import java.io.FileReader;
 
+import ocss.nmea.parser.NMEAFields;
 import ocss.nmea.parser.StringParsers;
 
 public class AISParser
@@ -99,10 +100,29 @@ AIS Message type 2:
     public String description() { return description; }
   }
     
-  public final static String AIS_PREFIX = "!AIVDM";
+  public final static String AIS_PREFIX     = "!AIVDM";
+  public final static String AIS_OWN_PREFIX = "!AIVDO"; // Own vessel
   public final static int PREFIX_POS       = 0;
   public final static int NB_SENTENCES_POS = 1;
+  public final static int SENTENCE_NUM_POS = 2;
+  public final static int SEQ_ID_POS       = 3;
+  public final static int CHANNEL_POS      = 4;
   public final static int AIS_DATA_POS     = 5;
+
+  private final static ThreadLocal<NMEAFields> FIELDS = new ThreadLocal<NMEAFields>()
+    {
+      protected NMEAFields initialValue()
+      {
+        return new NMEAFields();
+      }
+    };
+  private final static ThreadLocal<AISPayload> PAYLOAD = new ThreadLocal<AISPayload>()
+    {
+      protected AISPayload initialValue()
+      {
+        return new AISPayload();
+      }
+    };
   
   public static AISRecord parseAIS(String sentence) throws Exception
   {
@@ -110,109 +130,138 @@ AIS Message type 2:
     if (!valid)
       throw new RuntimeException("Invalid AIS Data (Bad checksum) for [" + sentence + "]");
     
-    String[] dataElement = sentence.split(",");
-    if (!dataElement[PREFIX_POS].equals(AIS_PREFIX))
-      throw new RuntimeException("Unmanaged AIS Prefix [" + dataElement[PREFIX_POS] + "].");
+    NMEAFields dataElement = FIELDS.get().reset(sentence, 0, sentence.length());
+    if (!dataElement.equals(PREFIX_POS, AIS_PREFIX))
+      throw new RuntimeException("Unmanaged AIS Prefix [" + dataElement.string(PREFIX_POS) + "].");
      
-    if (!dataElement[NB_SENTENCES_POS].equals("1")) // More than 1 message: Not Managed
+    if (!dataElement.is(NB_SENTENCES_POS, '1')) // More than 1 message: Not Managed
       return null; 
                
+    if (AIS_DATA_POS >= dataElement.splitCount())
+      throw new ArrayIndexOutOfBoundsException(AIS_DATA_POS);
+    AISPayload payload = PAYLOAD.get().reset(sentence, dataElement.start(AIS_DATA_POS), dataElement.end(AIS_DATA_POS));
+    return decode(payload);
+  }
+
+  /**
+   * Like {@link #parseAIS(String)}, for VDM and VDO sentences, the multi-sentence messages being
+   * re-assembled by the given assembler.
+   *
+   * @return the record, null if the sentence is not the last one of its message.
+   */
+  public static AISRecord parseAIS(String sentence, AISAssembler assembler) throws Exception
+  {
+    boolean valid = StringParsers.validCheckSum(sentence);
+    if (!valid)
+      throw new RuntimeException("Invalid AIS Data (Bad checksum) for [" + sentence + "]");
+    
+    NMEAFields dataElement = FIELDS.get().reset(sentence, 0, sentence.length());
+    boolean own = dataElement.equals(PREFIX_POS, AIS_OWN_PREFIX);
+    if (!own && !dataElement.equals(PREFIX_POS, AIS_PREFIX))
+      throw new RuntimeException("Unmanaged AIS Prefix [" + dataElement.string(PREFIX_POS) + "].");
+    if (AIS_DATA_POS >= dataElement.splitCount())
+      throw new ArrayIndexOutOfBoundsException(AIS_DATA_POS);
+    
+    AISPayload payload = assembler.add(own, 
+                                       dataElement.parseInt(NB_SENTENCES_POS), 
+                                       dataElement.parseInt(SENTENCE_NUM_POS),
+                                       dataElement.isEmpty(SEQ_ID_POS) ? (char)0 : dataElement.charAt(SEQ_ID_POS, 0),
+                                       dataElement.isEmpty(CHANNEL_POS) ? (char)0 : dataElement.charAt(CHANNEL_POS, 0),
+                                       sentence, 
+                                       dataElement.start(AIS_DATA_POS), 
+                                       dataElement.end(AIS_DATA_POS), 
+                                       System.currentTimeMillis());
+    if (payload == null) // Waiting for the next fragment
+      return null;
+    return decode(payload);
+  }
+  
+  /**
+   * Decodes the fields of the payload, using the layout of its message type.
+   */
+  private static AISRecord decode(AISPayload payload)
+  {
     AISRecord aisRecord = new AISRecord(System.currentTimeMillis()); 
-    String aisData = dataElement[AIS_DATA_POS];
-//  System.out.println("[" + aisData + "]");
-    String binString = encodedAIStoBinaryString(aisData);
-//  System.out.println(binString);
+    if (verbose)
+      System.out.println(payload.toString());
     
-    for (AISData a : AISData.values())
-    {
-      String binStr = binString.substring(a.from(), a.to());
-      int intValue = Integer.parseInt(binStr, 2);
-      if (a.equals(AISData.LATITUDE) || a.equals(AISData.LONGITUDE))
+    int[] layout = AISLayout.layout(payload.unsignedInt(0, 6), payload);
+    if (payload.length() < layout[0])
+      throw new StringIndexOutOfBoundsException("Payload too short for type " + payload.unsignedInt(0, 6) + ", " + payload.length() + " bits");
+    for (int i=1; i<layout.length; i+=AISLayout.GROUP_SIZE)
+    {
+      int field = layout[i + AISLayout.FIELD_ID];
+      int from  = layout[i + AISLayout.FIELD_FROM];
+      int to    = layout[i + AISLayout.FIELD_TO];
+      int kind  = layout[i + AISLayout.FIELD_KIND];
+      if (to > payload.length()) // Optional trailing fields, or variable length text
       {
-         if ((a.equals(AISData.LATITUDE) && intValue != (91 * 600000) && intValue > (90 * 600000)) || 
-             (a.equals(AISData.LONGITUDE) && intValue != (181 * 600000) && intValue > (180  * 600000)))
-         {
-           intValue = - Integer.parseInt(neg(binStr), 2);
-         }
+        if (kind != AISLayout.TEXT_6BIT || from >= payload.length())
+          continue;
+        to = from + (((payload.length() - from) / 6) * 6);
       }
-      else if (a.equals(AISData.ROT))
+      int intValue = 0;
+      switch (kind)
       {
-        if (intValue > 128)
-          intValue = - Integer.parseInt(neg(binStr), 2);
+        case AISLayout.TEXT_6BIT:
+          aisRecord.setText(field, payload.text(from, to));
+          if (verbose)
+            System.out.println(field + " becomes [" + payload.text(from, to) + "]");
+          continue;
+        case AISLayout.SIGNED:
+          intValue = payload.signedInt(from, to);
+          break;
+        case AISLayout.LEGACY_SIGNED:
+          intValue = legacySigned(field, payload.unsignedInt(from, to), to - from);
+          break;
+        default:
+          intValue = payload.unsignedInt(from, to);
+          break;
       }
-      setAISData(a, aisRecord, intValue);
+      aisRecord.setValue(field, intValue);
       if (verbose)
-        System.out.println(a + " [" + binStr + "] becomes [" + intValue + "]");
+        System.out.println(field + " [" + Integer.toBinaryString(intValue) + "] becomes [" + intValue + "]");
     }
     return aisRecord;
   }
   
   /**
-   * 2's complement, for negative numbers.
-   * 
-   * @param binStr
-   * @return
+   * Lat, lng, and rot, the way they have always been decoded.
    */
-  private static String neg(String binStr)
-  {
-    String s = "";
-    for (int i=0; i<binStr.length(); i++)
-      s += (binStr.charAt(i)=='0'?'1':'0');
-    return s;
-  }
-  
-  private static void setAISData(AISData a, AISRecord ar, int value)
-  {
-    if (a.equals(AISData.MESSAGE_TYPE))
-      ar.setMessageType(value);
-    else if (a.equals(AISData.REPEAT_INDICATOR))
-      ar.setRepeatIndicator(value);
-    else if (a.equals(AISData.MMSI))
-      ar.setMmsi(value);
-    else if (a.equals(AISData.NAV_STATUS))
-      ar.setNavstatus(value);
-    else if (a.equals(AISData.ROT))
-      ar.setRot(value);
-    else if (a.equals(AISData.SOG))
-      ar.setSog(value);
-    else if (a.equals(AISData.POS_ACC))
-      ar.setPosAcc(value);
-    else if (a.equals(AISData.LONGITUDE))
-      ar.setLongitude(value);
-    else if (a.equals(AISData.LATITUDE))
-      ar.setLatitude(value);
-    else if (a.equals(AISData.COG))
-      ar.setCog(value);
-    else if (a.equals(AISData.HDG))
-      ar.setHdg(value);
-    else if (a.equals(AISData.TIME_STAMP))
-      ar.setUtc(value);
-  }
-  
-  private static String encodedAIStoBinaryString(String encoded)
+  private static int legacySigned(int field, int intValue, int nbBits)
   {
-    StringBuffer sb = new StringBuffer();
-    for (int i=0; i<encoded.length(); i++)
-    {
-      int c = encoded.charAt(i);
-      c -= 48;
-      if (c > 40)
-        c -= 8;
-      String bin = lPad(Integer.toBinaryString(c), "0", 6);
-      sb.append(bin);
-      if (verbose)
-        System.out.println(encoded.charAt(i) + " becomes " + bin + " (" + c + ")");
-//    sb.append(" ");
+    switch (field)
+    {
+      case AISLayout.LATITUDE:
+        if (intValue != (91 * 600000) && intValue > (90 * 600000))
+          intValue = neg(intValue, nbBits);
+        break;
+      case AISLayout.LONGITUDE:
+        if (intValue != (181 * 600000) && intValue > (180  * 600000))
+          intValue = neg(intValue, nbBits);
+        break;
+      case AISLayout.ROT:
+        if (intValue > 128)
+          intValue = neg(intValue, nbBits);
+        break;
+      default:
+        break;
     }
-    return sb.toString();
+    return intValue;
   }
   
-  private static String lPad(String s, String pad, int len)
+  /**
+   * Negative numbers.
+   * Historically computed as minus the bit-inverted value (one's complement),
+   * that is value - (2^nbBits - 1). Kept as is, for the values not to change.
+   * 
+   * @param value the unsigned value
+   * @param nbBits the size of the field
+   * @return
+   */
+  private static int neg(int value, int nbBits)
   {
-    String str = s;
-    while (str.length() < len)
-      str = pad + str;
-    return str;
+    return (int)(value - ((1L << nbBits) - 1));
   }
   
   public static class AISRecord
@@ -230,6 +279,45 @@ AIS Message type 2:
     private int hdg;
     private int utc;
     private long recordTimeStamp;
+    private int maneuver;
+    private int raim;
+    private int radio;
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int epfd;
+    private int aisVersion;
+    private int imo;
+    private int shipType;
+    private int toBow;
+    private int toStern;
+    private int toPort;
+    private int toStarboard;
+    private int etaMonth;
+    private int etaDay;
+    private int etaHour;
+    private int etaMinute;
+    private int dte;
+    private int seqNo;
+    private int destMmsi;
+    private int retransmit;
+    private int dac;
+    private int fid;
+    private int altitude;
+    private int partNumber;
+    private int mothershipMmsi;
+    private int aidType;
+    private int offPosition;
+    private int virtualAid;
+    private int gnss;
+    private float draught;
+    private String callSign = null;
+    private String shipName = null;
+    private String destination = null;
+    private String text = null;
+    private String vendorId = null;
 
     public AISRecord(long now)
     {
@@ -357,6 +445,395 @@ AIS Message type 2:
       return utc;
     }
     
+    /**
+     * Sets a numeric field, as decoded with its {@link AISLayout}.
+     * @param field the field id, like AISLayout.MMSI
+     * @param value the raw value, scaled here if needed
+     */
+    public void setValue(int field, int value)
+    {
+      switch (field)
+      {
+        case AISLayout.MESSAGE_TYPE:
+          setMessageType(value);
+          break;
+        case AISLayout.REPEAT_INDICATOR:
+          setRepeatIndicator(value);
+          break;
+        case AISLayout.MMSI:
+          setMmsi(value);
+          break;
+        case AISLayout.NAV_STATUS:
+          setNavstatus(value);
+          break;
+        case AISLayout.ROT:
+          setRot(value);
+          break;
+        case AISLayout.SOG:
+          setSog(value);
+          break;
+        case AISLayout.SOG_KNOTS:
+          this.sog = value;
+          break;
+        case AISLayout.POS_ACC:
+          setPosAcc(value);
+          break;
+        case AISLayout.LONGITUDE:
+          setLongitude(value);
+          break;
+        case AISLayout.LATITUDE:
+          setLatitude(value);
+          break;
+        case AISLayout.LR_LONGITUDE:
+          this.longitude = (value / 600f);
+          break;
+        case AISLayout.LR_LATITUDE:
+          this.latitude = (value / 600f);
+          break;
+        case AISLayout.COG:
+          setCog(value);
+          break;
+        case AISLayout.COG_DEGREES:
+          this.cog = value;
+          break;
+        case AISLayout.HDG:
+          setHdg(value);
+          break;
+        case AISLayout.TIME_STAMP:
+          setUtc(value);
+          break;
+        case AISLayout.DRAUGHT:
+          this.draught = (value / 10f);
+          break;
+        case AISLayout.MANEUVER:
+          this.maneuver = value;
+          break;
+        case AISLayout.RAIM:
+          this.raim = value;
+          break;
+        case AISLayout.RADIO:
+          this.radio = value;
+          break;
+        case AISLayout.YEAR:
+          this.year = value;
+          break;
+        case AISLayout.MONTH:
+          this.month = value;
+          break;
+        case AISLayout.DAY:
+          this.day = value;
+          break;
+        case AISLayout.HOUR:
+          this.hour = value;
+          break;
+        case AISLayout.MINUTE:
+          this.minute = value;
+          break;
+        case AISLayout.EPFD:
+          this.epfd = value;
+          break;
+        case AISLayout.AIS_VERSION:
+          this.aisVersion = value;
+          break;
+        case AISLayout.IMO:
+          this.imo = value;
+          break;
+        case AISLayout.SHIP_TYPE:
+          this.shipType = value;
+          break;
+        case AISLayout.TO_BOW:
+          this.toBow = value;
+          break;
+        case AISLayout.TO_STERN:
+          this.toStern = value;
+          break;
+        case AISLayout.TO_PORT:
+          this.toPort = value;
+          break;
+        case AISLayout.TO_STARBOARD:
+          this.toStarboard = value;
+          break;
+        case AISLayout.ETA_MONTH:
+          this.etaMonth = value;
+          break;
+        case AISLayout.ETA_DAY:
+          this.etaDay = value;
+          break;
+        case AISLayout.ETA_HOUR:
+          this.etaHour = value;
+          break;
+        case AISLayout.ETA_MINUTE:
+          this.etaMinute = value;
+          break;
+        case AISLayout.DTE:
+          this.dte = value;
+          break;
+        case AISLayout.SEQ_NO:
+          this.seqNo = value;
+          break;
+        case AISLayout.DEST_MMSI:
+          this.destMmsi = value;
+          break;
+        case AISLayout.RETRANSMIT:
+          this.retransmit = value;
+          break;
+        case AISLayout.DAC:
+          this.dac = value;
+          break;
+        case AISLayout.FID:
+          this.fid = value;
+          break;
+        case AISLayout.ALTITUDE:
+          this.altitude = value;
+          break;
+        case AISLayout.PART_NUMBER:
+          this.partNumber = value;
+          break;
+        case AISLayout.MOTHERSHIP_MMSI:
+          this.mothershipMmsi = value;
+          break;
+        case AISLayout.AID_TYPE:
+          this.aidType = value;
+          break;
+        case AISLayout.OFF_POSITION:
+          this.offPosition = value;
+          break;
+        case AISLayout.VIRTUAL_AID:
+          this.virtualAid = value;
+          break;
+        case AISLayout.GNSS:
+          this.gnss = value;
+          break;
+        default:
+          break;
+      }
+    }
+
+    /**
+     * Sets a text field, as decoded with its {@link AISLayout}.
+     */
+    public void setText(int field, String value)
+    {
+      switch (field)
+      {
+        case AISLayout.CALL_SIGN:
+          this.callSign = value;
+          break;
+        case AISLayout.SHIP_NAME:
+          this.shipName = value;
+          break;
+        case AISLayout.DESTINATION:
+          this.destination = value;
+          break;
+        case AISLayout.TEXT:
+          this.text = value;
+          break;
+        case AISLayout.VENDOR_ID:
+          this.vendorId = value;
+          break;
+        default:
+          break;
+      }
+    }
+
+    public int getManeuver()
+    {
+      return maneuver;
+    }
+
+    public int getRaim()
+    {
+      return raim;
+    }
+
+    public int getRadio()
+    {
+      return radio;
+    }
+
+    public int getYear()
+    {
+      return year;
+    }
+
+    public int getMonth()
+    {
+      return month;
+    }
+
+    public int getDay()
+    {
+      return day;
+    }
+
+    public int getHour()
+    {
+      return hour;
+    }
+
+    public int getMinute()
+    {
+      return minute;
+    }
+
+    public int getEpfd()
+    {
+      return epfd;
+    }
+
+    public int getAisVersion()
+    {
+      return aisVersion;
+    }
+
+    public int getImo()
+    {
+      return imo;
+    }
+
+    public int getShipType()
+    {
+      return shipType;
+    }
+
+    public int getToBow()
+    {
+      return toBow;
+    }
+
+    public int getToStern()
+    {
+      return toStern;
+    }
+
+    public int getToPort()
+    {
+      return toPort;
+    }
+
+    public int getToStarboard()
+    {
+      return toStarboard;
+    }
+
+    public int getEtaMonth()
+    {
+      return etaMonth;
+    }
+
+    public int getEtaDay()
+    {
+      return etaDay;
+    }
+
+    public int getEtaHour()
+    {
+      return etaHour;
+    }
+
+    public int getEtaMinute()
+    {
+      return etaMinute;
+    }
+
+    public int getDte()
+    {
+      return dte;
+    }
+
+    public int getSeqNo()
+    {
+      return seqNo;
+    }
+
+    public int getDestMmsi()
+    {
+      return destMmsi;
+    }
+
+    public int getRetransmit()
+    {
+      return retransmit;
+    }
+
+    public int getDac()
+    {
+      return dac;
+    }
+
+    public int getFid()
+    {
+      return fid;
+    }
+
+    public int getAltitude()
+    {
+      return altitude;
+    }
+
+    public int getPartNumber()
+    {
+      return partNumber;
+    }
+
+    public int getMothershipMmsi()
+    {
+      return mothershipMmsi;
+    }
+
+    public int getAidType()
+    {
+      return aidType;
+    }
+
+    public int getOffPosition()
+    {
+      return offPosition;
+    }
+
+    public int getVirtualAid()
+    {
+      return virtualAid;
+    }
+
+    public int getGnss()
+    {
+      return gnss;
+    }
+
+    /**
+     * @return the draught, in meters
+     */
+    public float getDraught()
+    {
+      return draught;
+    }
+
+    public String getCallSign()
+    {
+      return callSign;
+    }
+
+    public String getShipName()
+    {
+      return shipName;
+    }
+
+    public String getDestination()
+    {
+      return destination;
+    }
+
+    public String getText()
+    {
+      return text;
+    }
+
+    public String getVendorId()
+    {
+      return vendorId;
+    }
+
     public static String decodeStatus(int stat)
     {
       String status = "";
@@ -420,6 +897,12 @@ AIS Message type 2:
       String str = "";
       str = "Type:" + messageType + ", Repeat:" + repeatIndicator + ", MMSI:" + mmsi + ", status:" + decodeStatus(navstatus) + ", rot:" + rot +
             ", Pos:" + latitude + "/" + longitude + " (Acc:" + posAcc + "), COG:" + cog + ", SOG:" + sog + ", HDG:" + hdg;
+      if (shipName != null)
+        str += ", Name:" + shipName;
+      if (callSign != null)
+        str += ", Call Sign:" + callSign;
+      if (destination != null)
+        str += ", Destination:" + destination;
       
       return str;
     }
@@ -460,6 +943,7 @@ AIS Message type 2:
       dataFileName = args[0];
     
     BufferedReader br = new BufferedReader(new FileReader(dataFileName));
+    AISAssembler assembler = new AISAssembler();
     String line = "";
     while (line != null)
     {
@@ -470,7 +954,9 @@ AIS Message type 2:
         {
           try
           {
-            System.out.println(parseAIS(line));
+            AISRecord rec = parseAIS(line, assembler);
+            if (rec != null)
+              System.out.println(rec);
           }
           catch (Exception ex)
           {
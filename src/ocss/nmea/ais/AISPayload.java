@@ -0,0 +1,184 @@
+package ocss.nmea.ais;
+
+/**
+ * The bits of an armored AIS payload (like <code>15NB>cP03jG?l`<EaV0`MFO000S>,0</code>),
+ * unpacked once in a reusable <code>long[]</code>, most significant bit first.
+ * <br>
+ * The fields are then extracted with shifts and masks, the offsets being the ones of {@link AISParser.AISData}:
+ * <code>[from, to[</code>, starting at 0.
+ * <br>
+ * Not thread safe, one instance per thread (or per source).
+ */
+public final class AISPayload
+{
+  private long[] bits = new long[4]; // 256 bits, one single part message. Grows if needed.
+  private int length = 0;
+
+  public AISPayload()
+  {
+  }
+
+  public AISPayload reset(CharSequence armored)
+  {
+    return reset(armored, 0, armored.length());
+  }
+
+  /**
+   * Unpacks the 6-bit characters found in [from, to[.
+   * @return this
+   */
+  public AISPayload reset(CharSequence armored, int from, int to)
+  {
+    length = 0;
+    return append(armored, from, to);
+  }
+
+  /**
+   * Appends the 6-bit characters found in [from, to[, for the next part of a multi-sentence message.
+   * @return this
+   */
+  public AISPayload append(CharSequence armored, int from, int to)
+  {
+    for (int i=from; i<to; i++)
+    {
+      int c = sixBits(armored.charAt(i));
+      // Out of the alphabet, the value does not fit in 6 bits: keep all its bits, like Integer.toBinaryString did.
+      int width = (c < 0 ? 32 : Math.max(6, 32 - Integer.numberOfLeadingZeros(c)));
+      appendBits(c, width);
+    }
+    return this;
+  }
+
+  /**
+   * The AIS 6-bit ASCII armoring.
+   * @return the value of the character, in [0, 63] for the valid ones.
+   */
+  public static int sixBits(char ch)
+  {
+    int c = ch - 48;
+    if (c > 40)
+      c -= 8;
+    return c;
+  }
+
+  /**
+   * @return the number of bits in the payload
+   */
+  public int length()
+  { return this.length; }
+
+  /**
+   * @return the unsigned value of the bits [from, to[. At most 63 bits.
+   */
+  public long unsigned(int from, int to)
+  {
+    check(from, to);
+    int len = to - from;
+    if (len == 0)
+      return 0L;
+    int word   = from >>> 6;
+    int offset = from & 63;
+    long value;
+    if (offset + len <= 64)
+      value = (bits[word] << offset) >>> (64 - len);
+    else
+    {
+      int inNext = offset + len - 64;
+      value = ((bits[word] << offset) >>> (64 - len)) | (bits[word + 1] >>> (64 - inNext));
+    }
+    return value;
+  }
+
+  /**
+   * @return the value of the bits [from, to[, as a two's complement signed number.
+   */
+  public long signed(int from, int to)
+  {
+    int len = to - from;
+    long value = unsigned(from, to);
+    if (len > 0 && ((value >>> (len - 1)) & 1L) != 0L)
+      value -= (1L << len);
+    return value;
+  }
+
+  public int unsignedInt(int from, int to)
+  {
+    return (int)unsigned(from, to);
+  }
+
+  public int signedInt(int from, int to)
+  {
+    return (int)signed(from, to);
+  }
+
+  /**
+   * The 6-bit ASCII text found in [from, to[, trailing '@' and spaces removed.
+   */
+  public String text(int from, int to)
+  {
+    if (from < 0 || to > length || from > to)
+      throw new StringIndexOutOfBoundsException("bits [" + from + ", " + to + "[, length " + length);
+    int nbChars = (to - from) / 6;
+    char[] ca = new char[nbChars];
+    for (int i=0; i<nbChars; i++)
+    {
+      int c = (int)unsigned(from + (6 * i), from + (6 * (i + 1)));
+      ca[i] = (char)(c < 32 ? c + 64 : c);
+    }
+    int len = nbChars;
+    while (len > 0 && (ca[len - 1] == '@' || ca[len - 1] == ' '))
+      len--;
+    return new String(ca, 0, len);
+  }
+
+  private void check(int from, int to)
+  {
+    if (from < 0 || to > length || from > to)
+      throw new StringIndexOutOfBoundsException("bits [" + from + ", " + to + "[, length " + length);
+    if (to - from > 63)
+      throw new IllegalArgumentException("At most 63 bits, [" + from + ", " + to + "[");
+  }
+
+  private void appendBits(int value, int width)
+  {
+    if (length + width > bits.length * 64)
+    {
+      long[] newBits = new long[bits.length * 2];
+      System.arraycopy(bits, 0, newBits, 0, bits.length);
+      bits = newBits;
+    }
+    long v = value & ((1L << width) - 1);
+    int word   = length >>> 6;
+    int offset = length & 63;
+    int room   = 64 - offset;
+    if (width <= room)
+    {
+      long shifted = v << (room - width);
+      if (offset == 0)
+        bits[word] = shifted; // The buffer is reused, clear what was there
+      else
+        bits[word] |= shifted;
+    }
+    else
+    {
+      int inNext = width - room;
+      if (offset == 0)
+        bits[word] = v >>> inNext;
+      else
+        bits[word] |= v >>> inNext;
+      bits[word + 1] = v << (64 - inNext);
+    }
+    length += width;
+  }
+
+  /**
+   * @return the payload as a String of '0' and '1'.
+   */
+  public String toString()
+  {
+    StringBuffer sb = new StringBuffer(length);
+    for (int i=0; i<length; i++)
+      sb.append(((bits[i >>> 6] >>> (63 - (i & 63))) & 1L) == 0L ? '0' : '1');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,441 @@
+package ocss.nmea.ais;
+
+import astro.calc.GeoPoint;
+import astro.calc.GreatCircle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A grid over latitude and longitude, the AIS targets being bucketed by cell.
+ * <br>
+ * The radius and nearest neighbours queries only look at the cells around the
+ * given position, the exact distance (great circle) being computed for the targets
+ * of those cells only.
+ * <br>
+ * The index is updated incrementally, as the targets move. It is an {@link AISTargetListener},
+ * to be registered on an {@link AISTargetTable}:
+ * <pre>
+ * AISSpatialIndex index = new AISSpatialIndex();
+ * table.addListener(index);
+ * ...
+ * List&lt;AISTarget&gt; close = index.within(ownLat, ownLng, 6d);
+ * </pre>
+ * Thread safe, the methods are synchronized.
+ */
+public final class AISSpatialIndex extends AISTargetListener
+{
+  public final static double DEFAULT_CELL_SIZE = 0.25d; // in degrees, 15' of latitude
+
+  private final double cellSize;
+  private final int nbRows;
+  private final int nbCols;
+
+  // The indexed targets, by slot
+  private AISTarget[] targets = new AISTarget[256];
+  private int[] cellOf        = new int[256];
+  private int[] posInCell     = new int[256];
+  private int count = 0;
+
+  private final IntMap slotByMmsi = new IntMap();
+  private final IntMap cellIndex  = new IntMap(); // cell key -> index in cells
+  private final List<int[]> cells = new ArrayList<int[]>(); // slot[0] is the number of targets in the cell
+
+  private final GeoPoint from = new GeoPoint(0d, 0d);
+  private final GeoPoint to   = new GeoPoint(0d, 0d);
+
+  public AISSpatialIndex()
+  {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * @param cellSize in degrees. About the typical query radius (in nm) / 60 is good.
+   */
+  public AISSpatialIndex(double cellSize)
+  {
+    this.cellSize = cellSize;
+    this.nbRows = (int)Math.ceil(180d / cellSize);
+    this.nbCols = (int)Math.ceil(360d / cellSize);
+  }
+
+  public synchronized int size()
+  { return this.count; }
+
+  public void targetUpdated(AISTarget previous, AISTarget target)
+  {
+    if (target.isPositionValid())
+      update(target);
+  }
+
+  public void targetLost(AISTarget target)
+  {
+    remove(target.getMmsi());
+  }
+
+  /**
+   * Adds or moves a target.
+   */
+  public synchronized void update(AISTarget target)
+  {
+    int cell = cellKey(row(target.getLatitude()), col(target.getLongitude()));
+    int slot = slotByMmsi.get(target.getMmsi());
+    if (slot == IntMap.NONE)
+    {
+      if (count == targets.length)
+        grow();
+      slot = count++;
+      slotByMmsi.put(target.getMmsi(), slot);
+      targets[slot] = target;
+      addToCell(slot, cell);
+    }
+    else
+    {
+      targets[slot] = target;
+      if (cellOf[slot] != cell)
+      {
+        removeFromCell(slot);
+        addToCell(slot, cell);
+      }
+    }
+  }
+
+  public synchronized void remove(int mmsi)
+  {
+    int slot = slotByMmsi.remove(mmsi);
+    if (slot == IntMap.NONE)
+      return;
+    removeFromCell(slot);
+    int last = --count;
+    if (slot != last) // The last one takes the free slot
+    {
+      targets[slot]   = targets[last];
+      cellOf[slot]    = cellOf[last];
+      posInCell[slot] = posInCell[last];
+      cells.get(cellIndex.get(cellOf[slot]))[posInCell[slot]] = slot;
+      slotByMmsi.put(targets[slot].getMmsi(), slot);
+    }
+    targets[last] = null;
+  }
+
+  /**
+   * @param lat in degrees
+   * @param lng in degrees
+   * @param radius in nautical miles
+   * @return the targets within the radius, in no specific order.
+   */
+  public synchronized List<AISTarget> within(double lat, double lng, double radius)
+  {
+    List<AISTarget> result = new ArrayList<AISTarget>();
+    from.setL(lat);
+    from.setG(lng);
+    int dRows = (int)Math.ceil((radius / 60d) / cellSize);
+    int r0 = Math.max(0, row(lat) - dRows);
+    int r1 = Math.min(nbRows - 1, row(lat) + dRows);
+    double maxLat = Math.min(90d, Math.abs(lat) + (radius / 60d) + cellSize);
+    double cos = Math.cos(Math.toRadians(maxLat));
+    int dCols = (cos < 1e-6 ? nbCols : (int)Math.ceil((radius / (60d * cos)) / cellSize));
+    if ((long)(r1 - r0 + 1) * Math.min(nbCols, 2L * dCols + 1) > cells.size()) // Cheaper to look at the non empty cells
+    {
+      for (int c=0; c<cells.size(); c++)
+        collect(cells.get(c), radius, result);
+      return result;
+    }
+    int c = col(lng);
+    for (int r=r0; r<=r1; r++)
+    {
+      for (int dc=-dCols; dc<=dCols && dc<nbCols - dCols; dc++) // Each column once, even if it wraps around
+      {
+        int idx = cellIndex.get(cellKey(r, wrap(c + dc)));
+        if (idx != IntMap.NONE)
+          collect(cells.get(idx), radius, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param lat in degrees
+   * @param lng in degrees
+   * @param k the max number of targets to return
+   * @return the k targets closest to the position, the closest first.
+   */
+  public synchronized List<AISTarget> nearest(double lat, double lng, int k)
+  {
+    List<AISTarget> result = new ArrayList<AISTarget>(k);
+    if (k <= 0 || count == 0)
+      return result;
+    from.setL(lat);
+    from.setG(lng);
+    int[] best = new int[Math.min(k, count)];      // slots, sorted by distance
+    double[] bestDist = new double[best.length];
+    int nb = 0;
+    int row = row(lat), col = col(lng);
+    int maxRing = Math.max(nbRows, nbCols / 2);
+    for (int ring=0; ring<=maxRing; ring++)
+    {
+      if (nb == best.length)
+      {
+        // Anything from this ring is at least (ring - 1) cells away, in latitude, or in longitude below this latitude.
+        // sin(d/2) >= cos(lat) * sin(dLng/2), and asin(x) >= x
+        double cos = Math.max(0d, Math.cos(Math.toRadians(Math.min(90d, Math.abs(lat) + (ring * cellSize)))));
+        double minDist = Math.toDegrees(2d * cos * Math.sin(Math.toRadians(Math.max(0, ring - 1) * cellSize) / 2d)) * 60d;
+        if (minDist > bestDist[nb - 1])
+          break;
+      }
+      if (ringSize(ring) > cells.size()) // Cheaper to look at all the remaining targets
+      {
+        for (int slot=0; slot<count; slot++)
+        {
+          if (ringOf(slot, row, col) >= ring)
+            nb = insert(slot, distance(targets[slot]), best, bestDist, nb);
+        }
+        break;
+      }
+      for (int r=row - ring; r<=row + ring; r++)
+      {
+        if (r < 0 || r >= nbRows)
+          continue;
+        boolean edge = (r == row - ring || r == row + ring);
+        for (int dc=-ring; dc<=ring; dc+=(edge ? 1 : 2 * ring))
+        {
+          if (dc + ring >= nbCols)
+            break;
+          int idx = cellIndex.get(cellKey(r, wrap(col + dc)));
+          if (idx == IntMap.NONE)
+            continue;
+          int[] cell = cells.get(idx);
+          for (int i=1; i<=cell[0]; i++)
+            nb = insert(cell[i], distance(targets[cell[i]]), best, bestDist, nb);
+          if (ring == 0)
+            break;
+        }
+      }
+    }
+    for (int i=0; i<nb; i++)
+      result.add(targets[best[i]]);
+    return result;
+  }
+
+  private void collect(int[] cell, double radius, List<AISTarget> result)
+  {
+    for (int i=1; i<=cell[0]; i++)
+    {
+      AISTarget target = targets[cell[i]];
+      if (distance(target) <= radius)
+        result.add(target);
+    }
+  }
+
+  /**
+   * The exact distance, from the query position, in nm.
+   */
+  private double distance(AISTarget target)
+  {
+    to.setL(target.getLatitude());
+    to.setG(target.getLongitude());
+    double d = GreatCircle.getGCDistanceInDegrees(from, to);
+    return (Double.isNaN(d) ? 0d : d); // acos(1 + epsilon), same position
+  }
+
+  private static int insert(int slot, double dist, int[] best, double[] bestDist, int nb)
+  {
+    if (nb == best.length && dist >= bestDist[nb - 1])
+      return nb;
+    int i = (nb == best.length ? nb - 1 : nb);
+    while (i > 0 && bestDist[i - 1] > dist)
+    {
+      best[i] = best[i - 1];
+      bestDist[i] = bestDist[i - 1];
+      i--;
+    }
+    best[i] = slot;
+    bestDist[i] = dist;
+    return (nb == best.length ? nb : nb + 1);
+  }
+
+  private int ringSize(int ring)
+  {
+    return (ring == 0 ? 1 : 8 * ring);
+  }
+
+  private int ringOf(int slot, int row, int col)
+  {
+    int r = cellOf[slot] / nbCols;
+    int c = cellOf[slot] % nbCols;
+    int dc = Math.abs(c - col);
+    dc = Math.min(dc, nbCols - dc);
+    return Math.max(Math.abs(r - row), dc);
+  }
+
+  private void addToCell(int slot, int cell)
+  {
+    int idx = cellIndex.get(cell);
+    if (idx == IntMap.NONE)
+    {
+      idx = cells.size();
+      cells.add(new int[8]);
+      cellIndex.put(cell, idx);
+    }
+    int[] c = cells.get(idx);
+    if (c[0] + 1 == c.length)
+    {
+      int[] bigger = new int[c.length * 2];
+      System.arraycopy(c, 0, bigger, 0, c.length);
+      cells.set(idx, bigger);
+      c = bigger;
+    }
+    c[++c[0]] = slot;
+    cellOf[slot] = cell;
+    posInCell[slot] = c[0];
+  }
+
+  private void removeFromCell(int slot)
+  {
+    int[] c = cells.get(cellIndex.get(cellOf[slot]));
+    int pos = posInCell[slot];
+    int last = c[c[0]--];
+    if (pos <= c[0]) // The last one of the cell takes the free position
+    {
+      c[pos] = last;
+      posInCell[last] = pos;
+    }
+  }
+
+  private void grow()
+  {
+    int size = targets.length * 2;
+    AISTarget[] newTargets = new AISTarget[size];
+    int[] newCellOf = new int[size];
+    int[] newPosInCell = new int[size];
+    System.arraycopy(targets, 0, newTargets, 0, count);
+    System.arraycopy(cellOf, 0, newCellOf, 0, count);
+    System.arraycopy(posInCell, 0, newPosInCell, 0, count);
+    targets = newTargets;
+    cellOf = newCellOf;
+    posInCell = newPosInCell;
+  }
+
+  private int row(double lat)
+  {
+    return Math.max(0, Math.min(nbRows - 1, (int)Math.floor((lat + 90d) / cellSize)));
+  }
+
+  private int col(double lng)
+  {
+    return wrap((int)Math.floor((lng + 180d) / cellSize));
+  }
+
+  private int wrap(int col)
+  {
+    int c = col % nbCols;
+    return (c < 0 ? c + nbCols : c);
+  }
+
+  private int cellKey(int row, int col)
+  {
+    return (row * nbCols) + col;
+  }
+
+  /**
+   * int to int, open addressing, keys &gt;= 0.
+   */
+  private final static class IntMap
+  {
+    final static int NONE = -1;
+    private final static int EMPTY = -1;
+    private final static int TOMBSTONE = -2;
+
+    private int[] keys = new int[64];
+    private int[] values = new int[64];
+    private int used = 0;
+    private int size = 0;
+
+    IntMap()
+    {
+      java.util.Arrays.fill(keys, EMPTY);
+    }
+
+    int get(int key)
+    {
+      int mask = keys.length - 1;
+      for (int i=hash(key) & mask; ; i=(i + 1) & mask)
+      {
+        if (keys[i] == key)
+          return values[i];
+        if (keys[i] == EMPTY)
+          return NONE;
+      }
+    }
+
+    void put(int key, int value)
+    {
+      int mask = keys.length - 1;
+      int free = -1;
+      int i = hash(key) & mask;
+      for (; keys[i] != EMPTY; i=(i + 1) & mask)
+      {
+        if (keys[i] == key)
+        {
+          values[i] = value;
+          return;
+        }
+        if (keys[i] == TOMBSTONE && free == -1)
+          free = i;
+      }
+      if (free == -1)
+      {
+        if ((used + 1) * 2 > keys.length)
+        {
+          rehash();
+          put(key, value);
+          return;
+        }
+        free = i;
+        used++;
+      }
+      keys[free] = key;
+      values[free] = value;
+      size++;
+    }
+
+    int remove(int key)
+    {
+      int mask = keys.length - 1;
+      for (int i=hash(key) & mask; keys[i] != EMPTY; i=(i + 1) & mask)
+      {
+        if (keys[i] == key)
+        {
+          keys[i] = TOMBSTONE;
+          size--;
+          return values[i];
+        }
+      }
+      return NONE;
+    }
+
+    private void rehash()
+    {
+      int[] oldKeys = keys;
+      int[] oldValues = values;
+      int capacity = oldKeys.length;
+      while (capacity < (size + 1) * 4)
+        capacity <<= 1;
+      keys = new int[capacity];
+      values = new int[capacity];
+      java.util.Arrays.fill(keys, EMPTY);
+      used = size = 0;
+      for (int i=0; i<oldKeys.length; i++)
+      {
+        if (oldKeys[i] >= 0)
+          put(oldKeys[i], oldValues[i]);
+      }
+    }
+
+    private static int hash(int key)
+    {
+      int h = key * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package ocss.nmea.ais;
+
+import java.io.Serializable;
+
+/**
+ * The last known state of an AIS target (a vessel, a base station, an aid to navigation...),
+ * merged from its position and static reports.
+ * <br>
+ * Immutable, a new instance is created for each report, see {@link #merge(AISParser.AISRecord)}.
+ * It can then be read by any thread without synchronization.
+ */
+public final class AISTarget implements Serializable
+{
+  private final int mmsi;
+  private final long lastSeen;      // Time of the last report, any type, in ms
+  private final int lastMessageType;
+
+  // Position report
+  private final boolean positionValid;
+  private final long positionTime;  // in ms
+  private final float latitude;
+  private final float longitude;
+  private final float sog;
+  private final float cog;
+  private final int hdg;
+  private final int rot;
+  private final int navStatus;
+
+  // Static report
+  private final String shipName;
+  private final String callSign;
+  private final String destination;
+  private final int imo;
+  private final int shipType;
+  private final int toBow;
+  private final int toStern;
+  private final int toPort;
+  private final int toStarboard;
+  private final float draught;
+
+  private AISTarget(int mmsi, long lastSeen, int lastMessageType,
+                    boolean positionValid, long positionTime, float latitude, float longitude, float sog, float cog, int hdg, int rot, int navStatus,
+                    String shipName, String callSign, String destination, int imo, int shipType,
+                    int toBow, int toStern, int toPort, int toStarboard, float draught)
+  {
+    this.mmsi = mmsi;
+    this.lastSeen = lastSeen;
+    this.lastMessageType = lastMessageType;
+    this.positionValid = positionValid;
+    this.positionTime = positionTime;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.sog = sog;
+    this.cog = cog;
+    this.hdg = hdg;
+    this.rot = rot;
+    this.navStatus = navStatus;
+    this.shipName = shipName;
+    this.callSign = callSign;
+    this.destination = destination;
+    this.imo = imo;
+    this.shipType = shipType;
+    this.toBow = toBow;
+    this.toStern = toStern;
+    this.toPort = toPort;
+    this.toStarboard = toStarboard;
+    this.draught = draught;
+  }
+
+  /**
+   * A target never heard from before.
+   */
+  public static AISTarget create(AISParser.AISRecord rec)
+  {
+    AISTarget empty = new AISTarget(rec.getMmsi(), rec.getRecordTimeStamp(), rec.getMessageType(),
+                                    false, 0L, 0f, 0f, 0f, 0f, 511, 0, 15,
+                                    null, null, null, 0, 0, 0, 0, 0, 0, 0f);
+    return empty.merge(rec);
+  }
+
+  /**
+   * @return a new target, with the data of the report.
+   * The position and the static data of this one are kept when the report does not have them.
+   */
+  public AISTarget merge(AISParser.AISRecord rec)
+  {
+    int type = rec.getMessageType();
+    boolean position = isPositionReport(type) &&
+                       rec.getLatitude() <= 90f && rec.getLatitude() >= -90f &&      // 91: not available
+                       rec.getLongitude() <= 180f && rec.getLongitude() >= -180f;    // 181: not available
+    boolean statics = isStaticReport(type);
+    return new AISTarget(mmsi,
+                         Math.max(lastSeen, rec.getRecordTimeStamp()),
+                         type,
+                         position ? true : positionValid,
+                         position ? rec.getRecordTimeStamp() : positionTime,
+                         position ? rec.getLatitude() : latitude,
+                         position ? rec.getLongitude() : longitude,
+                         position ? rec.getSog() : sog,
+                         position ? rec.getCog() : cog,
+                         position && hasHeading(type) ? rec.getHdg() : hdg,
+                         position && hasNavStatus(type) ? rec.getRot() : rot,
+                         position && hasNavStatus(type) ? rec.getNavstatus() : navStatus,
+                         statics && rec.getShipName() != null ? rec.getShipName() : shipName,
+                         statics && rec.getCallSign() != null ? rec.getCallSign() : callSign,
+                         statics && rec.getDestination() != null ? rec.getDestination() : destination,
+                         type == 5 ? rec.getImo() : imo,
+                         statics && hasShipType(rec) ? rec.getShipType() : shipType,
+                         statics && hasDimensions(rec) ? rec.getToBow() : toBow,
+                         statics && hasDimensions(rec) ? rec.getToStern() : toStern,
+                         statics && hasDimensions(rec) ? rec.getToPort() : toPort,
+                         statics && hasDimensions(rec) ? rec.getToStarboard() : toStarboard,
+                         type == 5 ? rec.getDraught() : draught);
+  }
+
+  private static boolean isPositionReport(int type)
+  {
+    switch (type)
+    {
+      case 1:
+      case 2:
+      case 3:
+      case 4:
+      case 9:
+      case 11:
+      case 18:
+      case 19:
+      case 21:
+      case 27:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isStaticReport(int type)
+  {
+    return type == 5 || type == 19 || type == 21 || type == 24;
+  }
+
+  private static boolean hasHeading(int type)
+  {
+    return type == 1 || type == 2 || type == 3 || type == 18 || type == 19;
+  }
+
+  private static boolean hasNavStatus(int type)
+  {
+    return type == 1 || type == 2 || type == 3;
+  }
+
+  private static boolean hasShipType(AISParser.AISRecord rec)
+  {
+    return rec.getMessageType() != 21 && !(rec.getMessageType() == 24 && rec.getPartNumber() == 0);
+  }
+
+  private static boolean hasDimensions(AISParser.AISRecord rec)
+  {
+    return !(rec.getMessageType() == 24 && (rec.getPartNumber() == 0 || rec.getMmsi() / 10000000 == 98));
+  }
+
+  public int getMmsi()
+  { return mmsi; }
+
+  /**
+   * @return the time of the last report, in ms
+   */
+  public long getLastSeen()
+  { return lastSeen; }
+
+  public int getLastMessageType()
+  { return lastMessageType; }
+
+  /**
+   * @return true if a position report has been received.
+   */
+  public boolean isPositionValid()
+  { return positionValid; }
+
+  /**
+   * @return the time of the last position report, in ms
+   */
+  public long getPositionTime()
+  { return positionTime; }
+
+  public float getLatitude()
+  { return latitude; }
+
+  public float getLongitude()
+  { return longitude; }
+
+  public float getSog()
+  { return sog; }
+
+  public float getCog()
+  { return cog; }
+
+  public int getHdg()
+  { return hdg; }
+
+  public int getRot()
+  { return rot; }
+
+  public int getNavStatus()
+  { return navStatus; }
+
+  public String getShipName()
+  { return shipName; }
+
+  public String getCallSign()
+  { return callSign; }
+
+  public String getDestination()
+  { return destination; }
+
+  public int getImo()
+  { return imo; }
+
+  public int getShipType()
+  { return shipType; }
+
+  public int getToBow()
+  { return toBow; }
+
+  public int getToStern()
+  { return toStern; }
+
+  public int getToPort()
+  { return toPort; }
+
+  public int getToStarboard()
+  { return toStarboard; }
+
+  public float getDraught()
+  { return draught; }
+
+  public String toString()
+  {
+    return "MMSI:" + mmsi + (shipName != null ? " (" + shipName + ")" : "") +
+           (positionValid ? ", Pos:" + latitude + "/" + longitude + ", COG:" + cog + ", SOG:" + sog : ", no position") +
+           ", last seen:" + lastSeen;
+  }
+}
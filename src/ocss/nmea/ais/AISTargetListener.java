@@ -0,0 +1,25 @@
+package ocss.nmea.ais;
+
+import java.util.EventListener;
+
+/**
+ * Notified by an {@link AISTargetTable}, on the thread updating it.
+ * Keep the implementations short.
+ */
+public abstract class AISTargetListener implements EventListener
+{
+  /**
+   * A report has been merged, or a new target has been created.
+   * @param previous null for a new target
+   */
+  public void targetUpdated(AISTarget previous, AISTarget target)
+  {
+  }
+
+  /**
+   * The target has not been heard from within the timeout.
+   */
+  public void targetLost(AISTarget target)
+  {
+  }
+}
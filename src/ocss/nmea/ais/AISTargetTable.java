@@ -0,0 +1,302 @@
+package ocss.nmea.ais;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The live AIS targets, by MMSI.
+ * <br>
+ * An open addressing hash table on the MMSI (a primitive int, not boxed), holding
+ * immutable {@link AISTarget}s. The reports are merged in constant time.
+ * <ul>
+ *   <li>The writers (the decoder thread(s)) are serialized.</li>
+ *   <li>The readers ({@link #get(int)}, {@link #targets()}) do not lock, and can be called from any thread.
+ *       They see each target as it was after one of its updates.</li>
+ * </ul>
+ * The targets not heard from within the timeout are evicted, a few slots being checked at each update,
+ * or all of them with {@link #evict(long)}.
+ */
+public final class AISTargetTable
+{
+  public final static long DEFAULT_TIMEOUT = 10L * 60L * 1000L; // 10 minutes, in ms
+  public final static int DEFAULT_EXPECTED_TARGETS = 8192;
+
+  private final static int EMPTY     = 0;  // MMSI 0 is not valid
+  private final static int TOMBSTONE = -1; // A removed target, the probing goes on
+  private final static int EVICTION_STEP = 4; // Slots checked for eviction at each update
+
+  /**
+   * keys and values, replaced at once when re-hashing.
+   */
+  private final static class Slots
+  {
+    final AtomicIntegerArray keys;
+    final AtomicReferenceArray<AISTarget> values;
+    final int mask;
+
+    Slots(int capacity)
+    {
+      keys   = new AtomicIntegerArray(capacity);
+      values = new AtomicReferenceArray<AISTarget>(capacity);
+      mask   = capacity - 1;
+    }
+  }
+
+  private volatile Slots slots;
+  private volatile int size = 0;
+  private int used = 0; // Live targets + tombstones
+  private int evictionCursor = 0;
+
+  private final long timeout;
+  private final List<AISTargetListener> listeners = new CopyOnWriteArrayList<AISTargetListener>();
+
+  public AISTargetTable()
+  {
+    this(DEFAULT_EXPECTED_TARGETS, DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * @param expectedTargets so the table does not have to grow
+   * @param timeout in ms. A target not heard from for longer is evicted.
+   */
+  public AISTargetTable(int expectedTargets, long timeout)
+  {
+    this.timeout = timeout;
+    this.slots = new Slots(capacityFor(expectedTargets));
+  }
+
+  public long getTimeout()
+  { return this.timeout; }
+
+  public void addListener(AISTargetListener l)
+  {
+    listeners.add(l);
+  }
+
+  public void removeListener(AISTargetListener l)
+  {
+    listeners.remove(l);
+  }
+
+  /**
+   * @return the number of targets
+   */
+  public int size()
+  { return this.size; }
+
+  /**
+   * Lock free.
+   * @return the target, null if unknown.
+   */
+  public AISTarget get(int mmsi)
+  {
+    if (mmsi == EMPTY || mmsi == TOMBSTONE)
+      return null;
+    Slots s = slots;
+    for (int i=hash(mmsi) & s.mask, n=0; n<=s.mask; i=(i + 1) & s.mask, n++)
+    {
+      int key = s.keys.get(i);
+      if (key == EMPTY)
+        return null;
+      if (key == mmsi)
+      {
+        AISTarget target = s.values.get(i);
+        return (target != null && target.getMmsi() == mmsi ? target : null);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Lock free.
+   * @return the current targets.
+   */
+  public List<AISTarget> targets()
+  {
+    Slots s = slots;
+    List<AISTarget> list = new ArrayList<AISTarget>(size);
+    for (int i=0; i<=s.mask; i++)
+    {
+      AISTarget target = s.values.get(i);
+      if (target != null)
+        list.add(target);
+    }
+    return list;
+  }
+
+  /**
+   * Merges a report into its target, created if needed.
+   * @return the updated target, null if the record has no valid MMSI.
+   */
+  public synchronized AISTarget update(AISParser.AISRecord rec)
+  {
+    int mmsi = rec.getMmsi();
+    if (mmsi <= 0)
+      return null;
+    evictSome(rec.getRecordTimeStamp());
+    Slots s = slots;
+    int free = -1;
+    int i = hash(mmsi) & s.mask;
+    for (int n=0; n<=s.mask; i=(i + 1) & s.mask, n++)
+    {
+      int key = s.keys.get(i);
+      if (key == mmsi)
+      {
+        AISTarget previous = s.values.get(i);
+        AISTarget target = previous.merge(rec);
+        s.values.set(i, target);
+        fireUpdated(previous, target);
+        return target;
+      }
+      if (key == TOMBSTONE && free == -1)
+        free = i;
+      if (key == EMPTY)
+        break;
+    }
+    AISTarget target = AISTarget.create(rec);
+    if (free == -1)
+    {
+      if ((used + 1) * 2 > s.mask + 1) // Load factor 0.5, tombstones included
+      {
+        rehash();
+        s = slots;
+      }
+      free = hash(mmsi) & s.mask;
+      while (s.keys.get(free) != EMPTY && s.keys.get(free) != TOMBSTONE)
+        free = (free + 1) & s.mask;
+      if (s.keys.get(free) == EMPTY)
+        used++;
+    }
+    s.values.set(i = free, target); // The value first, a reader finding the key finds the value.
+    s.keys.set(i, mmsi);
+    size++;
+    fireUpdated(null, target);
+    return target;
+  }
+
+  /**
+   * @return the removed target, null if unknown.
+   */
+  public synchronized AISTarget remove(int mmsi)
+  {
+    Slots s = slots;
+    for (int i=hash(mmsi) & s.mask, n=0; n<=s.mask; i=(i + 1) & s.mask, n++)
+    {
+      int key = s.keys.get(i);
+      if (key == EMPTY)
+        return null;
+      if (key == mmsi)
+        return removeAt(s, i);
+    }
+    return null;
+  }
+
+  /**
+   * Evicts all the targets not heard from since now - timeout.
+   * @return the number of evicted targets.
+   */
+  public synchronized int evict(long now)
+  {
+    Slots s = slots;
+    int nb = 0;
+    for (int i=0; i<=s.mask; i++)
+    {
+      AISTarget target = s.values.get(i);
+      if (target != null && now - target.getLastSeen() > timeout)
+      {
+        removeAt(s, i);
+        fireLost(target);
+        nb++;
+      }
+    }
+    return nb;
+  }
+
+  public synchronized void clear()
+  {
+    slots = new Slots(slots.mask + 1);
+    size = 0;
+    used = 0;
+  }
+
+  private void evictSome(long now)
+  {
+    Slots s = slots;
+    for (int n=0; n<EVICTION_STEP; n++)
+    {
+      evictionCursor = (evictionCursor + 1) & s.mask;
+      AISTarget target = s.values.get(evictionCursor);
+      if (target != null && now - target.getLastSeen() > timeout)
+      {
+        removeAt(s, evictionCursor);
+        fireLost(target);
+      }
+    }
+  }
+
+  private AISTarget removeAt(Slots s, int i)
+  {
+    AISTarget target = s.values.get(i);
+    s.values.set(i, null);
+    s.keys.set(i, TOMBSTONE);
+    size--;
+    return target;
+  }
+
+  /**
+   * Grows the table, or just cleans up the tombstones.
+   * The new slots are published once complete.
+   */
+  private void rehash()
+  {
+    Slots s = slots;
+    int capacity = Math.max(s.mask + 1, capacityFor(size + 1));
+    Slots newSlots = new Slots(capacity);
+    for (int i=0; i<=s.mask; i++)
+    {
+      AISTarget target = s.values.get(i);
+      if (target != null)
+      {
+        int j = hash(target.getMmsi()) & newSlots.mask;
+        while (newSlots.keys.get(j) != EMPTY)
+          j = (j + 1) & newSlots.mask;
+        newSlots.values.set(j, target);
+        newSlots.keys.set(j, target.getMmsi());
+      }
+    }
+    used = size;
+    slots = newSlots;
+  }
+
+  private void fireUpdated(AISTarget previous, AISTarget target)
+  {
+    for (AISTargetListener l : listeners)
+      l.targetUpdated(previous, target);
+  }
+
+  private void fireLost(AISTarget target)
+  {
+    for (AISTargetListener l : listeners)
+      l.targetLost(target);
+  }
+
+  /**
+   * @return a power of 2, at least 4 times the number of targets (load factor below 0.5 when growing)
+   */
+  private static int capacityFor(int nbTargets)
+  {
+    int capacity = 16;
+    while (capacity < nbTargets * 4)
+      capacity <<= 1;
+    return capacity;
+  }
+
+  private static int hash(int mmsi)
+  {
+    int h = mmsi * 0x9E3779B9; // The MMSIs are not evenly distributed (country prefixes)
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,276 @@
+package ocss.nmea.ais;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import ocss.nmea.parser.RMC;
+
+/**
+ * Closest Point of Approach (CPA) and Time to CPA (TCPA) of the AIS targets, for the own ship.
+ * <br>
+ * The targets are loaded in primitive arrays (structure of arrays), the velocities being
+ * pre-computed, so the main loop only does arithmetic on arrays, and can be vectorized by the JIT.
+ * The positions are projected on a plane tangent at the own ship's position, fine for the ranges AIS is about.
+ * <pre>
+ * CPAEngine engine = new CPAEngine();
+ * engine.load(table.targets());
+ * List&lt;CPAEngine.Threat&gt; threats = engine.threats(rmc, 1d, 0.5d); // CPA below 1 nm within 30 minutes
+ * </pre>
+ * For very large sets of targets, the computation can be split over an ExecutorService
+ * (like a ForkJoinPool), see {@link #setExecutor(ExecutorService, int)}.
+ * <br>
+ * Not thread safe, one engine per caller.
+ */
+public final class CPAEngine
+{
+  // The targets
+  private int count = 0;
+  private AISTarget[] targets = new AISTarget[0];
+  private double[] lat = new double[0]; // degrees
+  private double[] lng = new double[0]; // degrees
+  private double[] vx  = new double[0]; // knots, to the East
+  private double[] vy  = new double[0]; // knots, to the North
+
+  // The results
+  private double[] cpa  = new double[0]; // nm
+  private double[] tcpa = new double[0]; // hours
+  private double[] range = new double[0]; // nm
+
+  private ExecutorService executor = null;
+  private int minChunk = 4096;
+
+  public CPAEngine()
+  {
+  }
+
+  /**
+   * @param executor to split the work on, null to stay on the calling thread.
+   * @param minChunk the minimum number of targets per task.
+   */
+  public void setExecutor(ExecutorService executor, int minChunk)
+  {
+    this.executor = executor;
+    this.minChunk = Math.max(1, minChunk);
+  }
+
+  public int size()
+  { return this.count; }
+
+  /**
+   * Loads the targets that have a position. Replaces the previous ones.
+   */
+  public void load(List<AISTarget> list)
+  {
+    ensureCapacity(list.size());
+    count = 0;
+    for (AISTarget target : list)
+    {
+      if (!target.isPositionValid())
+        continue;
+      double cog = Math.toRadians(target.getCog() >= 360f ? 0f : target.getCog()); // 360: not available
+      double sog = (target.getSog() > 102.2f ? 0d : target.getSog());                  // 102.3: not available
+      targets[count] = target;
+      lat[count] = target.getLatitude();
+      lng[count] = target.getLongitude();
+      vx[count]  = sog * Math.sin(cog);
+      vy[count]  = sog * Math.cos(cog);
+      count++;
+    }
+  }
+
+  /**
+   * @param own the own ship position, COG and SOG
+   * @param maxCpa in nm
+   * @param maxTcpa in hours
+   * @return the targets getting closer than maxCpa within maxTcpa, or already closer than maxCpa,
+   * the most urgent (smallest TCPA) first. Empty if the own position is not known.
+   */
+  public List<Threat> threats(RMC own, double maxCpa, double maxTcpa)
+  {
+    if (own.getGp() == null)
+      return new ArrayList<Threat>();
+    return threats(own.getGp().lat, own.getGp().lng, own.getSog(), own.getCog(), maxCpa, maxTcpa);
+  }
+
+  /**
+   * @param ownLat in degrees
+   * @param ownLng in degrees
+   * @param ownSog in knots
+   * @param ownCog in degrees
+   * @param maxCpa in nm
+   * @param maxTcpa in hours
+   * @return the targets getting closer than maxCpa within maxTcpa, or already closer than maxCpa
+   * (whatever their TCPA, even moving away), the most urgent (smallest TCPA) first.
+   */
+  public List<Threat> threats(double ownLat, double ownLng, double ownSog, double ownCog, double maxCpa, double maxTcpa)
+  {
+    compute(ownLat, ownLng, ownSog, ownCog);
+    List<Threat> threats = new ArrayList<Threat>();
+    for (int i=0; i<count; i++)
+    {
+      if (range[i] <= maxCpa || (cpa[i] <= maxCpa && tcpa[i] >= 0d && tcpa[i] <= maxTcpa))
+        threats.add(new Threat(targets[i], cpa[i], tcpa[i], range[i]));
+    }
+    Collections.sort(threats, BY_TCPA);
+    return threats;
+  }
+
+  /**
+   * Computes CPA, TCPA and range for all the loaded targets.
+   * Read them with {@link #getCpa(int)}, {@link #getTcpa(int)}, {@link #getRange(int)}.
+   */
+  public void compute(final double ownLat, final double ownLng, double ownSog, double ownCog)
+  {
+    final double ownVx = ownSog * Math.sin(Math.toRadians(ownCog));
+    final double ownVy = ownSog * Math.cos(Math.toRadians(ownCog));
+    final double cosLat = Math.cos(Math.toRadians(ownLat));
+    if (executor == null || count < 2 * minChunk)
+    {
+      compute(0, count, ownLat, ownLng, cosLat, ownVx, ownVy);
+      return;
+    }
+    List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    for (int from=0; from<count; from+=minChunk)
+    {
+      final int f = from;
+      final int t = Math.min(count, from + minChunk);
+      futures.add(executor.submit(new Callable<Object>()
+        {
+          public Object call()
+          {
+            compute(f, t, ownLat, ownLng, cosLat, ownVx, ownVy);
+            return null;
+          }
+        }));
+    }
+    try
+    {
+      for (Future<Object> future : futures)
+        future.get();
+    }
+    catch (Exception ex)
+    {
+      throw new RuntimeException("CPA computation failed", ex);
+    }
+  }
+
+  /**
+   * The loop. Arithmetic only, on [from, to[.
+   */
+  private void compute(int from, int to, double ownLat, double ownLng, double cosLat, double ownVx, double ownVy)
+  {
+    final double[] lat = this.lat, lng = this.lng, vx = this.vx, vy = this.vy;
+    final double[] cpa = this.cpa, tcpa = this.tcpa, range = this.range;
+    for (int i=from; i<to; i++)
+    {
+      double dLng = lng[i] - ownLng;
+      dLng -= 360d * Math.rint(dLng / 360d);   // Across the antimeridian
+      double x = dLng * 60d * cosLat;         // nm
+      double y = (lat[i] - ownLat) * 60d;     // nm
+      double dvx = vx[i] - ownVx;
+      double dvy = vy[i] - ownVy;
+      double dv2 = (dvx * dvx) + (dvy * dvy);
+      double t = (dv2 > 1e-12 ? -((x * dvx) + (y * dvy)) / dv2 : 0d);
+      double tc = Math.max(0d, t);           // Already diverging: the CPA is now
+      double cx = x + (dvx * tc);
+      double cy = y + (dvy * tc);
+      tcpa[i]  = t;
+      cpa[i]   = Math.sqrt((cx * cx) + (cy * cy));
+      range[i] = Math.sqrt((x * x) + (y * y));
+    }
+  }
+
+  public AISTarget getTarget(int i)
+  { return targets[i]; }
+
+  /**
+   * @return in nm
+   */
+  public double getCpa(int i)
+  { return cpa[i]; }
+
+  /**
+   * @return in hours, negative if the CPA is in the past
+   */
+  public double getTcpa(int i)
+  { return tcpa[i]; }
+
+  /**
+   * @return current range, in nm
+   */
+  public double getRange(int i)
+  { return range[i]; }
+
+  private void ensureCapacity(int n)
+  {
+    if (lat.length >= n)
+    {
+      Arrays.fill(targets, n, targets.length, null);
+      return;
+    }
+    targets = new AISTarget[n];
+    lat   = new double[n];
+    lng   = new double[n];
+    vx    = new double[n];
+    vy    = new double[n];
+    cpa   = new double[n];
+    tcpa  = new double[n];
+    range = new double[n];
+  }
+
+  private final static Comparator<Threat> BY_TCPA = new Comparator<Threat>()
+    {
+      public int compare(Threat t1, Threat t2)
+      {
+        return Double.compare(t1.getTcpa(), t2.getTcpa());
+      }
+    };
+
+  public final static class Threat
+  {
+    private final AISTarget target;
+    private final double cpa;
+    private final double tcpa;
+    private final double range;
+
+    public Threat(AISTarget target, double cpa, double tcpa, double range)
+    {
+      this.target = target;
+      this.cpa = cpa;
+      this.tcpa = tcpa;
+      this.range = range;
+    }
+
+    public AISTarget getTarget()
+    { return target; }
+
+    /**
+     * @return in nm
+     */
+    public double getCpa()
+    { return cpa; }
+
+    /**
+     * @return in hours
+     */
+    public double getTcpa()
+    { return tcpa; }
+
+    /**
+     * @return current range, in nm
+     */
+    public double getRange()
+    { return range; }
+
+    public String toString()
+    {
+      return target.getMmsi() + ", CPA:" + cpa + " nm, TCPA:" + (tcpa * 60d) + " mn, range:" + range + " nm";
+    }
+  }
+}
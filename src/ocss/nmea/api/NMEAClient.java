@@ -1,7 +1,9 @@
 package ocss.nmea.api;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 /**
  * A View. Must be extended to be used from the client.
@@ -25,15 +27,20 @@ import java.util.List;
  *   }
  * }
  * </pre>
+ * The listeners are kept in a copy-on-write list, shared with the parser and the reader.
+ * The events are dispatched without locking, while listeners are added or removed.
+ * A slow listener can be given its own queue and thread,
+ * see {@link #addNMEAListener(NMEAListener, Executor, int, QueuedNMEAListener.Policy)}.
  */
 public abstract class NMEAClient 
 {
-  private List<NMEAListener> NMEAListeners = new ArrayList<NMEAListener>(2);
+  private List<NMEAListener> NMEAListeners = new CopyOnWriteArrayList<NMEAListener>();
   private NMEAParser parser;
   private NMEAReader reader;
   private String devicePrefix = "";
   private String[] sentenceArray = null;
   private String NMEA_EOS = null;
+  private boolean framed = false;
   
   public NMEAClient()
   {
@@ -67,6 +74,7 @@ public abstract class NMEAClient
     parser.setNmeaSentence(this.getSentenceArray());
     if (NMEA_EOS != null)
       parser.setEOS(NMEA_EOS);      
+    parser.setFramed(framed);
   }
 
   public void setDevicePrefix(String s)
@@ -84,6 +92,17 @@ public abstract class NMEAClient
   public String getEOS()
   { return (parser != null)?parser.getEOS():NMEA_EOS; }
   
+  /**
+   * Use the ring buffer framer instead of the String accumulation in the parser.
+   * To be set before initClient().
+   * 
+   * @see ocss.nmea.api.NMEAFramer
+   */
+  public void setFramed(boolean b)
+  { this.framed = b; }
+  public boolean isFramed()
+  { return (parser != null)?parser.isFramed():framed; }
+  
   public void setParser(NMEAParser p)
   { this.parser = p; }
   public NMEAParser getParser()
@@ -106,6 +125,41 @@ public abstract class NMEAClient
     }
   }
 
+  /**
+   * Runs the reader on the given executor, instead of starting it as a Thread.
+   * The parser does its work on the reader's thread, it does not need one.
+   * <br>
+   * To host many sources in one JVM, share an executor of virtual threads between the clients:
+   * <pre>
+   * ExecutorService executor = NMEAExecutors.newVirtualThreadPerTaskExecutor();
+   * for (NMEAClient client : clients)
+   *   client.startWorking(executor);
+   * </pre>
+   * The reader keeps blocking on its data source, its thread being parked meanwhile.
+   * 
+   * @see ocss.nmea.api.NMEAExecutors
+   */
+  public void startWorking(Executor executor)
+  {
+    if (executor == null)
+    {
+      startWorking();
+      return;
+    }
+    executor.execute(this.reader); // run() on the executor's thread, not as a Thread of its own
+  }
+
+  /**
+   * Runs the reader on a virtual thread (a daemon thread before Java 21).
+   * @return the executor, to shut it down
+   */
+  public ExecutorService startWorkingOnVirtualThread()
+  {
+    ExecutorService executor = NMEAExecutors.newVirtualThreadPerTaskExecutor();
+    startWorking(executor);
+    return executor;
+  }
+
   /**
    * This one must be overwritten to customize the behavior of the client,
    * like the destination of the data.
@@ -123,8 +177,28 @@ public abstract class NMEAClient
     }
   }
 
+  /**
+   * The listener is called on the executor, not on the reader thread.
+   * 
+   * @param l the listener
+   * @param executor to call it on
+   * @param capacity the maximum number of events waiting for the listener
+   * @param policy what to do when the listener falls behind
+   * @return the wrapper, added to the listeners.
+   * @see ocss.nmea.api.QueuedNMEAListener
+   */
+  public QueuedNMEAListener addNMEAListener(NMEAListener l, Executor executor, int capacity, QueuedNMEAListener.Policy policy)
+  {
+    QueuedNMEAListener queued = new QueuedNMEAListener(l, executor, capacity, policy);
+    addNMEAListener(queued);
+    return queued;
+  }
+
+  /**
+   * Also removes the {@link QueuedNMEAListener} l has been wrapped in, if any.
+   */
   public synchronized void removeNMEAListener(NMEAListener l)
   {
-    NMEAListeners.remove(l);
+    QueuedNMEAListener.remove(NMEAListeners, l);
   }
 }
\ No newline at end of file
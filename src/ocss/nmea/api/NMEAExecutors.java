@@ -0,0 +1,86 @@
+package ocss.nmea.api;
+
+import java.lang.reflect.Method;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors to run the readers on, see {@link NMEAClient#startWorking(java.util.concurrent.Executor)}.
+ * <br>
+ * A reader blocks on its data source (serial port, socket, file). With one platform thread per reader,
+ * a JVM can only host a few hundred sources. On a Java 21+ runtime, the virtual threads make it thousands,
+ * the blocking I/O being parked instead of holding a thread.
+ * <br>
+ * The virtual threads are reached by reflection, the code still runs on older runtimes,
+ * with regular (daemon) threads instead.
+ */
+public final class NMEAExecutors
+{
+  private final static Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadFactoryMethod();
+
+  private NMEAExecutors()
+  {
+  }
+
+  private static Method findVirtualThreadFactoryMethod()
+  {
+    try
+    {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    }
+    catch (Exception ex) // Before Java 21
+    {
+      return null;
+    }
+  }
+
+  /**
+   * @return true if the runtime has virtual threads.
+   */
+  public static boolean isVirtualThreadSupported()
+  {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * @return an executor starting one virtual thread per task,
+   * or one daemon thread per task if the runtime does not have virtual threads.
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor()
+  {
+    if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null)
+    {
+      try
+      {
+        return (ExecutorService)NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+      }
+      catch (Exception ex)
+      {
+        System.err.println("Virtual threads not available (" + ex.toString() + "), using platform threads.");
+      }
+    }
+    return newThreadPerTaskExecutor("NMEAReader");
+  }
+
+  /**
+   * @param name the prefix of the thread names
+   * @return an executor starting one daemon thread per task (re-used when idle).
+   */
+  public static ExecutorService newThreadPerTaskExecutor(final String name)
+  {
+    return Executors.newCachedThreadPool(new ThreadFactory()
+      {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        public Thread newThread(Runnable r)
+        {
+          Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+  }
+}
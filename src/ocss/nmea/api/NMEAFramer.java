@@ -0,0 +1,283 @@
+package ocss.nmea.api;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cuts a raw NMEA stream into sentences.
+ * <br>
+ * The characters are kept in a reusable ring buffer, the start of a sentence
+ * (<code>$</code> or <code>!</code>) and its end (the EOS) are detected in one single
+ * pass when the data are appended, and the sentences are handed out as
+ * {@link CharSequence} slices of the buffer, without copying the backlog.
+ * <br>
+ * A typical sequence would look like this:
+ * <pre>
+ * framer.append(chunk);
+ * while (framer.next())
+ * {
+ *   CharSequence sentence = framer.sentence();
+ *   ...
+ * }
+ * </pre>
+ * The slice returned by {@link #sentence()} is only valid until the next call to
+ * {@link #next()} or to one of the <code>append</code> methods.
+ * Use {@link CharSequence#toString()} to keep it.
+ * <br>
+ * Bytes are mapped to chars as ISO-8859-1, NMEA being plain ASCII.
+ * <br>
+ * Not thread safe, one framer per data source.
+ */
+public final class NMEAFramer
+{
+  public final static int DEFAULT_CAPACITY = 4096;
+  private final static int MAX_PENDING = 256; // Completed sentences, not consumed yet
+
+  private final char[] buffer;
+  private final int mask;
+
+  private long head = 0L; // Oldest char still in use
+  private long tail = 0L; // Where the next char goes
+
+  // Completed sentences, [start, end[ in the buffer
+  private final long[] pendingStart = new long[MAX_PENDING];
+  private final long[] pendingEnd   = new long[MAX_PENDING];
+  private int pendingHead = 0;
+  private int pendingTail = 0;
+
+  private boolean inSentence = false;
+  private long sentenceStart = 0L;
+  private char[] eos;
+  private int eosMatched = 0;
+
+  private long currentStart = -1L;
+  private long currentEnd   = -1L;
+  private final Slice slice = new Slice();
+
+  private long dropped = 0L;
+
+  public NMEAFramer()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public NMEAFramer(int capacity)
+  {
+    this(capacity, NMEAParser.getEOS());
+  }
+
+  /**
+   * @param capacity the size of the buffer, rounded up to the next power of 2.
+   *                 This is also the max length of a sentence.
+   * @param eos the End Of Sentence
+   */
+  public NMEAFramer(int capacity, String eos)
+  {
+    int size = 16;
+    while (size < capacity)
+      size <<= 1;
+    this.buffer = new char[size];
+    this.mask = size - 1;
+    setEOS(eos);
+  }
+
+  public void setEOS(String str)
+  {
+    if (str == null || str.length() == 0)
+      throw new IllegalArgumentException("EOS cannot be empty");
+    this.eos = str.toCharArray();
+    this.eosMatched = 0;
+  }
+
+  public String getEOS()
+  { return new String(this.eos); }
+
+  /**
+   * @return the number of sentences dropped so far, because they were too long
+   * or not consumed fast enough.
+   */
+  public long getDropped()
+  { return this.dropped; }
+
+  public void reset()
+  {
+    head = tail = 0L;
+    pendingHead = pendingTail = 0;
+    inSentence = false;
+    eosMatched = 0;
+    currentStart = currentEnd = -1L;
+  }
+
+  public void append(CharSequence cs)
+  {
+    append(cs, 0, cs.length());
+  }
+
+  public void append(CharSequence cs, int from, int to)
+  {
+    release();
+    for (int i=from; i<to; i++)
+      push(cs.charAt(i));
+  }
+
+  public void append(char[] ca, int offset, int len)
+  {
+    release();
+    for (int i=offset; i<offset + len; i++)
+      push(ca[i]);
+  }
+
+  public void append(byte[] ba, int offset, int len)
+  {
+    release();
+    for (int i=offset; i<offset + len; i++)
+      push((char)(ba[i] & 0xFF));
+  }
+
+  /**
+   * Consumes the remaining bytes of the buffer (from position to limit).
+   * Works the same for heap and direct buffers.
+   */
+  public void append(ByteBuffer bb)
+  {
+    release();
+    while (bb.hasRemaining())
+      push((char)(bb.get() & 0xFF));
+  }
+
+  /**
+   * Moves to the next complete sentence, if any.
+   * @return true if {@link #sentence()} can be used.
+   */
+  public boolean next()
+  {
+    release();
+    if (pendingHead == pendingTail)
+      return false;
+    int idx = pendingHead & (MAX_PENDING - 1);
+    currentStart = pendingStart[idx];
+    currentEnd   = pendingEnd[idx];
+    pendingHead++;
+    return true;
+  }
+
+  /**
+   * @return the current sentence, without its EOS. Valid until the next call to next() or append().
+   */
+  public CharSequence sentence()
+  {
+    if (currentStart < 0)
+      throw new IllegalStateException("No current sentence, call next() first");
+    return slice;
+  }
+
+  /**
+   * Copies the current sentence in the given array.
+   * @return the length of the sentence
+   */
+  public int copySentence(char[] dest, int offset)
+  {
+    int len = (int)(currentEnd - currentStart);
+    for (int i=0; i<len; i++)
+      dest[offset + i] = buffer[(int)(currentStart + i) & mask];
+    return len;
+  }
+
+  private void release()
+  {
+    if (currentStart >= 0)
+    {
+      currentStart = currentEnd = -1L;
+      updateHead();
+    }
+  }
+
+  private void updateHead()
+  {
+    if (currentStart >= 0)
+      head = currentStart;
+    else if (pendingHead != pendingTail)
+      head = pendingStart[pendingHead & (MAX_PENDING - 1)];
+    else if (inSentence)
+      head = sentenceStart;
+    else
+      head = tail;
+  }
+
+  private void push(char c)
+  {
+    if (c == '$' || c == '!') // Beginning of a sentence. Also re-synchronizes on a truncated one.
+    {
+      inSentence = true;
+      sentenceStart = tail;
+      eosMatched = 0;
+      updateHead();
+    }
+    if (!inSentence)
+      return;
+    if (tail - head == buffer.length) // Full
+    {
+      if (currentStart < 0 && pendingHead != pendingTail)
+        pendingHead++;    // Overwrite the oldest sentence not consumed yet
+      else
+        inSentence = false; // The sentence is longer than the buffer, or nothing can be dropped
+      dropped++;
+      updateHead();
+      if (!inSentence)
+        return;
+    }
+    buffer[(int)tail & mask] = c;
+    tail++;
+    if (c == eos[eosMatched])
+    {
+      eosMatched++;
+      if (eosMatched == eos.length)
+      {
+        tail -= eos.length; // The EOS is not part of the sentence
+        if (pendingTail - pendingHead == MAX_PENDING)
+        {
+          pendingHead++;
+          dropped++;
+        }
+        int idx = pendingTail & (MAX_PENDING - 1);
+        pendingStart[idx] = sentenceStart;
+        pendingEnd[idx]   = tail;
+        pendingTail++;
+        inSentence = false;
+        eosMatched = 0;
+        updateHead();
+      }
+    }
+    else
+      eosMatched = (c == eos[0] ? 1 : 0);
+  }
+
+  /**
+   * A view on the current sentence.
+   */
+  private final class Slice implements CharSequence
+  {
+    public int length()
+    {
+      return (int)(currentEnd - currentStart);
+    }
+
+    public char charAt(int index)
+    {
+      if (index < 0 || index >= length())
+        throw new IndexOutOfBoundsException(Integer.toString(index));
+      return buffer[(int)(currentStart + index) & mask];
+    }
+
+    public CharSequence subSequence(int start, int end)
+    {
+      return toString().substring(start, end);
+    }
+
+    public String toString()
+    {
+      char[] ca = new char[length()];
+      copySentence(ca, 0);
+      return new String(ca);
+    }
+  }
+}
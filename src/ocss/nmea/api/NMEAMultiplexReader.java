@@ -0,0 +1,414 @@
+package ocss.nmea.api;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reads many NMEA-over-IP sources in one thread: TCP connections (made or accepted),
+ * and UDP ports (like the usual 10110).
+ * <br>
+ * The channels are non-blocking, and served by one Selector. The bytes are read in a direct
+ * ByteBuffer, and go straight into the {@link NMEAFramer} of their source, so the sentences of
+ * the different sources are never mixed up. Each complete sentence is then:
+ * <ul>
+ *   <li>given to the {@link NMEASourceListener}s, as a {@link CharSequence}, no String is created;</li>
+ *   <li>fired as a dataRead event (followed by the EOS) to the NMEAListeners, if the reader has some,
+ *       so it can be used by an {@link NMEAClient} like any other reader.</li>
+ * </ul>
+ * <pre>
+ * NMEAMultiplexReader reader = new NMEAMultiplexReader(client.getListeners());
+ * reader.listenUdp(NMEAMultiplexReader.DEFAULT_PORT);
+ * reader.connect("192.168.1.10", 10110);
+ * client.setReader(reader);
+ * client.startWorking();
+ * </pre>
+ * Sources can be added before or after the reader is started, from any thread.
+ * A datagram source has one framer for all its senders, each datagram is expected to contain whole sentences.
+ */
+public class NMEAMultiplexReader extends NMEAReader
+{
+  public final static int DEFAULT_PORT = 10110;
+
+  private final static int READ_BUFFER_SIZE = 64 * 1024; // Max UDP payload
+  private final static long SELECT_TIMEOUT = 500L;        // ms, to check canRead()
+  private final static int FRAMER_CHUNK = NMEAFramer.DEFAULT_CAPACITY / 2; // Appended at once, so the framer never overflows
+
+  public enum SourceType
+  {
+    TCP_CLIENT,   // Connection made by this reader
+    TCP_ACCEPTED, // Connection accepted by a listening port
+    TCP_SERVER,   // Listening port
+    UDP
+  }
+
+  /**
+   * A channel, and its framer.
+   */
+  public final static class Source
+  {
+    private final SourceType type;
+    private final SelectableChannel channel;
+    private final NMEAFramer framer;
+    private SocketAddress remote;
+    private long bytes = 0L;
+    private long sentences = 0L;
+
+    Source(SourceType type, SelectableChannel channel, SocketAddress remote, String eos)
+    {
+      this.type = type;
+      this.channel = channel;
+      this.remote = remote;
+      this.framer = (type == SourceType.TCP_SERVER ? null : new NMEAFramer(NMEAFramer.DEFAULT_CAPACITY, eos));
+    }
+
+    public SourceType getType()
+    { return this.type; }
+
+    /**
+     * @return the peer (for UDP, the sender of the last datagram), null for a listening port.
+     */
+    public SocketAddress getRemoteAddress()
+    { return this.remote; }
+
+    /**
+     * @return the local port the channel is bound to, -1 if unknown.
+     */
+    public int getLocalPort()
+    {
+      if (channel instanceof ServerSocketChannel)
+        return ((ServerSocketChannel)channel).socket().getLocalPort();
+      if (channel instanceof DatagramChannel)
+        return ((DatagramChannel)channel).socket().getLocalPort();
+      if (channel instanceof SocketChannel)
+        return ((SocketChannel)channel).socket().getLocalPort();
+      return -1;
+    }
+
+    public long getBytesRead()
+    { return this.bytes; }
+
+    public long getSentencesRead()
+    { return this.sentences; }
+
+    /**
+     * @return the sentences dropped by the framer (too long, or garbage).
+     */
+    public long getDropped()
+    { return (framer == null ? 0L : framer.getDropped()); }
+
+    public String toString()
+    {
+      return type + (remote != null ? " " + remote : "") + " (local port " + getLocalPort() + ")";
+    }
+  }
+
+  private final Selector selector;
+  private final ConcurrentLinkedQueue<Source> pending = new ConcurrentLinkedQueue<Source>(); // To register
+  private final List<Source> sources = new CopyOnWriteArrayList<Source>();
+  private final List<NMEASourceListener> sourceListeners = new CopyOnWriteArrayList<NMEASourceListener>();
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+  private String eos = NMEAParser.getEOS();
+
+  /**
+   * Sentences go to the {@link NMEASourceListener}s only.
+   */
+  public NMEAMultiplexReader() throws IOException
+  {
+    super(new CopyOnWriteArrayList<NMEAListener>()); // Not null, for run() and addNMEAListener
+    this.selector = Selector.open();
+  }
+
+  /**
+   * Sentences go to the {@link NMEASourceListener}s, and to the NMEAListeners (like the ones of an NMEAClient).
+   */
+  public NMEAMultiplexReader(List<NMEAListener> al) throws IOException
+  {
+    super(al);
+    this.selector = Selector.open();
+  }
+
+  /**
+   * The End Of Sentence of the sources opened after this call.
+   */
+  public void setEOS(String eos)
+  { this.eos = eos; }
+
+  public String getEOS()
+  { return this.eos; }
+
+  public void addSourceListener(NMEASourceListener l)
+  {
+    sourceListeners.add(l);
+  }
+
+  public void removeSourceListener(NMEASourceListener l)
+  {
+    sourceListeners.remove(l);
+  }
+
+  /**
+   * @return the open sources
+   */
+  public List<Source> getSources()
+  { return new ArrayList<Source>(sources); }
+
+  /**
+   * Connects to a TCP server (like a WiFi multiplexer). The connection is completed by the reader's thread.
+   */
+  public Source connect(String host, int port) throws IOException
+  {
+    SocketChannel channel = SocketChannel.open();
+    channel.configureBlocking(false);
+    InetSocketAddress address = new InetSocketAddress(host, port);
+    channel.connect(address);
+    return register(new Source(SourceType.TCP_CLIENT, channel, address, eos));
+  }
+
+  /**
+   * Accepts TCP connections on a port, each one being a source.
+   * @param port 0 for any free port, see {@link Source#getLocalPort()}.
+   */
+  public Source listen(int port) throws IOException
+  {
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    channel.configureBlocking(false);
+    channel.socket().setReuseAddress(true);
+    channel.socket().bind(new InetSocketAddress(port));
+    return register(new Source(SourceType.TCP_SERVER, channel, null, eos));
+  }
+
+  /**
+   * Receives the datagrams sent to a port.
+   * @param port 0 for any free port, see {@link Source#getLocalPort()}.
+   */
+  public Source listenUdp(int port) throws IOException
+  {
+    DatagramChannel channel = DatagramChannel.open();
+    channel.configureBlocking(false);
+    channel.socket().setReuseAddress(true);
+    channel.socket().bind(new InetSocketAddress(port));
+    return register(new Source(SourceType.UDP, channel, null, eos));
+  }
+
+  private Source register(Source source)
+  {
+    pending.add(source);
+    selector.wakeup();
+    return source;
+  }
+
+  /**
+   * Closes a source. Can be called from any thread.
+   */
+  public void close(Source source)
+  {
+    SelectionKey key = source.channel.keyFor(selector);
+    if (key != null)
+      key.cancel();
+    close(source, null);
+  }
+
+  /**
+   * Stops the reader, and closes all the sources.
+   * Can be called before the reader is started, it then stops as soon as it starts.
+   */
+  public void stopReading()
+  {
+    goRead = false;
+    selector.wakeup();
+  }
+
+  public void read() throws Exception
+  {
+    try
+    {
+      while (canRead())
+      {
+        registerPending();
+        selector.select(SELECT_TIMEOUT);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+          SelectionKey key = keys.next();
+          keys.remove();
+          Source source = (Source)key.attachment();
+          try
+          {
+            if (!key.isValid())
+              continue;
+            if (key.isAcceptable())
+              accept(source);
+            else if (key.isConnectable())
+              finishConnect(key, source);
+            else if (key.isReadable())
+              readFrom(key, source);
+          }
+          catch (IOException ioe)
+          {
+            key.cancel();
+            close(source, ioe);
+          }
+        }
+      }
+    }
+    finally
+    {
+      for (Source source : sources)
+        close(source, null);
+      for (Source source : pending)
+        close(source, null);
+      pending.clear();
+      selector.close();
+    }
+  }
+
+  private void registerPending()
+  {
+    Source source;
+    while ((source = pending.poll()) != null)
+    {
+      int ops;
+      switch (source.type)
+      {
+        case TCP_SERVER:
+          ops = SelectionKey.OP_ACCEPT;
+          break;
+        case TCP_CLIENT:
+          ops = SelectionKey.OP_CONNECT;
+          break;
+        default:
+          ops = SelectionKey.OP_READ;
+          break;
+      }
+      try
+      {
+        source.channel.register(selector, ops, source);
+        sources.add(source);
+        if (source.type != SourceType.TCP_CLIENT) // When connected
+          fireSourceOpened(source);
+      }
+      catch (IOException ioe)
+      {
+        close(source, ioe);
+      }
+    }
+  }
+
+  private void accept(Source server) throws IOException
+  {
+    SocketChannel channel;
+    while ((channel = ((ServerSocketChannel)server.channel).accept()) != null)
+    {
+      channel.configureBlocking(false);
+      Source source = new Source(SourceType.TCP_ACCEPTED, channel, channel.socket().getRemoteSocketAddress(), eos);
+      channel.register(selector, SelectionKey.OP_READ, source);
+      sources.add(source);
+      fireSourceOpened(source);
+    }
+  }
+
+  private void finishConnect(SelectionKey key, Source source) throws IOException
+  {
+    if (((SocketChannel)source.channel).finishConnect())
+    {
+      key.interestOps(SelectionKey.OP_READ);
+      fireSourceOpened(source);
+    }
+  }
+
+  private void readFrom(SelectionKey key, Source source) throws IOException
+  {
+    if (source.type == SourceType.UDP)
+    {
+      DatagramChannel channel = (DatagramChannel)source.channel;
+      SocketAddress sender;
+      while (true)
+      {
+        readBuffer.clear();
+        if ((sender = channel.receive(readBuffer)) == null)
+          break;
+        source.remote = sender;
+        readBuffer.flip();
+        frame(source);
+      }
+      return;
+    }
+    SocketChannel channel = (SocketChannel)source.channel;
+    readBuffer.clear();
+    int n = channel.read(readBuffer);
+    if (n < 0) // Closed by the peer
+    {
+      key.cancel();
+      close(source, null);
+      return;
+    }
+    readBuffer.flip();
+    frame(source);
+  }
+
+  /**
+   * Feeds the framer with the read buffer, and fires the complete sentences.
+   */
+  private void frame(Source source)
+  {
+    source.bytes += readBuffer.remaining();
+    int limit = readBuffer.limit();
+    while (readBuffer.position() < limit)
+    {
+      readBuffer.limit(Math.min(limit, readBuffer.position() + FRAMER_CHUNK));
+      source.framer.append(readBuffer);
+      while (source.framer.next())
+      {
+        source.sentences++;
+        fireSentenceRead(source, source.framer.sentence());
+      }
+      readBuffer.limit(limit);
+    }
+  }
+
+  private void fireSentenceRead(Source source, CharSequence sentence)
+  {
+    for (NMEASourceListener l : sourceListeners)
+      l.sentenceRead(source, sentence);
+    if (hasNMEAListeners())
+      fireDataRead(new NMEAEvent(this, sentence.toString() + source.framer.getEOS()));
+  }
+
+  private void fireSourceOpened(Source source)
+  {
+    for (NMEASourceListener l : sourceListeners)
+      l.sourceOpened(source);
+  }
+
+  private void close(Source source, Exception cause)
+  {
+    if (!sources.remove(source) && !pending.remove(source) && !source.channel.isOpen())
+      return; // Already closed
+    try
+    {
+      source.channel.close();
+    }
+    catch (IOException ioe)
+    {
+      // Closing anyway
+    }
+    for (NMEASourceListener l : sourceListeners)
+      l.sourceClosed(source, cause);
+  }
+}
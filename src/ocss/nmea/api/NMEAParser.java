@@ -30,6 +30,9 @@ public final class NMEAParser extends Thread
   
   private List<NMEAListener> NMEAListeners = null; // new ArrayList(2);
 
+  private NMEAFramer framer = null; // null: String mode
+  private SentenceFilter filter = null; // Compiled from nmeaPrefix and nmeaSentence
+
   NMEAParser instance = null;
   /**
    * @param al The ArrayList of the Listeners instanciated by the NMEAClient
@@ -45,6 +48,12 @@ public final class NMEAParser extends Thread
         public void dataRead(NMEAEvent e)
         {
 //        System.out.println("Receieved Data:" + e.getContent());
+          if (framer != null)
+          {
+            framer.append(e.getContent());
+            frameSentences();
+            return;
+          }
           nmeaStream += e.getContent();
           // TODO Broadcast that
           
@@ -73,7 +82,11 @@ public final class NMEAParser extends Thread
   { this.nmeaPrefix = s; }
 
   public void setEOS(String str)
-  { NMEA_EOS = str; }
+  { 
+    NMEA_EOS = str; 
+    if (framer != null)
+      framer.setEOS(str);
+  }
   
   public static String getEOS()
   { 
@@ -93,6 +106,62 @@ public final class NMEAParser extends Thread
   public void setNmeaStream(String s)
   { this.nmeaStream = s; }
 
+  /**
+   * Framer mode: the stream is not accumulated in a String anymore, 
+   * the sentences are cut out of a ring buffer.
+   * 
+   * @see ocss.nmea.api.NMEAFramer
+   */
+  public void setFramed(boolean b)
+  {
+    if (b && framer == null)
+      framer = new NMEAFramer(NMEAFramer.DEFAULT_CAPACITY, NMEA_EOS);
+    else if (!b)
+      framer = null;
+  }
+  
+  public boolean isFramed()
+  { return framer != null; }
+  
+  public NMEAFramer getFramer()
+  { return this.framer; }
+
+  /**
+   * Fires the sentences available in the framer, if they are interesting.
+   */
+  private void frameSentences()
+  {
+    while (framer.next())
+    {
+      CharSequence sentence = framer.sentence();
+      if (interesting(sentence))
+        fireDataDetected(new NMEAEvent(this, sentence.toString()));
+    }
+  }
+
+  /**
+   * Like the String mode: only the <code>$</code> sentences (not the AIS <code>!</code> ones).
+   */
+  private boolean interesting(CharSequence sentence)
+  {
+    if (sentence.length() == 0 || sentence.charAt(0) != '$')
+      return false;
+    if (nmeaSentence == null)
+      return true; // Take all
+    return getFilter().accept(sentence);
+  }
+
+  /**
+   * @return the filter for the current prefix and sentence array, compiled again if one of them has been replaced.
+   */
+  public SentenceFilter getFilter()
+  {
+    SentenceFilter f = filter;
+    if (f == null || f.getPrefix() != nmeaPrefix || f.getSentences() != nmeaSentence)
+      filter = f = SentenceFilter.compile(nmeaPrefix, nmeaSentence);
+    return f;
+  }
+
   public String detectSentence() throws NMEAException
   {
     String ret = null;
@@ -153,25 +222,9 @@ public final class NMEAParser extends Thread
             {        
               if (nmeaSentence != null)
               {
-                for (int i=0; i<this.nmeaSentence.length; i++)
-                {
-              //  System.out.println("Checking [" + nmeaSentence[i] + "] against [" + nmeaStream + "]");
-                  // Fully qualified sentence
-                  if (nmeaSentence[i].length() == 5 && nmeaStream.startsWith("$" + nmeaSentence[i]))
-                  {
-                    return true;
-                  }
-                  // Specific prefix
-                  else if (!("*".equals(nmeaPrefix.trim())) && nmeaStream.startsWith("$" + nmeaPrefix + nmeaSentence[i]))
-                  {
-                    return true;
-                  }
-                  // Any prefix
-                  else if ("*".equals(nmeaPrefix.trim()) && nmeaStream.startsWith("$") && nmeaStream.substring(3).startsWith(nmeaSentence[i]))
-                  {
-                    return true;
-                  }
-                }
+                // Fully qualified sentence, specific prefix, or any prefix
+                if (nmeaStream.charAt(0) == '$' && getFilter().accept(nmeaStream))
+                  return true;
               }
               else
               {
@@ -198,11 +251,8 @@ public final class NMEAParser extends Thread
 
   protected void fireDataDetected(NMEAEvent e)
   {
-    for (int i=0; i<NMEAListeners.size(); i++)
-    {
-      NMEAListener l = /*(NMEAListener)*/NMEAListeners.get(i);
+    for (NMEAListener l : NMEAListeners) // A snapshot, when the list is copy-on-write
       l.dataDetected(e);
-    }
   }
 
   public synchronized void addNMEAListener(NMEAListener l)
@@ -213,9 +263,12 @@ public final class NMEAParser extends Thread
     }
   }
 
+  /**
+   * Also removes the {@link QueuedNMEAListener} l has been wrapped in, if any.
+   */
   public synchronized void removeNMEAListener(NMEAListener l)
   {
-    NMEAListeners.remove(l);
+    QueuedNMEAListener.remove(NMEAListeners, l);
   }
 
   public void run()
@@ -8,6 +8,10 @@ import javax.swing.text.Utilities;
  * A Model. This is an abstract class to extend to implement your own data-source.
  * Examples are given for a file containing the data - that can be used as a simulator,
  * and for a Serial Port, that can be used for the real world.
+ * <br>
+ * It can be started as a Thread, or run on an Executor (like one of virtual threads),
+ * see {@link NMEAClient#startWorking(java.util.concurrent.Executor)}.
+ * In the latter case, use {@link #canRead()} to stop reading, not {@link #interrupt()}.
  *
  * @version 1.0
  * @author Olivier Le Diouris
@@ -16,7 +20,7 @@ public abstract class NMEAReader extends Thread
 {
   private List<NMEAListener> NMEAListeners = null; // new ArrayList(2);
 
-  protected boolean goRead = true;
+  protected volatile boolean goRead = true; // Set by stopReading, from any thread
     
   public NMEAReader()
   {
@@ -43,20 +47,14 @@ public abstract class NMEAReader extends Thread
    */
   protected void fireDataRead(NMEAEvent e)
   {
-    for (int i=0; i<NMEAListeners.size(); i++)
-    {
-      NMEAListener l = NMEAListeners.get(i);
+    for (NMEAListener l : NMEAListeners) // A snapshot, when the list is copy-on-write
       l.dataRead(e);
-    }
   }
 
   protected void fireStopReading(NMEAEvent e)
   {
-    for (int i=0; i<NMEAListeners.size(); i++)
-    {
-      NMEAListener l = NMEAListeners.get(i);
+    for (NMEAListener l : NMEAListeners)
       l.stopReading(e);
-    }
   }
 
   public synchronized void addNMEAListener(NMEAListener l)
@@ -67,11 +65,20 @@ public abstract class NMEAReader extends Thread
     }
   }
 
+  /**
+   * Also removes the {@link QueuedNMEAListener} l has been wrapped in, if any.
+   */
   public synchronized void removeNMEAListener(NMEAListener l)
   {
-    NMEAListeners.remove(l);
+    QueuedNMEAListener.remove(NMEAListeners, l);
   }
 
+  /**
+   * @return false if there is nobody to fire the events to.
+   */
+  protected boolean hasNMEAListeners()
+  { return NMEAListeners != null && !NMEAListeners.isEmpty(); }
+
   public boolean canRead()
   { return goRead; }
 
@@ -90,11 +97,8 @@ public abstract class NMEAReader extends Thread
     try { read(); }
     catch (Exception ex)
     {
-      for (int i=0; i<NMEAListeners.size(); i++)
-      {
-        NMEAListener l = NMEAListeners.get(i);
+      for (NMEAListener l : NMEAListeners)
         l.fireError(ex);
-      }      
       throw new RuntimeException(ex);
     }
   }
@@ -0,0 +1,242 @@
+package ocss.nmea.api;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ocss.nmea.parser.NMEAFields;
+import ocss.nmea.parser.NMEANumbers;
+import ocss.nmea.parser.NMEATime;
+
+/**
+ * Replays a recorded NMEA log file, of any size.
+ * <br>
+ * The file is memory-mapped (by windows, a mapping being limited to 2 GB), and the sentences
+ * are cut by an {@link NMEAFramer} directly from the mapped buffer.
+ * The replay speed is one of:
+ * <ul>
+ *   <li>{@link #AS_FAST_AS_POSSIBLE}, for back-testing;</li>
+ *   <li>{@link #REAL_TIME}, paced by the UTC time of the RMC and ZDA sentences of the log;</li>
+ *   <li>any other factor, like 10 for 10 times faster than real time.</li>
+ * </ul>
+ * Each sentence is handed to {@link #sentenceRead(CharSequence, long)}, which fires it as a dataRead
+ * event (followed by the EOS), for an {@link NMEAClient} to use it like any other reader.
+ * Override it to use the sentences without creating any String.
+ * <pre>
+ * NMEAReplayReader reader = new NMEAReplayReader(client.getListeners(), "voyage.nmea", NMEAReplayReader.REAL_TIME);
+ * client.setReader(reader);
+ * client.startWorking();
+ * </pre>
+ */
+public class NMEAReplayReader extends NMEAReader
+{
+  public final static double AS_FAST_AS_POSSIBLE = 0d;
+  public final static double REAL_TIME = 1d;
+
+  private final static long WINDOW_SIZE = 256L * 1024L * 1024L; // Mapped at once
+  private final static int FRAMER_CHUNK = NMEAFramer.DEFAULT_CAPACITY / 2; // Appended at once, so the framer never overflows
+  private final static long MAX_GAP = 60L * 60L * 1000L;        // ms. A bigger jump in the log time is not waited for.
+
+  private final String fileName;
+  private double speed;
+  private boolean loop = false;
+
+  private final NMEAFramer framer = new NMEAFramer(NMEAFramer.DEFAULT_CAPACITY);
+  private final NMEAFields fields = new NMEAFields();
+
+  // Pacing
+  private long logOrigin = -1L;  // Log time, ms
+  private long wallOrigin = 0L;  // System.nanoTime()
+  private long lastLogTime = -1L;
+
+  private long sentences = 0L;
+
+  /**
+   * @param al the listeners to fire the sentences to, null if {@link #sentenceRead(CharSequence, long)} is overridden.
+   * @param fileName the log
+   * @param speed {@link #AS_FAST_AS_POSSIBLE}, {@link #REAL_TIME}, or a factor
+   */
+  public NMEAReplayReader(List<NMEAListener> al, String fileName, double speed)
+  {
+    super(al == null ? new CopyOnWriteArrayList<NMEAListener>() : al);
+    this.fileName = fileName;
+    setSpeed(speed);
+  }
+
+  public NMEAReplayReader(String fileName, double speed)
+  {
+    super(new CopyOnWriteArrayList<NMEAListener>()); // Not null, for run() and addNMEAListener
+    this.fileName = fileName;
+    setSpeed(speed);
+  }
+
+  /**
+   * Can be changed while replaying.
+   */
+  public void setSpeed(double speed)
+  {
+    if (speed < 0d || Double.isNaN(speed))
+      throw new IllegalArgumentException("Invalid speed " + speed);
+    this.speed = speed;
+    this.logOrigin = -1L; // Re-anchored on the next time stamp
+  }
+
+  public double getSpeed()
+  { return this.speed; }
+
+  /**
+   * Start over at the end of the file.
+   */
+  public void setLoop(boolean b)
+  { this.loop = b; }
+
+  public NMEAFramer getFramer()
+  { return this.framer; }
+
+  /**
+   * @return the number of sentences replayed so far.
+   */
+  public long getSentencesRead()
+  { return this.sentences; }
+
+  /**
+   * A stop (see {@link NMEAListener#stopReading(NMEAEvent)}) received before it starts is not undone.
+   */
+  public void read() throws Exception
+  {
+    do
+    {
+      replay();
+    } while (loop && canRead());
+  }
+
+  private void replay() throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+    try
+    {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      framer.reset();
+      logOrigin = -1L;
+      for (long position=0L; position<size && canRead(); position+=WINDOW_SIZE)
+      {
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+        int limit = window.limit();
+        while (window.position() < limit && canRead())
+        {
+          window.limit(Math.min(limit, window.position() + FRAMER_CHUNK));
+          framer.append(window); // A sentence can span two windows, the framer keeps its beginning
+          window.limit(limit);
+          while (framer.next() && canRead())
+          {
+            CharSequence sentence = framer.sentence();
+            long time = logTime(sentence);
+            if (time != -1L)
+              pace(time);
+            sentences++;
+            sentenceRead(sentence, time);
+          }
+        }
+      }
+    }
+    finally
+    {
+      raf.close();
+    }
+  }
+
+  /**
+   * Fires the sentence to the NMEAListeners. Override it to use the CharSequence directly.
+   * @param sentence without its EOS. Only valid during this call.
+   * @param time the UTC time of the sentence in ms, if it is an RMC or a ZDA, -1 otherwise.
+   */
+  protected void sentenceRead(CharSequence sentence, long time)
+  {
+    if (hasNMEAListeners())
+      fireDataRead(new NMEAEvent(this, sentence.toString() + framer.getEOS()));
+  }
+
+  /**
+   * Waits until it is time to replay a sentence of the given log time.
+   */
+  private void pace(long time)
+  {
+    double s = speed;
+    if (s == AS_FAST_AS_POSSIBLE)
+      return;
+    long now = System.nanoTime();
+    long previous = lastLogTime;
+    lastLogTime = time;
+    if (logOrigin == -1L || time < previous || time - previous > MAX_GAP)
+    {
+      logOrigin = time; // First time stamp, going back in time, or a gap in the log
+      wallOrigin = now;
+      return;
+    }
+    long due = wallOrigin + (long)(((time - logOrigin) * 1e6) / s);
+    long wait;
+    while ((wait = due - System.nanoTime()) > 0L && canRead())
+    {
+      try
+      {
+        Thread.sleep(wait / 1000000L, (int)(wait % 1000000L));
+      }
+      catch (InterruptedException ie)
+      {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the UTC time of an RMC or ZDA sentence, in ms since 1970, -1 for the other sentences, or if it cannot be found.
+   */
+  private long logTime(CharSequence s)
+  {
+    if (s.length() < 7 || s.charAt(0) != '$')
+      return -1L;
+    boolean rmc = (s.charAt(3) == 'R' && s.charAt(4) == 'M' && s.charAt(5) == 'C');
+    boolean zda = (s.charAt(3) == 'Z' && s.charAt(4) == 'D' && s.charAt(5) == 'A');
+    if (!rmc && !zda)
+      return -1L;
+    try
+    {
+      fields.reset(s);
+      int day, month, year;
+      if (rmc)
+      {
+        if (fields.count() < 10 || fields.length(9) != 6)
+          return -1L;
+        day   = fields.parseInt(9, 0, 2);
+        month = fields.parseInt(9, 2, 4);
+        year  = fields.parseInt(9, 4, 6);
+        year += (year < 70 ? 2000 : 1900);
+      }
+      else
+      {
+        if (fields.count() < 5)
+          return -1L;
+        day   = fields.parseInt(2);
+        month = fields.parseInt(3);
+        year  = fields.parseInt(4);
+      }
+      if (fields.length(1) < 6)
+        return -1L;
+      long time = (fields.parseInt(1, 0, 2) * 3600000L) + (fields.parseInt(1, 2, 4) * 60000L) + (fields.parseInt(1, 4, 6) * 1000L);
+      if (fields.length(1) > 6)
+        time += Math.round(NMEANumbers.parseDouble(s, fields.start(1) + 6, fields.end(1)) * 1000d); // .sss
+      return NMEATime.dayStart(year, month, day) + time;
+    }
+    catch (RuntimeException ex) // Garbage
+    {
+      return -1L;
+    }
+  }
+}
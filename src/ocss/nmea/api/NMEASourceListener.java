@@ -0,0 +1,32 @@
+package ocss.nmea.api;
+
+import java.util.EventListener;
+
+/**
+ * Notified by a {@link NMEAMultiplexReader}, on its thread. Keep the implementations short.
+ */
+public abstract class NMEASourceListener implements EventListener
+{
+  /**
+   * A complete sentence has been read.
+   * @param sentence without its EOS (with a trailing CR if the EOS is LF only).
+   *                 Only valid during this call, use toString() to keep it.
+   */
+  public void sentenceRead(NMEAMultiplexReader.Source source, CharSequence sentence)
+  {
+  }
+
+  /**
+   * A connection has been established (or accepted), or a datagram port opened.
+   */
+  public void sourceOpened(NMEAMultiplexReader.Source source)
+  {
+  }
+
+  /**
+   * @param cause null if the peer closed the connection, or if the reader is stopped.
+   */
+  public void sourceClosed(NMEAMultiplexReader.Source source, Exception cause)
+  {
+  }
+}
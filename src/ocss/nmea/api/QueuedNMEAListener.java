@@ -0,0 +1,310 @@
+package ocss.nmea.api;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples a slow listener (a database writer, a UI...) from the reader thread.
+ * <br>
+ * The events are put in a bounded queue, and delivered to the wrapped listener on its own Executor,
+ * one at a time, in order. When the listener falls behind and the queue is full:
+ * <ul>
+ *   <li>{@link Policy#DROP_OLDEST}: the oldest pending event is dropped. The listener gets the most recent data.</li>
+ *   <li>{@link Policy#BLOCK}: the reader waits. Nothing is lost, the ingestion goes at the pace of the listener.</li>
+ *   <li>{@link Policy#SAMPLE}: only one event every <code>sampleRate</code> gets in (replacing the oldest),
+ *       the listener keeps seeing the whole stream, thinned out.</li>
+ * </ul>
+ * The {@link NMEAListener#stopReading(NMEAEvent)} and {@link NMEAListener#fireError(Throwable)} events are never dropped,
+ * nor counted in the capacity: only the data events are evicted to make room.
+ * <br>
+ * The raw chunks of the reader ({@link NMEAListener#dataRead(NMEAEvent)}) are not passed on by default,
+ * they would take the room of the sentences. When asked for, they are data events like the others.
+ * <pre>
+ * client.addNMEAListener(dbWriter, Executors.newSingleThreadExecutor(), 1024, QueuedNMEAListener.Policy.DROP_OLDEST);
+ * </pre>
+ * With {@link Policy#BLOCK}, the Executor must not run on the thread firing the events.
+ */
+public final class QueuedNMEAListener extends NMEAListener
+{
+  public enum Policy
+  {
+    DROP_OLDEST,
+    BLOCK,
+    SAMPLE
+  }
+
+  public final static int DEFAULT_SAMPLE_RATE = 10;
+
+  private final static int DATA_DETECTED = 0;
+  private final static int DATA_READ     = 1;
+  private final static int STOP_READING  = 2;
+  private final static int ERROR         = 3;
+
+  private final static class Pending
+  {
+    final int kind;
+    final Object payload; // NMEAEvent, or Throwable
+
+    Pending(int kind, Object payload)
+    {
+      this.kind = kind;
+      this.payload = payload;
+    }
+
+    boolean isData()
+    {
+      return (kind == DATA_DETECTED || kind == DATA_READ);
+    }
+  }
+
+  private final NMEAListener listener;
+  private final Executor executor;
+  private final Policy policy;
+  private final int sampleRate;
+  private final boolean withDataRead;
+  private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>(); // All the events, in order
+  private final Semaphore room; // For the data events
+
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
+  private final AtomicLong dropped = new AtomicLong(0L);
+  private final AtomicLong sampleCount = new AtomicLong(0L);
+
+  private final Runnable drain = new Runnable()
+    {
+      public void run()
+      {
+        drain();
+      }
+    };
+
+  public QueuedNMEAListener(NMEAListener listener, Executor executor, int capacity, Policy policy)
+  {
+    this(listener, executor, capacity, policy, DEFAULT_SAMPLE_RATE);
+  }
+
+  /**
+   * @param listener the one to call
+   * @param executor to call it on
+   * @param capacity the maximum number of pending data events
+   * @param policy when the queue is full
+   * @param sampleRate for {@link Policy#SAMPLE}, one event every sampleRate is kept when the queue is full.
+   */
+  public QueuedNMEAListener(NMEAListener listener, Executor executor, int capacity, Policy policy, int sampleRate)
+  {
+    this(listener, executor, capacity, policy, sampleRate, false);
+  }
+
+  /**
+   * @param listener the one to call
+   * @param executor to call it on
+   * @param capacity the maximum number of pending data events, the dataRead ones included
+   * @param policy when the queue is full
+   * @param sampleRate for {@link Policy#SAMPLE}, one event every sampleRate is kept when the queue is full.
+   * @param withDataRead true to pass on the dataRead events too, false to ignore them.
+   */
+  public QueuedNMEAListener(NMEAListener listener, Executor executor, int capacity, Policy policy, int sampleRate, boolean withDataRead)
+  {
+    if (listener == null || executor == null || policy == null)
+      throw new IllegalArgumentException("listener, executor and policy are required");
+    this.listener = listener;
+    this.executor = executor;
+    this.policy = policy;
+    this.sampleRate = Math.max(1, sampleRate);
+    this.withDataRead = withDataRead;
+    this.room = new Semaphore(Math.max(1, capacity));
+  }
+
+  public NMEAListener getListener()
+  { return this.listener; }
+
+  public Policy getPolicy()
+  { return this.policy; }
+
+  public boolean isWithDataRead()
+  { return this.withDataRead; }
+
+  /**
+   * @return the number of events not delivered, because the listener was behind.
+   */
+  public long getDropped()
+  { return this.dropped.get(); }
+
+  /**
+   * @return the number of events waiting to be delivered, the control events included.
+   */
+  public int getPending()
+  { return this.queue.size(); }
+
+  public void dataDetected(NMEAEvent e)
+  {
+    enqueue(new Pending(DATA_DETECTED, e));
+  }
+
+  public void dataRead(NMEAEvent e)
+  {
+    if (withDataRead)
+      enqueue(new Pending(DATA_READ, e));
+  }
+
+  public void stopReading(NMEAEvent e)
+  {
+    control(new Pending(STOP_READING, e));
+  }
+
+  public void fireError(Throwable t)
+  {
+    control(new Pending(ERROR, t));
+  }
+
+  /**
+   * Always queued, whatever the number of pending data events.
+   */
+  private void control(Pending p)
+  {
+    queue.offer(p);
+    schedule();
+  }
+
+  private void enqueue(Pending p)
+  {
+    if (room.tryAcquire())
+      queue.offer(p);
+    else
+    {
+      switch (policy)
+      {
+        case BLOCK:
+          try
+          {
+            room.acquire();
+            queue.offer(p);
+          }
+          catch (InterruptedException ie)
+          {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            return;
+          }
+          break;
+        case SAMPLE:
+          if (sampleCount.incrementAndGet() % sampleRate != 0)
+          {
+            dropped.incrementAndGet();
+            break;
+          }
+          force(p);
+          return;
+        case DROP_OLDEST:
+        default:
+          force(p);
+          return;
+      }
+    }
+    schedule();
+  }
+
+  /**
+   * Makes room if needed, the oldest pending data event being dropped.
+   */
+  private void force(Pending p)
+  {
+    while (!room.tryAcquire())
+    {
+      if (dropOldestData()) // Its room is taken over
+        break;
+      Thread.yield(); // The drain has just taken the last one, and is about to release its room
+    }
+    queue.offer(p);
+    schedule();
+  }
+
+  private boolean dropOldestData()
+  {
+    for (Iterator<Pending> it = queue.iterator(); it.hasNext(); )
+    {
+      Pending oldest = it.next();
+      if (oldest.isData() && queue.remove(oldest)) // Not removed if the drain got it first
+      {
+        dropped.incrementAndGet();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void schedule()
+  {
+    if (!queue.isEmpty() && scheduled.compareAndSet(false, true))
+      executor.execute(drain);
+  }
+
+  /**
+   * On the Executor. Only one drain at a time, the events are delivered in order.
+   */
+  private void drain()
+  {
+    try
+    {
+      Pending p;
+      while ((p = queue.poll()) != null)
+      {
+        if (p.isData())
+          room.release();
+        deliver(p);
+      }
+    }
+    finally
+    {
+      scheduled.set(false);
+    }
+    schedule(); // Something may have been queued after the last poll
+  }
+
+  private void deliver(Pending p)
+  {
+    try
+    {
+      switch (p.kind)
+      {
+        case DATA_DETECTED:
+          listener.dataDetected((NMEAEvent)p.payload);
+          break;
+        case DATA_READ:
+          listener.dataRead((NMEAEvent)p.payload);
+          break;
+        case STOP_READING:
+          listener.stopReading((NMEAEvent)p.payload);
+          break;
+        case ERROR:
+        default:
+          listener.fireError((Throwable)p.payload);
+          break;
+      }
+    }
+    catch (RuntimeException ex)
+    {
+      ex.printStackTrace(); // The other events still have to be delivered
+    }
+  }
+
+  /**
+   * Removes a listener from a list, directly or through its QueuedNMEAListener.
+   * @return true if found
+   */
+  static boolean remove(List<NMEAListener> listeners, NMEAListener l)
+  {
+    if (listeners.remove(l))
+      return true;
+    for (NMEAListener registered : listeners)
+    {
+      if (registered instanceof QueuedNMEAListener && ((QueuedNMEAListener)registered).getListener() == l)
+        return listeners.remove(registered);
+    }
+    return false;
+  }
+}
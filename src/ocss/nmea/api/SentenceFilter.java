@@ -0,0 +1,224 @@
+package ocss.nmea.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells if a sentence is one of the expected ones, given the device prefix and the sentence ids
+ * (see {@link NMEAClient#NMEAClient(String, String[])}).
+ * <br>
+ * Compiled once, the ids are packed in longs (8 bits per char) and put in a hash set,
+ * so a sentence is accepted or rejected with one lookup, whatever the number of ids, without creating any object.
+ * <br>
+ * The rules are the ones the parser has always used, for a sentence like <code>$IIMWV,...</code>:
+ * <ul>
+ *   <li>An id of 5 characters is fully qualified (<code>IIMWV</code>), it matches whatever the prefix is.</li>
+ *   <li>With a prefix (<code>II</code>), the id (<code>MWV</code>) matches after it.</li>
+ *   <li>With the <code>*</code> prefix, the id matches after any 2 characters talker id.</li>
+ * </ul>
+ * Immutable.
+ */
+public final class SentenceFilter
+{
+  public final static String ANY_PREFIX = "*";
+
+  private final static int MAX_PACKED_LENGTH = 7; // 8 bits per char, and a marker bit
+  private final static long PRESENT = 1L << 63;   // So an empty slot (0) is never a key
+
+  /**
+   * All the ids of one length, at one offset in the sentence.
+   */
+  private final static class Group
+  {
+    final int offset;
+    final int length;
+    long[] keys = new long[16];
+    int mask = 15;
+    int size = 0;
+
+    Group(int offset, int length)
+    {
+      this.offset = offset;
+      this.length = length;
+    }
+
+    void add(long key)
+    {
+      if (contains(key))
+        return;
+      if ((size + 1) * 2 > keys.length)
+      {
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (long k : old)
+        {
+          if (k != 0L)
+            add(k);
+        }
+      }
+      int i = slot(key, mask);
+      while (keys[i] != 0L)
+        i = (i + 1) & mask;
+      keys[i] = key;
+      size++;
+    }
+
+    boolean contains(long key)
+    {
+      for (int i=slot(key, mask); keys[i] != 0L; i=(i + 1) & mask)
+      {
+        if (keys[i] == key)
+          return true;
+      }
+      return false;
+    }
+
+    boolean accept(CharSequence cs, int from)
+    {
+      int start = from + offset;
+      if (cs.length() < start + length)
+        return false;
+      long key = pack(cs, start, length);
+      return key != 0L && contains(key);
+    }
+  }
+
+  private final String prefix;
+  private final String[] sentences;
+  private final Group[] groups;
+  private final String[] others;      // Ids that cannot be packed (too long, or not 8 bits chars)
+  private final int[] othersOffset;
+
+  private SentenceFilter(String prefix, String[] sentences, Group[] groups, String[] others, int[] othersOffset)
+  {
+    this.prefix = prefix;
+    this.sentences = sentences;
+    this.groups = groups;
+    this.others = others;
+    this.othersOffset = othersOffset;
+  }
+
+  /**
+   * @param prefix the device prefix, like <code>II</code>, or <code>*</code> for any.
+   * @param sentences the sentence ids, like <code>MWV</code>. null accepts everything.
+   */
+  public static SentenceFilter compile(String prefix, String[] sentences)
+  {
+    if (sentences == null)
+      return new SentenceFilter(prefix, null, null, null, null);
+    String p = (prefix == null ? "" : prefix);
+    boolean anyPrefix = ANY_PREFIX.equals(p.trim());
+    List<Group> groups = new ArrayList<Group>();
+    List<String> others = new ArrayList<String>();
+    List<Integer> othersOffset = new ArrayList<Integer>();
+    for (String id : sentences)
+    {
+      if (id.length() == 5)                                       // Fully qualified
+        add(groups, others, othersOffset, 1, id);
+      if (!anyPrefix)                                             // Specific prefix
+        add(groups, others, othersOffset, 1, p + id);
+      else                                                        // Any prefix
+        add(groups, others, othersOffset, 3, id);
+    }
+    int[] offsets = new int[othersOffset.size()];
+    for (int i=0; i<offsets.length; i++)
+      offsets[i] = othersOffset.get(i);
+    return new SentenceFilter(prefix,
+                              sentences,
+                              groups.toArray(new Group[groups.size()]),
+                              others.toArray(new String[others.size()]),
+                              offsets);
+  }
+
+  private static void add(List<Group> groups, List<String> others, List<Integer> othersOffset, int offset, String id)
+  {
+    long key = (id.length() <= MAX_PACKED_LENGTH ? pack(id, 0, id.length()) : 0L);
+    if (key == 0L)
+    {
+      others.add(id);
+      othersOffset.add(offset);
+      return;
+    }
+    for (Group g : groups)
+    {
+      if (g.offset == offset && g.length == id.length())
+      {
+        g.add(key);
+        return;
+      }
+    }
+    Group g = new Group(offset, id.length());
+    g.add(key);
+    groups.add(g);
+  }
+
+  /**
+   * @return the packed chars, 0 if one of them does not fit in 8 bits.
+   */
+  private static long pack(CharSequence cs, int from, int len)
+  {
+    long key = PRESENT;
+    for (int i=0; i<len; i++)
+    {
+      char c = cs.charAt(from + i);
+      if (c > 0xFF)
+        return 0L;
+      key |= ((long)c) << (8 * i);
+    }
+    return key;
+  }
+
+  private static int slot(long key, int mask)
+  {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int)(h ^ (h >>> 32)) & mask;
+  }
+
+  public String getPrefix()
+  { return this.prefix; }
+
+  public String[] getSentences()
+  { return this.sentences; }
+
+  /**
+   * @param sentence starting with its '$' (or '!')
+   */
+  public boolean accept(CharSequence sentence)
+  {
+    return accept(sentence, 0);
+  }
+
+  /**
+   * @param cs the sentence starts at from, with its '$' (or '!'), not checked here.
+   */
+  public boolean accept(CharSequence cs, int from)
+  {
+    if (groups == null)
+      return true; // Take all
+    for (int i=0; i<groups.length; i++)
+    {
+      if (groups[i].accept(cs, from))
+        return true;
+    }
+    for (int i=0; i<others.length; i++)
+    {
+      if (regionMatches(cs, from + othersOffset[i], others[i]))
+        return true;
+    }
+    return false;
+  }
+
+  private static boolean regionMatches(CharSequence cs, int offset, String str)
+  {
+    if (offset + str.length() > cs.length())
+      return false;
+    for (int i=0; i<str.length(); i++)
+    {
+      if (cs.charAt(offset + i) != str.charAt(i))
+        return false;
+    }
+    return true;
+  }
+}
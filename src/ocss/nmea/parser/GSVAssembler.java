@@ -0,0 +1,157 @@
+package ocss.nmea.parser;
+
+/**
+ * Puts the GSV sentences of a cycle together, like {@link StringParsers#parseGSV(String)},
+ * without any shared state: use one assembler per source (and per talker, GP and GL cycles
+ * are distinct). An assembler is not thread-safe, the snapshots it produces are.
+ * <pre>
+ * GSVAssembler assembler = new GSVAssembler();
+ * ...
+ * SatellitesInView sats = assembler.add(sentence);
+ * if (sats != null) // The cycle is complete
+ *   ...
+ * </pre>
+ * The satellites are kept in tables indexed by PRN, nothing is allocated until a cycle is complete.
+ * A cycle missing a sentence is dropped.
+ */
+public final class GSVAssembler
+{
+  public final static int MAX_PRN = 255;
+
+  private final static int DATA_OFFSET = 3; // num of mess, mess num, Total num of SVs.
+  private final static int NB_DATA     = 4; // SV num, elev, Z, SNR
+
+  private final NMEAFields fields = new NMEAFields();
+  private final int[] elevation = new int[MAX_PRN + 1];
+  private final int[] azimuth   = new int[MAX_PRN + 1];
+  private final int[] snr       = new int[MAX_PRN + 1];
+  private final long[] present  = new long[(MAX_PRN + 64) / 64];
+  private int count = 0;
+
+  private int expected = 1; // Next message number, 1 when waiting for a new cycle
+  private int inView = 0;
+
+  public GSVAssembler()
+  {
+  }
+
+  /**
+   * @param sentence a GSV sentence, like <code>$GPGSV,3,1,11,03,03,111,00,...*74</code>.
+   *                 The checksum is not checked.
+   * @return the satellites, if the sentence completes a cycle, null otherwise.
+   */
+  public SatellitesInView add(CharSequence sentence)
+  {
+    int nbMess, messNum, nbSVinView;
+    try
+    {
+      fields.reset(sentence);
+      nbMess = fields.parseInt(1);
+      messNum = fields.parseInt(2);
+      nbSVinView = fields.parseInt(3);
+    }
+    catch (RuntimeException ex) // Garbage
+    {
+      reset();
+      return null;
+    }
+    if (messNum == 1)
+    {
+      clear();
+      inView = nbSVinView;
+    }
+    else if (messNum != expected)
+    {
+      reset(); // A sentence is missing
+      return null;
+    }
+    for (int indexInSentence=1; indexInSentence<=NB_DATA; indexInSentence++)
+    {
+      int rnkInView = ((messNum - 1) * NB_DATA) + indexInSentence;
+      if (rnkInView > nbSVinView)
+        break;
+      int first = DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 1;
+      int prn = field(first);
+      if (prn < 1 || prn > MAX_PRN)
+        continue;
+      if ((present[prn >> 6] & (1L << prn)) == 0L)
+      {
+        present[prn >> 6] |= (1L << prn);
+        count++;
+      }
+      elevation[prn] = field(first + 1);
+      azimuth[prn]   = field(first + 2);
+      snr[prn]       = field(first + 3);
+    }
+    if (messNum < nbMess)
+    {
+      expected = messNum + 1;
+      return null;
+    }
+    if (messNum > nbMess)
+    {
+      reset();
+      return null;
+    }
+    SatellitesInView snapshot = snapshot();
+    reset();
+    return snapshot;
+  }
+
+  /**
+   * Drops the cycle in progress.
+   */
+  public void reset()
+  {
+    expected = 1;
+    clear();
+  }
+
+  private void clear()
+  {
+    for (int i=0; i<present.length; i++)
+      present[i] = 0L;
+    count = 0;
+  }
+
+  /**
+   * @return the int value of a field, 0 if it is empty or not a number (like StringParsers).
+   */
+  private int field(int i)
+  {
+    if (fields.isEmpty(i))
+      return 0;
+    try
+    {
+      return fields.parseInt(i);
+    }
+    catch (NumberFormatException nfe)
+    {
+      return 0;
+    }
+  }
+
+  private SatellitesInView snapshot()
+  {
+    int[] p = new int[count];
+    int[] e = new int[count];
+    int[] z = new int[count];
+    int[] s = new int[count];
+    int n = 0;
+    for (int w=0; w<present.length; w++)
+    {
+      long bits = present[w];
+      while (bits != 0L)
+      {
+        int prn = (w << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= (bits - 1L);
+        p[n] = prn;
+        e[n] = elevation[prn];
+        z[n] = azimuth[prn];
+        s[n] = snr[prn];
+        n++;
+      }
+    }
+    return new SatellitesInView(inView, p, e, z, s);
+  }
+}
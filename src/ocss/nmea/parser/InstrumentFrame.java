@@ -0,0 +1,308 @@
+package ocss.nmea.parser;
+
+/**
+ * The last known values of the instruments, in primitive fields, filled in place by an {@link InstrumentFrameParser}.
+ * <br>
+ * One frame is reused for the whole stream: nothing is created when a sentence comes in,
+ * unlike {@link RMC}, {@link GeoPos}, {@link Speed}, {@link Angle360}... that are created for each sentence.
+ * The values are NaN until a sentence gives them, and the {@link #getUpdated()} flags tell which
+ * ones were set since the last {@link #clearUpdated()}.
+ * <pre>
+ * InstrumentFrame frame = new InstrumentFrame();
+ * InstrumentFrameParser parser = new InstrumentFrameParser();
+ * ...
+ * if (parser.parse(sentence, frame) &amp;&amp; frame.isUpdated(InstrumentFrame.AWS | InstrumentFrame.AWA))
+ * {
+ *   ...
+ *   frame.clearUpdated();
+ * }
+ * </pre>
+ * Speeds are in knots, angles in degrees, depth in meters, temperatures in Celcius, pressure in hPa (mb).
+ * <br>
+ * Not thread safe. To hand the values to another thread, {@link #copyFrom(InstrumentFrame)} into a frame of its own.
+ */
+public final class InstrumentFrame
+{
+  // Flags of the updated values
+  public final static int POSITION    = 1 << 0;
+  public final static int SOG         = 1 << 1;
+  public final static int COG         = 1 << 2;
+  public final static int HDT         = 1 << 3;
+  public final static int HDM         = 1 << 4;
+  public final static int DECLINATION = 1 << 5;
+  public final static int BSP         = 1 << 6;
+  public final static int AWS         = 1 << 7;
+  public final static int AWA         = 1 << 8;
+  public final static int TWS         = 1 << 9;
+  public final static int TWA         = 1 << 10;
+  public final static int DEPTH       = 1 << 11;
+  public final static int WATER_TEMP  = 1 << 12;
+  public final static int AIR_TEMP    = 1 << 13;
+  public final static int PRESSURE    = 1 << 14;
+  public final static int LOG         = 1 << 15;
+  public final static int TIME        = 1 << 16;
+
+  private double lat, lng;
+  private double sog, cog;
+  private double hdt, hdm, declination;
+  private double bsp;
+  private double aws, awa;
+  private double tws, twa;
+  private double depth;
+  private double waterTemp, airTemp;
+  private double pressure;
+  private double log;
+  private long time;
+
+  private int updated = 0;
+
+  public InstrumentFrame()
+  {
+    reset();
+  }
+
+  /**
+   * Forgets all the values.
+   */
+  public void reset()
+  {
+    lat = lng = Double.NaN;
+    sog = cog = Double.NaN;
+    hdt = hdm = declination = Double.NaN;
+    bsp = Double.NaN;
+    aws = awa = Double.NaN;
+    tws = twa = Double.NaN;
+    depth = Double.NaN;
+    waterTemp = airTemp = Double.NaN;
+    pressure = Double.NaN;
+    log = Double.NaN;
+    time = NMEATime.NO_TIME;
+    updated = 0;
+  }
+
+  /**
+   * @return the flags ({@link #POSITION}, {@link #SOG}...) of the values set since the last {@link #clearUpdated()}
+   */
+  public int getUpdated()
+  { return this.updated; }
+
+  /**
+   * @return true if all the given values were set since the last {@link #clearUpdated()}
+   */
+  public boolean isUpdated(int flags)
+  { return (updated & flags) == flags; }
+
+  public void clearUpdated()
+  { updated = 0; }
+
+  /**
+   * Copies the values, and the flags, of another frame.
+   */
+  public void copyFrom(InstrumentFrame other)
+  {
+    lat = other.lat;
+    lng = other.lng;
+    sog = other.sog;
+    cog = other.cog;
+    hdt = other.hdt;
+    hdm = other.hdm;
+    declination = other.declination;
+    bsp = other.bsp;
+    aws = other.aws;
+    awa = other.awa;
+    tws = other.tws;
+    twa = other.twa;
+    depth = other.depth;
+    waterTemp = other.waterTemp;
+    airTemp = other.airTemp;
+    pressure = other.pressure;
+    log = other.log;
+    time = other.time;
+    updated = other.updated;
+  }
+
+  public double getLatitude()
+  { return this.lat; }
+
+  public double getLongitude()
+  { return this.lng; }
+
+  public void setPosition(double lat, double lng)
+  {
+    this.lat = lat;
+    this.lng = lng;
+    updated |= POSITION;
+  }
+
+  public double getSOG()
+  { return this.sog; }
+
+  public void setSOG(double sog)
+  {
+    this.sog = sog;
+    updated |= SOG;
+  }
+
+  public double getCOG()
+  { return this.cog; }
+
+  public void setCOG(double cog)
+  {
+    this.cog = cog;
+    updated |= COG;
+  }
+
+  /**
+   * @return the true heading
+   */
+  public double getHDT()
+  { return this.hdt; }
+
+  public void setHDT(double hdt)
+  {
+    this.hdt = hdt;
+    updated |= HDT;
+  }
+
+  /**
+   * @return the magnetic heading
+   */
+  public double getHDM()
+  { return this.hdm; }
+
+  public void setHDM(double hdm)
+  {
+    this.hdm = hdm;
+    updated |= HDM;
+  }
+
+  /**
+   * @return negative in the West
+   */
+  public double getDeclination()
+  { return this.declination; }
+
+  public void setDeclination(double declination)
+  {
+    this.declination = declination;
+    updated |= DECLINATION;
+  }
+
+  public double getBSP()
+  { return this.bsp; }
+
+  public void setBSP(double bsp)
+  {
+    this.bsp = bsp;
+    updated |= BSP;
+  }
+
+  public double getAWS()
+  { return this.aws; }
+
+  public void setAWS(double aws)
+  {
+    this.aws = aws;
+    updated |= AWS;
+  }
+
+  /**
+   * @return from 0 to 360
+   */
+  public double getAWA()
+  { return this.awa; }
+
+  public void setAWA(double awa)
+  {
+    this.awa = awa;
+    updated |= AWA;
+  }
+
+  public double getTWS()
+  { return this.tws; }
+
+  public void setTWS(double tws)
+  {
+    this.tws = tws;
+    updated |= TWS;
+  }
+
+  /**
+   * @return from 0 to 360
+   */
+  public double getTWA()
+  { return this.twa; }
+
+  public void setTWA(double twa)
+  {
+    this.twa = twa;
+    updated |= TWA;
+  }
+
+  public double getDepth()
+  { return this.depth; }
+
+  public void setDepth(double depth)
+  {
+    this.depth = depth;
+    updated |= DEPTH;
+  }
+
+  public double getWaterTemp()
+  { return this.waterTemp; }
+
+  public void setWaterTemp(double waterTemp)
+  {
+    this.waterTemp = waterTemp;
+    updated |= WATER_TEMP;
+  }
+
+  public double getAirTemp()
+  { return this.airTemp; }
+
+  public void setAirTemp(double airTemp)
+  {
+    this.airTemp = airTemp;
+    updated |= AIR_TEMP;
+  }
+
+  public double getPressure()
+  { return this.pressure; }
+
+  public void setPressure(double pressure)
+  {
+    this.pressure = pressure;
+    updated |= PRESSURE;
+  }
+
+  /**
+   * @return the total distance, in nautical miles
+   */
+  public double getLog()
+  { return this.log; }
+
+  public void setLog(double log)
+  {
+    this.log = log;
+    updated |= LOG;
+  }
+
+  /**
+   * @return UTC, in ms since 1970, {@link NMEATime#NO_TIME} if not known
+   */
+  public long getTime()
+  { return this.time; }
+
+  public void setTime(long time)
+  {
+    this.time = time;
+    updated |= TIME;
+  }
+
+  public String toString()
+  {
+    return "Pos:" + lat + "/" + lng + ", SOG:" + sog + ", COG:" + cog + ", HDT:" + hdt + ", HDM:" + hdm + ", D:" + declination +
+           ", BSP:" + bsp + ", AWS:" + aws + ", AWA:" + awa + ", TWS:" + tws + ", TWA:" + twa + ", Depth:" + depth +
+           ", Water:" + waterTemp + ", Air:" + airTemp + ", PRMSL:" + pressure + ", Log:" + log + ", Time:" + time;
+  }
+}
@@ -0,0 +1,232 @@
+package ocss.nmea.parser;
+
+/**
+ * Fills an {@link InstrumentFrame} with the values of the sentences, in place.
+ * <br>
+ * The checksum is validated, the fields are indexed with an {@link NMEAFields},
+ * and the numbers are parsed where they are, no object is created.
+ * Understands RMC, GLL, VTG, HDT, HDM, HDG, VHW, MWV, VWR, DBT, DPT, MTW, MTA, MMB, and VLW.
+ * A value is set only if its field is not empty. The sentences with a void status are skipped.
+ * <br>
+ * Not thread safe, one instance per thread (or per source).
+ */
+public final class InstrumentFrameParser
+{
+  private final static int ID_OFFSET = 3; // $ + 2 chars of talker id
+
+  private final static int RMC = SentenceDispatcher.index("RMC", 0);
+  private final static int GLL = SentenceDispatcher.index("GLL", 0);
+  private final static int VTG = SentenceDispatcher.index("VTG", 0);
+  private final static int HDT = SentenceDispatcher.index("HDT", 0);
+  private final static int HDM = SentenceDispatcher.index("HDM", 0);
+  private final static int HDG = SentenceDispatcher.index("HDG", 0);
+  private final static int VHW = SentenceDispatcher.index("VHW", 0);
+  private final static int MWV = SentenceDispatcher.index("MWV", 0);
+  private final static int VWR = SentenceDispatcher.index("VWR", 0);
+  private final static int DBT = SentenceDispatcher.index("DBT", 0);
+  private final static int DPT = SentenceDispatcher.index("DPT", 0);
+  private final static int MTW = SentenceDispatcher.index("MTW", 0);
+  private final static int MTA = SentenceDispatcher.index("MTA", 0);
+  private final static int MMB = SentenceDispatcher.index("MMB", 0);
+  private final static int VLW = SentenceDispatcher.index("VLW", 0);
+
+  private final static double KMH_TO_KNOTS = 1d / 1.852;
+  private final static double MS_TO_KNOTS  = 3.6 / 1.852;
+
+  private final NMEAFields fields = new NMEAFields();
+  private final NMEATime time = new NMEATime();
+
+  public InstrumentFrameParser()
+  {
+  }
+
+  /**
+   * @param sentence like <code>$IIMWV,...*hh</code>, the trailing CR LF are ignored.
+   * @return true if the frame was updated: the sentence is valid, known, and not void.
+   */
+  public boolean parse(CharSequence sentence, InstrumentFrame frame)
+  {
+    int len = sentence.length();
+    if (len < ID_OFFSET + 3 || sentence.charAt(1) == 'P') // Proprietary
+      return false;
+    int id = SentenceDispatcher.index(sentence, ID_OFFSET);
+    if (id == SentenceDispatcher.NO_INDEX || !NMEAChecksum.isValid(sentence, 0, len))
+      return false;
+    int star = 0;
+    while (sentence.charAt(star) != '*') // There is one, the checksum is valid
+      star++;
+    fields.reset(sentence, 0, star);
+    if (fields.end(0) != ID_OFFSET + 3)
+      return false;
+
+    if (id == RMC)
+      return rmc(frame);
+    if (id == MWV)
+      return mwv(frame);
+    if (id == VHW)
+    {
+      double hdt = number(1), hdm = number(3), bsp = number(5);
+      if (!Double.isNaN(hdt))
+        frame.setHDT(hdt);
+      if (!Double.isNaN(hdm))
+        frame.setHDM(hdm);
+      if (!Double.isNaN(bsp))
+        frame.setBSP(bsp);
+      return !(Double.isNaN(hdt) && Double.isNaN(hdm) && Double.isNaN(bsp)); // Something was set
+    }
+    if (id == HDG)
+    {
+      double heading = number(1);
+      if (Double.isNaN(heading))
+        return false;
+      double deviation = number(2);
+      if (!Double.isNaN(deviation))
+        heading += (letter(3) == 'W' ? -deviation : deviation);
+      frame.setHDM(heading);
+      double variation = number(4);
+      if (!Double.isNaN(variation))
+        frame.setDeclination(letter(5) == 'W' ? -variation : variation);
+      return true;
+    }
+    if (id == HDM)
+      return set(frame, InstrumentFrame.HDM, number(1));
+    if (id == HDT)
+      return set(frame, InstrumentFrame.HDT, number(1));
+    if (id == VTG)
+    {
+      double cog = number(1), sog = number(5);
+      if (!Double.isNaN(cog))
+        frame.setCOG(cog);
+      if (!Double.isNaN(sog))
+        frame.setSOG(sog);
+      return !(Double.isNaN(cog) && Double.isNaN(sog));
+    }
+    if (id == GLL)
+    {
+      if (letter(6) == 'V') // Void
+        return false;
+      double lat = SentenceView.degrees(fields, 1, 2, 'S');
+      double lng = SentenceView.degrees(fields, 3, 3, 'W');
+      if (Double.isNaN(lat) || Double.isNaN(lng))
+        return false;
+      frame.setPosition(lat, lng);
+      return true;
+    }
+    if (id == VWR)
+    {
+      double angle = number(1), speed = number(3);
+      if (!Double.isNaN(angle))
+        frame.setAWA(letter(2) == 'L' ? 360d - angle : angle);
+      if (!Double.isNaN(speed))
+        frame.setAWS(speed);
+      return !(Double.isNaN(angle) && Double.isNaN(speed));
+    }
+    if (id == DBT)
+      return set(frame, InstrumentFrame.DEPTH, number(3));
+    if (id == DPT)
+    {
+      double depth = number(1);
+      double offset = number(2);
+      return set(frame, InstrumentFrame.DEPTH, Double.isNaN(offset) ? depth : depth + offset); // Like StringParsers.parseDPT
+    }
+    if (id == MTW)
+      return set(frame, InstrumentFrame.WATER_TEMP, number(1));
+    if (id == MTA)
+      return set(frame, InstrumentFrame.AIR_TEMP, number(1));
+    if (id == MMB)
+    {
+      double bars = number(3);
+      return set(frame, InstrumentFrame.PRESSURE, Double.isNaN(bars) ? number(1) * Pressure.HPA_TO_INHG : bars * 1000d);
+    }
+    if (id == VLW)
+      return set(frame, InstrumentFrame.LOG, number(1));
+    return false;
+  }
+
+  private boolean rmc(InstrumentFrame frame)
+  {
+    if (letter(2) != 'A') // Void
+      return false;
+    double lat = SentenceView.degrees(fields, 3, 2, 'S');
+    double lng = SentenceView.degrees(fields, 5, 3, 'W');
+    if (!Double.isNaN(lat) && !Double.isNaN(lng))
+      frame.setPosition(lat, lng);
+    double sog = number(7), cog = number(8), d = number(10);
+    if (!Double.isNaN(sog))
+      frame.setSOG(sog);
+    if (!Double.isNaN(cog))
+      frame.setCOG(cog);
+    if (!Double.isNaN(d))
+      frame.setDeclination(letter(11) == 'W' ? -d : d);
+    if (!fields.isEmpty(1) && !fields.isEmpty(9))
+    {
+      try
+      {
+        CharSequence data = fields.data();
+        frame.setTime(time.epochMillis(data, fields.start(1), fields.end(1), data, fields.start(9), fields.end(9)));
+      }
+      catch (RuntimeException ex) // Not numbers, no time
+      {
+      }
+    }
+    return true;
+  }
+
+  private boolean mwv(InstrumentFrame frame)
+  {
+    if (letter(5) != 'A') // Not available
+      return false;
+    char ref = letter(2);
+    if (ref != 'R' && ref != 'T')
+      return false;
+    double angle = number(1);
+    double speed = number(3);
+    char unit = letter(4);
+    if (unit == 'K')
+      speed *= KMH_TO_KNOTS;
+    else if (unit == 'M')
+      speed *= MS_TO_KNOTS;
+    if (!Double.isNaN(angle))
+    {
+      if (ref == 'R')
+        frame.setAWA(angle);
+      else
+        frame.setTWA(angle);
+    }
+    if (!Double.isNaN(speed))
+    {
+      if (ref == 'R')
+        frame.setAWS(speed);
+      else
+        frame.setTWS(speed);
+    }
+    return true;
+  }
+
+  /**
+   * Sets one value, if it is a number.
+   */
+  private static boolean set(InstrumentFrame frame, int flag, double value)
+  {
+    if (Double.isNaN(value))
+      return false;
+    switch (flag)
+    {
+      case InstrumentFrame.HDM:        frame.setHDM(value); break;
+      case InstrumentFrame.HDT:        frame.setHDT(value); break;
+      case InstrumentFrame.DEPTH:      frame.setDepth(value); break;
+      case InstrumentFrame.WATER_TEMP: frame.setWaterTemp(value); break;
+      case InstrumentFrame.AIR_TEMP:   frame.setAirTemp(value); break;
+      case InstrumentFrame.PRESSURE:   frame.setPressure(value); break;
+      case InstrumentFrame.LOG:        frame.setLog(value); break;
+      default:                         return false;
+    }
+    return true;
+  }
+
+  private double number(int i)
+  { return SentenceView.number(fields, i); }
+
+  private char letter(int i)
+  { return SentenceView.letter(fields, i); }
+}
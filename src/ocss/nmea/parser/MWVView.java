@@ -0,0 +1,73 @@
+package ocss.nmea.parser;
+
+/**
+ * A view on an MWV sentence, see {@link SentenceView}.
+ * <pre>
+ *         1   2 3   4 5
+ *  $aaMWV,x.x,a,x.x,a,A*hh
+ *         |   | |   | |
+ *         |   | |   | status : A=data valid
+ *         |   | |   Wind Speed unit (K/M/N)
+ *         |   | Wind Speed
+ *         |   reference R=relative, T=true
+ *         Wind angle 0 to 360 degrees
+ * </pre>
+ * @see StringParsers#parseMWV(String)
+ */
+public class MWVView extends SentenceView
+{
+  private final static double KMH_TO_KNOTS = 1d / 1.852;
+  private final static double MS_TO_KNOTS  = 3.6 / 1.852;
+
+  public MWVView()
+  {
+    super("MWV");
+  }
+
+  /**
+   * @return false if the status is not <code>A</code>
+   */
+  public boolean isAvailable()
+  { return charAt(5) == 'A'; }
+
+  /**
+   * @return {@link StringParsers#APPARENT_WIND}, {@link StringParsers#TRUE_WIND}, or -1 if the reference is unknown.
+   */
+  public int getFlavor()
+  {
+    char ref = charAt(2);
+    return (ref == 'R' ? StringParsers.APPARENT_WIND : (ref == 'T' ? StringParsers.TRUE_WIND : -1));
+  }
+
+  /**
+   * @return in degrees, from 0 to 360
+   */
+  public double getAngle()
+  { return doubleAt(1); }
+
+  /**
+   * @return in the unit of {@link #getSpeedUnit()}
+   */
+  public double getSpeed()
+  { return doubleAt(3); }
+
+  /**
+   * @return <code>N</code>, <code>K</code>, or <code>M</code>
+   */
+  public char getSpeedUnit()
+  { return charAt(4); }
+
+  /**
+   * @return the speed, converted from km/h or m/s if needed. The unit is assumed to be knots if it is not given.
+   */
+  public double getSpeedInKnots()
+  {
+    double speed = getSpeed();
+    char unit = getSpeedUnit();
+    if (unit == 'K')
+      return speed * KMH_TO_KNOTS;
+    if (unit == 'M')
+      return speed * MS_TO_KNOTS;
+    return speed;
+  }
+}
@@ -0,0 +1,388 @@
+package ocss.nmea.parser;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a whole recorded log file, using several threads.
+ * <br>
+ * The file is cut in segments, each one starting at the beginning of a line. The segments are
+ * memory-mapped, and parsed in parallel on the given ExecutorService (a fixed thread pool,
+ * or a ForkJoinPool when available). The results are then merged, in the order of the file.
+ * <pre>
+ * ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+ * NMEABatchParser parser = new NMEABatchParser(executor);
+ * parser.register(SentenceType.RMC);
+ * parser.register(NMEABatchParser.GSV);
+ * NMEABatchParser.Result result = parser.parse("day.nmea");
+ * for (RMC rmc : result.get(SentenceType.RMC))
+ *   ...
+ * </pre>
+ * Only the sentences with a valid checksum are parsed.
+ * The GSV sentences depend on each other (a cycle is made of several sentences, possibly in two segments),
+ * they are only checked in parallel, and put together in sequence during the merge, by a {@link GSVAssembler}.
+ */
+public final class NMEABatchParser
+{
+  private final static int TABLE_SIZE = 26 * 26 * 26;
+  private final static int ID_OFFSET = 3;                          // $ + 2 chars of talker id
+  private final static long MIN_SEGMENT_SIZE = 1024L * 1024L;
+  private final static long MAX_SEGMENT_SIZE = 256L * 1024L * 1024L; // Mapped at once
+  private final static int MAX_LINE_LENGTH = 1024;                  // Longer lines are garbage
+
+  /**
+   * The complete GSV cycles. An entry is produced by the last sentence of each cycle.
+   * Used alone, parse() puts the cycles together per thread.
+   */
+  public final static SentenceType<SatellitesInView> GSV = new SentenceType<SatellitesInView>("GSV")
+    {
+      private final ThreadLocal<GSVAssembler> assembler = new ThreadLocal<GSVAssembler>()
+        {
+          protected GSVAssembler initialValue()
+          {
+            return new GSVAssembler();
+          }
+        };
+
+      public SatellitesInView parse(String sentence)
+      { return assembler.get().add(sentence); }
+    };
+
+  /**
+   * A parsed sentence.
+   */
+  public final static class Entry
+  {
+    private final SentenceType<?> type;
+    private long line;
+    private Object value;
+    private String sentence; // Only kept for the sentences parsed during the merge
+
+    Entry(SentenceType<?> type, long line, Object value, String sentence)
+    {
+      this.type = type;
+      this.line = line;
+      this.value = value;
+      this.sentence = sentence;
+    }
+
+    public SentenceType<?> getType()
+    { return this.type; }
+
+    /**
+     * @return the line number in the file, starting at 1.
+     */
+    public long getLine()
+    { return this.line; }
+
+    public Object getValue()
+    { return this.value; }
+  }
+
+  /**
+   * What a file is made of.
+   */
+  public final static class Result
+  {
+    private final List<Entry> entries;
+    private final long lines;
+    private final long invalid;
+
+    Result(List<Entry> entries, long lines, long invalid)
+    {
+      this.entries = Collections.unmodifiableList(entries);
+      this.lines = lines;
+      this.invalid = invalid;
+    }
+
+    /**
+     * @return all the parsed sentences, in the order of the file.
+     */
+    public List<Entry> getEntries()
+    { return this.entries; }
+
+    /**
+     * @return the parsed sentences of one type, in the order of the file.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(SentenceType<T> type)
+    {
+      List<T> list = new ArrayList<T>();
+      for (Entry entry : entries)
+      {
+        if (entry.type == type)
+          list.add((T)entry.value);
+      }
+      return list;
+    }
+
+    public long getLines()
+    { return this.lines; }
+
+    /**
+     * @return the number of registered sentences with a bad checksum, or that could not be parsed.
+     */
+    public long getInvalid()
+    { return this.invalid; }
+  }
+
+  /**
+   * What a segment is made of, with line numbers relative to the segment.
+   */
+  private final static class Segment
+  {
+    final List<Entry> entries = new ArrayList<Entry>();
+    long lines = 0L;
+    long invalid = 0L;
+  }
+
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final SentenceType<?>[] types = new SentenceType<?>[TABLE_SIZE];
+  private long segmentSize = 0L; // 0: depends on the file size
+
+  /**
+   * @param executor runs the segments
+   */
+  public NMEABatchParser(ExecutorService executor)
+  {
+    this(executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param executor runs the segments
+   * @param parallelism the number of threads of the executor. The file is cut in a few times more segments.
+   */
+  public NMEABatchParser(ExecutorService executor, int parallelism)
+  {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+    this.executor = executor;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * The sentences of this type will be parsed. Only one type per sentence id.
+   */
+  public void register(SentenceType<?> type)
+  {
+    types[SentenceDispatcher.index(type.getId(), 0)] = type;
+  }
+
+  /**
+   * Forces the size of the segments (mostly for tests).
+   * @param size in bytes, 0 to let it depend on the size of the file.
+   */
+  public void setSegmentSize(long size)
+  {
+    if (size < 0L || size > MAX_SEGMENT_SIZE)
+      throw new IllegalArgumentException("Invalid segment size " + size);
+    this.segmentSize = size;
+  }
+
+  /**
+   * Parses a file, and waits for the result.
+   */
+  public Result parse(String fileName) throws IOException, InterruptedException
+  {
+    RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+    try
+    {
+      final FileChannel channel = raf.getChannel();
+      long[] bounds = split(channel);
+      List<Future<Segment>> futures = new ArrayList<Future<Segment>>(bounds.length - 1);
+      for (int i=0; i<bounds.length - 1; i++)
+      {
+        final long from = bounds[i];
+        final long to = bounds[i + 1];
+        futures.add(executor.submit(new Callable<Segment>()
+          {
+            public Segment call() throws IOException
+            {
+              return parseSegment(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from));
+            }
+          }));
+      }
+      try
+      {
+        return merge(futures);
+      }
+      finally
+      {
+        for (Future<Segment> future : futures)
+          future.cancel(true); // Only if something went wrong
+      }
+    }
+    finally
+    {
+      raf.close();
+    }
+  }
+
+  /**
+   * @return the offsets where the segments begin, and the size of the file.
+   */
+  private long[] split(FileChannel channel) throws IOException
+  {
+    long size = channel.size();
+    long target = segmentSize;
+    if (target == 0L)
+      target = Math.min(MAX_SEGMENT_SIZE, Math.max(MIN_SEGMENT_SIZE, size / (parallelism * 4L)));
+    List<Long> bounds = new ArrayList<Long>();
+    bounds.add(0L);
+    ByteBuffer bb = ByteBuffer.allocate(MAX_LINE_LENGTH);
+    long position = 0L;
+    while (size - position > target)
+    {
+      // The next segment begins after the first new line found from the nominal position
+      long next = position + target;
+      long start = -1L;
+      while (start == -1L && next < size)
+      {
+        bb.clear();
+        int n = channel.read(bb, next);
+        if (n <= 0)
+          break;
+        for (int i=0; i<n; i++)
+        {
+          if (bb.get(i) == '\n')
+          {
+            start = next + i + 1;
+            break;
+          }
+        }
+        next += n;
+      }
+      if (start == -1L || start >= size)
+        break;
+      bounds.add(start);
+      position = start;
+    }
+    bounds.add(size);
+    long[] array = new long[bounds.size()];
+    for (int i=0; i<array.length; i++)
+      array[i] = bounds.get(i);
+    return array;
+  }
+
+  /**
+   * Runs in parallel, the GSV sentences are checked, and kept for the merge.
+   */
+  private Segment parseSegment(MappedByteBuffer bb)
+  {
+    Segment segment = new Segment();
+    char[] line = new char[MAX_LINE_LENGTH];
+    int limit = bb.limit();
+    int from = 0;
+    while (from < limit)
+    {
+      int to = from;
+      while (to < limit && bb.get(to) != '\n')
+        to++;
+      segment.lines++;
+      parseLine(bb, from, to, line, segment);
+      from = to + 1;
+    }
+    return segment;
+  }
+
+  private void parseLine(ByteBuffer bb, int from, int to, char[] line, Segment segment)
+  {
+    while (to > from && (bb.get(to - 1) & 0xFF) <= ' ') // CR
+      to--;
+    if (to - from < ID_OFFSET + 3 || bb.get(from) != '$' || bb.get(from + 1) == 'P') // Proprietary
+      return;
+    int c0 = bb.get(from + ID_OFFSET) - 'A';
+    int c1 = bb.get(from + ID_OFFSET + 1) - 'A';
+    int c2 = bb.get(from + ID_OFFSET + 2) - 'A';
+    if ((c0 | c1 | c2) < 0 || c0 >= 26 || c1 >= 26 || c2 >= 26)
+      return;
+    SentenceType<?> type = types[(((c0 * 26) + c1) * 26) + c2];
+    if (type == null)
+      return;
+    if (to - from > MAX_LINE_LENGTH || !NMEAChecksum.isValid(bb, from, to))
+    {
+      segment.invalid++;
+      return;
+    }
+    int len = to - from;
+    for (int i=0; i<len; i++)
+      line[i] = (char)(bb.get(from + i) & 0xFF);
+    String sentence = new String(line, 0, len);
+    if (type == GSV)
+    {
+      segment.entries.add(new Entry(type, segment.lines, null, sentence));
+      return;
+    }
+    Object value = null;
+    try
+    {
+      value = type.parse(sentence);
+    }
+    catch (Exception ex)
+    {
+      // Counted below
+    }
+    if (value == null)
+      segment.invalid++;
+    else
+      segment.entries.add(new Entry(type, segment.lines, value, null));
+  }
+
+  /**
+   * Puts the segments back in order, numbers the lines, and parses the GSV cycles.
+   */
+  private Result merge(List<Future<Segment>> futures) throws IOException, InterruptedException
+  {
+    List<Entry> entries = new ArrayList<Entry>();
+    GSVAssembler assembler = new GSVAssembler();
+    long lines = 0L;
+    long invalid = 0L;
+    for (Future<Segment> future : futures)
+    {
+      Segment segment;
+      try
+      {
+        segment = future.get();
+      }
+      catch (ExecutionException ee)
+      {
+        Throwable cause = ee.getCause();
+        if (cause instanceof IOException)
+          throw (IOException)cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException)cause;
+        if (cause instanceof Error)
+          throw (Error)cause;
+        throw new RuntimeException(cause);
+      }
+      for (Entry entry : segment.entries)
+      {
+        entry.line += lines;
+        if (entry.type == GSV)
+        {
+          entry.value = assembler.add(entry.sentence); // The complete cycle, or null
+          entry.sentence = null;
+          if (entry.value == null)
+            continue;
+        }
+        entries.add(entry);
+      }
+      lines += segment.lines;
+      invalid += segment.invalid;
+    }
+    return new Result(entries, lines, invalid);
+  }
+}
@@ -0,0 +1,189 @@
+package ocss.nmea.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The NMEA checksum (the XOR of all the characters between the leading '$' or '!' and the '*'),
+ * computed and validated in place, on a range of chars or bytes, without creating any String.
+ * <pre>
+ *  $GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A
+ *   |                                                              | ||
+ *   from + 1                                                   star  two hex digits
+ * </pre>
+ * The two hex digits are decoded with a lookup table.
+ * On bytes, the XOR is done 8 bytes at a time in a long, folded at the end.
+ * <br>
+ * The leading and trailing characters below or equal to ' ' (like the CR LF) are ignored, as <code>String.trim()</code> does.
+ */
+public final class NMEAChecksum
+{
+  public final static int NONE = -1;
+
+  // Result of check
+  final static int INVALID   = 0;
+  final static int VALID     = 1;
+  final static int UNDECIDED = -1; // Not the usual two hex digits, or nothing to check
+
+  private final static byte[] HEX = new byte[128];
+  static
+  {
+    for (int i=0; i<HEX.length; i++)
+      HEX[i] = -1;
+    for (int i=0; i<10; i++)
+      HEX['0' + i] = (byte)i;
+    for (int i=0; i<6; i++)
+    {
+      HEX['A' + i] = (byte)(10 + i);
+      HEX['a' + i] = (byte)(10 + i);
+    }
+  }
+
+  private NMEAChecksum()
+  {
+  }
+
+  /**
+   * @return the value of the two hex digits, {@link #NONE} if one of them is not a hex digit.
+   */
+  public static int hex(int hi, int lo)
+  {
+    if (hi < 0 || hi >= 128 || lo < 0 || lo >= 128)
+      return NONE;
+    int h = HEX[hi], l = HEX[lo];
+    return ((h | l) < 0 ? NONE : (h << 4) | l);
+  }
+
+  /**
+   * @return the XOR of the chars in [from, to[
+   */
+  public static int xor(CharSequence cs, int from, int to)
+  {
+    int cs1 = 0, cs2 = 0;
+    int i = from;
+    for (; i+1<to; i+=2)
+    {
+      cs1 ^= cs.charAt(i);
+      cs2 ^= cs.charAt(i + 1);
+    }
+    if (i < to)
+      cs1 ^= cs.charAt(i);
+    return cs1 ^ cs2;
+  }
+
+  /**
+   * @return the XOR of the bytes in [from, to[, between 0 and 255
+   */
+  public static int xor(byte[] ba, int from, int to)
+  {
+    return xor(ByteBuffer.wrap(ba), from, to);
+  }
+
+  /**
+   * Absolute indexes, the position of the buffer is not used, and not changed.
+   * @return the XOR of the bytes in [from, to[, between 0 and 255
+   */
+  public static int xor(ByteBuffer bb, int from, int to)
+  {
+    long acc = 0L;
+    int i = from;
+    for (; i+8<=to; i+=8)
+      acc ^= bb.getLong(i); // The byte order does not matter, the 8 lanes are folded below
+    acc ^= (acc >>> 32);
+    acc ^= (acc >>> 16);
+    acc ^= (acc >>> 8);
+    int cs = (int)acc;
+    for (; i<to; i++)
+      cs ^= bb.get(i);
+    return cs & 0xFF;
+  }
+
+  /**
+   * @return the checksum the sentence in [from, to[ ends with, {@link #NONE} if there is none,
+   * or if it is not made of two hex digits.
+   */
+  public static int declared(CharSequence cs, int from, int to)
+  {
+    while (to > from && cs.charAt(to - 1) <= ' ')
+      to--;
+    int star = indexOfStar(cs, from, to);
+    if (star < 0 || to - star != 3)
+      return NONE;
+    return hex(cs.charAt(star + 1), cs.charAt(star + 2));
+  }
+
+  /**
+   * @param cs like <code>$GPRMC,...*6A</code>, the first character is not part of the checksum.
+   * @return true if the sentence in [from, to[ ends with the right checksum.
+   */
+  public static boolean isValid(CharSequence cs, int from, int to)
+  {
+    return check(cs, from, to) == VALID;
+  }
+
+  /**
+   * @param ba like <code>$GPRMC,...*6A</code>, the first byte is not part of the checksum.
+   * @return true if the sentence in [from, to[ ends with the right checksum.
+   */
+  public static boolean isValid(byte[] ba, int from, int to)
+  {
+    return isValid(ByteBuffer.wrap(ba), from, to);
+  }
+
+  /**
+   * Absolute indexes, the position of the buffer is not used, and not changed.
+   * @param bb like <code>$GPRMC,...*6A</code>, the first byte is not part of the checksum.
+   * @return true if the sentence in [from, to[ ends with the right checksum.
+   */
+  public static boolean isValid(ByteBuffer bb, int from, int to)
+  {
+    while (from < to && (bb.get(from) & 0xFF) <= ' ')
+      from++;
+    while (to > from && (bb.get(to - 1) & 0xFF) <= ' ')
+      to--;
+    int star = -1;
+    for (int i=from; i<to; i++)
+    {
+      if (bb.get(i) == '*')
+      {
+        star = i;
+        break;
+      }
+    }
+    if (star - from < 2 || to - star != 3)
+      return false;
+    int expected = hex(bb.get(star + 1) & 0xFF, bb.get(star + 2) & 0xFF);
+    return expected != NONE && xor(bb, from + 1, star) == expected;
+  }
+
+  /**
+   * Only decides the usual case, a non empty sentence followed by '*' and two hex digits,
+   * the way <code>StringParsers.validCheckSum</code> would.
+   * @return {@link #VALID}, {@link #INVALID}, or {@link #UNDECIDED}
+   */
+  static int check(CharSequence cs, int from, int to)
+  {
+    while (from < to && cs.charAt(from) <= ' ')
+      from++;
+    while (to > from && cs.charAt(to - 1) <= ' ')
+      to--;
+    int star = indexOfStar(cs, from, to);
+    if (star < 0)
+      return INVALID;
+    if (star - from < 2 || to - star != 3)
+      return UNDECIDED;
+    int expected = hex(cs.charAt(star + 1), cs.charAt(star + 2));
+    if (expected == NONE)
+      return UNDECIDED;
+    return (xor(cs, from + 1, star) == expected ? VALID : INVALID);
+  }
+
+  private static int indexOfStar(CharSequence cs, int from, int to)
+  {
+    for (int i=from; i<to; i++)
+    {
+      if (cs.charAt(i) == '*')
+        return i;
+    }
+    return -1;
+  }
+}
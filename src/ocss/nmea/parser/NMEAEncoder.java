@@ -0,0 +1,611 @@
+package ocss.nmea.parser;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import java.util.Date;
+
+/**
+ * Writes the sentences of {@link StringGenerator} straight into a StringBuilder or a ByteBuffer.
+ * <br>
+ * The numbers are formatted in fixed point, rounded half-even like the DecimalFormats of StringGenerator
+ * (same digits), and the checksum is computed while the characters are written. No String, no
+ * formatter is created (except for the XDR values without a format, written with Double.toString).
+ * <pre>
+ * NMEAEncoder encoder = new NMEAEncoder().setEOS("\r\n");
+ * ByteBuffer bb = ByteBuffer.allocateDirect(8192);
+ * encoder.to(bb);
+ * encoder.generateRMC("II", System.currentTimeMillis(), 38.25, -122.5, 6.7, 210, 3d);
+ * encoder.generateMWV("II", 23.45, 110);
+ * </pre>
+ * An encoder is not thread-safe, use one per thread (they are cheap).
+ * <br>
+ * Unlike StringGenerator:
+ * <ul>
+ *   <li>the time and date are UTC, whatever the default time zone;</li>
+ *   <li>the decimal separator is always '.', whatever the default locale;</li>
+ *   <li>NaN and infinite values are written as empty fields.</li>
+ * </ul>
+ * If a ByteBuffer is too small for a sentence, a BufferOverflowException is thrown,
+ * and the buffer is left as it was before the sentence.
+ */
+public final class NMEAEncoder
+{
+  public final static double NO_VALUE = -Double.MAX_VALUE;
+
+  private final static char[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+  private final static long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L };
+  private final static double MAX_FAST = 1e15; // Above, the product loses the units
+
+  private final static long MS_PER_DAY = 86400000L;
+  private final static double KNOTS_TO_KMH = 1.852;
+  private final static double KNOTS_TO_MS  = 1.852 * 0.27777777;
+
+  private StringBuilder sb = null;
+  private ByteBuffer bb = null;
+  private String eos = "";
+
+  private int checksum = 0;
+  private int start = 0; // Where the current sentence begins, to undo it
+
+  public NMEAEncoder()
+  {
+  }
+
+  /**
+   * @param eos written after each sentence, nothing by default (like StringGenerator).
+   * @return this
+   */
+  public NMEAEncoder setEOS(String eos)
+  {
+    this.eos = (eos == null ? "" : eos);
+    return this;
+  }
+
+  public String getEOS()
+  { return this.eos; }
+
+  /**
+   * The next sentences are appended to this StringBuilder.
+   * @return this
+   */
+  public NMEAEncoder to(StringBuilder sb)
+  {
+    this.sb = sb;
+    this.bb = null;
+    return this;
+  }
+
+  /**
+   * The next sentences are put in this ByteBuffer, at its position.
+   * @return this
+   */
+  public NMEAEncoder to(ByteBuffer bb)
+  {
+    this.bb = bb;
+    this.sb = null;
+    return this;
+  }
+
+  // Sentences
+
+  public void generateRMC(String devicePrefix, Date date, double lat, double lng, double sog, double cog, double d)
+  {
+    generateRMC(devicePrefix, date.getTime(), lat, lng, sog, cog, d);
+  }
+
+  /**
+   * @param time UTC, in ms since 1970
+   */
+  public void generateRMC(String devicePrefix, long time, double lat, double lng, double sog, double cog, double d)
+  {
+    begin(devicePrefix, "RMC");
+    try
+    {
+      long days = floorDiv(time, MS_PER_DAY);
+      int msOfDay = (int)(time - (days * MS_PER_DAY));
+      comma();
+      fixed(msOfDay / 3600000, 2, 0);
+      fixed((msOfDay / 60000) % 60, 2, 0);
+      fixed((msOfDay / 1000) % 60, 2, 0);
+      comma();
+      put('A');
+      comma();
+      int deg = (int)Math.abs(lat);
+      double min = 0.6 * ((Math.abs(lat) - deg) * 100d);
+      fixed(deg, 2, 0);
+      fixed(min, 2, 3);
+      put(lat < 0 ? ",S," : ",N,");
+      deg = (int)Math.abs(lng);
+      min = 0.6 * ((Math.abs(lng) - deg) * 100d);
+      fixed(deg, 3, 0);
+      fixed(min, 2, 3);
+      put(lng < 0 ? ",W," : ",E,");
+      fixed(sog, 3, 1);
+      comma();
+      fixed(cog, 3, 1);
+      comma();
+      date(days);
+      comma();
+      fixed(Math.abs(d), 3, 1);
+      comma();
+      put(d < 0 ? 'W' : 'E');
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  public void generateMWV(String devicePrefix, double aws, int awa)
+  {
+    generateMWV(devicePrefix, aws, awa, StringParsers.APPARENT_WIND);
+  }
+
+  public void generateMWV(String devicePrefix, double ws, int wa, int flavor)
+  {
+    if (wa < 0)
+      wa = 360 + wa;
+    begin(devicePrefix, "MWV");
+    try
+    {
+      comma();
+      fixed(wa, 3, 1);
+      put(flavor == StringParsers.APPARENT_WIND ? ",R," : ",T,");
+      fixed(ws, 3, 1);
+      put(",N,A");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  /**
+   * Same as {@link StringGenerator#gerenateVWT(String, double, double)}
+   */
+  public void generateVWT(String devicePrefix, double tws, double twa)
+  {
+    begin(devicePrefix, "VWT");
+    try
+    {
+      comma();
+      fixed(Math.abs(twa), 1, 1);
+      put(twa > 0 ? ",R," : ",L,");
+      fixed(tws, 1, 1);
+      put(",N,");
+      fixed(tws * KNOTS_TO_MS, 1, 1);
+      put(",M,");
+      fixed(tws * KNOTS_TO_KMH, 1, 1);
+      put(",K");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  public void generateVHW(String devicePrefix, double bsp, int cc)
+  {
+    begin(devicePrefix, "VHW");
+    try
+    {
+      put(",,,");
+      fixed(cc, 3, 0);
+      put(",M,");
+      fixed(bsp, 2, 3);
+      put(",N,,");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  public void generateHDM(String devicePrefix, int cc)
+  {
+    begin(devicePrefix, "HDM");
+    try
+    {
+      comma();
+      fixed(cc, 3, 0);
+      put(",M");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  /**
+   * @param mbPressure in mb (hPa)
+   */
+  public void generateMMB(String devicePrefix, double mbPressure)
+  {
+    begin(devicePrefix, "MMB");
+    try
+    {
+      comma();
+      fixed(mbPressure / 33.8600, 1, 4); // Inches of Hg
+      put(",I,");
+      fixed(mbPressure / 1000, 1, 4);    // Bars
+      put(",B");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  /**
+   * @param temperature in Celcius
+   */
+  public void generateMTA(String devicePrefix, double temperature)
+  {
+    begin(devicePrefix, "MTA");
+    try
+    {
+      comma();
+      fixed(temperature, 1, 1);
+      put(",C");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  public void generateVDR(String devicePrefix, double speed, double dirT, double dirM)
+  {
+    begin(devicePrefix, "VDR");
+    try
+    {
+      comma();
+      fixed(dirT, 1, 1);
+      put(",T,");
+      fixed(dirM, 1, 1);
+      put(",M,");
+      fixed(speed, 1, 1);
+      put(",N");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  public void generateMWD(String devicePrefix, double tdir, double knts, double dec)
+  {
+    begin(devicePrefix, "MWD");
+    try
+    {
+      comma();
+      fixed(tdir, 3, 1);
+      put(",T,");
+      double mDir = tdir - dec;
+      if (mDir < 0) mDir += 360;
+      if (mDir > 360) mDir -= 360;
+      fixed(mDir, 3, 1);
+      put(",M,");
+      fixed(knts, 1, 1);
+      put(",N,");
+      fixed(knts * KNOTS_TO_MS, 1, 1);
+      put(",M");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  /**
+   * Same as {@link StringGenerator#generateMDA(String, double, double, double, double, double, double, double, double, double)},
+   * {@link #NO_VALUE} for the missing values.
+   * The magnetic wind direction is written when it is given (StringGenerator looks at the true one).
+   */
+  public void generateMDA(String devicePrefix, double pressureInhPa,
+                                               double airTempInDegrees,
+                                               double waterTempInDegrees,
+                                               double relHumidity,
+                                               double absHumidity,
+                                               double dewPointInCelcius,
+                                               double windDirTrue,
+                                               double windDirMag,
+                                               double windSpeedInKnots)
+  {
+    begin(devicePrefix, "MDA");
+    try
+    {
+      comma();
+      if (pressureInhPa != NO_VALUE)
+      {
+        fixed(pressureInhPa / Pressure.HPA_TO_INHG, 1, 3);
+        put(",I,");
+        fixed(pressureInhPa / 1000, 1, 3);
+        put(",B,");
+      }
+      else
+        put(",,,,");
+      optional(airTempInDegrees, 1, ",C,", ",,");
+      optional(waterTempInDegrees, 1, ",C,", ",,");
+      optional(relHumidity, 1, ",", ",");
+      optional(absHumidity, 1, ",", ",");
+      optional(dewPointInCelcius, 0, ",C,", ",,");
+      optional(windDirTrue, 1, ",T,", ",,");
+      optional(windDirMag, 1, ",M,", ",,");
+      if (windSpeedInKnots != NO_VALUE)
+      {
+        fixed(windSpeedInKnots, 1, 1);
+        put(",N,");
+        fixed(windSpeedInKnots * 1.852 / 3.6, 1, 1);
+        put(",M");
+      }
+      else
+        put(",,,");
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  /**
+   * Same as {@link StringGenerator#generateXDR(String, StringGenerator.XDRElement, StringGenerator.XDRElement...)}.
+   * The humidity format is the one of each element (StringGenerator looks at the first one).
+   */
+  public void generateXDR(String devicePrefix, StringGenerator.XDRElement first, StringGenerator.XDRElement... next)
+  {
+    begin(devicePrefix, "XDR");
+    try
+    {
+      comma();
+      xdr(first, 0);
+      for (int i=0; i<next.length; i++)
+      {
+        comma();
+        xdr(next[i], i + 1);
+      }
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+    end();
+  }
+
+  private void xdr(StringGenerator.XDRElement e, int device)
+  {
+    StringGenerator.XDRTypes type = e.getTypeNunit();
+    put(type.type());
+    comma();
+    if (type == StringGenerator.XDRTypes.PRESSURE_B)
+      fixed(e.getValue(), 1, 4);
+    else if (type == StringGenerator.XDRTypes.PRESSURE_P)
+      fixed(e.getValue(), 1, 0);
+    else if (type == StringGenerator.XDRTypes.TEMPERATURE || type == StringGenerator.XDRTypes.HUMIDITY)
+      fixed(e.getValue(), 1, 1);
+    else
+      put(Double.toString(e.getValue()));
+    comma();
+    put(type.unit());
+    comma();
+    fixed(device, 1, 0);
+  }
+
+  // Sentence structure
+
+  /**
+   * Writes <code>$</code>, the device prefix, and the sentence id.
+   * For other sentences, see {@link #field(double, int, int)}, {@link #field(CharSequence)}, and {@link #end()}.
+   */
+  public void begin(String devicePrefix, String id)
+  {
+    start = (sb != null ? sb.length() : bb.position());
+    try
+    {
+      write('$');
+      checksum = 0;
+      put(devicePrefix);
+      put(id);
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+  }
+
+  /**
+   * Writes a comma, and a number in fixed point.
+   * @param minInt the minimum number of digits of the integer part, padded with zeros
+   * @param decimals the number of decimals (0 to 8)
+   */
+  public void field(double value, int minInt, int decimals)
+  {
+    comma();
+    fixed(value, minInt, decimals);
+  }
+
+  /**
+   * Writes a comma, and a text.
+   */
+  public void field(CharSequence text)
+  {
+    comma();
+    put(text);
+  }
+
+  /**
+   * Writes the checksum, and the EOS.
+   */
+  public void end()
+  {
+    int cs = checksum;
+    try
+    {
+      write('*');
+      write(HEX[(cs >> 4) & 0xF]);
+      write(HEX[cs & 0xF]);
+      for (int i=0; i<eos.length(); i++)
+        write(eos.charAt(i));
+    }
+    catch (BufferOverflowException boe)
+    {
+      throw undo(boe);
+    }
+  }
+
+  // Characters
+
+  private void comma()
+  {
+    put(',');
+  }
+
+  private void put(CharSequence cs)
+  {
+    for (int i=0; i<cs.length(); i++)
+      put(cs.charAt(i));
+  }
+
+  /**
+   * Writes a character of the sentence, part of the checksum.
+   */
+  private void put(char c)
+  {
+    checksum ^= c;
+    write(c);
+  }
+
+  private void write(char c)
+  {
+    if (sb != null)
+      sb.append(c);
+    else
+      bb.put((byte)c);
+  }
+
+  private BufferOverflowException undo(BufferOverflowException boe)
+  {
+    if (sb != null)
+      sb.setLength(start);
+    else
+      bb.position(start);
+    return boe;
+  }
+
+  private void optional(double value, int decimals, String unit, String none)
+  {
+    if (value != NO_VALUE)
+    {
+      fixed(value, 1, decimals);
+      put(unit);
+    }
+    else
+      put(none);
+  }
+
+  // Numbers
+
+  /**
+   * Like <code>new DecimalFormat("00.000").format(value)</code> for minInt 2 and 3 decimals:
+   * rounded half-even, on the exact value of the double.
+   */
+  private void fixed(double value, int minInt, int decimals)
+  {
+    if (Double.isNaN(value) || Double.isInfinite(value))
+      return; // Empty field
+    if (decimals < 0 || decimals >= POW10.length)
+      throw new IllegalArgumentException("Invalid number of decimals " + decimals);
+    boolean negative = (value < 0d || (value == 0d && 1d / value < 0d)); // -0.0 too, like DecimalFormat
+    double abs = Math.abs(value);
+    double scaled = abs * POW10[decimals];
+    long units;
+    if (scaled < MAX_FAST)
+    {
+      double floor = Math.floor(scaled);
+      double fraction = scaled - floor;
+      if (Math.abs(fraction - 0.5d) > 2d * Math.ulp(scaled)) // Far enough from a tie, the product decides
+        units = (long)floor + (fraction > 0.5d ? 1L : 0L);
+      else                                                   // The exact value of the double decides
+        units = new BigDecimal(abs).setScale(decimals, RoundingMode.HALF_EVEN).unscaledValue().longValue();
+    }
+    else
+    {
+      BigDecimal exact = new BigDecimal(abs).setScale(decimals, RoundingMode.HALF_EVEN);
+      if (negative)
+        put('-');
+      put(exact.toPlainString());
+      return;
+    }
+    if (negative)
+      put('-');
+    long pow = POW10[decimals];
+    digits(units / pow, minInt);
+    if (decimals > 0)
+    {
+      put('.');
+      digits(units % pow, decimals);
+    }
+  }
+
+  /**
+   * Writes a positive number, with at least minDigits digits.
+   */
+  private void digits(long n, int minDigits)
+  {
+    int nbDigits = 1;
+    for (long p=10L; nbDigits < 19 && p <= n; p *= 10L)
+      nbDigits++;
+    for (int i=nbDigits; i<minDigits; i++)
+      put('0');
+    for (int i=nbDigits - 1; i>=0; i--)
+    {
+      long p = 1L;
+      for (int j=0; j<i; j++)
+        p *= 10L;
+      put((char)('0' + ((n / p) % 10L)));
+    }
+  }
+
+  /**
+   * Writes ddMMyy.
+   * @param days since 1970-01-01
+   */
+  private void date(long days)
+  {
+    // Civil date from a day number, proleptic Gregorian calendar
+    long z = days + 719468L;
+    long era = (z >= 0L ? z : z - 146096L) / 146097L;
+    long doe = z - (era * 146097L);                                      // [0, 146096]
+    long yoe = (doe - (doe / 1460L) + (doe / 36524L) - (doe / 146096L)) / 365L; // [0, 399]
+    long doy = doe - ((365L * yoe) + (yoe / 4L) - (yoe / 100L));         // [0, 365]
+    long mp = ((5L * doy) + 2L) / 153L;                                  // [0, 11], from March
+    long day = doy - (((153L * mp) + 2L) / 5L) + 1L;
+    long month = (mp < 10L ? mp + 3L : mp - 9L);
+    long year = yoe + (era * 400L) + (month <= 2L ? 1L : 0L);
+    fixed(day, 2, 0);
+    fixed(month, 2, 0);
+    fixed(((year % 100L) + 100L) % 100L, 2, 0);
+  }
+
+  private static long floorDiv(long a, long b)
+  {
+    long q = a / b;
+    if ((a % b != 0L) && ((a < 0L) != (b < 0L)))
+      q--;
+    return q;
+  }
+}
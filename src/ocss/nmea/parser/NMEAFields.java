@@ -0,0 +1,308 @@
+package ocss.nmea.parser;
+
+/**
+ * A reusable field cursor on an NMEA sentence.
+ * <br>
+ * Instead of <code>data.substring(0, data.indexOf("*")).split(",")</code>, the comma
+ * separated fields are indexed once, as start and end offsets in the original
+ * {@link CharSequence}. Nothing is copied, the fields are accessed by their index,
+ * like the elements of the array returned by <code>split</code>.
+ * <pre>
+ *  $GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A
+ *  |      |      | |        | |         | |     |     |      |     |
+ *  0      1      2 3        4 5         6 7     8     9      10    11
+ * </pre>
+ * Not thread safe, one instance per thread (or per source).
+ */
+public final class NMEAFields
+{
+  private CharSequence data = null;
+  private int[] start = new int[32];
+  private int[] end   = new int[32];
+  private int count = 0;
+
+  public NMEAFields()
+  {
+  }
+
+  /**
+   * Indexes the fields before the checksum (the first '*'), or before the end if there is no checksum.
+   * @return this
+   */
+  public NMEAFields reset(CharSequence cs)
+  {
+    int to = cs.length();
+    for (int i=0; i<to; i++)
+    {
+      if (cs.charAt(i) == '*')
+      {
+        to = i;
+        break;
+      }
+    }
+    return reset(cs, 0, to);
+  }
+
+  /**
+   * Indexes all the fields found in [from, to[.
+   * @return this
+   */
+  public NMEAFields reset(CharSequence cs, int from, int to)
+  {
+    this.data = cs;
+    this.count = 0;
+    int fieldStart = from;
+    for (int i=from; i<to; i++)
+    {
+      if (cs.charAt(i) == ',')
+      {
+        add(fieldStart, i);
+        fieldStart = i + 1;
+      }
+    }
+    add(fieldStart, to);
+    return this;
+  }
+
+  private void add(int s, int e)
+  {
+    if (count == start.length)
+    {
+      int[] newStart = new int[count * 2];
+      int[] newEnd   = new int[count * 2];
+      System.arraycopy(start, 0, newStart, 0, count);
+      System.arraycopy(end,   0, newEnd,   0, count);
+      start = newStart;
+      end   = newEnd;
+    }
+    start[count] = s;
+    end[count]   = e;
+    count++;
+  }
+
+  public CharSequence data()
+  { return this.data; }
+
+  /**
+   * @return the number of fields, trailing empty ones included.
+   */
+  public int count()
+  { return this.count; }
+
+  /**
+   * @return the length of the array String.split(",") would have returned,
+   * that is without the trailing empty fields.
+   */
+  public int splitCount()
+  {
+    int n = count;
+    while (n > 0 && start[n - 1] == end[n - 1])
+      n--;
+    return n;
+  }
+
+  public int start(int i)
+  {
+    check(i);
+    return start[i];
+  }
+
+  public int end(int i)
+  {
+    check(i);
+    return end[i];
+  }
+
+  public int length(int i)
+  {
+    check(i);
+    return end[i] - start[i];
+  }
+
+  /**
+   * @return true if the field is empty, or does not exist.
+   */
+  public boolean isEmpty(int i)
+  {
+    return i >= count || start[i] == end[i];
+  }
+
+  public char charAt(int i, int pos)
+  {
+    check(i);
+    if (pos < 0 || start[i] + pos >= end[i])
+      throw new StringIndexOutOfBoundsException(pos);
+    return data.charAt(start[i] + pos);
+  }
+
+  /**
+   * Same as <code>str.equals(field)</code>, without creating the field String.
+   */
+  public boolean equals(int i, String str)
+  {
+    check(i);
+    int len = end[i] - start[i];
+    if (len != str.length())
+      return false;
+    for (int j=0; j<len; j++)
+    {
+      if (data.charAt(start[i] + j) != str.charAt(j))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the field is exactly this one character.
+   */
+  public boolean is(int i, char c)
+  {
+    check(i);
+    return (end[i] - start[i] == 1) && data.charAt(start[i]) == c;
+  }
+
+  /**
+   * @return true if the field contains the given String.
+   */
+  public boolean contains(int i, String str)
+  {
+    check(i);
+    int last = end[i] - str.length();
+    for (int s=start[i]; s<=last; s++)
+    {
+      int j = 0;
+      while (j < str.length() && data.charAt(s + j) == str.charAt(j))
+        j++;
+      if (j == str.length())
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Creates the field String. Use it only when a String is to be kept.
+   */
+  public String string(int i)
+  {
+    check(i);
+    return data.subSequence(start[i], end[i]).toString();
+  }
+
+  /**
+   * Same as <code>Integer.parseInt(field)</code>
+   */
+  public int parseInt(int i) throws NumberFormatException
+  {
+    check(i);
+    return parseInt(data, start[i], end[i]);
+  }
+
+  /**
+   * Same as <code>Integer.parseInt(field.substring(from, to))</code>
+   */
+  public int parseInt(int i, int from, int to) throws NumberFormatException
+  {
+    check(i);
+    if (from < 0 || from > to || start[i] + to > end[i])
+      throw new StringIndexOutOfBoundsException("[" + from + ", " + to + "[ in field #" + i);
+    return parseInt(data, start[i] + from, start[i] + to);
+  }
+
+  /**
+   * Same as <code>Long.parseLong(field)</code>
+   */
+  public long parseLong(int i) throws NumberFormatException
+  {
+    check(i);
+    return parseLong(data, start[i], end[i]);
+  }
+
+  /**
+   * Same as <code>NumberFormat.getInstance(Locale.ENGLISH).parse(field).doubleValue()</code>
+   * @see NMEANumbers#parseNMEADouble(CharSequence, int, int)
+   */
+  public double parseNMEADouble(int i) throws NumberFormatException
+  {
+    check(i);
+    return NMEANumbers.parseNMEADouble(data, start[i], end[i]);
+  }
+
+  /**
+   * Same as <code>NumberFormat.getInstance(Locale.ENGLISH).parse(field).floatValue()</code>
+   * @see NMEANumbers#parseNMEAFloat(CharSequence, int, int)
+   */
+  public float parseNMEAFloat(int i) throws NumberFormatException
+  {
+    check(i);
+    return NMEANumbers.parseNMEAFloat(data, start[i], end[i]);
+  }
+
+  /**
+   * Same as <code>Double.parseDouble(field)</code>
+   */
+  public double parseDouble(int i) throws NumberFormatException
+  {
+    check(i);
+    return NMEANumbers.parseDouble(data, start[i], end[i]);
+  }
+
+  /**
+   * Same as <code>Float.parseFloat(field)</code>
+   */
+  public float parseFloat(int i) throws NumberFormatException
+  {
+    check(i);
+    return NMEANumbers.parseFloat(data, start[i], end[i]);
+  }
+
+  /**
+   * Same rules as Integer.parseInt, on a range of a CharSequence.
+   */
+  public static int parseInt(CharSequence cs, int from, int to) throws NumberFormatException
+  {
+    long l = parseLong(cs, from, to);
+    if (l < Integer.MIN_VALUE || l > Integer.MAX_VALUE)
+      throw new NumberFormatException("For input string: \"" + cs.subSequence(from, to) + "\"");
+    return (int)l;
+  }
+
+  /**
+   * Same rules as Long.parseLong, on a range of a CharSequence.
+   */
+  public static long parseLong(CharSequence cs, int from, int to) throws NumberFormatException
+  {
+    int i = from;
+    boolean negative = false;
+    if (i < to && (cs.charAt(i) == '-' || cs.charAt(i) == '+'))
+    {
+      negative = (cs.charAt(i) == '-');
+      i++;
+    }
+    if (i == to)
+      throw new NumberFormatException("For input string: \"" + cs.subSequence(from, to) + "\"");
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long result = 0L; // Accumulated negatively, like Long.parseLong
+    for (; i<to; i++)
+    {
+      int digit = cs.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || result < (limit / 10) || (result * 10) < limit + digit)
+        throw new NumberFormatException("For input string: \"" + cs.subSequence(from, to) + "\"");
+      result = (result * 10) - digit;
+    }
+    return negative ? result : -result;
+  }
+
+  private void check(int i)
+  {
+    if (i < 0 || i >= count)
+      throw new ArrayIndexOutOfBoundsException(i);
+  }
+
+  public String toString()
+  {
+    StringBuffer sb = new StringBuffer();
+    for (int i=0; i<count; i++)
+      sb.append(i == 0 ? "" : "|").append(data.subSequence(start[i], end[i]));
+    return sb.toString();
+  }
+}
@@ -0,0 +1,259 @@
+package ocss.nmea.parser;
+
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+
+import java.util.Locale;
+
+/**
+ * Decimal numbers, as found in the NMEA fields (like <code>4807.038</code>, <code>-28.2</code>, <code>022.4</code>),
+ * parsed directly on a range of chars or bytes, without creating any object.
+ * <br>
+ * Two flavors:
+ * <ul>
+ *   <li><code>parseNMEADouble</code>, <code>parseNMEAFloat</code> behave like <code>NumberFormat.getInstance(Locale.ENGLISH).parse</code>:
+ *       no '+' sign, and the parsing stops at the first character that is not part of the number.</li>
+ *   <li><code>parseDouble</code>, <code>parseFloat</code> behave like <code>Double.parseDouble</code> and <code>Float.parseFloat</code>:
+ *       the whole range must be a number.</li>
+ * </ul>
+ * The results are exactly the ones of the JDK methods.
+ * The fast path only does exact arithmetic (the digits fit in the mantissa, the power of ten is exact),
+ * anything else (too many digits, exponent, grouping, NaN...) goes to the JDK.
+ */
+public final class NMEANumbers
+{
+  private final static double[] DOUBLE_POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                                                 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+  private final static float[] FLOAT_POW10 = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+  private final static long MAX_EXACT_DOUBLE_MANTISSA = 1L << 53;
+  private final static long MAX_EXACT_FLOAT_MANTISSA  = 1L << 24;
+
+  private final static int INVALID = -1;
+
+  // Per thread scan result
+  private final static int MANTISSA = 0;
+  private final static int DECIMALS = 1;
+  private final static int FALLBACK = 2; // 1 if the fast path cannot be used
+  private final static int NEGATIVE = 3; // 1 if negative
+
+  private final static ThreadLocal<long[]> SCAN = new ThreadLocal<long[]>()
+    {
+      protected long[] initialValue()
+      {
+        return new long[4];
+      }
+    };
+
+  private NMEANumbers()
+  {
+  }
+
+  /**
+   * Like <code>NumberFormat.getInstance(Locale.ENGLISH).parse(str).doubleValue()</code>
+   */
+  public static double parseNMEADouble(CharSequence cs) throws NumberFormatException
+  {
+    return parseNMEADouble(cs, 0, cs.length());
+  }
+
+  public static double parseNMEADouble(CharSequence cs, int from, int to) throws NumberFormatException
+  {
+    Number n = nmeaNumber(cs, null, from, to);
+    return (n == null ? exactDouble(SCAN.get()) : n.doubleValue());
+  }
+
+  public static double parseNMEADouble(byte[] ba, int from, int to) throws NumberFormatException
+  {
+    Number n = nmeaNumber(null, ba, from, to);
+    return (n == null ? exactDouble(SCAN.get()) : n.doubleValue());
+  }
+
+  /**
+   * Like <code>NumberFormat.getInstance(Locale.ENGLISH).parse(str).floatValue()</code>
+   */
+  public static float parseNMEAFloat(CharSequence cs) throws NumberFormatException
+  {
+    return parseNMEAFloat(cs, 0, cs.length());
+  }
+
+  public static float parseNMEAFloat(CharSequence cs, int from, int to) throws NumberFormatException
+  {
+    Number n = nmeaNumber(cs, null, from, to);
+    return (n == null ? (float)exactDouble(SCAN.get()) : n.floatValue());
+  }
+
+  public static float parseNMEAFloat(byte[] ba, int from, int to) throws NumberFormatException
+  {
+    Number n = nmeaNumber(null, ba, from, to);
+    return (n == null ? (float)exactDouble(SCAN.get()) : n.floatValue());
+  }
+
+  /**
+   * Like <code>Double.parseDouble(cs.subSequence(from, to).toString())</code>
+   */
+  public static double parseDouble(CharSequence cs, int from, int to) throws NumberFormatException
+  {
+    long[] scan = SCAN.get();
+    if (scanDecimal(cs, null, from, to, true, scan) != to || !fitsDouble(scan))
+      return Double.parseDouble(text(cs, null, from, to));
+    return exactDouble(scan);
+  }
+
+  public static double parseDouble(byte[] ba, int from, int to) throws NumberFormatException
+  {
+    long[] scan = SCAN.get();
+    if (scanDecimal(null, ba, from, to, true, scan) != to || !fitsDouble(scan))
+      return Double.parseDouble(text(null, ba, from, to));
+    return exactDouble(scan);
+  }
+
+  /**
+   * Like <code>Float.parseFloat(cs.subSequence(from, to).toString())</code>
+   */
+  public static float parseFloat(CharSequence cs, int from, int to) throws NumberFormatException
+  {
+    long[] scan = SCAN.get();
+    if (scanDecimal(cs, null, from, to, true, scan) != to || !fitsFloat(scan))
+      return Float.parseFloat(text(cs, null, from, to));
+    return exactFloat(scan);
+  }
+
+  public static float parseFloat(byte[] ba, int from, int to) throws NumberFormatException
+  {
+    long[] scan = SCAN.get();
+    if (scanDecimal(null, ba, from, to, true, scan) != to || !fitsFloat(scan))
+      return Float.parseFloat(text(null, ba, from, to));
+    return exactFloat(scan);
+  }
+
+  /**
+   * @return the Number NumberFormat returns when the fast path cannot be used,
+   * null if the result is to be read from the scan.
+   */
+  private static Number nmeaNumber(CharSequence cs, byte[] ba, int from, int to) throws NumberFormatException
+  {
+    long[] scan = SCAN.get();
+    int stop = scanDecimal(cs, ba, from, to, false, scan);
+    if (stop == INVALID)
+      throw new NumberFormatException("Unparseable number: \"" + text(cs, ba, from, to) + "\"");
+    if (!fitsDouble(scan) || (stop < to && notAStop(charAt(cs, ba, stop))))
+      return parseWithNumberFormat(text(cs, ba, from, to));
+    return null;
+  }
+
+  /**
+   * The characters NumberFormat would go on with, when the scan stops.
+   * Grouping separator, exponent, and the non-ASCII digits.
+   */
+  private static boolean notAStop(char c)
+  {
+    return c == ',' || c == 'E' || c > 127;
+  }
+
+  private static Number parseWithNumberFormat(String str) throws NumberFormatException
+  {
+    Number number = NumberFormat.getInstance(Locale.ENGLISH).parse(str, new ParsePosition(0));
+    if (number == null)
+      throw new NumberFormatException("Unparseable number: \"" + str + "\"");
+    return number;
+  }
+
+  private static boolean fitsDouble(long[] scan)
+  {
+    return scan[FALLBACK] == 0L && scan[MANTISSA] < MAX_EXACT_DOUBLE_MANTISSA && scan[DECIMALS] < DOUBLE_POW10.length;
+  }
+
+  private static boolean fitsFloat(long[] scan)
+  {
+    return scan[FALLBACK] == 0L && scan[MANTISSA] < MAX_EXACT_FLOAT_MANTISSA && scan[DECIMALS] < FLOAT_POW10.length;
+  }
+
+  /*
+   * Both operands are exact, the division is correctly rounded, like the JDK parsing.
+   */
+  private static double exactDouble(long[] scan)
+  {
+    double d = scan[MANTISSA] / DOUBLE_POW10[(int)scan[DECIMALS]];
+    return (scan[NEGATIVE] != 0L ? -d : d);
+  }
+
+  private static float exactFloat(long[] scan)
+  {
+    float f = (float)scan[MANTISSA] / FLOAT_POW10[(int)scan[DECIMALS]];
+    return (scan[NEGATIVE] != 0L ? -f : f);
+  }
+
+  /**
+   * Scans [sign]digits[.digits]
+   *
+   * @param plusAllowed true for the Double.parseDouble flavor
+   * @return the index of the first character that is not part of the number, INVALID if there is no number at all
+   */
+  private static int scanDecimal(CharSequence cs, byte[] ba, int from, int to, boolean plusAllowed, long[] scan)
+  {
+    scan[MANTISSA] = 0L;
+    scan[DECIMALS] = 0L;
+    scan[FALLBACK] = 0L;
+    scan[NEGATIVE] = 0L;
+    int i = from;
+    if (i < to)
+    {
+      char c = charAt(cs, ba, i);
+      if (c == '-')
+      {
+        scan[NEGATIVE] = 1L;
+        i++;
+      }
+      else if (c == '+' && plusAllowed)
+        i++;
+    }
+    boolean digits = false;
+    boolean dot = false;
+    for (; i<to; i++)
+    {
+      char c = charAt(cs, ba, i);
+      if (c >= '0' && c <= '9')
+      {
+        digits = true;
+        if (scan[MANTISSA] < 100000000000000000L) // Still fits in a long
+        {
+          scan[MANTISSA] = (scan[MANTISSA] * 10) + (c - '0');
+          if (dot)
+            scan[DECIMALS]++;
+        }
+        else
+          scan[FALLBACK] = 1L;
+      }
+      else if (c == '.' && !dot)
+        dot = true;
+      else
+        break;
+    }
+    if (!digits)
+    {
+      if (i < to && (notAStop(charAt(cs, ba, i)) || charAt(cs, ba, i) == 'N')) // NaN, Infinity, non-ASCII digits
+      {
+        scan[FALLBACK] = 1L;
+        return i;
+      }
+      return INVALID;
+    }
+    return i;
+  }
+
+  private static char charAt(CharSequence cs, byte[] ba, int i)
+  {
+    return (cs != null ? cs.charAt(i) : (char)(ba[i] & 0xFF));
+  }
+
+  private static String text(CharSequence cs, byte[] ba, int from, int to)
+  {
+    if (cs != null)
+      return cs.subSequence(from, to).toString();
+    char[] ca = new char[to - from];
+    for (int i=from; i<to; i++)
+      ca[i - from] = (char)(ba[i] & 0xFF);
+    return new String(ca);
+  }
+}
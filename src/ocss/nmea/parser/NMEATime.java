@@ -0,0 +1,130 @@
+package ocss.nmea.parser;
+
+/**
+ * UTC time and date fields decoded into ms since 1970, with arithmetic only (no Calendar, no TimeZone).
+ * <pre>
+ *  $GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A
+ *         |                                           |
+ *         hhmmss.ss, time of day                      ddmmyy, day
+ * </pre>
+ * The time of day is rounded to the second, the way StringParsers has always done it,
+ * so <code>new Date(ms)</code> is the Date the Calendar used to return.
+ * Like a lenient Calendar, out of range values roll over (60 seconds are the next minute, month 13 is January of the next year).
+ * <br>
+ * An instance keeps the start of the last day it decoded: consecutive sentences of the same day
+ * only cost the parsing of the fields, and a few multiplications.
+ * Not thread safe, one instance per thread (or per source). The static methods are.
+ */
+public final class NMEATime
+{
+  public final static long NO_TIME = Long.MIN_VALUE;
+  public final static long MS_PER_DAY = 86400000L;
+
+  private int lastDate = -1; // ddmmyy, as an int
+  private long lastDayStart = 0L;
+
+  public NMEATime()
+  {
+  }
+
+  /**
+   * @param hhmmss the time of day, like <code>123519</code> or <code>123519.25</code>
+   * @return the time of day in ms, rounded to the second
+   */
+  public static long timeOfDay(double hhmmss)
+  {
+    int h = (int)(hhmmss / 10000);
+    int m = (int)((hhmmss - (10000 * h)) / 100);
+    float sec = (float)(hhmmss % 100f);
+    return (h * 3600000L) + (m * 60000L) + (Math.round(sec) * 1000L);
+  }
+
+  /**
+   * @return the time of day in [from, to[, in ms, rounded to the second
+   * @see #timeOfDay(double)
+   */
+  public static long timeOfDay(CharSequence cs, int from, int to) throws NumberFormatException
+  {
+    return timeOfDay(NMEANumbers.parseNMEADouble(cs, from, to));
+  }
+
+  /**
+   * Days from 1970-01-01 to the given date (proleptic Gregorian calendar).
+   * @param month from 1 to 12, the other values roll over the year
+   * @param day from 1 to 31, the other values roll over the month
+   */
+  public static long daysSinceEpoch(int year, int month, int day)
+  {
+    int m0 = month - 1;
+    if (m0 < 0 || m0 > 11)
+    {
+      year += (m0 >= 0 ? m0 / 12 : ((m0 + 1) / 12) - 1);
+      m0 = ((m0 % 12) + 12) % 12;
+    }
+    int m = m0 + 1;
+    long y = (m <= 2 ? year - 1L : year);
+    long era = (y >= 0L ? y : y - 399L) / 400L;
+    long yoe = y - (era * 400L);                                    // [0, 399]
+    long doy = ((153L * (m + (m > 2 ? -3 : 9))) + 2L) / 5L;         // [0, 365], from March 1st
+    long doe = (yoe * 365L) + (yoe / 4L) - (yoe / 100L) + doy;      // [0, 146096]
+    return (era * 146097L) + doe - 719468L + (day - 1);
+  }
+
+  /**
+   * @return year, month, and day in ms since 1970, at 00:00:00 UTC
+   */
+  public static long dayStart(int year, int month, int day)
+  {
+    return daysSinceEpoch(year, month, day) * MS_PER_DAY;
+  }
+
+  /**
+   * The start of the day of a ddmmyy field, the years above 50 are in the 20th century (like in StringParsers).
+   * The result is kept for the next call, as long as the date does not change.
+   * @return the start of the day in ms since 1970, UTC
+   */
+  public long ddmmyy(CharSequence cs, int from, int to) throws NumberFormatException
+  {
+    if (to - from < 5)
+      throw new NumberFormatException("For input string: \"" + cs.subSequence(from, to) + "\"");
+    return ddmmyy(NMEAFields.parseInt(cs, from, from + 2),
+                  NMEAFields.parseInt(cs, from + 2, from + 4),
+                  NMEAFields.parseInt(cs, from + 4, to));
+  }
+
+  /**
+   * Same as {@link #ddmmyy(CharSequence, int, int)}, on the already parsed values.
+   * @param yy the year, on two digits
+   */
+  public long ddmmyy(int dd, int mm, int yy)
+  {
+    if (dd < 0 || dd > 99 || mm < 0 || mm > 99 || yy < 0 || yy > 99) // Not cached
+      return dayStart((yy > 50 ? 1900 : 2000) + yy, mm, dd);
+    int key = (yy * 10000) + (mm * 100) + dd;
+    if (key != lastDate)
+    {
+      lastDayStart = dayStart((yy > 50 ? 1900 : 2000) + yy, mm, dd);
+      lastDate = key;
+    }
+    return lastDayStart;
+  }
+
+  /**
+   * @param time the hhmmss.ss field
+   * @param date the ddmmyy field
+   * @return the UTC date and time, in ms since 1970
+   */
+  public long epochMillis(CharSequence time, int timeFrom, int timeTo, CharSequence date, int dateFrom, int dateTo) throws NumberFormatException
+  {
+    return ddmmyy(date, dateFrom, dateTo) + timeOfDay(time, timeFrom, timeTo);
+  }
+
+  /**
+   * @return today's start, UTC, in ms since 1970
+   */
+  public static long today()
+  {
+    long now = System.currentTimeMillis();
+    return now - (((now % MS_PER_DAY) + MS_PER_DAY) % MS_PER_DAY);
+  }
+}
@@ -0,0 +1,76 @@
+package ocss.nmea.parser;
+
+/**
+ * A view on an RMC sentence, see {@link SentenceView}.
+ * <pre>
+ *         1      2 3        4 5         6 7     8     9      10    11
+ *  $GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A
+ * </pre>
+ * @see StringParsers#parseRMC(String)
+ */
+public class RMCView extends SentenceView
+{
+  private final NMEATime time = new NMEATime();
+
+  public RMCView()
+  {
+    super("RMC");
+  }
+
+  /**
+   * @return false if the data are void (<code>V</code>)
+   */
+  public boolean isActive()
+  { return charAt(2) == 'A'; }
+
+  /**
+   * @return in degrees, negative in the South
+   */
+  public double getLatitude()
+  { return degreesAt(3, 2, 'S'); }
+
+  /**
+   * @return in degrees, negative in the West
+   */
+  public double getLongitude()
+  { return degreesAt(5, 3, 'W'); }
+
+  /**
+   * @return in knots
+   */
+  public double getSOG()
+  { return doubleAt(7); }
+
+  /**
+   * @return in degrees, true
+   */
+  public double getCOG()
+  { return doubleAt(8); }
+
+  /**
+   * @return in degrees, negative in the West
+   */
+  public double getDeclination()
+  {
+    double d = doubleAt(10);
+    return (charAt(11) == 'W' ? -d : d);
+  }
+
+  /**
+   * @return the UTC date and time in ms since 1970, rounded to the second like {@link StringParsers#parseRMC(String)},
+   * {@link NMEATime#NO_TIME} if the time or the date is empty or unreadable.
+   */
+  public long getEpochMillis()
+  {
+    if (!isValid() || fields.isEmpty(1) || fields.isEmpty(9))
+      return NMEATime.NO_TIME;
+    try
+    {
+      return time.epochMillis(fields.data(), fields.start(1), fields.end(1), fields.data(), fields.start(9), fields.end(9));
+    }
+    catch (RuntimeException ex) // Not numbers
+    {
+      return NMEATime.NO_TIME;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package ocss.nmea.parser;
+
+import java.io.Serializable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The satellites of a complete GSV cycle, sorted by PRN. Immutable.
+ * Produced by a {@link GSVAssembler}.
+ */
+public final class SatellitesInView implements Serializable
+{
+  private final int inView;
+  private final int[] prn;
+  private final int[] elevation;
+  private final int[] azimuth;
+  private final int[] snr;
+
+  SatellitesInView(int inView, int[] prn, int[] elevation, int[] azimuth, int[] snr)
+  {
+    this.inView = inView;
+    this.prn = prn;
+    this.elevation = elevation;
+    this.azimuth = azimuth;
+    this.snr = snr;
+  }
+
+  /**
+   * @return the number of satellites in the snapshot.
+   */
+  public int size()
+  { return this.prn.length; }
+
+  /**
+   * @return the number of satellites in view, as announced by the sentences.
+   */
+  public int getInView()
+  { return this.inView; }
+
+  public int getPrn(int i)
+  { return this.prn[i]; }
+
+  /**
+   * @return in degrees (0-90)
+   */
+  public int getElevation(int i)
+  { return this.elevation[i]; }
+
+  /**
+   * @return in degrees (0-359)
+   */
+  public int getAzimuth(int i)
+  { return this.azimuth[i]; }
+
+  /**
+   * @return in db (0-99), 0 when not tracked.
+   */
+  public int getSnr(int i)
+  { return this.snr[i]; }
+
+  /**
+   * @return the index of a satellite, -1 if it is not in view.
+   */
+  public int indexOf(int prn)
+  {
+    int low = 0;
+    int high = this.prn.length - 1;
+    while (low <= high)
+    {
+      int mid = (low + high) >>> 1;
+      if (this.prn[mid] < prn)
+        low = mid + 1;
+      else if (this.prn[mid] > prn)
+        high = mid - 1;
+      else
+        return mid;
+    }
+    return -1;
+  }
+
+  /**
+   * @return a new map, like the one {@link StringParsers#parseGSV(String)} returns.
+   */
+  public Map<Integer, SVData> toMap()
+  {
+    Map<Integer, SVData> map = new HashMap<Integer, SVData>(prn.length);
+    for (int i=0; i<prn.length; i++)
+      map.put(prn[i], new SVData(prn[i], elevation[i], azimuth[i], snr[i]));
+    return map;
+  }
+
+  public String toString()
+  {
+    StringBuffer sb = new StringBuffer();
+    sb.append(prn.length).append(" Satellites in view:");
+    for (int i=0; i<prn.length; i++)
+      sb.append(" #").append(prn[i]).append(" Elev:").append(elevation[i]).append(", Z:").append(azimuth[i]).append(", SNR:").append(snr[i]).append("db.");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,217 @@
+package ocss.nmea.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Parses each sentence once, and hands the result to all the subscribers of its {@link SentenceType}.
+ * <br>
+ * The sentence id (the 3 letters after the talker id, like <code>RMC</code> in <code>$GPRMC</code>)
+ * is turned into an index in a table of 26<sup>3</sup> entries, no String is created, no map is searched.
+ * A sentence nobody subscribed to is not parsed at all.
+ * <pre>
+ * final SentenceDispatcher dispatcher = new SentenceDispatcher();
+ * dispatcher.subscribe(SentenceType.MWV, windDisplay);
+ * dispatcher.subscribe(SentenceType.MWV, windLogger);   // Same Wind object as windDisplay
+ * client.addNMEAListener(new NMEAListener()
+ *   {
+ *     public void dataDetected(NMEAEvent e)
+ *     {
+ *       dispatcher.dispatch(e.getContent());
+ *     }
+ *   });
+ * </pre>
+ * The subscriptions can change at any time, from any thread.
+ * The subscribers are called on the thread calling {@link #dispatch(String)}.
+ * A subscriber that throws gets the exception in its {@link SentenceSubscriber#parseFailed(String, Throwable)},
+ * the other ones are not affected.
+ * The proprietary sentences (<code>$P...</code>) are not dispatched.
+ */
+public final class SentenceDispatcher
+{
+  final static int NO_INDEX = -1;
+  private final static int TABLE_SIZE = 26 * 26 * 26;
+  private final static int ID_OFFSET = 3; // $ + 2 chars of talker id
+
+  /**
+   * A type, and its subscribers. Replaced when a subscriber comes or goes.
+   */
+  private final static class Subscription
+  {
+    final SentenceType<?> type;
+    final SentenceSubscriber<?>[] subscribers;
+
+    Subscription(SentenceType<?> type, SentenceSubscriber<?>[] subscribers)
+    {
+      this.type = type;
+      this.subscribers = subscribers;
+    }
+  }
+
+  // The arrays are never modified once in the table, they are replaced.
+  private final AtomicReferenceArray<Subscription[]> table = new AtomicReferenceArray<Subscription[]>(TABLE_SIZE);
+  private final AtomicLong parsed = new AtomicLong(0L);
+
+  public SentenceDispatcher()
+  {
+  }
+
+  /**
+   * @return the index of the 3 letters starting at from, {@link #NO_INDEX} if they are not all from A to Z.
+   */
+  static int index(CharSequence cs, int from)
+  {
+    if (cs.length() < from + 3)
+      return NO_INDEX;
+    int c0 = cs.charAt(from) - 'A';
+    int c1 = cs.charAt(from + 1) - 'A';
+    int c2 = cs.charAt(from + 2) - 'A';
+    if ((c0 | c1 | c2) < 0 || c0 >= 26 || c1 >= 26 || c2 >= 26)
+      return NO_INDEX;
+    return (((c0 * 26) + c1) * 26) + c2;
+  }
+
+  public <T> void subscribe(SentenceType<T> type, SentenceSubscriber<? super T> subscriber)
+  {
+    int idx = index(type.getId(), 0);
+    synchronized (table)
+    {
+      Subscription[] current = table.get(idx);
+      int n = (current == null ? 0 : current.length);
+      for (int i=0; i<n; i++)
+      {
+        if (current[i].type == type)
+        {
+          SentenceSubscriber<?>[] subscribers = current[i].subscribers;
+          for (SentenceSubscriber<?> s : subscribers)
+          {
+            if (s == subscriber)
+              return;
+          }
+          SentenceSubscriber<?>[] more = new SentenceSubscriber<?>[subscribers.length + 1];
+          System.arraycopy(subscribers, 0, more, 0, subscribers.length);
+          more[subscribers.length] = subscriber;
+          Subscription[] updated = current.clone();
+          updated[i] = new Subscription(type, more);
+          table.set(idx, updated);
+          return;
+        }
+      }
+      Subscription[] updated = new Subscription[n + 1];
+      if (current != null)
+        System.arraycopy(current, 0, updated, 0, n);
+      updated[n] = new Subscription(type, new SentenceSubscriber<?>[] { subscriber });
+      table.set(idx, updated);
+    }
+  }
+
+  public <T> void unsubscribe(SentenceType<T> type, SentenceSubscriber<? super T> subscriber)
+  {
+    int idx = index(type.getId(), 0);
+    synchronized (table)
+    {
+      Subscription[] current = table.get(idx);
+      if (current == null)
+        return;
+      for (int i=0; i<current.length; i++)
+      {
+        if (current[i].type != type)
+          continue;
+        SentenceSubscriber<?>[] subscribers = current[i].subscribers;
+        int found = -1;
+        for (int j=0; j<subscribers.length && found == -1; j++)
+        {
+          if (subscribers[j] == subscriber)
+            found = j;
+        }
+        if (found == -1)
+          return;
+        if (subscribers.length > 1)
+        {
+          SentenceSubscriber<?>[] fewer = new SentenceSubscriber<?>[subscribers.length - 1];
+          System.arraycopy(subscribers, 0, fewer, 0, found);
+          System.arraycopy(subscribers, found + 1, fewer, found, fewer.length - found);
+          Subscription[] updated = current.clone();
+          updated[i] = new Subscription(type, fewer);
+          table.set(idx, updated);
+        }
+        else if (current.length > 1)
+        {
+          Subscription[] updated = new Subscription[current.length - 1];
+          System.arraycopy(current, 0, updated, 0, i);
+          System.arraycopy(current, i + 1, updated, i, updated.length - i);
+          table.set(idx, updated);
+        }
+        else
+          table.set(idx, null);
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return true if the sentence had subscribers (and was parsed).
+   */
+  public boolean dispatch(String sentence)
+  {
+    if (sentence.length() < ID_OFFSET + 3 || sentence.charAt(1) == 'P') // Proprietary
+      return false;
+    int idx = index(sentence, ID_OFFSET);
+    if (idx == NO_INDEX)
+      return false;
+    Subscription[] subscriptions = table.get(idx);
+    if (subscriptions == null)
+      return false;
+    for (Subscription subscription : subscriptions)
+      deliver(subscription, sentence);
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void deliver(Subscription subscription, String sentence)
+  {
+    Object value;
+    try
+    {
+      value = subscription.type.parse(sentence); // Once, for all the subscribers
+      parsed.incrementAndGet();
+    }
+    catch (Exception ex)
+    {
+      for (SentenceSubscriber<?> s : subscription.subscribers)
+        failed(s, sentence, ex);
+      return;
+    }
+    if (value == null)
+      return;
+    for (SentenceSubscriber<?> s : subscription.subscribers)
+    {
+      try
+      {
+        ((SentenceSubscriber<Object>)s).sentenceParsed(value, sentence);
+      }
+      catch (RuntimeException ex) // The other subscribers still get the sentence
+      {
+        failed(s, sentence, ex);
+      }
+    }
+  }
+
+  private static void failed(SentenceSubscriber<?> s, String sentence, Throwable t)
+  {
+    try
+    {
+      s.parseFailed(sentence, t);
+    }
+    catch (RuntimeException ex)
+    {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * @return the number of times a sentence has been parsed.
+   */
+  public long getParsed()
+  { return this.parsed.get(); }
+}
@@ -0,0 +1,24 @@
+package ocss.nmea.parser;
+
+import java.util.EventListener;
+
+/**
+ * Receives the sentences of a {@link SentenceType}, parsed, from a {@link SentenceDispatcher}.
+ * <br>
+ * The parsed object is shared with the other subscribers of the same type, do not modify it.
+ */
+public abstract class SentenceSubscriber<T> implements EventListener
+{
+  /**
+   * @param value the parsed sentence
+   * @param sentence the sentence, as received
+   */
+  public abstract void sentenceParsed(T value, String sentence);
+
+  /**
+   * The sentence could not be parsed, or {@link #sentenceParsed(Object, String)} threw.
+   */
+  public void parseFailed(String sentence, Throwable t)
+  {
+  }
+}
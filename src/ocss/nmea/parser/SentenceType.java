@@ -0,0 +1,208 @@
+package ocss.nmea.parser;
+
+import java.util.List;
+
+/**
+ * A sentence identifier (like <code>RMC</code>), and the way to parse it.
+ * <br>
+ * Used to subscribe to a {@link SentenceDispatcher}, the subscribers receive the parsed object:
+ * <pre>
+ * dispatcher.subscribe(SentenceType.RMC, new SentenceSubscriber&lt;RMC&gt;()
+ *   {
+ *     public void sentenceParsed(RMC rmc, String sentence)
+ *     {
+ *       ...
+ *     }
+ *   });
+ * </pre>
+ * Extend it for the sentences not listed here, or to parse them differently.
+ * The id must be made of 3 letters, from A to Z.
+ */
+public abstract class SentenceType<T>
+{
+  private final String id;
+
+  protected SentenceType(String id)
+  {
+    if (id == null || id.length() != 3 || SentenceDispatcher.index(id, 0) == SentenceDispatcher.NO_INDEX)
+      throw new IllegalArgumentException("Invalid sentence id [" + id + "], 3 letters expected");
+    this.id = id;
+  }
+
+  /**
+   * @return the sentence id, like <code>RMC</code>
+   */
+  public String getId()
+  { return this.id; }
+
+  /**
+   * @param sentence the whole sentence, like <code>$GPRMC,...*6A</code>
+   * @return the parsed object, null if the sentence is not valid.
+   */
+  public abstract T parse(String sentence);
+
+  public String toString()
+  { return this.id; }
+
+  public final static SentenceType<RMC> RMC = new SentenceType<RMC>("RMC")
+    {
+      public RMC parse(String sentence)
+      { return StringParsers.parseRMC(sentence); }
+    };
+
+  public final static SentenceType<RMB> RMB = new SentenceType<RMB>("RMB")
+    {
+      public RMB parse(String sentence)
+      { return StringParsers.parseRMB(sentence); }
+    };
+
+  /**
+   * Position, time, number of satellites, and altitude.
+   */
+  public final static SentenceType<List<Object>> GGA = new SentenceType<List<Object>>("GGA")
+    {
+      public List<Object> parse(String sentence)
+      { return StringParsers.parseGGA(sentence); }
+    };
+
+  /**
+   * Position, and time.
+   */
+  public final static SentenceType<Object[]> GLL = new SentenceType<Object[]>("GLL")
+    {
+      public Object[] parse(String sentence)
+      { return StringParsers.parseGLL(sentence); }
+    };
+
+  public final static SentenceType<GSA> GSA = new SentenceType<GSA>("GSA")
+    {
+      public GSA parse(String sentence)
+      { return StringParsers.parseGSA(sentence); }
+    };
+
+  public final static SentenceType<OverGround> VTG = new SentenceType<OverGround>("VTG")
+    {
+      public OverGround parse(String sentence)
+      { return StringParsers.parseVTG(sentence); }
+    };
+
+  /**
+   * Heading, deviation, variation.
+   */
+  public final static SentenceType<double[]> HDG = new SentenceType<double[]>("HDG")
+    {
+      public double[] parse(String sentence)
+      { return StringParsers.parseHDG(sentence); }
+    };
+
+  public final static SentenceType<Integer> HDM = new SentenceType<Integer>("HDM")
+    {
+      public Integer parse(String sentence)
+      { return StringParsers.parseHDM(sentence); }
+    };
+
+  public final static SentenceType<Integer> HDT = new SentenceType<Integer>("HDT")
+    {
+      public Integer parse(String sentence)
+      { return StringParsers.parseHDT(sentence); }
+    };
+
+  public final static SentenceType<Wind> MWV = new SentenceType<Wind>("MWV")
+    {
+      public Wind parse(String sentence)
+      { return StringParsers.parseMWV(sentence); }
+    };
+
+  public final static SentenceType<Wind> VWR = new SentenceType<Wind>("VWR")
+    {
+      public Wind parse(String sentence)
+      { return StringParsers.parseVWR(sentence); }
+    };
+
+  public final static SentenceType<Wind> VWT = new SentenceType<Wind>("VWT")
+    {
+      public Wind parse(String sentence)
+      { return StringParsers.parseVWT(sentence); }
+    };
+
+  /**
+   * Boat speed, heading.
+   */
+  public final static SentenceType<double[]> VHW = new SentenceType<double[]>("VHW")
+    {
+      public double[] parse(String sentence)
+      { return StringParsers.parseVHW(sentence); }
+    };
+
+  /**
+   * Log, cumulative and trip.
+   */
+  public final static SentenceType<double[]> VLW = new SentenceType<double[]>("VLW")
+    {
+      public double[] parse(String sentence)
+      { return StringParsers.parseVLW(sentence); }
+    };
+
+  public final static SentenceType<Current> VDR = new SentenceType<Current>("VDR")
+    {
+      public Current parse(String sentence)
+      { return StringParsers.parseVDR(sentence); }
+    };
+
+  /**
+   * Water temperature, in Celsius.
+   */
+  public final static SentenceType<Double> MTW = new SentenceType<Double>("MTW")
+    {
+      public Double parse(String sentence)
+      { return StringParsers.parseMTW(sentence); }
+    };
+
+  /**
+   * Air temperature, in Celsius.
+   */
+  public final static SentenceType<Double> MTA = new SentenceType<Double>("MTA")
+    {
+      public Double parse(String sentence)
+      { return StringParsers.parseMTA(sentence); }
+    };
+
+  /**
+   * Barometric pressure, in mb.
+   */
+  public final static SentenceType<Double> MMB = new SentenceType<Double>("MMB")
+    {
+      public Double parse(String sentence)
+      { return StringParsers.parseMMB(sentence); }
+    };
+
+  /**
+   * Depth, in meters.
+   */
+  public final static SentenceType<Float> DBT = new SentenceType<Float>("DBT")
+    {
+      public Float parse(String sentence)
+      { return StringParsers.parseDBT(sentence, StringParsers.DEPTH_IN_METERS); }
+    };
+
+  /**
+   * Depth, in meters.
+   */
+  public final static SentenceType<Float> DPT = new SentenceType<Float>("DPT")
+    {
+      public Float parse(String sentence)
+      { return StringParsers.parseDPT(sentence, StringParsers.DEPTH_IN_METERS); }
+    };
+
+  public final static SentenceType<UTC> ZDA = new SentenceType<UTC>("ZDA")
+    {
+      public UTC parse(String sentence)
+      { return StringParsers.parseZDA(sentence); }
+    };
+
+  public final static SentenceType<List<StringGenerator.XDRElement>> XDR = new SentenceType<List<StringGenerator.XDRElement>>("XDR")
+    {
+      public List<StringGenerator.XDRElement> parse(String sentence)
+      { return StringParsers.parseXDR(sentence); }
+    };
+}
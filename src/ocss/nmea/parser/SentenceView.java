@@ -0,0 +1,145 @@
+package ocss.nmea.parser;
+
+/**
+ * A reusable view on a sentence: the fields are indexed once by {@link #reset(CharSequence)},
+ * and each getter decodes its own field when it is called, into a primitive.
+ * Nothing is created, not even for the fields the getters are not called for.
+ * <pre>
+ * RMCView rmc = new RMCView(); // Once, for the thread
+ * ...
+ * if (rmc.reset(sentence) &amp;&amp; rmc.isActive())
+ *   sog = rmc.getSOG();
+ * </pre>
+ * The empty or unreadable fields are returned as NaN.
+ * A view refers to the sentence it was reset with, it is not to be kept once the sentence is gone (like a reused buffer).
+ * <br>
+ * Not thread safe, one instance per thread (or per source).
+ */
+public abstract class SentenceView
+{
+  protected final NMEAFields fields = new NMEAFields();
+  private final String id;
+  private boolean valid = false;
+
+  /**
+   * @param id the sentence id, like <code>RMC</code>
+   */
+  protected SentenceView(String id)
+  {
+    this.id = id;
+  }
+
+  public String getId()
+  { return this.id; }
+
+  /**
+   * Indexes the fields of a new sentence.
+   * @param sentence like <code>$GPRMC,...*6A</code>, the trailing CR LF are ignored.
+   * @return true if the sentence has the right id, and a valid checksum.
+   */
+  public boolean reset(CharSequence sentence)
+  {
+    valid = false;
+    int to = sentence.length();
+    if (!NMEAChecksum.isValid(sentence, 0, to))
+      return false;
+    int star = 0;
+    while (sentence.charAt(star) != '*') // There is one, the checksum is valid
+      star++;
+    fields.reset(sentence, 0, star);
+    int idEnd = fields.end(0);
+    if (idEnd - fields.start(0) < id.length() + 1) // $, and the talker id before
+      return false;
+    for (int i=0; i<id.length(); i++)
+    {
+      if (sentence.charAt(idEnd - id.length() + i) != id.charAt(i))
+        return false;
+    }
+    valid = true;
+    return true;
+  }
+
+  /**
+   * @return the result of the last {@link #reset(CharSequence)}
+   */
+  public boolean isValid()
+  { return this.valid; }
+
+  /**
+   * @return the sentence the view was reset with.
+   */
+  public CharSequence getSentence()
+  { return fields.data(); }
+
+  /**
+   * @return the number of fields, the sentence id included.
+   */
+  public int getFieldCount()
+  { return (valid ? fields.count() : 0); }
+
+  /**
+   * @return the field as a double, NaN if it is empty, missing, or not a number.
+   */
+  protected double doubleAt(int i)
+  { return (valid ? number(fields, i) : Double.NaN); }
+
+  /**
+   * @return the character of a one character field, like <code>N</code> or <code>A</code>,
+   * <code>'\0'</code> if it is empty or missing.
+   */
+  protected char charAt(int i)
+  { return (valid ? letter(fields, i) : '\0'); }
+
+  /**
+   * A latitude or a longitude, like <code>4807.038,N</code> or <code>01131.000,E</code>.
+   * @param i the index of the value, the sign is the next field
+   * @param degDigits 2 for a latitude, 3 for a longitude
+   * @param negative the sign (<code>S</code> or <code>W</code>) of the negative values
+   * @return the value in degrees, NaN if it is empty or not a number
+   */
+  protected double degreesAt(int i, int degDigits, char negative)
+  { return (valid ? degrees(fields, i, degDigits, negative) : Double.NaN); }
+
+  // The same, on any indexed sentence
+
+  static double number(NMEAFields fields, int i)
+  {
+    if (fields.isEmpty(i))
+      return Double.NaN;
+    try
+    {
+      return fields.parseNMEADouble(i);
+    }
+    catch (NumberFormatException nfe)
+    {
+      return Double.NaN;
+    }
+  }
+
+  static char letter(NMEAFields fields, int i)
+  {
+    return (fields.isEmpty(i) ? '\0' : fields.charAt(i, 0));
+  }
+
+  static double degrees(NMEAFields fields, int i, int degDigits, char negative)
+  {
+    if (fields.isEmpty(i) || fields.length(i) < degDigits)
+      return Double.NaN;
+    try
+    {
+      CharSequence data = fields.data();
+      int from = fields.start(i);
+      double deg = NMEAFields.parseInt(data, from, from + degDigits);
+      double min = (fields.length(i) == degDigits ? 0d : NMEANumbers.parseNMEADouble(data, from + degDigits, fields.end(i)));
+      double value = deg + (min / 60d);
+      return (letter(fields, i + 1) == negative ? -value : value);
+    }
+    catch (NumberFormatException nfe)
+    {
+      return Double.NaN;
+    }
+  }
+
+  public String toString()
+  { return (valid ? fields.data().toString() : "Invalid " + id); }
+}
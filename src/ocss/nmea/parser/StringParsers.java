@@ -1,14 +1,10 @@
 package ocss.nmea.parser;
 
-import java.text.NumberFormat;
-
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 
 import java.util.Map;
 import java.util.TimeZone;
@@ -30,38 +26,64 @@ public class StringParsers
    * ZLZ Time of Day
    */
 
-  private static Map<Integer, SVData> gsvMap = null;
+  // The GSV cycle in progress, per thread. See GSVAssembler for one per source.
+  private final static ThreadLocal<Map<Integer, SVData>> GSV_MAP = new ThreadLocal<Map<Integer, SVData>>();
+  
+  private final static ThreadLocal<NMEAFields> FIELDS = new ThreadLocal<NMEAFields>()
+    {
+      protected NMEAFields initialValue()
+      {
+        return new NMEAFields();
+      }
+    };
+
+  private final static ThreadLocal<NMEATime> TIME = new ThreadLocal<NMEATime>()
+    {
+      protected NMEATime initialValue()
+      {
+        return new NMEATime();
+      }
+    };
+
+  /**
+   * The fields before the checksum, the way <code>data.substring(0, data.indexOf("*")).split(",")</code> used to return them.
+   * The cursor belongs to the current thread, and is reused by the next call.
+   */
+  private static NMEAFields fields(String data)
+  {
+    int star = data.indexOf('*');
+    if (star < 0)
+      throw new StringIndexOutOfBoundsException(star); // Like substring(0, -1) did
+    return FIELDS.get().reset(data, 0, star);
+  }
   
   public static List<StringGenerator.XDRElement> parseXDR(String data)
   {
     List<StringGenerator.XDRElement> lxdr = new ArrayList<StringGenerator.XDRElement>();
-    String sa[] = data.substring(0, data.indexOf("*")).split(",");
-    if ((sa.length - 1) % 4 != 0) // Mismatch
+    NMEAFields sa = fields(data);
+    int nbElements = sa.splitCount();
+    if ((nbElements - 1) % 4 != 0) // Mismatch
     {
-      System.out.println("XDR String invalid (" + sa.length + " element(s) found, expected a multiple of 4)");
+      System.out.println("XDR String invalid (" + nbElements + " element(s) found, expected a multiple of 4)");
       return lxdr;
     }
-    for (int i=1; i<sa.length; i+=4)
+    for (int i=1; i<nbElements; i+=4)
     {
-      String type = sa[i];
-      String valStr = sa[i+1];
-      String unit = sa[i+2];
-      String tname = sa[i+3];
       // Valid unit and type
       boolean foundType = false;
       boolean foundUnit = false;
       for (StringGenerator.XDRTypes xdrt : StringGenerator.XDRTypes.values())
       {
-        if (xdrt.type().equals(type))  
+        if (sa.equals(i, xdrt.type()))  
         {
           foundType = true;
-          if (xdrt.unit().equals(unit))
+          if (sa.equals(i+2, xdrt.unit()))
           {
             foundUnit = true;
             try
             {
-              double value = Double.parseDouble(valStr);
-              lxdr.add(new StringGenerator.XDRElement(xdrt, value, tname));
+              double value = sa.parseDouble(i+1);
+              lxdr.add(new StringGenerator.XDRElement(xdrt, value, sa.string(i+3)));
             }
             catch (NumberFormatException nfe)
             {
@@ -73,12 +95,12 @@ public class StringParsers
       }
       if (!foundType)
       {
-        System.out.println("Unknown XDR type [" + type + "], in [" + data + "]");
+        System.out.println("Unknown XDR type [" + sa.string(i) + "], in [" + data + "]");
         return lxdr;
       }
       if (!foundUnit)
       {
-        System.out.println("Invalid XDR unit [" + unit + "] for type [" + type + "], in [" + data + "]");   
+        System.out.println("Invalid XDR unit [" + sa.string(i+2) + "] for type [" + sa.string(i) + "], in [" + data + "]");   
         return lxdr;
       }
     }
@@ -102,10 +124,10 @@ public class StringParsers
      *                     Pressure in inches of Hg
      */
     double d = 0d;
-    String sa[] = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields sa = fields(data);
     try 
     { 
-      d = Double.parseDouble(sa[3]); 
+      d = sa.parseDouble(3); 
       d *= 1000d;
     } catch (NumberFormatException nfe) {}
     return d;
@@ -120,10 +142,10 @@ public class StringParsers
      *                     Temperature in Celcius
      */
     double d = 0d;
-    String sa[] = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields sa = fields(data);
     try 
     { 
-      d = Double.parseDouble(sa[1]); 
+      d = sa.parseDouble(1); 
     } catch (NumberFormatException nfe) {}
     return d;
   }
@@ -141,11 +163,11 @@ public class StringParsers
      *                     True Dir
      */ 
     Current current = null;
-    String sa[] = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields sa = fields(data);
     try
     {
-      double speed = Double.parseDouble(sa[5]);
-      float dir =   Float.parseFloat(sa[1]);
+      double speed = sa.parseDouble(5);
+      float dir =   sa.parseFloat(1);
       current = new Current((int)Math.round(dir), speed);
     }
     catch (Exception ex) {}
@@ -164,10 +186,10 @@ public class StringParsers
      *                     Voltage
      */
     float v = -1f;
-    String sa[] = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields sa = fields(data);
     try 
     { 
-      v = Float.parseFloat(sa[1]); 
+      v = sa.parseFloat(1); 
     } catch (NumberFormatException nfe) {}
     return v;
   }
@@ -181,10 +203,10 @@ public class StringParsers
      *                     Cache Age in ms
      */ 
     long age = 0L;
-    String sa[] = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields sa = fields(data);
     try 
     { 
-      age = Long.parseLong(sa[1]); 
+      age = sa.parseLong(1); 
     } catch (NumberFormatException nfe) {}    
     return age;
   }
@@ -193,7 +215,7 @@ public class StringParsers
   {
     String s = data.trim();
     if (s.length() < 6)
-      return gsvMap;
+      return GSV_MAP.get();
 //  System.out.println("String [" + s + "]");
     /* Structure is $GPGSV,3,1,11,03,03,111,00,04,15,270,00,06,01,010,00,13,06,292,00*74
      *                     | | |  |  |  |   |  |            |            |  
@@ -214,15 +236,15 @@ public class StringParsers
     int nbMess = -1; 
     int messNum = -1;
 
-    String sa[] = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields sa = fields(data);
     try
     {
-      nbMess = Integer.parseInt(sa[1]); 
-      messNum = Integer.parseInt(sa[2]);
-      int nbSVinView = Integer.parseInt(sa[3]);
+      nbMess = sa.parseInt(1); 
+      messNum = sa.parseInt(2);
+      int nbSVinView = sa.parseInt(3);
       if (messNum == 1) // Reset
       {
-        gsvMap = new HashMap<Integer, SVData>(nbSVinView);
+        GSV_MAP.set(new HashMap<Integer, SVData>(nbSVinView));
       }
 
       for (int indexInSentence=1; indexInSentence<=4; indexInSentence++)
@@ -234,11 +256,12 @@ public class StringParsers
           int elev  = 0;
           int z     = 0;
           int snr   = 0;
-          try { svNum = Integer.parseInt(sa[DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 1]); } catch (Exception pex) {}
-          try { elev  = Integer.parseInt(sa[DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 2]); } catch (Exception pex) {}
-          try { z     = Integer.parseInt(sa[DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 3]); } catch (Exception pex) {}
-          try { snr   = Integer.parseInt(sa[DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 4]); } catch (Exception pex) {}
+          try { svNum = sa.parseInt(DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 1); } catch (Exception pex) {}
+          try { elev  = sa.parseInt(DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 2); } catch (Exception pex) {}
+          try { z     = sa.parseInt(DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 3); } catch (Exception pex) {}
+          try { snr   = sa.parseInt(DATA_OFFSET + ((indexInSentence - 1) * NB_DATA) + 4); } catch (Exception pex) {}
           SVData svd = new SVData(svNum, elev, z, snr);
+          Map<Integer, SVData> gsvMap = GSV_MAP.get();
           if (gsvMap != null) gsvMap.put(svNum, svd);          
 //        System.out.println("SV #" + rnkInView + ", SV:" + svNum + " H:"+ elev + ", Z:" + z + ", snr:" + snr);
         }
@@ -249,7 +272,7 @@ public class StringParsers
       ex.printStackTrace();
     }
     if (messNum != -1 && nbMess != -1 && messNum == nbMess)
-      return gsvMap;
+      return GSV_MAP.get();
     
     return null;
   }
@@ -302,36 +325,36 @@ public class StringParsers
      *         |         Latitude
      *         UTC of position
      */    
-    String sa[] = s.substring(0, s.indexOf("*")).split(",");
+    NMEAFields sa = fields(s);
     double utc = 0L, lat = 0L, lng = 0L;
     int nbsat = 0;
     try 
-    { utc = parseNMEADouble(sa[UTC_POS]); } 
+    { utc = sa.parseNMEADouble(UTC_POS); } 
     catch (Exception ex) {}
     
     try 
     { 
-      double l = parseNMEADouble(sa[LAT_POS]);
+      double l = sa.parseNMEADouble(LAT_POS);
       int intL = (int)l/100;
       double m = ((l/100.0)-intL) * 100.0;
       m *= (100.0/60.0);
       lat = intL + (m/100.0);
-      if ("S".equals(sa[LAT_SGN_POS]))
+      if (sa.is(LAT_SGN_POS, 'S'))
         lat = -lat;
     } 
     catch (Exception ex) {}
     try 
     { 
-      double g = parseNMEADouble(sa[LONG_POS]);
+      double g = sa.parseNMEADouble(LONG_POS);
       int intG = (int)g/100;
       double m = ((g/100.0)-intG) * 100.0;
       m *= (100.0/60.0);
       lng = intG + (m/100.0);
-      if ("W".equals(sa[LONG_SGN_POS]))
+      if (sa.is(LONG_SGN_POS, 'W'))
         lng = -lng;
     } 
     catch (Exception ex) {}
-    try { nbsat = Integer.parseInt(sa[NBSAT_POS]); } catch (Exception ex) {}
+    try { nbsat = sa.parseInt(NBSAT_POS); } catch (Exception ex) {}
     
 //  System.out.println("UTC:" + utc + ", lat:" + lat + ", lng:" + lng + ", nbsat:" + nbsat); 
     int h = (int)(utc / 10000);
@@ -344,7 +367,7 @@ public class StringParsers
     
     double alt = 0;
     try 
-    { alt = parseNMEADouble(sa[ANTENNA_ALT]); } 
+    { alt = sa.parseNMEADouble(ANTENNA_ALT); } 
     catch (Exception ex) {}
     
     al = new ArrayList<Object>(4);
@@ -370,37 +393,38 @@ public class StringParsers
      *              A=Automatic, 3D/2D
      */
     GSA gsa = new GSA();
-    String[] elements = data.substring(0, data.indexOf("*")).split(",");
-    if (elements.length >= 2)
+    NMEAFields elements = fields(data);
+    int nbElements = elements.splitCount();
+    if (nbElements >= 2)
     {
-      if ("M".equals(elements[1]))
+      if (elements.is(1, 'M'))
         gsa.setMode1(GSA.ModeOne.Manual);
-      if ("A".equals(elements[1]))
+      if (elements.is(1, 'A'))
         gsa.setMode1(GSA.ModeOne.Auto);
     }
-    if (elements.length >= 3)
+    if (nbElements >= 3)
     {
-      if ("1".equals(elements[2]))
+      if (elements.is(2, '1'))
         gsa.setMode2(GSA.ModeTwo.NoFix);
-      if ("2".equals(elements[2]))
+      if (elements.is(2, '2'))
         gsa.setMode2(GSA.ModeTwo.TwoD);
-      if ("3".equals(elements[2]))
+      if (elements.is(2, '3'))
         gsa.setMode2(GSA.ModeTwo.ThreeD);
     }
     for (int i=3; i<15; i++)
     {
-      if (elements[i].trim().length() > 0)
+      if (!elements.isEmpty(i))
       {
-        int sv = Integer.parseInt(elements[i]);
+        int sv = elements.parseInt(i);
         gsa.getSvArray().add(sv);
       }
     }
-    if (elements.length >= 16)
-      gsa.setPDOP(Float.parseFloat(elements[15]));
-    if (elements.length >= 17)
-      gsa.setHDOP(Float.parseFloat(elements[16]));
-    if (elements.length >= 18)
-      gsa.setVDOP(Float.parseFloat(elements[17]));
+    if (nbElements >= 16)
+      gsa.setPDOP(elements.parseFloat(15));
+    if (nbElements >= 17)
+      gsa.setHDOP(elements.parseFloat(16));
+    if (nbElements >= 18)
+      gsa.setVDOP(elements.parseFloat(17));
     
     return gsa;
   }  
@@ -434,10 +458,10 @@ public class StringParsers
 
     try
     {
-      String[] nmeaElements = data.substring(0, data.indexOf("*")).split(",");
-      try { speed = parseNMEADouble(nmeaElements[5]); } catch (Exception ex) {}
-      try { hdm   = parseNMEADouble(nmeaElements[3]); } catch (Exception ex) {}
-      try { hdg   = parseNMEADouble(nmeaElements[1]); } catch (Exception ex) {}
+      NMEAFields nmeaElements = fields(data);
+      try { speed = nmeaElements.parseNMEADouble(5); } catch (Exception ex) {}
+      try { hdm   = nmeaElements.parseNMEADouble(3); } catch (Exception ex) {}
+      try { hdg   = nmeaElements.parseNMEADouble(1); } catch (Exception ex) {}
     }
     catch (Exception ex)
     {
@@ -476,9 +500,9 @@ public class StringParsers
      */
     try
     {
-      String[] nmeaElements = data.substring(0, data.indexOf("*")).split(",");
-      cumulative = parseNMEADouble(nmeaElements[1]);
-      sinceReset = parseNMEADouble(nmeaElements[3]);
+      NMEAFields nmeaElements = fields(data);
+      cumulative = nmeaElements.parseNMEADouble(1);
+      sinceReset = nmeaElements.parseNMEADouble(3);
     }
     catch (Exception ex)
     {
@@ -501,10 +525,10 @@ public class StringParsers
     double temp = 0d;
     try
     {
-      String[] nmeaElements = data.substring(0, data.indexOf("*")).split(",");
-      String _s = nmeaElements[1];
-      if (_s.startsWith("+")) _s = _s.substring(1);
-      temp = parseNMEADouble(_s);
+      NMEAFields nmeaElements = fields(data);
+      int from = nmeaElements.start(1);
+      if (!nmeaElements.isEmpty(1) && nmeaElements.charAt(1, 0) == '+') from++;
+      temp = NMEANumbers.parseNMEADouble(data, from, nmeaElements.end(1));
     }
     catch (Exception ex)
     {
@@ -541,32 +565,41 @@ public class StringParsers
         return aw;
       else
       {
-        String speed = "", angle = "";
+        // [from, to[ in s
+        int speedFrom = 0, speedTo = 0, angleFrom = 0, angleTo = 0;
         if (s.indexOf("MWV,") > -1 && s.indexOf(",R,") > -1) // Apparent
         {
           flavor = APPARENT_WIND;
-          angle = s.substring(s.indexOf("MWV,") + "MWV,".length(), s.indexOf(",R,"));        
+          angleFrom = s.indexOf("MWV,") + "MWV,".length();
+          angleTo   = s.indexOf(",R,");
+          checkRange(s, angleFrom, angleTo);
         }
         if (s.indexOf(",R,") > -1 && s.indexOf(",N,") > -1)
         {
-          speed = s.substring(s.indexOf(",R,") + ",R,".length(), s.indexOf(",N,"));         
+          speedFrom = s.indexOf(",R,") + ",R,".length();
+          speedTo   = s.indexOf(",N,");
+          checkRange(s, speedFrom, speedTo);
         }
-        if (speed.trim().length() == 0 && angle.trim().length() == 0)
+        if (isBlank(s, speedFrom, speedTo) && isBlank(s, angleFrom, angleTo))
         {
           if (s.indexOf("MWV,") > -1 && s.indexOf(",T,") > -1)
           {
             flavor = TRUE_WIND;
-            angle = s.substring(s.indexOf("MWV,") + "MWV,".length(), s.indexOf(",T,"));    // True    
+            angleFrom = s.indexOf("MWV,") + "MWV,".length(); // True
+            angleTo   = s.indexOf(",T,");
+            checkRange(s, angleFrom, angleTo);
           }
           if (s.indexOf(",T,") > -1 && s.indexOf(",N,") > -1)
           {
-            speed = s.substring(s.indexOf(",T,") + ",T,".length(), s.indexOf(",N,"));        
+            speedFrom = s.indexOf(",T,") + ",T,".length();
+            speedTo   = s.indexOf(",N,");
+            checkRange(s, speedFrom, speedTo);
           }
         }
         float awa = 0f;
         double aws = 0d;
-        try { awa = parseNMEAFloat(angle); } catch (Exception ex) {}
-        try { aws = parseNMEADouble(speed); } catch (Exception ex) {}
+        try { awa = NMEANumbers.parseNMEAFloat(s, angleFrom, angleTo); } catch (Exception ex) {}
+        try { aws = NMEANumbers.parseNMEADouble(s, speedFrom, speedTo); } catch (Exception ex) {}
         if (flavor == APPARENT_WIND)
           aw = new ApparentWind(Math.round(awa), aws);
         else if (flavor == TRUE_WIND)
@@ -664,7 +697,7 @@ public class StringParsers
         return aw;
       else
       {
-        String speed = "", angle = "", side = "";
+        String angle = "", side = "";
         int firstCommaIndex = s.indexOf(",");
         int secondCommaIndex = s.indexOf(",", firstCommaIndex + 1);
         int thirdCommaIndex = s.indexOf(",", secondCommaIndex + 1);
@@ -675,10 +708,11 @@ public class StringParsers
           angle = angle.substring(0, angle.length() - 1);
         if (secondCommaIndex > -1 && thirdCommaIndex > -1)
           side = s.substring(secondCommaIndex + 1, thirdCommaIndex);        
-        if (thirdCommaIndex > -1 && fourthCommaIndex > -1)
-          speed = s.substring(thirdCommaIndex + 1, fourthCommaIndex);     
         double ws = 0d;
-        try { ws = parseNMEADouble(speed); } catch (Exception ex) {}
+        if (thirdCommaIndex > -1 && fourthCommaIndex > -1)
+        {
+          try { ws = NMEANumbers.parseNMEADouble(s, thirdCommaIndex + 1, fourthCommaIndex); } catch (Exception ex) {}
+        }
         int wa = 0;
         try { wa = Integer.parseInt(angle); } catch (Exception ex) {}
         if (side.equals("L"))
@@ -752,35 +786,30 @@ public class StringParsers
         return og;
       else
       {
-        String speed = "", angle = "";
-        String[] sa = s.split(",");
+        NMEAFields sa = FIELDS.get().reset(s, 0, s.length());
+        int nbElements = sa.splitCount();
         
         int tIndex = -1;
-        for (int i=0; i<sa.length; i++)
+        for (int i=0; i<nbElements; i++)
         {
-          if ("T".equals(sa[i]))
+          if (sa.is(i, 'T'))
           {
             tIndex = i;
             break;
           }
         }
         int nIndex = -1;
-        for (int i=0; i<sa.length; i++)
+        for (int i=0; i<nbElements; i++)
         {
-          if ("N".equals(sa[i]))
+          if (sa.is(i, 'N'))
           {
             nIndex = i;
             break;
           }
         }        
-        angle = sa[tIndex - 1];
-        speed = sa[nIndex - 1];
-        if (speed.endsWith("."))
-          speed += "0";
-        double sog = parseNMEADouble(speed);
-        if (angle.endsWith("."))
-          angle += "0";
-        int cog = (int)Math.round(parseNMEADouble(angle));
+        // A trailing '.' (like in "17.") is fine for the parser
+        double sog = sa.parseNMEADouble(nIndex - 1);
+        int cog = (int)Math.round(sa.parseNMEADouble(tIndex - 1));
         og = new OverGround(sog, cog);
       }
     }
@@ -851,48 +880,35 @@ public class StringParsers
         int i = s.indexOf(",");
         if (i > -1)
         {
-          String lat = "";
           int j = s.indexOf(",", i+1);
-          lat = s.substring(i+1, j);
-          double l = parseNMEADouble(lat);
+          checkRange(s, i+1, j);
+          double l = NMEANumbers.parseNMEADouble(s, i+1, j);
           int intL = (int)l/100;
           double m = ((l/100.0)-intL) * 100.0;
           m *= (100.0/60.0);
           l = intL + (m/100.0);
-          String latSgn = s.substring(j+1, j+2);
-          if (latSgn.equals("S"))
+          checkRange(s, j+1, j+2);
+          if (s.charAt(j+1) == 'S')
             l *= -1.0;
           int k = s.indexOf(",", j+3);
-          String lng = s.substring(j+3, k);
-          double g = parseNMEADouble(lng);
+          checkRange(s, j+3, k);
+          double g = NMEANumbers.parseNMEADouble(s, j+3, k);
           int intG = (int)g/100;
           m = ((g/100.0)-intG) * 100.0;
           m *= (100.0/60.0);
           g = intG + (m/100.0);
-          String lngSgn = s.substring(k+1, k+2);
-          if (lngSgn.equals("W"))
+          checkRange(s, k+1, k+2);
+          if (s.charAt(k+1) == 'W')
             g *= -1.0;
           
           ll = new GeoPos(l, g);       
           k = s.indexOf(",", k+2);
-          String dateStr = s.substring(k + 1);
-          if (dateStr.indexOf(",") > 0)
-            dateStr = dateStr.substring(0, dateStr.indexOf(","));
+          int dateEnd = s.indexOf(",", k + 1);
+          if (dateEnd <= k + 1)
+            dateEnd = s.length();
           double utc = 0D;
-          try { utc = parseNMEADouble(dateStr); } catch (Exception ex) { /*System.out.println("dateStr in StringParsers.parseGLL"); */ }
-          int h = (int)(utc / 10000);
-          int mn = (int)((utc - (10000 * h)) / 100);
-          float sec = (float)(utc % 100f);
-          Calendar local = new GregorianCalendar();
-          local.setTimeZone(TimeZone.getTimeZone("Etc/UTC"));
-          local.set(Calendar.YEAR, 1970);
-          local.set(Calendar.MONDAY, Calendar.JANUARY);
-          local.set(Calendar.DAY_OF_MONTH, 1);
-          local.set(Calendar.HOUR_OF_DAY, h);  
-          local.set(Calendar.MINUTE, mn);
-          local.set(Calendar.SECOND, (int)Math.round(sec));
-          local.set(Calendar.MILLISECOND, 0);
-          try { date = local.getTime(); } catch (Exception ex) {}
+          try { utc = NMEANumbers.parseNMEADouble(s, k + 1, dateEnd); } catch (Exception ex) { /*System.out.println("dateStr in StringParsers.parseGLL"); */ }
+          date = new Date(NMEATime.timeOfDay(utc)); // On 1970-01-01
         }
       }
 //    System.out.println(str);
@@ -951,15 +967,15 @@ public class StringParsers
      */
     int hdg = 0;
     
-    String[] elmts = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields elmts = fields(data);
     try
     {
-      if (elmts[KEY_POS].indexOf("HDT") > -1)
+      if (elmts.contains(KEY_POS, "HDT"))
       {
-        if ("T".equals(elmts[MT_POS]))
-          hdg = Math.round(parseNMEAFloat(elmts[HDG_POS]));
+        if (elmts.is(MT_POS, 'T'))
+          hdg = Math.round(elmts.parseNMEAFloat(HDG_POS));
         else
-          throw new RuntimeException("Wrong type [" + elmts[HDG_POS] + "] in parseHDT.");
+          throw new RuntimeException("Wrong type [" + elmts.string(HDG_POS) + "] in parseHDT.");
       }
       else
         System.err.println("Wrong chain in parseHDT [" + data + "]");
@@ -988,15 +1004,15 @@ public class StringParsers
      */
     int hdg = 0;
     
-    String[] elmts = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields elmts = fields(data);
     try
     {
-      if (elmts[KEY_POS].indexOf("HDM") > -1)
+      if (elmts.contains(KEY_POS, "HDM"))
       {
-        if ("M".equals(elmts[MT_POS]))
-          hdg = Math.round(parseNMEAFloat(elmts[HDG_POS]));
+        if (elmts.is(MT_POS, 'M'))
+          hdg = Math.round(elmts.parseNMEAFloat(HDG_POS));
         else
-          throw new RuntimeException("Wrong type [" + elmts[HDG_POS] + "] in parseHDM.");
+          throw new RuntimeException("Wrong type [" + elmts.string(HDG_POS) + "] in parseHDM.");
       }
       else
         System.err.println("Wrong chain in parseHDM [" + data + "]");
@@ -1041,13 +1057,13 @@ public class StringParsers
      */
     try
     {
-      String[] nmeaElements = data.substring(0, data.indexOf("*")).split(",");
-      try { hdg = parseNMEADouble(nmeaElements[1]); } catch (Exception ex) {}
-      try { dev = parseNMEADouble(nmeaElements[2]); } catch (Exception ex) {}
-      if (nmeaElements.length > 3 && nmeaElements[3] != null && "W".equals(nmeaElements[3]))
+      NMEAFields nmeaElements = fields(data);
+      try { hdg = nmeaElements.parseNMEADouble(1); } catch (Exception ex) {}
+      try { dev = nmeaElements.parseNMEADouble(2); } catch (Exception ex) {}
+      if (nmeaElements.count() > 3 && nmeaElements.is(3, 'W'))
         dev = -dev;
-      try { var = parseNMEADouble(nmeaElements[4]); } catch (Exception ex) {}
-      if (nmeaElements.length > 5 && nmeaElements[5] != null && "W".equals(nmeaElements[5]))
+      try { var = nmeaElements.parseNMEADouble(4); } catch (Exception ex) {}
+      if (nmeaElements.count() > 5 && nmeaElements.is(5, 'W'))
         var = -var;
     }
     catch (Exception ex)
@@ -1097,35 +1113,35 @@ public class StringParsers
       if (s.indexOf("RMB,") > -1)
       {
         rmb = new RMB();
-        String[] data = str.substring(0, str.indexOf("*")).split(",");
-        if (data[1].equals("V")) // Void
+        NMEAFields data = fields(str);
+        if (data.is(1, 'V')) // Void
           return null;
         double xte = 0d;
-        try { xte = parseNMEADouble(data[2]); } catch (Exception ex) {}
+        try { xte = data.parseNMEADouble(2); } catch (Exception ex) {}
         rmb.setXte(xte);
-        rmb.setDts(data[3]);
-        rmb.setOwpid(data[4]);        
-        rmb.setDwpid(data[5]);
+        rmb.setDts(data.string(3));
+        rmb.setOwpid(data.string(4));        
+        rmb.setDwpid(data.string(5));
         
         double _lat = 0d;
-        try { _lat = parseNMEADouble(data[6]); } catch (Exception ex) {}
+        try { _lat = data.parseNMEADouble(6); } catch (Exception ex) {}
         double lat = (int)(_lat / 100d) + ((_lat % 100d) / 60d);
-        if ("S".equals(data[7])) lat = -lat;
+        if (data.is(7, 'S')) lat = -lat;
         double _lng = 0d;
-        try { _lng = parseNMEADouble(data[8]); } catch (Exception ex) {}
+        try { _lng = data.parseNMEADouble(8); } catch (Exception ex) {}
         double lng = (int)(_lng / 100d) + ((_lng % 100d) / 60d);
-        if ("W".equals(data[9])) lng = -lng;
+        if (data.is(9, 'W')) lng = -lng;
         rmb.setDest(new GeoPos(lat, lng));
         double rtd = 0d;
-        try { rtd = parseNMEADouble(data[10]); } catch (Exception ex) {}
+        try { rtd = data.parseNMEADouble(10); } catch (Exception ex) {}
         rmb.setRtd(rtd);
         double btd = 0d;
-        try { btd = parseNMEADouble(data[11]); } catch (Exception ex) {}
+        try { btd = data.parseNMEADouble(11); } catch (Exception ex) {}
         rmb.setBtd(btd);
         double dcv = 0d;
-        try { dcv = parseNMEADouble(data[12]); } catch (Exception ex) {}
+        try { dcv = data.parseNMEADouble(12); } catch (Exception ex) {}
         rmb.setDcv(dcv);
-        rmb.setAs(data[13]);
+        rmb.setAs(data.string(13));
       }
     }
     catch (Exception e)
@@ -1166,79 +1182,54 @@ public class StringParsers
       if (s.indexOf("RMC,") > -1)
       {
         rmc = new RMC();
-        String[] data = str.substring(0, str.indexOf("*")).split(",");
-        if (data[2].equals("V")) // Void
+        NMEAFields data = fields(str);
+        if (data.is(2, 'V')) // Void
           return rmc;
-        if (data[1].length() > 0) // Time and Date
+        if (data.length(1) > 0) // Time and Date
         {
           double utc = 0D;
-          try { utc = parseNMEADouble(data[1]); } catch (Exception ex) { System.out.println("data[1] in StringParsers.parseRMC"); }
-          int h = (int)(utc / 10000);
-          int m = (int)((utc - (10000 * h)) / 100);
-          float sec = (float)(utc % 100f);
-          
-//        System.out.println("Data[1]:" + data[1] + ", h:" + h + ", m:" + m + ", s:" + sec);
-          
-          Calendar local = new GregorianCalendar();
-          local.setTimeZone(TimeZone.getTimeZone("Etc/UTC"));
-          local.set(Calendar.HOUR_OF_DAY, h);  
-          local.set(Calendar.MINUTE, m);
-          local.set(Calendar.SECOND, (int)Math.round(sec));
-          local.set(Calendar.MILLISECOND, 0);
-          if (data[9].length() > 0)
+          try { utc = data.parseNMEADouble(1); } catch (Exception ex) { System.out.println("data[1] in StringParsers.parseRMC"); }
+          long time = NMEATime.timeOfDay(utc);
+          long day;
+          if (data.length(9) > 0)
           {
-            int d = 1;
-            try { d = Integer.parseInt(data[9].substring(0, 2)); } catch (Exception ex) {}
-            int mo = 0;
-            try { mo = Integer.parseInt(data[9].substring(2, 4)) - 1; } catch (Exception ex) {}
-            int y = 0;
-            try { y = Integer.parseInt(data[9].substring(4)); } catch (Exception ex) {}
-            if (y > 50)
-              y += 1900;
-            else
-              y += 2000;
-            local.set(Calendar.DATE, d);
-            local.set(Calendar.MONTH, mo);
-            local.set(Calendar.YEAR, y);
-            
-            Date rmcDate = local.getTime();
-            rmc.setRmcDate(rmcDate);
+            day = rmcDay(data);
+            rmc.setRmcDate(new Date(day + time));
           }
-          Date rmcTime = local.getTime();
-          rmc.setRmcTime(rmcTime);
+          else
+            day = NMEATime.today();
+          rmc.setRmcTime(new Date(day + time));
 //        System.out.println("GPS date:" + rmcDate.toString());
         }
-        if (data[3].length() > 0 && data[5].length() > 0)
+        if (data.length(3) > 0 && data.length(5) > 0)
         {
-          String deg = data[3].substring(0, 2);
-          String min = data[3].substring(2);
-          double l = GeomUtil.sexToDec(deg, min);
-          if ("S".equals(data[4]))
+          String lat = data.string(3);
+          double l = GeomUtil.sexToDec(lat.substring(0, 2), lat.substring(2));
+          if (data.is(4, 'S'))
             l = -l;
-          deg = data[5].substring(0, 3);
-          min = data[5].substring(3);
-          double g = GeomUtil.sexToDec(deg, min);
-          if ("W".equals(data[6]))
+          String lng = data.string(5);
+          double g = GeomUtil.sexToDec(lng.substring(0, 3), lng.substring(3));
+          if (data.is(6, 'W'))
             g = -g;
           rmc.setGp(new GeoPos(l, g));
         }
-        if (data[7].length() > 0)
+        if (data.length(7) > 0)
         {
           double speed = 0;
-          try { speed = parseNMEADouble(data[7]); } catch (Exception ex) {}
+          try { speed = data.parseNMEADouble(7); } catch (Exception ex) {}
           rmc.setSog(speed);
         }
-        if (data[8].length() > 0)
+        if (data.length(8) > 0)
         {
           double cog = 0;
-          try { cog = parseNMEADouble(data[8]); } catch (Exception ex) {}
+          try { cog = data.parseNMEADouble(8); } catch (Exception ex) {}
           rmc.setCog(cog);
         }
-        if (data[10].length() > 0 && data[11].length() > 0)
+        if (data.length(10) > 0 && data.length(11) > 0)
         {
           double d = -Double.MAX_VALUE;
-          try { d = parseNMEADouble(data[10]);  } catch (Exception ex) {}
-          if ("W".equals(data[11]))
+          try { d = data.parseNMEADouble(10);  } catch (Exception ex) {}
+          if (data.is(11, 'W'))
             d = -d;
           rmc.setDeclination(d);
         }
@@ -1252,6 +1243,40 @@ public class StringParsers
     return rmc;
   }
   
+  /**
+   * Same time as the one of {@link #parseRMC(String)}, without creating any object.
+   * @return the UTC date and time of the fix in ms since 1970 (today if the sentence has no date),
+   * {@link NMEATime#NO_TIME} if the sentence is not valid, void, or has no time.
+   */
+  public static long parseRMCtoMillis(String str)
+  {
+    if (str.indexOf("RMC,") < 0 || !validCheckSum(str))
+      return NMEATime.NO_TIME;
+    NMEAFields data = fields(str);
+    if (data.count() < 2 || data.is(2, 'V') || data.length(1) == 0)
+      return NMEATime.NO_TIME;
+    double utc = 0D;
+    try { utc = data.parseNMEADouble(1); } catch (Exception ex) {}
+    long day = NMEATime.today();
+    if (data.count() > 9 && data.length(9) > 0)
+      day = rmcDay(data);
+    return day + NMEATime.timeOfDay(utc);
+  }
+  
+  /**
+   * @return the start of the day of the ddmmyy field, the unreadable parts default to the 1st, January, and 2000.
+   */
+  private static long rmcDay(NMEAFields data)
+  {
+    int d = 1;
+    try { d = data.parseInt(9, 0, 2); } catch (Exception ex) {}
+    int mo = 1;
+    try { mo = data.parseInt(9, 2, 4); } catch (Exception ex) {}
+    int y = 0;
+    try { y = data.parseInt(9, 4, data.length(9)); } catch (Exception ex) {}
+    return TIME.get().ddmmyy(d, mo, y);
+  }
+  
   public static String parseRMCtoString(String data)
   { 
     String ret = "";
@@ -1322,11 +1347,12 @@ public class StringParsers
     int nbm = -1;
     if (validCheckSum(gsvString))
     {
-      String[] elmt = gsvString.trim().split(",");
       try
       {
-        nbm = Integer.parseInt(elmt[1]);
-        mn  = Integer.parseInt(elmt[2]);
+        String gsv = gsvString.trim();
+        NMEAFields elmt = FIELDS.get().reset(gsv, 0, gsv.length());
+        nbm = elmt.parseInt(1);
+        mn  = elmt.parseInt(2);
       }
       catch (Exception ex)
       {
@@ -1349,14 +1375,38 @@ public class StringParsers
      *        |         day
      *        HrMinSec(UTC)
      */
-    String[] data = str.substring(0, str.indexOf("*")).split(",");
-    UTC utc = new UTC(Integer.parseInt(data[1].substring(0, 2)),
-                      Integer.parseInt(data[1].substring(2, 4)),
-                      Float.parseFloat(data[1].substring(4)));
+    NMEAFields data = fields(str);
+    UTC utc = new UTC(data.parseInt(1, 0, 2),
+                      data.parseInt(1, 2, 4),
+                      NMEANumbers.parseFloat(str, data.start(1) + 4, data.end(1)));
     
     return utc;
   }
   
+  /**
+   * Same as {@link #parseZDA(String)}, with the date, without creating any object.
+   * @return the UTC date and time in ms since 1970 (the decimals of the seconds included),
+   * {@link NMEATime#NO_TIME} if the sentence is not valid, has no date or no time.
+   */
+  public static long parseZDAtoMillis(String str)
+  {
+    if (!validCheckSum(str))
+      return NMEATime.NO_TIME;
+    try
+    {
+      NMEAFields data = fields(str);
+      if (data.count() < 5 || data.length(1) < 6 || data.isEmpty(2) || data.isEmpty(3) || data.isEmpty(4))
+        return NMEATime.NO_TIME;
+      long time = (data.parseInt(1, 0, 2) * 3600000L) + (data.parseInt(1, 2, 4) * 60000L);
+      time += Math.round(NMEANumbers.parseDouble(str, data.start(1) + 4, data.end(1)) * 1000d);
+      return NMEATime.dayStart(data.parseInt(4), data.parseInt(3), data.parseInt(2)) + time;
+    }
+    catch (RuntimeException ex) // Like a field that is not a number
+    {
+      return NMEATime.NO_TIME;
+    }
+  }
+  
   public static final short DEPTH_IN_FEET    = 0;
   public static final short DEPTH_IN_METERS  = 1;
   public static final short DEPTH_IN_FATHOMS = 2;
@@ -1394,16 +1444,20 @@ public class StringParsers
     float feet    = 0.0F;
     float meters  = 0.0F;
     float fathoms = 0.0F;
-    String[] array = data.substring(0, data.indexOf("*")).split(",");
+    NMEAFields array = fields(data);
     try
     {
-      meters = parseNMEAFloat(array[1]);
+      meters = array.parseNMEAFloat(1);
       try 
       {
-        String strOffset = array[2].trim();
-        if (strOffset.startsWith("+"))
-          strOffset = strOffset.substring(1);
-        float offset = parseNMEAFloat(strOffset);
+        int from = array.start(2), to = array.end(2);
+        while (from < to && data.charAt(from) <= ' ')
+          from++;
+        while (to > from && data.charAt(to - 1) <= ' ')
+          to--;
+        if (from < to && data.charAt(from) == '+')
+          from++;
+        float offset = NMEANumbers.parseNMEAFloat(data, from, to);
         meters += offset;
       } 
       catch (Exception ex) {}
@@ -1445,7 +1499,7 @@ public class StringParsers
     float feet    = 0.0F;
     float meters  = 0.0F;
     float fathoms = 0.0F;
-    String str = "";
+    int strFrom = 0, strTo = 0; // The current value, [from, to[ in s
     String first = "", last = "";
     try
     {
@@ -1454,25 +1508,37 @@ public class StringParsers
       if (s.indexOf(first) > -1 && s.indexOf(last) > -1)
       {
         if (s.indexOf(first) < s.indexOf(last))
-          str = s.substring(s.indexOf(first) + first.length(), s.indexOf(last));        
+        {
+          strFrom = s.indexOf(first) + first.length();
+          strTo   = s.indexOf(last);
+          checkRange(s, strFrom, strTo);
+        }
       }
-      feet = parseNMEAFloat(str);
+      feet = NMEANumbers.parseNMEAFloat(s, strFrom, strTo);
       first = ",f,";
       last  = ",M,";
       if (s.indexOf(first) > -1 && s.indexOf(last) > -1)
       {
         if (s.indexOf(first) < s.indexOf(last))
-          str = s.substring(s.indexOf(first) + first.length(), s.indexOf(last));        
+        {
+          strFrom = s.indexOf(first) + first.length();
+          strTo   = s.indexOf(last);
+          checkRange(s, strFrom, strTo);
+        }
       }
-      meters = parseNMEAFloat(str);
+      meters = NMEANumbers.parseNMEAFloat(s, strFrom, strTo);
       first = ",M,";
       last  = ",F";
       if (s.indexOf(first) > -1 && s.indexOf(last) > -1)
       {
         if (s.indexOf(first) < s.indexOf(last))
-          str = s.substring(s.indexOf(first) + first.length(), s.indexOf(last));        
+        {
+          strFrom = s.indexOf(first) + first.length();
+          strTo   = s.indexOf(last);
+          checkRange(s, strFrom, strTo);
+        }
       }
-      fathoms = parseNMEAFloat(str);
+      fathoms = NMEANumbers.parseNMEAFloat(s, strFrom, strTo);
     }
     catch (Exception e)
     {
@@ -1497,6 +1563,10 @@ public class StringParsers
   
   public static boolean validCheckSum(String data, boolean verb)
   {
+    int check = NMEAChecksum.check(data, 0, data.length());
+    if (check != NMEAChecksum.UNDECIDED)
+      return (check == NMEAChecksum.VALID);
+    // Not the usual two hex digits (or nothing to check), the way it has always been done
     String sentence = data.trim();
     boolean b = false;    
     try
@@ -1527,37 +1597,31 @@ public class StringParsers
   
   public static int calculateCheckSum(String str)
   {
-    int cs = 0;
-    char[] ca = str.toCharArray();
-    cs = ca[0];
-    for (int i=1; i<ca.length; i++)
-      cs = cs ^ ca[i]; // XOR
-    return cs;
+    if (str.length() == 0)
+      throw new ArrayIndexOutOfBoundsException(0); // Like toCharArray()[0] used to
+    return NMEAChecksum.xor(str, 0, str.length());
   }
   
   /**
-   * Enforce the parsing using the Locale.ENGLISH
-   * 
-   * @param str the string to parse
-   * @return the double value
-   * @throws Exception, in case it fails
+   * Throws the same exception <code>str.substring(from, to)</code> would.
    */
-  private static double parseNMEADouble(String str) throws Exception
+  private static void checkRange(String str, int from, int to) throws StringIndexOutOfBoundsException
   {
-    NumberFormat nf = NumberFormat.getInstance(Locale.ENGLISH);      
-    Number number = nf.parse(str);
-    double d = number.doubleValue();
-//  System.out.println("Number is " + Double.toString(d));
-    return d;
+    if (from < 0 || to > str.length() || from > to)
+      throw new StringIndexOutOfBoundsException("begin " + from + ", end " + to + ", length " + str.length());
   }
-  
-  private static float parseNMEAFloat(String str) throws Exception
+
+  /**
+   * Same as <code>str.substring(from, to).trim().length() == 0</code>
+   */
+  private static boolean isBlank(String str, int from, int to)
   {
-    NumberFormat nf = NumberFormat.getInstance(Locale.ENGLISH);      
-    Number number = nf.parse(str);
-    float f = number.floatValue();
-  //  System.out.println("Number is " + Double.toString(d));
-    return f;
+    for (int i=from; i<to; i++)
+    {
+      if (str.charAt(i) > ' ')
+        return false;
+    }
+    return true;
   }
   
   /**
@@ -1616,26 +1680,33 @@ public class StringParsers
     }
 //  System.out.println("UTC Offset:" + utcOffset);
 
-    Calendar calendar = Calendar.getInstance();
-    if (utcOffset == 0f && tz != null)
-      calendar.setTimeZone(TimeZone.getTimeZone(tz));
-    else
-      calendar.setTimeZone(TimeZone.getTimeZone("Etc/UTC"));
+    int year, month, day, hour, min, sec, milli;
     try
     {
-      calendar.set(Integer.parseInt(yyyy), 
-                   Integer.parseInt(mm)-1, 
-                   Integer.parseInt(dd), 
-                   Integer.parseInt(hh), 
-                   Integer.parseInt(mi), 
-                   Integer.parseInt(ss));
-      calendar.set(Calendar.MILLISECOND, Integer.parseInt(ms));
+      year  = Integer.parseInt(yyyy);
+      month = Integer.parseInt(mm);
+      day   = Integer.parseInt(dd);
+      hour  = Integer.parseInt(hh);
+      min   = Integer.parseInt(mi);
+      sec   = Integer.parseInt(ss);
+      milli = Integer.parseInt(ms);
     }
     catch (NumberFormatException nfe)
     {
       throw new RuntimeException("durationToDate, for [" + duration + "] : " + nfe.getMessage());
     }
-    return calendar.getTimeInMillis() - (long)(utcOffset * (3600 * 1000));
+    long time;
+    if ((utcOffset == 0f && tz != null) || year < 1583) // In a time zone, or before the Gregorian calendar
+    {
+      Calendar calendar = Calendar.getInstance();
+      calendar.setTimeZone(TimeZone.getTimeZone(utcOffset == 0f && tz != null ? tz : "Etc/UTC"));
+      calendar.set(year, month - 1, day, hour, min, sec);
+      calendar.set(Calendar.MILLISECOND, milli);
+      time = calendar.getTimeInMillis();
+    }
+    else
+      time = NMEATime.dayStart(year, month, day) + (hour * 3600000L) + (min * 60000L) + (sec * 1000L) + milli;
+    return time - (long)(utcOffset * (3600 * 1000));
   }
 
   public static String durationToExcel(String duration)
@@ -0,0 +1,46 @@
+package ocss.nmea.parser;
+
+/**
+ * A view on a VHW sentence, see {@link SentenceView}.
+ * <pre>
+ *         1   2 3   4 5   6 7   8
+ *  $aaVHW,x.x,T,x.x,M,x.x,N,x.x,K*hh
+ *         |     |     |     |
+ *         |     |     |     Speed in km/h
+ *         |     |     Speed in knots
+ *         |     Heading in degrees, Magnetic
+ *         Heading in degrees, True
+ * </pre>
+ * @see StringParsers#parseVHW(String, double)
+ */
+public class VHWView extends SentenceView
+{
+  public VHWView()
+  {
+    super("VHW");
+  }
+
+  /**
+   * @return in degrees
+   */
+  public double getHeadingTrue()
+  { return doubleAt(1); }
+
+  /**
+   * @return in degrees
+   */
+  public double getHeadingMagnetic()
+  { return doubleAt(3); }
+
+  /**
+   * @return the speed through water, in knots
+   */
+  public double getSpeed()
+  { return doubleAt(5); }
+
+  /**
+   * @return the speed through water, in km/h
+   */
+  public double getSpeedInKmh()
+  { return doubleAt(7); }
+}
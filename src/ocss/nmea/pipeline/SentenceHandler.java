@@ -0,0 +1,31 @@
+package ocss.nmea.pipeline;
+
+/**
+ * A stage of a {@link SentencePipeline}. Each stage runs on its own thread,
+ * and sees all the sentences, in order.
+ */
+public abstract class SentenceHandler
+{
+  /**
+   * @param slot the sentence. Only valid during this call.
+   * @param sequence the number of the sentence since the pipeline started, from 0.
+   * @param endOfBatch true if no other sentence is available for now, a good time to flush.
+   */
+  public abstract void onSentence(SentenceSlot slot, long sequence, boolean endOfBatch) throws Exception;
+
+  /**
+   * {@link #onSentence(SentenceSlot, long, boolean)} failed.
+   * The stage goes on with the next sentence.
+   */
+  public void onError(Throwable t, SentenceSlot slot, long sequence)
+  {
+    System.err.println("Sentence " + sequence + " [" + slot + "]:" + t.toString());
+  }
+
+  /**
+   * The pipeline is halted, all the sentences have been handled.
+   */
+  public void onShutdown()
+  {
+  }
+}
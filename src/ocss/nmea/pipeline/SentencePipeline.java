@@ -0,0 +1,426 @@
+package ocss.nmea.pipeline;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+import ocss.nmea.api.NMEAFramer;
+import ocss.nmea.parser.NMEAChecksum;
+
+/**
+ * An alternative to the NMEAReader -&gt; NMEAParser -&gt; NMEAClient callbacks, for high rates
+ * (like replaying recorded logs).
+ * <br>
+ * One producer publishes the sentences in a ring of pre-allocated {@link SentenceSlot}s,
+ * several stages (parsing, logging, forwarding...) consume them in parallel, each on its own thread.
+ * The producer and the stages only communicate through sequence numbers: no lock, no queue,
+ * and no object created per sentence.
+ * <ul>
+ *   <li>The producer does not overwrite a slot before all the stages are done with it.</li>
+ *   <li>A stage does not read a slot before it has been published.</li>
+ * </ul>
+ * <pre>
+ * SentencePipeline pipeline = new SentencePipeline();
+ * pipeline.addStage(parser);
+ * pipeline.addStage(logger);
+ * pipeline.start();
+ * while ((n = in.read(buffer)) != -1)
+ *   pipeline.publish(buffer, 0, n);
+ * pipeline.halt();
+ * </pre>
+ * The publish methods must be called from one single thread, and not after {@link #halt()}.
+ * A stage that stops (its {@link SentenceHandler#onError(Throwable, SentenceSlot, long)} threw) no longer holds the others.
+ */
+public final class SentencePipeline
+{
+  public final static int DEFAULT_CAPACITY = 16384;     // Slots
+  public final static int DEFAULT_SENTENCE_LENGTH = 256; // NMEA says 82, leave some room
+
+  // Wait: spin, then yield, then park.
+  private final static int SPIN_TRIES  = 100;
+  private final static int YIELD_TRIES = 100;
+  private final static long PARK_NANOS = 50000L;
+
+  private final SentenceSlot[] slots;
+  private final int mask;
+  private final Sequence cursor = new Sequence(); // Last published
+
+  private final List<Stage> stages = new ArrayList<Stage>();
+  private Stage[] gating = new Stage[0];
+  private long cachedGating = Sequence.INITIAL_VALUE;
+  private long next = Sequence.INITIAL_VALUE;       // Last claimed, producer only
+
+  private final NMEAFramer framer;
+  private final int framerChunk; // Appended at once, so the framer never overflows
+  private long dropped = 0L;
+
+  private volatile boolean started = false;
+  private volatile boolean closed = false; // No more publish
+  private volatile boolean halted = false; // The stages stop
+
+  public SentencePipeline()
+  {
+    this(DEFAULT_CAPACITY, DEFAULT_SENTENCE_LENGTH);
+  }
+
+  /**
+   * @param capacity the number of slots, rounded up to the next power of 2
+   * @param maxSentenceLength the longer sentences are dropped
+   */
+  public SentencePipeline(int capacity, int maxSentenceLength)
+  {
+    int size = 2;
+    while (size < capacity)
+      size <<= 1;
+    slots = new SentenceSlot[size];
+    for (int i=0; i<size; i++)
+      slots[i] = new SentenceSlot(maxSentenceLength);
+    mask = size - 1;
+    int framerCapacity = Math.max(NMEAFramer.DEFAULT_CAPACITY, 4 * maxSentenceLength);
+    framer = new NMEAFramer(framerCapacity);
+    framerChunk = Math.min(1024, framerCapacity / 2);
+  }
+
+  /**
+   * The framer the raw data go through, to set its EOS for example.
+   */
+  public NMEAFramer getFramer()
+  { return this.framer; }
+
+  public int getCapacity()
+  { return this.slots.length; }
+
+  /**
+   * @return the number of sentences dropped because they were too long for a slot (or for the framer).
+   */
+  public long getDropped()
+  { return this.dropped + framer.getDropped(); }
+
+  /**
+   * @return the sequence of the last published sentence, -1 if none yet.
+   */
+  public long getCursor()
+  { return this.cursor.get(); }
+
+  /**
+   * To be called before start.
+   */
+  public synchronized void addStage(SentenceHandler handler)
+  {
+    if (started)
+      throw new IllegalStateException("Pipeline already started");
+    stages.add(new Stage(handler));
+    gating = stages.toArray(new Stage[stages.size()]);
+  }
+
+  /**
+   * Starts one thread per stage.
+   */
+  public void start()
+  {
+    start(null);
+  }
+
+  /**
+   * @param executor to run the stages on, one thread per stage is needed. null to create the threads.
+   */
+  public synchronized void start(Executor executor)
+  {
+    if (started)
+      throw new IllegalStateException("Pipeline already started");
+    started = true;
+    for (int i=0; i<stages.size(); i++)
+    {
+      Stage stage = stages.get(i);
+      if (executor != null)
+        executor.execute(stage);
+      else
+      {
+        Thread t = new Thread(stage, "SentencePipeline-stage-" + i);
+        t.setDaemon(true);
+        t.start();
+      }
+    }
+  }
+
+  /**
+   * Frames the raw data, and publishes the sentences they complete.
+   */
+  public void publish(byte[] ba, int offset, int len)
+  {
+    checkOpen();
+    for (int from=offset, to=offset + len; from<to; from+=framerChunk)
+    {
+      framer.append(ba, from, Math.min(framerChunk, to - from));
+      publishFramed();
+    }
+  }
+
+  public void publish(char[] ca, int offset, int len)
+  {
+    checkOpen();
+    for (int from=offset, to=offset + len; from<to; from+=framerChunk)
+    {
+      framer.append(ca, from, Math.min(framerChunk, to - from));
+      publishFramed();
+    }
+  }
+
+  private void publishFramed()
+  {
+    long now = System.currentTimeMillis();
+    while (framer.next())
+    {
+      int len = framer.sentence().length();
+      if (len > slots[0].capacity())
+      {
+        dropped++;
+        continue;
+      }
+      long seq = claim();
+      SentenceSlot slot = slots[(int)seq & mask];
+      framer.copySentence(slot.getData(), 0);
+      slot.setLength(len, now);
+      cursor.set(seq);
+    }
+  }
+
+  /**
+   * Publishes one sentence, without its EOS.
+   * @return false if it is too long for a slot
+   */
+  public boolean publish(CharSequence sentence)
+  {
+    return publish(sentence, 0, sentence.length(), System.currentTimeMillis());
+  }
+
+  public boolean publish(CharSequence cs, int from, int to, long timestamp)
+  {
+    checkOpen();
+    if (to - from > slots[0].capacity())
+    {
+      dropped++;
+      return false;
+    }
+    long seq = claim();
+    slots[(int)seq & mask].set(cs, from, to, timestamp);
+    cursor.set(seq);
+    return true;
+  }
+
+  private void checkOpen()
+  {
+    if (closed)
+      throw new IllegalStateException("Pipeline halted");
+  }
+
+  /**
+   * Waits for the slot after the last claimed one to be released by all the stages.
+   */
+  private long claim()
+  {
+    long seq = ++next;
+    long wrapPoint = seq - slots.length;
+    if (wrapPoint > cachedGating)
+    {
+      if (!started)
+        throw new IllegalStateException("Pipeline not started, the ring is full");
+      int tries = 0;
+      long min;
+      while (wrapPoint > (min = minimum(gating)))
+        tries = backOff(tries);
+      cachedGating = min;
+    }
+    return seq;
+  }
+
+  /**
+   * Waits for the stages to handle all the published sentences, and stops them.
+   * The stages that have stopped on their own are not waited for.
+   * With an Executor that has not run a stage yet, see {@link #halt(long)}.
+   */
+  public void halt()
+  {
+    halt(0L);
+  }
+
+  /**
+   * Like {@link #halt()}, waiting for the stages at most timeout ms.
+   * The stages are stopped in any case, the ones behind after their current batch.
+   * @param timeout in ms, 0 for no limit
+   * @return true if the stages still running have handled all the published sentences within the timeout
+   */
+  public boolean halt(long timeout)
+  {
+    closed = true;
+    long last = cursor.get();
+    long limit = (timeout > 0L ? System.currentTimeMillis() + timeout : Long.MAX_VALUE);
+    int tries = 0;
+    while (started && minimum(gating) < last && System.currentTimeMillis() < limit)
+      tries = backOff(tries);
+    boolean done = (minimum(gating) >= last);
+    halted = true;
+    return done;
+  }
+
+  /**
+   * @return the lowest sequence of the stages still running
+   */
+  private static long minimum(Stage[] stages)
+  {
+    long min = Long.MAX_VALUE;
+    for (int i=0; i<stages.length; i++)
+    {
+      if (!stages[i].stopped)
+        min = Math.min(min, stages[i].sequence.get());
+    }
+    return min;
+  }
+
+  private static int backOff(int tries)
+  {
+    if (tries >= SPIN_TRIES + YIELD_TRIES)
+      LockSupport.parkNanos(PARK_NANOS);
+    else if (tries >= SPIN_TRIES)
+      Thread.yield();
+    return tries + 1;
+  }
+
+  /**
+   * A consumer, and its sequence.
+   */
+  private final class Stage implements Runnable
+  {
+    final SentenceHandler handler;
+    final Sequence sequence = new Sequence(); // Last handled
+    volatile boolean stopped = false;
+
+    Stage(SentenceHandler handler)
+    {
+      this.handler = handler;
+    }
+
+    public void run()
+    {
+      try
+      {
+        long nextSeq = sequence.get() + 1;
+        while (true)
+        {
+          long available = waitFor(nextSeq);
+          if (available < nextSeq)
+            break; // Halted
+          for (; nextSeq<=available; nextSeq++)
+          {
+            SentenceSlot slot = slots[(int)nextSeq & mask];
+            try
+            {
+              handler.onSentence(slot, nextSeq, nextSeq == available);
+            }
+            catch (Throwable t)
+            {
+              handler.onError(t, slot, nextSeq);
+            }
+          }
+          sequence.set(available); // Releases the slots to the producer
+        }
+        handler.onShutdown();
+      }
+      finally
+      {
+        stopped = true; // No longer holds the producer, nor halt
+      }
+    }
+
+    /**
+     * @return the last published sequence, lower than seq if the pipeline is halted.
+     */
+    private long waitFor(long seq)
+    {
+      int tries = 0;
+      long available;
+      while ((available = cursor.get()) < seq)
+      {
+        if (halted)
+          return available;
+        tries = backOff(tries);
+      }
+      return available;
+    }
+  }
+
+  /**
+   * Replays a log file through a checksum validation stage and a counting stage.
+   * Prints the throughput.
+   */
+  public static void main(String[] args) throws Exception
+  {
+    String fileName = (args.length > 0 ? args[0] : "nmea.dat");
+    int loops = (args.length > 1 ? Integer.parseInt(args[1]) : 10);
+    byte[] data = readFully(fileName);
+
+    final long[] valid = new long[1];
+    final long[] count = new long[1];
+    SentencePipeline pipeline = new SentencePipeline();
+    pipeline.addStage(new SentenceHandler()
+      {
+        public void onSentence(SentenceSlot slot, long sequence, boolean endOfBatch)
+        {
+          if (NMEAChecksum.isValid(slot, 0, slot.length()))
+            valid[0]++;
+        }
+      });
+    pipeline.addStage(new SentenceHandler()
+      {
+        public void onSentence(SentenceSlot slot, long sequence, boolean endOfBatch)
+        {
+          count[0]++;
+        }
+      });
+    pipeline.start();
+    long before = System.nanoTime();
+    for (int i=0; i<loops; i++)
+    {
+      for (int offset=0; offset<data.length; offset+=8192)
+        pipeline.publish(data, offset, Math.min(8192, data.length - offset));
+    }
+    pipeline.halt();
+    long elapsed = System.nanoTime() - before;
+    long nb = pipeline.getCursor() + 1;
+    System.out.println(nb + " sentence(s) in " + (elapsed / 1000000L) + " ms, " +
+                       (long)(nb * 1e9 / Math.max(1L, elapsed)) + " sentences/s, " + pipeline.getDropped() + " dropped.");
+    System.out.println("Handled:" + count[0] + ", valid checksums:" + valid[0]);
+  }
+
+  private static byte[] readFully(String fileName) throws IOException
+  {
+    InputStream is = new FileInputStream(fileName);
+    try
+    {
+      byte[] ba = new byte[Math.max(1, is.available())];
+      int len = 0, n;
+      while ((n = is.read(ba, len, ba.length - len)) != -1)
+      {
+        len += n;
+        if (len == ba.length)
+        {
+          byte[] bigger = new byte[ba.length * 2];
+          System.arraycopy(ba, 0, bigger, 0, len);
+          ba = bigger;
+        }
+      }
+      byte[] result = new byte[len];
+      System.arraycopy(ba, 0, result, 0, len);
+      return result;
+    }
+    finally
+    {
+      is.close();
+    }
+  }
+}
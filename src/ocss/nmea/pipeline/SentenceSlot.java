@@ -0,0 +1,77 @@
+package ocss.nmea.pipeline;
+
+/**
+ * One entry of the ring of a {@link SentencePipeline}, holding a sentence (without its EOS).
+ * <br>
+ * The slots are allocated once and reused, the sentence is copied in their char array.
+ * A slot is only valid during the call to {@link SentenceHandler#onSentence(SentenceSlot, long, boolean)},
+ * use {@link #toString()} to keep its content.
+ */
+public final class SentenceSlot implements CharSequence
+{
+  private final char[] data;
+  private int length = 0;
+  private long timestamp = 0L;
+
+  SentenceSlot(int capacity)
+  {
+    this.data = new char[capacity];
+  }
+
+  /**
+   * The chars, from 0 to {@link #length()}. Not to be modified.
+   */
+  public char[] getData()
+  { return this.data; }
+
+  /**
+   * @return when the sentence was published, in ms
+   */
+  public long getTimestamp()
+  { return this.timestamp; }
+
+  public int capacity()
+  { return this.data.length; }
+
+  void set(CharSequence cs, int from, int to, long timestamp)
+  {
+    int len = to - from;
+    for (int i=0; i<len; i++)
+      data[i] = cs.charAt(from + i);
+    this.length = len;
+    this.timestamp = timestamp;
+  }
+
+  void set(char[] ca, int offset, int len, long timestamp)
+  {
+    System.arraycopy(ca, offset, data, 0, len);
+    this.length = len;
+    this.timestamp = timestamp;
+  }
+
+  void setLength(int len, long timestamp)
+  {
+    this.length = len;
+    this.timestamp = timestamp;
+  }
+
+  public int length()
+  { return this.length; }
+
+  public char charAt(int index)
+  {
+    if (index < 0 || index >= length)
+      throw new IndexOutOfBoundsException(Integer.toString(index));
+    return data[index];
+  }
+
+  public CharSequence subSequence(int start, int end)
+  {
+    return toString().substring(start, end);
+  }
+
+  public String toString()
+  {
+    return new String(data, 0, length);
+  }
+}
@@ -0,0 +1,36 @@
+package ocss.nmea.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sequence number, written by one thread, read by the others.
+ * <br>
+ * Padded so two sequences updated by different threads do not share a cache line.
+ */
+public final class Sequence
+{
+  public final static long INITIAL_VALUE = -1L;
+
+  @SuppressWarnings("unused")
+  private long p1, p2, p3, p4, p5, p6, p7;
+  private final AtomicLong value = new AtomicLong(INITIAL_VALUE);
+  @SuppressWarnings("unused")
+  private long q1, q2, q3, q4, q5, q6, q7;
+
+  public Sequence()
+  {
+  }
+
+  public long get()
+  { return value.get(); }
+
+  /**
+   * Ordered write: the data written before are visible to a thread reading this value.
+   * Cheaper than a volatile write, there is only one writer.
+   */
+  public void set(long v)
+  { value.lazySet(v); }
+
+  public String toString()
+  { return Long.toString(value.get()); }
+}
@@ -0,0 +1,133 @@
+package ocss.gpsd;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GPSdClientTest
+{
+  public GPSdClientTest()
+  {
+  }
+
+  private final static String TPV1 = "{\"class\":\"TPV\",\"mode\":3,\"time\":\"2026-10-17T10:00:00.000Z\",\"lat\":37.5,\"lon\":-122.5}";
+  private final static String TPV2 = "{\"class\":\"TPV\",\"mode\":3,\"time\":\"2026-10-17T10:00:01.000Z\",\"lat\":37.6,\"lon\":-122.4}";
+
+  /**
+   * A fake gpsd, for one client: answers the handshake, sends the TPV strings, and closes the connection if asked to.
+   */
+  private static class FakeGPSd extends Thread
+  {
+    final ServerSocket server;
+    final String[] tpvs;
+    final boolean hangUp;
+    final List<String> queries = new CopyOnWriteArrayList<String>();
+    volatile Socket socket;
+    volatile Exception failure;
+
+    FakeGPSd(String[] tpvs, boolean hangUp) throws Exception
+    {
+      this.server = new ServerSocket(0);
+      this.tpvs = tpvs;
+      this.hangUp = hangUp;
+      setDaemon(true);
+    }
+
+    public void run()
+    {
+      try
+      {
+        socket = server.accept();
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+        OutputStream out = socket.getOutputStream();
+        queries.add(in.readLine());
+        out.write("{\"class\":\"VERSION\",\"release\":\"3.20\",\"proto_major\":3,\"proto_minor\":14}\r\n".getBytes("US-ASCII"));
+        out.flush();
+        queries.add(in.readLine());
+        out.write(("{\"class\":\"DEVICES\",\"devices\":[{\"class\":\"DEVICE\",\"path\":\"/dev/ttyUSB0\",\"bps\":4800}]}\r\n" +
+                   "{\"class\":\"WATCH\",\"enable\":true,\"json\":false}\r\n").getBytes("US-ASCII"));
+        out.flush();
+        queries.add(in.readLine());
+        for (String tpv : tpvs)
+          out.write((tpv + "\r\n").getBytes("US-ASCII"));
+        out.flush();
+        if (hangUp)
+          socket.close(); // End of stream
+      }
+      catch (Exception ex)
+      {
+        failure = ex;
+      }
+    }
+  }
+
+  /**
+   * @see GPSdClient#GPSdClient(GPSdClientInterface, String, int, boolean, java.util.concurrent.Executor)
+   */
+  @Test
+  public void testEndOfStream() throws Exception
+  {
+    FakeGPSd gpsd = new FakeGPSd(new String[] { TPV1, TPV2 }, true);
+    gpsd.start();
+    final List<String> received = new CopyOnWriteArrayList<String>();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    GPSdClient client = new GPSdClient(new GPSdClientInterface()
+      {
+        public void tpvRead(String data)
+        {
+          received.add(data);
+        }
+      }, "localhost", gpsd.server.getLocalPort(), false, executor);
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5L, TimeUnit.SECONDS)); // The reading stopped at the end of the stream
+    gpsd.join(5000L);
+    assertNull(gpsd.failure);
+    assertEquals(GPSdUtils.VERSION, gpsd.queries.get(0));
+    assertTrue(gpsd.queries.get(1).startsWith("?WATCH="));
+    assertEquals(GPSdUtils.POLL, gpsd.queries.get(2));
+    assertEquals(2, received.size());
+    assertEquals(TPV1, received.get(0));
+    assertEquals(TPV2, received.get(1));
+    client.closeClient();
+    gpsd.server.close();
+  }
+
+  /**
+   * @see GPSdClient#closeClient()
+   */
+  @Test
+  public void testClose() throws Exception
+  {
+    FakeGPSd gpsd = new FakeGPSd(new String[] { TPV1 }, false);
+    gpsd.start();
+    final List<String> received = new CopyOnWriteArrayList<String>();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    GPSdClient client = new GPSdClient(new GPSdClientInterface()
+      {
+        public void tpvRead(String data)
+        {
+          received.add(data);
+        }
+      }, "localhost", gpsd.server.getLocalPort(), false, executor);
+    executor.shutdown();
+    gpsd.join(5000L);
+    assertFalse(executor.awaitTermination(200L, TimeUnit.MILLISECONDS)); // Waiting for more
+    client.closeClient();
+    assertTrue(executor.awaitTermination(5L, TimeUnit.SECONDS));
+    assertEquals(1, received.size());
+    gpsd.socket.close();
+    gpsd.server.close();
+  }
+}
@@ -0,0 +1,130 @@
+package ocss.gpsd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ocss.nmea.ais.AISParser.AISRecord;
+import ocss.nmea.parser.RMC;
+import ocss.nmea.parser.SVData;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GPSdJSONReaderTest
+{
+  public GPSdJSONReaderTest()
+  {
+  }
+
+  final static String TPV = "{\"class\":\"TPV\",\"device\":\"/dev/ttyUSB0\",\"mode\":3,\"time\":\"2010-04-30T11:48:20.100Z\",\"ept\":0.005," +
+                            "\"lat\":46.498204497,\"lon\":7.568061439,\"alt\":1327.689,\"track\":10.3797,\"speed\":5.144,\"climb\":-0.085}";
+  final static String SKY = "{\"class\":\"SKY\",\"device\":\"/dev/ttyUSB0\",\"xdop\":1.55,\"satellites\":[" +
+                            "{\"PRN\":23,\"el\":6,\"az\":84,\"ss\":0,\"used\":false}," +
+                            "{\"PRN\":28,\"el\":7,\"az\":160,\"ss\":0,\"used\":false,\"health\":{\"ok\":[1,2]}}," +
+                            "{\"PRN\":8,\"el\":66,\"az\":189,\"ss\":44,\"used\":true}]}";
+  final static String AIS1 = "{\"class\":\"AIS\",\"device\":\"stdin\",\"type\":1,\"repeat\":0,\"mmsi\":227006760,\"scaled\":false," +
+                             "\"status\":15,\"turn\":-128,\"speed\":123,\"accuracy\":true,\"lon\":2471172,\"lat\":29380198," +
+                             "\"course\":1100,\"heading\":511,\"second\":15,\"maneuver\":0,\"raim\":false,\"radio\":13688}";
+  final static String AIS5 = "{\"class\":\"AIS\",\"type\":5,\"repeat\":0,\"mmsi\":351759000,\"scaled\":false,\"imo\":9134270," +
+                             "\"ais_version\":0,\"callsign\":\"3FOF8\",\"shipname\":\"EVER \\\"DIADEM\\\"\",\"shiptype\":70,\"to_bow\":225," +
+                             "\"to_stern\":70,\"to_port\":1,\"to_starboard\":31,\"epfd\":1,\"eta\":\"05-15T14:00Z\",\"draught\":122," +
+                             "\"destination\":\"NEW YORK\",\"dte\":0}";
+  final static String ATT = "{\"class\":\"ATT\",\"device\":\"/dev/ttyUSB1\",\"heading\":14223.00,\"pitch\":169.00,\"roll\":-43.00}";
+
+  static class Collector extends GPSdListener
+  {
+    final List<Object> objects = new ArrayList<Object>();
+
+    public void tpvRead(RMC rmc, int mode)
+    {
+      objects.add(rmc);
+    }
+
+    public void skyRead(List<SVData> satellites)
+    {
+      objects.add(satellites);
+    }
+
+    public void aisRead(AISRecord record)
+    {
+      objects.add(record);
+    }
+
+    public void attRead(double heading, double pitch, double roll)
+    {
+      objects.add(new double[] { heading, pitch, roll });
+    }
+
+    public void errorRead(String message)
+    {
+      objects.add(message);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static void check(List<Object> objects)
+  {
+    assertEquals(6, objects.size());
+
+    RMC rmc = (RMC)objects.get(0);
+    assertEquals(46.498204497d, rmc.getGp().lat, 1e-9);
+    assertEquals(7.568061439d, rmc.getGp().lng, 1e-9);
+    assertEquals(10.3797d, rmc.getCog(), 1e-9);
+    assertEquals(10d, rmc.getSog(), 1e-3);                 // 5.144 m/s
+    assertEquals(1272628100100L, rmc.getRmcDate().getTime()); // 2010-04-30 11:48:20.1 UTC
+
+    List<SVData> svs = (List<SVData>)objects.get(1);
+    assertEquals(3, svs.size());
+    assertEquals(28, svs.get(1).getSvID());
+    assertEquals(160, svs.get(1).getAzimuth());
+    assertEquals(44, svs.get(2).getSnr());
+
+    AISRecord ais = (AISRecord)objects.get(2);
+    assertEquals(1, ais.getMessageType());
+    assertEquals(227006760, ais.getMmsi());
+    assertEquals(-128, ais.getRot());
+    assertEquals(12.3f, ais.getSog(), 1e-5f);
+    assertEquals(1, ais.getPosAcc());
+    assertEquals(4.11862f, ais.getLongitude(), 1e-5f);
+    assertEquals(48.96700f, ais.getLatitude(), 1e-5f);
+    assertEquals(110f, ais.getCog(), 1e-5f);
+    assertEquals(511, ais.getHdg());
+
+    ais = (AISRecord)objects.get(3);
+    assertEquals(5, ais.getMessageType());
+    assertEquals("EVER \"DIADEM\"", ais.getShipName());
+    assertEquals("NEW YORK", ais.getDestination());
+    assertEquals(5, ais.getEtaMonth());
+    assertEquals(14, ais.getEtaHour());
+    assertEquals(12.2f, ais.getDraught(), 1e-5f);
+
+    assertEquals(-43d, ((double[])objects.get(4))[2], 0d);
+    assertEquals("Unrecognized request '?FOO'", objects.get(5));
+  }
+
+  /**
+   * @see GPSdJSONReader#feed(byte[], int, int)
+   */
+  @Test
+  public void testFeed() throws Exception
+  {
+    String stream = "{\"class\":\"VERSION\",\"release\":\"3.20\",\"proto_major\":3,\"proto_minor\":14}\r\n" +
+                    TPV + "\r\n" +
+                    "{\"class\":\"TPV\",\"mode\":1}\r\n" +   // No fix
+                    SKY + "\r\n" +
+                    "{\"class\":\"TPV\",\"lat\":46.4,\r\n" + // Garbage
+                    AIS1 + "\r\n" +
+                    AIS5 + "\r\n" +
+                    ATT + "\r\n" +
+                    "{\"class\":\"ERROR\",\"message\":\"Unrecognized request '?FOO'\"}\r\n";
+    byte[] bytes = stream.getBytes("UTF-8");
+    GPSdJSONReader reader = new GPSdJSONReader();
+    Collector collector = new Collector();
+    reader.addListener(collector);
+    for (int i=0; i<bytes.length; i+=7) // Objects split across reads
+      reader.feed(bytes, i, Math.min(7, bytes.length - i));
+    check(collector.objects);
+    assertEquals(8L, reader.getObjects());
+    assertEquals(1L, reader.getErrors());
+  }
+}
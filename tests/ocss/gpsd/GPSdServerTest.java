@@ -0,0 +1,106 @@
+package ocss.gpsd;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import java.net.Socket;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ocss.nmea.parser.GeoPos;
+import ocss.nmea.parser.RMC;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GPSdServerTest
+{
+  public GPSdServerTest()
+  {
+  }
+
+  /**
+   * @see GPSdServer#publish(Date, GeoPos, double, double)
+   */
+  @Test
+  public void testFanOut() throws Exception
+  {
+    GPSdServer server = new GPSdServer(0, "/dev/ttyUSB0");
+    server.start();
+
+    // A client speaking the protocol
+    Socket socket = new Socket("localhost", server.getLocalPort());
+    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+    OutputStream out = socket.getOutputStream();
+    assertTrue(in.readLine().startsWith("{\"class\":\"VERSION\""));
+    out.write("?POLL;\n".getBytes("US-ASCII"));
+    assertTrue(in.readLine().contains("\"active\":0"));
+    out.write("?WATCH={\"enable\":true,\"json\":true};\n".getBytes("US-ASCII"));
+    assertTrue(in.readLine().startsWith("{\"class\":\"DEVICES\""));
+    assertTrue(in.readLine().startsWith("{\"class\":\"WATCH\",\"enable\":true"));
+
+    // Streaming clients
+    final int NB_CLIENTS = 5;
+    final CountDownLatch received = new CountDownLatch(NB_CLIENTS);
+    final RMC[] last = new RMC[1];
+    GPSdStreamClient[] clients = new GPSdStreamClient[NB_CLIENTS];
+    for (int i=0; i<NB_CLIENTS; i++)
+    {
+      clients[i] = new GPSdStreamClient("localhost", server.getLocalPort());
+      clients[i].addListener(new GPSdListener()
+        {
+          boolean first = true;
+
+          public void tpvRead(RMC rmc, int mode)
+          {
+            if (first)
+            {
+              first = false;
+              last[0] = rmc;
+              received.countDown();
+            }
+          }
+        });
+      clients[i].start();
+    }
+    Date date = new Date(1272628100000L);
+    for (int i=0; i<100 && received.getCount() > 0; i++) // Until they all watch
+    {
+      server.publish(date, new GeoPos(46.5d, 7.5d), 210d, 6.5d);
+      Thread.sleep(50L);
+    }
+    assertTrue(received.await(1L, TimeUnit.SECONDS));
+    assertEquals(NB_CLIENTS + 1, server.getClientCount());
+    assertEquals(46.5d, last[0].getGp().lat, 1e-9);
+    assertEquals(6.5d, last[0].getSog(), 1e-9); // Knots, m/s, and knots again
+    assertEquals(210d, last[0].getCog(), 1e-9);
+    assertEquals(date, last[0].getRmcDate());
+
+    String tpv = in.readLine();
+    assertTrue(tpv, tpv.startsWith("{\"class\":\"TPV\""));
+    assertTrue(tpv, tpv.contains("\"time\":\"2010-04-30T11:48:20.000Z\""));
+    out.write("?POLL;\n".getBytes("US-ASCII"));
+    String poll;
+    do
+    {
+      poll = in.readLine();
+    } while (poll.startsWith("{\"class\":\"TPV\""));
+    assertTrue(poll, poll.startsWith("{\"class\":\"POLL\""));
+    assertTrue(poll, poll.contains("\"active\":1,\"tpv\":[" + tpv + "]"));
+    out.write("?FOO;\n".getBytes("US-ASCII"));
+    String error;
+    do
+    {
+      error = in.readLine();
+    } while (error.startsWith("{\"class\":\"TPV\""));
+    assertEquals("{\"class\":\"ERROR\",\"message\":\"Unrecognized request '?FOO'\"}", error);
+
+    for (GPSdStreamClient client : clients)
+      client.closeClient();
+    socket.close();
+    server.stopServer();
+  }
+}
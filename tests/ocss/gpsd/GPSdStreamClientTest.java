@@ -0,0 +1,65 @@
+package ocss.gpsd;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GPSdStreamClientTest
+{
+  public GPSdStreamClientTest()
+  {
+  }
+
+  /**
+   * @see GPSdStreamClient#start()
+   */
+  @Test
+  public void testStream() throws Exception
+  {
+    ServerSocket server = new ServerSocket(0); // A fake gpsd
+    final CountDownLatch disconnected = new CountDownLatch(1);
+    GPSdJSONReaderTest.Collector collector = new GPSdJSONReaderTest.Collector()
+      {
+        public void disconnected(Exception cause)
+        {
+          disconnected.countDown();
+        }
+      };
+    GPSdStreamClient client = new GPSdStreamClient("localhost", server.getLocalPort());
+    client.addListener(collector);
+    client.start();
+
+    Socket socket = server.accept();
+    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+    assertEquals(GPSdStreamClient.STREAM, in.readLine());
+    OutputStream out = socket.getOutputStream();
+    out.write(("{\"class\":\"VERSION\",\"release\":\"3.20\",\"proto_major\":3,\"proto_minor\":14}\r\n" +
+               "{\"class\":\"DEVICES\",\"devices\":[{\"class\":\"DEVICE\",\"path\":\"/dev/ttyUSB0\",\"bps\":4800}]}\r\n" +
+               "{\"class\":\"WATCH\",\"enable\":true,\"json\":true,\"scaled\":false}\r\n" +
+               GPSdJSONReaderTest.TPV + "\r\n" +
+               GPSdJSONReaderTest.SKY + "\r\n" +
+               GPSdJSONReaderTest.AIS1.substring(0, 40)).getBytes("UTF-8"));
+    out.flush();
+    Thread.sleep(50L);
+    out.write((GPSdJSONReaderTest.AIS1.substring(40) + "\r\n" +
+               GPSdJSONReaderTest.AIS5 + "\r\n" +
+               GPSdJSONReaderTest.ATT + "\r\n" +
+               "{\"class\":\"ERROR\",\"message\":\"Unrecognized request '?FOO'\"}\r\n").getBytes("UTF-8"));
+    out.flush();
+    socket.close(); // gpsd goes away
+
+    assertTrue(disconnected.await(5L, TimeUnit.SECONDS));
+    GPSdJSONReaderTest.check(collector.objects);
+    client.closeClient();
+    server.close();
+  }
+}
@@ -0,0 +1,68 @@
+package ocss.gpsd;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ocss.nmea.parser.GeoPos;
+import ocss.nmea.parser.RMC;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GPSdUtilsTest
+{
+  public GPSdUtilsTest()
+  {
+  }
+
+  /**
+   * @see GPSdUtils#produceTime(Date)
+   */
+  @Test
+  public void testProduceTime()
+  {
+    assertEquals("1970-01-01T00:00:00.005Z", GPSdUtils.produceTime(new Date(5L)));
+    assertEquals("2010-04-30T11:48:20.100Z", GPSdUtils.produceTime(new Date(1272628100100L)));
+  }
+
+  /**
+   * The same dates, formatted and parsed on several threads at once, without any lock.
+   * @see GPSdUtils#produceTPV(Date, GeoPos, double, double)
+   * @see GPSdUtils#parseTPV(String)
+   */
+  @Test
+  public void testThreads() throws Exception
+  {
+    final List<String> errors = new CopyOnWriteArrayList<String>();
+    Thread[] threads = new Thread[4];
+    for (int t=0; t<threads.length; t++)
+    {
+      final long base = 1272628100000L + (t * 86400000L);
+      threads[t] = new Thread()
+        {
+          public void run()
+          {
+            try
+            {
+              for (int i=0; i<2000; i++)
+              {
+                Date date = new Date(base + (i * 1001L));
+                RMC rmc = GPSdUtils.parseTPV(GPSdUtils.produceTPV(date, new GeoPos(37.5, -122.5), 210d, 5.6));
+                if (!date.equals(rmc.getRmcDate()))
+                  errors.add(date.getTime() + " became " + rmc.getRmcDate().getTime());
+              }
+            }
+            catch (Exception ex)
+            {
+              errors.add(ex.toString());
+            }
+          }
+        };
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+    assertTrue(errors.toString(), errors.isEmpty());
+  }
+}
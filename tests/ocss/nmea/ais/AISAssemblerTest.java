@@ -0,0 +1,87 @@
+package ocss.nmea.ais;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AISAssemblerTest
+{
+  public AISAssemblerTest()
+  {
+  }
+
+  private final static String PART_1 = "55P5TL01VIaAL@7WKO@mBplU@<PDhh000000001S;AJ::4A80?4i@E53";
+  private final static String PART_2 = "1@0000000000000";
+
+  /**
+   * @see AISAssembler#add(boolean, int, int, char, char, CharSequence, int, int, long)
+   */
+  @Test
+  public void testTwoParts()
+  {
+    AISAssembler assembler = new AISAssembler(1000L);
+    assertNull(assembler.add(false, 2, 1, '3', 'B', PART_1, 0, PART_1.length(), 0L));
+    // Same sequence id, other channel: another message
+    assertNull(assembler.add(false, 2, 1, '3', 'A', PART_1, 0, PART_1.length(), 10L));
+    assertEquals(2, assembler.getPending());
+    AISPayload payload = assembler.add(false, 2, 2, '3', 'B', PART_2, 0, PART_2.length(), 20L);
+    assertNotNull(payload);
+    assertEquals((PART_1.length() + PART_2.length()) * 6, payload.length());
+    assertEquals(5, payload.unsignedInt(0, 6));
+    assertEquals(new AISPayload().reset(PART_1 + PART_2).toString(), payload.toString());
+    assertEquals(1, assembler.getPending());
+    assertEquals(0L, assembler.getDropped());
+  }
+
+  /**
+   * A one-fragment message, with the same id and channel, between the two parts of another one.
+   * @see AISAssembler#add(boolean, int, int, char, char, CharSequence, int, int, long)
+   */
+  @Test
+  public void testSingleInBetween()
+  {
+    String single = "15NB>cP03jG?l`<EaV0`MFO000S>";
+    AISAssembler assembler = new AISAssembler(1000L);
+    assertNull(assembler.add(false, 2, 1, '3', 'B', PART_1, 0, PART_1.length(), 0L));
+    AISPayload payload = assembler.add(false, 1, 1, '3', 'B', single, 0, single.length(), 10L);
+    assertNotNull(payload);
+    assertEquals(1, payload.unsignedInt(0, 6));
+    assertEquals(new AISPayload().reset(single).toString(), payload.toString());
+    assertEquals(1, assembler.getPending());
+    payload = assembler.add(false, 2, 2, '3', 'B', PART_2, 0, PART_2.length(), 20L);
+    assertNotNull(payload);
+    assertEquals(new AISPayload().reset(PART_1 + PART_2).toString(), payload.toString());
+    assertEquals(0, assembler.getPending());
+    assertEquals(0L, assembler.getDropped());
+  }
+
+  @Test
+  public void testStale()
+  {
+    AISAssembler assembler = new AISAssembler(1000L);
+    assertNull(assembler.add(false, 2, 1, '3', 'B', PART_1, 0, PART_1.length(), 0L));
+    assertNull(assembler.add(false, 2, 1, '4', 'B', PART_1, 0, PART_1.length(), 0L));
+    assembler.evict(2000L);
+    assertEquals(0, assembler.getPending());
+    assertEquals(2L, assembler.getDropped());
+    assertNull(assembler.add(false, 2, 2, '3', 'B', PART_2, 0, PART_2.length(), 2000L)); // Orphan
+    assertEquals(3L, assembler.getDropped());
+  }
+
+  /**
+   * @see AISParser#parseAIS(String, AISAssembler)
+   */
+  @Test
+  public void testParseAIS() throws Exception
+  {
+    AISAssembler assembler = new AISAssembler();
+    assertNull(AISParser.parseAIS("!AIVDM,2,1,3,B," + PART_1 + ",0*3E", assembler));
+    AISParser.AISRecord rec = AISParser.parseAIS("!AIVDM,2,2,3,B," + PART_2 + ",2*55", assembler);
+    assertNotNull(rec);
+    assertEquals(5, rec.getMessageType());
+    assertEquals(369190000, rec.getMmsi());
+    assertEquals("MT.MITCHELL", rec.getShipName());
+    assertEquals("WDA9674", rec.getCallSign());
+    assertEquals("SEATTLE", rec.getDestination());
+    assertEquals(6.0f, rec.getDraught(), 0.0f);
+  }
+}
@@ -0,0 +1,70 @@
+package ocss.nmea.ais;
+
+import ocss.nmea.parser.NMEAChecksum;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AISParserTest
+{
+  public AISParserTest()
+  {
+  }
+
+  /**
+   * Writes a value in the bits, most significant bit first.
+   */
+  private static void bits(boolean[] payload, int from, int to, long value)
+  {
+    for (int i=to - 1; i>=from; i--)
+    {
+      payload[i] = ((value & 1L) != 0);
+      value >>= 1;
+    }
+  }
+
+  /**
+   * @return the bits in a single sentence, in the 6-bit armoring, with its checksum
+   */
+  private static String sentence(boolean[] payload)
+  {
+    StringBuilder sb = new StringBuilder("!AIVDM,1,1,,B,");
+    for (int i=0; i<payload.length; i+=6)
+    {
+      int sixBits = 0;
+      for (int j=i; j<i + 6; j++)
+        sixBits = (sixBits << 1) | (payload[j] ? 1 : 0);
+      sb.append((char)(sixBits < 40 ? sixBits + 48 : sixBits + 56));
+    }
+    sb.append(",0");
+    String cs = Integer.toHexString(NMEAChecksum.xor(sb, 1, sb.length())).toUpperCase();
+    return sb.append("*").append(cs.length() == 1 ? "0" + cs : cs).toString();
+  }
+
+  /**
+   * Type 18 positions are two's complement, not the legacy value - (2^n - 1) of types 1 to 3.
+   * @see AISParser#parseAIS(String)
+   */
+  @Test
+  public void testClassBPosition() throws Exception
+  {
+    boolean[] payload = new boolean[168];
+    bits(payload,  0,   6, 18);
+    bits(payload,  8,  38, 227006760);
+    bits(payload, 57,  85, -750000);  // -1.25
+    bits(payload, 85, 112, -300000);  // -0.5
+    bits(payload,112, 124, 3600);     // Not available
+    bits(payload,124, 133, 511);      // Not available
+    AISParser.AISRecord rec = AISParser.parseAIS(sentence(payload));
+    assertEquals(18, rec.getMessageType());
+    assertEquals(227006760, rec.getMmsi());
+    assertEquals(-1.25f, rec.getLongitude(), 0f);
+    assertEquals(-0.5f, rec.getLatitude(), 0f);
+
+    bits(payload, 57,  85, 181 * 600000); // Not available, positive
+    bits(payload, 85, 112, 91 * 600000);
+    rec = AISParser.parseAIS(sentence(payload));
+    assertEquals(181f, rec.getLongitude(), 0f);
+    assertEquals(91f, rec.getLatitude(), 0f);
+  }
+}
@@ -0,0 +1,31 @@
+package ocss.nmea.ais;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AISPayloadTest
+{
+  public AISPayloadTest()
+  {
+  }
+
+  /**
+   * @see AISPayload#unsigned(int, int)
+   */
+  @Test
+  public void testFields()
+  {
+    AISPayload payload = new AISPayload().reset("15NB>cP03jG?l`<EaV0`MFO000S>");
+    assertEquals(168, payload.length());
+    assertEquals(1, payload.unsignedInt(0, 6));          // Message type
+    assertEquals(367300270, payload.unsignedInt(8, 38)); // MMSI, across the first word boundary
+    assertEquals(-73423610L, payload.signed(61, 89));    // Longitude, across the second one
+    assertEquals("000001", payload.toString().substring(0, 6));
+  }
+
+  @Test(expected=StringIndexOutOfBoundsException.class)
+  public void testTooShort()
+  {
+    new AISPayload().reset("15NB").unsigned(20, 30);
+  }
+}
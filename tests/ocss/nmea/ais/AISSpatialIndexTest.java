@@ -0,0 +1,195 @@
+package ocss.nmea.ais;
+
+import astro.calc.GeoPoint;
+import astro.calc.GreatCircle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AISSpatialIndexTest
+{
+  public AISSpatialIndexTest()
+  {
+  }
+
+  private static AISParser.AISRecord position(int mmsi, double lat, double lng, long time)
+  {
+    AISParser.AISRecord rec = new AISParser.AISRecord(time);
+    rec.setMessageType(1);
+    rec.setMmsi(mmsi);
+    rec.setLatitude((int)Math.round(lat * 600000d));
+    rec.setLongitude((int)Math.round(lng * 600000d));
+    return rec;
+  }
+
+  private static double distance(double lat, double lng, AISTarget target)
+  {
+    double d = GreatCircle.getGCDistanceInDegrees(new GeoPoint(lat, lng),
+                                                  new GeoPoint(target.getLatitude(), target.getLongitude()));
+    return (Double.isNaN(d) ? 0d : d);
+  }
+
+  private static Set<Integer> mmsis(List<AISTarget> targets)
+  {
+    Set<Integer> set = new HashSet<Integer>();
+    for (AISTarget target : targets)
+      set.add(target.getMmsi());
+    return set;
+  }
+
+  /**
+   * Checks the index against a scan of all the targets.
+   */
+  private static void check(AISSpatialIndex index, List<AISTarget> all, double lat, double lng, double radius, int k)
+  {
+    String where = lat + "/" + lng;
+    List<AISTarget> expected = new ArrayList<AISTarget>();
+    for (AISTarget target : all)
+    {
+      if (distance(lat, lng, target) <= radius)
+        expected.add(target);
+    }
+    List<AISTarget> within = index.within(lat, lng, radius);
+    assertEquals(where, expected.size(), within.size());
+    assertEquals(where, mmsis(expected), mmsis(within));
+
+    double[] dist = new double[all.size()];
+    for (int i=0; i<dist.length; i++)
+      dist[i] = distance(lat, lng, all.get(i));
+    Arrays.sort(dist);
+    List<AISTarget> nearest = index.nearest(lat, lng, k);
+    assertEquals(where, Math.min(k, all.size()), nearest.size());
+    for (int i=0; i<nearest.size(); i++)
+      assertEquals(where + " #" + i, dist[i], distance(lat, lng, nearest.get(i)), 0d); // Same distances, whatever the order of the ties
+  }
+
+  /**
+   * @see AISSpatialIndex#within(double, double, double)
+   * @see AISSpatialIndex#nearest(double, double, int)
+   */
+  @Test
+  public void testAgainstScan()
+  {
+    Random random = new Random(1234L);
+    AISTargetTable table = new AISTargetTable(16, 60000L);
+    AISSpatialIndex index = new AISSpatialIndex(0.1d);
+    table.addListener(index);
+    int mmsi = 200000000;
+    for (int i=0; i<2000; i++) // A dense area, where the rings stop early
+      table.update(position(mmsi++, 37.5 + random.nextGaussian() * 0.3, -122.5 + random.nextGaussian() * 0.3, 0L));
+    for (int i=0; i<200; i++) // And some all over the world
+      table.update(position(mmsi++, (random.nextDouble() * 180d) - 90d, (random.nextDouble() * 360d) - 180d, 0L));
+    assertEquals(2200, index.size());
+
+    List<AISTarget> all = table.targets();
+    check(index, all, 37.5, -122.5, 6d, 10);       // In the middle
+    check(index, all, 37.5, -122.5, 30d, 500);     // Many rings
+    check(index, all, 38.9, -121.1, 12d, 5);       // At the edge of the dense area
+    check(index, all, -45d, 60d, 20d, 3);          // Far from everything, the rings grow until the whole grid is scanned
+    check(index, all, 0d, 0d, 3000d, 2200);        // All the targets
+    for (int i=0; i<50; i++)
+      check(index, all, (random.nextDouble() * 180d) - 90d, (random.nextDouble() * 360d) - 180d, random.nextDouble() * 600d, 1 + random.nextInt(20));
+  }
+
+  /**
+   * Few targets, the queries look at the non empty cells only.
+   * @see AISSpatialIndex#nearest(double, double, int)
+   */
+  @Test
+  public void testFewTargets()
+  {
+    AISSpatialIndex index = new AISSpatialIndex(0.01d);
+    assertTrue(index.nearest(10d, 10d, 3).isEmpty());
+    assertTrue(index.within(10d, 10d, 100d).isEmpty());
+    AISTargetTable table = new AISTargetTable(16, 60000L);
+    table.addListener(index);
+    table.update(position(1, 10d, 10d, 0L));
+    table.update(position(2, -30d, 100d, 0L));
+    table.update(position(3, 60d, -150d, 0L));
+    List<AISTarget> all = table.targets();
+    check(index, all, 10.5d, 10.5d, 60d, 2);
+    check(index, all, 10.5d, 10.5d, 6000d, 5);
+    assertEquals(2, index.nearest(-29d, 101d, 1).get(0).getMmsi());
+  }
+
+  /**
+   * Across the antimeridian, and around the poles.
+   * @see AISSpatialIndex#within(double, double, double)
+   */
+  @Test
+  public void testWrapAround()
+  {
+    AISTargetTable table = new AISTargetTable(16, 60000L);
+    AISSpatialIndex index = new AISSpatialIndex();
+    table.addListener(index);
+    table.update(position(1, 10d, 179.95d, 0L));
+    table.update(position(2, 10d, -179.95d, 0L));
+    table.update(position(3, 10.1d, -179.5d, 0L));
+    table.update(position(4, 10d, 178d, 0L));
+    table.update(position(5, 89.9d, 0d, 0L));
+    table.update(position(6, 89.9d, 180d, 0L));
+    table.update(position(7, 89.95d, -90d, 0L));
+    table.update(position(8, -89.9d, 45d, 0L));
+    table.update(position(9, -89.9d, -135d, 0L));
+    List<AISTarget> all = table.targets();
+
+    assertEquals(new HashSet<Integer>(Arrays.asList(1, 2)), mmsis(index.within(10d, 180d, 5d)));
+    assertEquals(2, index.nearest(10d, -179.96d, 2).get(0).getMmsi());
+    assertEquals(1, index.nearest(10d, -179.96d, 2).get(1).getMmsi());
+    assertEquals(new HashSet<Integer>(Arrays.asList(5, 6, 7)), mmsis(index.within(89.9d, 0d, 15d))); // Across the pole
+    assertEquals(6, index.nearest(89.9d, 170d, 1).get(0).getMmsi());
+    assertEquals(new HashSet<Integer>(Arrays.asList(8, 9)), mmsis(index.within(-90d, 0d, 7d)));
+
+    check(index, all, 10d, 180d, 5d, 3);
+    check(index, all, 10d, -180d, 60d, 4);
+    check(index, all, 10d, 179.99d, 40d, 9);
+    check(index, all, 89.99d, 90d, 20d, 3);
+    check(index, all, 90d, 0d, 10d, 4);
+    check(index, all, -89.99d, -90d, 15d, 2);
+    check(index, all, -90d, 0d, 5d, 9);
+  }
+
+  /**
+   * The index follows the table: new targets, moves, and evictions.
+   * @see AISSpatialIndex#targetUpdated(AISTarget, AISTarget)
+   * @see AISSpatialIndex#targetLost(AISTarget)
+   */
+  @Test
+  public void testTableUpdates()
+  {
+    AISTargetTable table = new AISTargetTable(16, 60000L);
+    AISSpatialIndex index = new AISSpatialIndex();
+    table.addListener(index);
+
+    AISParser.AISRecord statics = new AISParser.AISRecord(0L);
+    statics.setMessageType(5);
+    statics.setMmsi(1);
+    table.update(statics);
+    assertEquals(0, index.size()); // No position yet
+
+    table.update(position(1, 37d, -122d, 0L));
+    table.update(position(2, 37.01d, -122d, 0L));
+    assertEquals(2, index.size());
+    assertEquals(new HashSet<Integer>(Arrays.asList(1, 2)), mmsis(index.within(37d, -122d, 1d)));
+
+    table.update(position(1, 38d, -123d, 10000L)); // Moved to another cell
+    assertEquals(2, index.size());
+    assertEquals(new HashSet<Integer>(Arrays.asList(2)), mmsis(index.within(37d, -122d, 1d)));
+    assertEquals(new HashSet<Integer>(Arrays.asList(1)), mmsis(index.within(38d, -123d, 1d)));
+
+    table.update(position(1, 38.001d, -123.001d, 20000L)); // Same cell, the target is replaced
+    assertEquals(38.001f, index.nearest(38d, -123d, 1).get(0).getLatitude(), 0f);
+
+    assertEquals(1, table.evict(65000L)); // 2 is lost, 1 is not yet
+    assertEquals(1, index.size());
+    assertTrue(index.within(37d, -122d, 1d).isEmpty());
+    check(index, table.targets(), 38d, -123d, 10d, 5);
+  }
+}
@@ -0,0 +1,63 @@
+package ocss.nmea.ais;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AISTargetTableTest
+{
+  public AISTargetTableTest()
+  {
+  }
+
+  private static AISParser.AISRecord position(int mmsi, long time)
+  {
+    AISParser.AISRecord rec = new AISParser.AISRecord(time);
+    rec.setMessageType(1);
+    rec.setMmsi(mmsi);
+    rec.setLatitude(37 * 600000);
+    rec.setLongitude(-122 * 600000);
+    rec.setSog(123);
+    return rec;
+  }
+
+  /**
+   * @see AISTargetTable#update(AISParser.AISRecord)
+   */
+  @Test
+  public void testMerge()
+  {
+    AISTargetTable table = new AISTargetTable(16, 60000L);
+    table.update(position(367300270, 1000L));
+    AISParser.AISRecord statics = new AISParser.AISRecord(2000L);
+    statics.setMessageType(5);
+    statics.setMmsi(367300270);
+    statics.setText(AISLayout.SHIP_NAME, "MT.MITCHELL");
+    table.update(statics);
+
+    AISTarget target = table.get(367300270);
+    assertNotNull(target);
+    assertEquals("MT.MITCHELL", target.getShipName());
+    assertTrue(target.isPositionValid());
+    assertEquals(37f, target.getLatitude(), 0f);
+    assertEquals(12.3f, target.getSog(), 0f);
+    assertEquals(2000L, target.getLastSeen());
+    assertNull(table.get(123456789));
+  }
+
+  /**
+   * @see AISTargetTable#evict(long)
+   */
+  @Test
+  public void testGrowAndEvict()
+  {
+    AISTargetTable table = new AISTargetTable(4, 60000L);
+    for (int i=1; i<=1000; i++)
+      table.update(position(i, i < 500 ? 0L : 50000L));
+    assertEquals(1000, table.size());
+    assertEquals(499, table.evict(100000L));
+    assertEquals(501, table.size());
+    assertNull(table.get(1));
+    assertNotNull(table.get(1000));
+    assertEquals(501, table.targets().size());
+  }
+}
@@ -0,0 +1,141 @@
+package ocss.nmea.ais;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ocss.nmea.parser.GeoPos;
+import ocss.nmea.parser.RMC;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class CPAEngineTest
+{
+  public CPAEngineTest()
+  {
+  }
+
+  private static AISTarget target(int mmsi, double northNm, double eastNm, double sog, double cog)
+  {
+    AISParser.AISRecord rec = new AISParser.AISRecord(0L);
+    rec.setMessageType(1);
+    rec.setMmsi(mmsi);
+    rec.setLatitude((int)Math.round(northNm * 10000d)); // 1/10000 minute, at the equator
+    rec.setLongitude((int)Math.round(eastNm * 10000d));
+    rec.setSog((int)Math.round(sog * 10d));
+    rec.setCog((int)Math.round(cog * 10d));
+    return AISTarget.create(rec);
+  }
+
+  /**
+   * The own ship at 0/0, going North at 10 knots.
+   */
+  private static List<AISTarget> geometries()
+  {
+    List<AISTarget> targets = new ArrayList<AISTarget>();
+    targets.add(target(1, 6d, 0d, 10d, 180d));   // Head-on, CPA 0 in 18 minutes
+    targets.add(target(2, 0d, 5d, 10d, 270d));    // Crossing, from starboard
+    targets.add(target(3, -2d, 0d, 10d, 180d));   // Diverging, astern
+    targets.add(target(4, -0.5d, 0d, 10d, 180d)); // Diverging, but still close
+    targets.add(target(5, 3d, 0d, 0d, 0d));       // Stationary, ahead
+    targets.add(target(6, 60d, 0d, 10d, 180d));   // Head-on, too far away
+    return targets;
+  }
+
+  private static void checkGeometries(CPAEngine engine)
+  {
+    engine.load(geometries());
+    assertEquals(6, engine.size());
+    engine.compute(0d, 0d, 10d, 0d);
+    assertEquals(0d,  engine.getCpa(0), 1e-6);
+    assertEquals(0.3, engine.getTcpa(0), 1e-6);
+    assertEquals(6d,  engine.getRange(0), 1e-6);
+    assertEquals(2.5 * Math.sqrt(2d), engine.getCpa(1), 1e-6);
+    assertEquals(0.25, engine.getTcpa(1), 1e-6);
+    assertEquals(2d,  engine.getCpa(2), 1e-6);   // Now
+    assertEquals(-0.1, engine.getTcpa(2), 1e-6);
+    assertEquals(0d,  engine.getCpa(4), 1e-6);
+    assertEquals(0.3, engine.getTcpa(4), 1e-6);
+
+    List<CPAEngine.Threat> threats = engine.threats(0d, 0d, 10d, 0d, 1d, 0.5d);
+    assertEquals(3, threats.size());
+    assertEquals(4, threats.get(0).getTarget().getMmsi()); // Moving away, but within 1 nm
+    assertEquals(1, threats.get(1).getTarget().getMmsi());
+    assertEquals(5, threats.get(2).getTarget().getMmsi());
+
+    threats = engine.threats(0d, 0d, 10d, 0d, 4d, 0.5d);
+    assertEquals(5, threats.size());
+    assertEquals(3, threats.get(0).getTarget().getMmsi());
+    assertEquals(4, threats.get(1).getTarget().getMmsi());
+    assertEquals(2, threats.get(2).getTarget().getMmsi());
+
+    engine.compute(0d, 0d, 0d, 0d); // Both stopped: no relative motion, the CPA is the range
+    assertEquals(3d, engine.getCpa(4), 1e-6);
+    assertEquals(0d, engine.getTcpa(4), 0d);
+  }
+
+  /**
+   * @see CPAEngine#threats(double, double, double, double, double, double)
+   */
+  @Test
+  public void testGeometries()
+  {
+    checkGeometries(new CPAEngine());
+  }
+
+  /**
+   * The same, split over an executor.
+   * @see CPAEngine#setExecutor(ExecutorService, int)
+   */
+  @Test
+  public void testExecutor()
+  {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try
+    {
+      CPAEngine split = new CPAEngine();
+      split.setExecutor(executor, 1);
+      checkGeometries(split);
+
+      Random random = new Random(42L);
+      List<AISTarget> targets = new ArrayList<AISTarget>();
+      for (int i=1; i<=10000; i++)
+        targets.add(target(i, random.nextGaussian() * 20d, random.nextGaussian() * 20d, random.nextDouble() * 30d, random.nextDouble() * 360d));
+      CPAEngine single = new CPAEngine();
+      single.load(targets);
+      single.compute(0d, 0d, 12d, 45d);
+      split.setExecutor(executor, 1000);
+      split.load(targets);
+      split.compute(0d, 0d, 12d, 45d);
+      for (int i=0; i<single.size(); i++)
+      {
+        assertEquals(single.getCpa(i), split.getCpa(i), 0d);
+        assertEquals(single.getTcpa(i), split.getTcpa(i), 0d);
+      }
+      assertEquals(single.threats(0d, 0d, 12d, 45d, 2d, 0.5d).size(), split.threats(0d, 0d, 12d, 45d, 2d, 0.5d).size());
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * @see CPAEngine#threats(RMC, double, double)
+   */
+  @Test
+  public void testNoOwnPosition()
+  {
+    CPAEngine engine = new CPAEngine();
+    engine.load(geometries());
+    RMC rmc = new RMC();
+    assertTrue(engine.threats(rmc, 1d, 0.5d).isEmpty());
+    rmc.setGp(new GeoPos(0d, 0d));
+    rmc.setSog(10d);
+    rmc.setCog(0d);
+    assertEquals(3, engine.threats(rmc, 1d, 0.5d).size());
+  }
+}
@@ -0,0 +1,68 @@
+package ocss.nmea.api;
+
+import java.io.OutputStream;
+
+import java.net.Socket;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEAClientTest
+{
+  public NMEAClientTest()
+  {
+  }
+
+  private final static String MWV = "$IIMWV,226.0,R,008.7,N,A*2E";
+  private final static String VHW = "$IIVHW,,,211.0,M,05.90,N,,*11";
+  private final static String RMC = "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A";
+
+  /**
+   * @see NMEAClient#startWorking(java.util.concurrent.Executor)
+   */
+  @Test
+  public void testStartWorkingOnExecutor() throws Exception
+  {
+    final List<String> detected = new CopyOnWriteArrayList<String>();
+    final CountDownLatch latch = new CountDownLatch(2);
+    NMEAClient client = new NMEAClient("II", new String[] { "MWV", "VHW" })
+      {
+        public void dataDetectedEvent(NMEAEvent e)
+        {
+          detected.add(e.getContent());
+          latch.countDown();
+        }
+      };
+    client.initClient();
+    NMEAMultiplexReader reader = new NMEAMultiplexReader(client.getListeners());
+    reader.setEOS(NMEAParser.getEOS());
+    NMEAMultiplexReader.Source tcpServer = reader.listen(0);
+    client.setReader(reader);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    client.startWorking(executor);
+    assertFalse(reader.isAlive()); // Not started as a Thread
+
+    Socket socket = new Socket("localhost", tcpServer.getLocalPort());
+    OutputStream os = socket.getOutputStream();
+    String eos = NMEAParser.getEOS();
+    os.write((RMC + eos + MWV + eos + VHW + eos).getBytes("ISO-8859-1"));
+    os.flush();
+    assertTrue(latch.await(5L, TimeUnit.SECONDS));
+    assertEquals(2, detected.size());
+    assertEquals(MWV, detected.get(0));
+    assertEquals(VHW, detected.get(1));
+
+    reader.stopReading();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5L, TimeUnit.SECONDS)); // read() has returned
+    assertFalse(reader.canRead());
+    socket.close();
+  }
+}
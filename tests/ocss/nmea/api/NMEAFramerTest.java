@@ -0,0 +1,42 @@
+package ocss.nmea.api;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEAFramerTest
+{
+  public NMEAFramerTest()
+  {
+  }
+
+  /**
+   * @see NMEAFramer#next()
+   */
+  @Test
+  public void testFraming()
+  {
+    NMEAFramer framer = new NMEAFramer(256, "\n");
+    String data = "garbage\n$GPRMC,123519,A*00\n!AIVDM,1,1,,A,abc,0*12\njunk$GPGGA,trunc$GPGLL,ok\n";
+    // Feed it in small chunks
+    for (int i=0; i<data.length(); i+=5)
+      framer.append(data, i, Math.min(i + 5, data.length()));
+    assertTrue(framer.next());
+    assertEquals("$GPRMC,123519,A*00", framer.sentence().toString());
+    assertTrue(framer.next());
+    assertEquals("!AIVDM,1,1,,A,abc,0*12", framer.sentence().toString());
+    assertTrue(framer.next());
+    assertEquals("$GPGLL,ok", framer.sentence().toString());
+    assertFalse(framer.next());
+  }
+
+  @Test
+  public void testTooLong()
+  {
+    NMEAFramer framer = new NMEAFramer(32, "\r\n");
+    framer.append("$IIXDR,0123456789012345678901234567890123456789\r\n$IIMTA,20.5,C*02\r\n");
+    assertTrue(framer.next());
+    assertEquals("$IIMTA,20.5,C*02", framer.sentence().toString());
+    assertFalse(framer.next());
+    assertEquals(1L, framer.getDropped());
+  }
+}
@@ -0,0 +1,118 @@
+package ocss.nmea.api;
+
+import java.io.OutputStream;
+
+import java.net.ConnectException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEAMultiplexReaderTest
+{
+  public NMEAMultiplexReaderTest()
+  {
+  }
+
+  private final static String MWV = "$IIMWV,226.0,R,008.7,N,A*2E";
+  private final static String VHW = "$IIVHW,,,211.0,M,05.90,N,,*11";
+  private final static String RMC = "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A";
+
+  /**
+   * @see NMEAMultiplexReader#read()
+   */
+  @Test
+  public void testLoopback() throws Exception
+  {
+    final List<String> received = new CopyOnWriteArrayList<String>();
+    final List<String> read = new CopyOnWriteArrayList<String>();
+    final CountDownLatch latch = new CountDownLatch(8);
+    NMEAMultiplexReader reader = new NMEAMultiplexReader();
+    reader.setEOS("\r\n");
+    reader.addSourceListener(new NMEASourceListener()
+      {
+        public void sentenceRead(NMEAMultiplexReader.Source source, CharSequence sentence)
+        {
+          received.add(source.getType() + ":" + sentence);
+          latch.countDown();
+        }
+      });
+    reader.addNMEAListener(new NMEAListener() // Created without any
+      {
+        public void dataRead(NMEAEvent e)
+        {
+          read.add(e.getContent());
+          latch.countDown();
+        }
+      });
+    ServerSocket server = new ServerSocket(0);           // A multiplexer the reader connects to
+    NMEAMultiplexReader.Source tcpServer = reader.listen(0);
+    NMEAMultiplexReader.Source udp = reader.listenUdp(0);
+    reader.connect("localhost", server.getLocalPort());
+    reader.start();
+
+    Socket pushed = server.accept();
+    OutputStream os = pushed.getOutputStream();
+    os.write((MWV + "\r\n" + VHW.substring(0, 10)).getBytes("ISO-8859-1")); // Split sentence
+    os.flush();
+    Thread.sleep(50L);
+    os.write((VHW.substring(10) + "\r\n").getBytes("ISO-8859-1"));
+    os.flush();
+
+    Socket client = new Socket("localhost", tcpServer.getLocalPort());
+    client.getOutputStream().write((RMC + "\r\n").getBytes("ISO-8859-1"));
+    client.getOutputStream().flush();
+
+    DatagramSocket ds = new DatagramSocket();
+    byte[] datagram = (MWV + "\r\n").getBytes("ISO-8859-1");
+    ds.send(new DatagramPacket(datagram, datagram.length, InetAddress.getByName("localhost"), udp.getLocalPort()));
+
+    assertTrue(latch.await(5L, TimeUnit.SECONDS));
+    assertTrue(received.contains("TCP_CLIENT:" + MWV));
+    assertTrue(received.contains("TCP_CLIENT:" + VHW));
+    assertTrue(received.contains("TCP_ACCEPTED:" + RMC));
+    assertTrue(received.contains("UDP:" + MWV));
+    assertEquals(4, read.size());
+    assertTrue(read.contains(RMC + "\r\n"));
+
+    reader.stopReading();
+    reader.join(5000L);
+    assertFalse(reader.isAlive());
+    ds.close();
+    client.close();
+    pushed.close();
+    server.close();
+  }
+
+  /**
+   * @see NMEAMultiplexReader#stopReading()
+   */
+  @Test
+  public void testStopBeforeStart() throws Exception
+  {
+    NMEAMultiplexReader reader = new NMEAMultiplexReader();
+    NMEAMultiplexReader.Source tcpServer = reader.listen(0);
+    reader.stopReading();
+    reader.start();
+    reader.join(5000L);
+    assertFalse(reader.isAlive());
+    assertFalse(reader.canRead());
+    try
+    {
+      new Socket("localhost", tcpServer.getLocalPort()).close();
+      fail("The source should be closed");
+    }
+    catch (ConnectException ce)
+    {
+    }
+  }
+}
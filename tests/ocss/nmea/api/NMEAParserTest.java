@@ -0,0 +1,78 @@
+package ocss.nmea.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEAParserTest
+{
+  public NMEAParserTest()
+  {
+  }
+
+  private final static String STREAM = "$IIMWV,110.0,R,12.3,N,A*2E\n" +
+                                       "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\n" +
+                                       "$IIRMC,220526.00,A,3754.34,N,12223.20,W,3.90,250,,015,E,N*07\n" +
+                                       "!AIVDM,1,1,,B,15NB>cP03jG?l`<EaV0`MFO000S>,0*39\n" +
+                                       "$IIVHW,,,123,M,06.540,N,,*6B\n" +
+                                       "$IIMWV,270.0,T,10.0,M,A*0A\n";
+
+  /**
+   * Feeds the stream to a parser, in chunks of the given size (cut in the middle of the sentences).
+   * @return the detected sentences
+   */
+  private static List<String> detect(boolean framed, int chunk, String prefix, String[] sentences)
+  {
+    final List<String> detected = new ArrayList<String>();
+    List<NMEAListener> listeners = new CopyOnWriteArrayList<NMEAListener>();
+    NMEAParser parser = new NMEAParser(listeners);
+    parser.setEOS("\n");
+    parser.setFramed(framed);
+    parser.setNmeaPrefix(prefix);
+    parser.setNmeaSentence(sentences);
+    parser.addNMEAListener(new NMEAListener()
+      {
+        public void dataDetected(NMEAEvent e)
+        {
+          detected.add(e.getContent());
+        }
+      });
+    for (int i=0; i<STREAM.length(); i+=chunk)
+    {
+      NMEAEvent e = new NMEAEvent(parser, STREAM.substring(i, Math.min(i + chunk, STREAM.length())));
+      for (NMEAListener l : listeners)
+        l.dataRead(e);
+    }
+    return detected;
+  }
+
+  /**
+   * @see NMEAParser#setFramed(boolean)
+   */
+  @Test
+  public void testFramedSameAsStrings()
+  {
+    int[] chunks = { 1, 7, 23, 64, STREAM.length() };
+    for (int chunk : chunks)
+    {
+      List<String> all = detect(false, chunk, "", null);
+      assertEquals(5, all.size()); // Not the AIS one
+      assertFalse(all.toString().contains("!AIVDM"));
+      assertEquals(all, detect(true, chunk, "", null));
+
+      List<String> filtered = detect(false, chunk, "II", new String[] { "MWV", "RMC" });
+      assertEquals(3, filtered.size());
+      assertEquals("$IIMWV,110.0,R,12.3,N,A*2E", filtered.get(0));
+      assertEquals("$IIRMC,220526.00,A,3754.34,N,12223.20,W,3.90,250,,015,E,N*07", filtered.get(1));
+      assertEquals("$IIMWV,270.0,T,10.0,M,A*0A", filtered.get(2));
+      assertEquals(filtered, detect(true, chunk, "II", new String[] { "MWV", "RMC" }));
+
+      List<String> qualified = detect(false, chunk, "", new String[] { "GPRMC", "IIVHW" });
+      assertEquals(2, qualified.size());
+      assertEquals(qualified, detect(true, chunk, "", new String[] { "GPRMC", "IIVHW" }));
+    }
+  }
+}
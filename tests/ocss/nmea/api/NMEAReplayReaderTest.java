@@ -0,0 +1,140 @@
+package ocss.nmea.api;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ocss.nmea.parser.NMEAChecksum;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEAReplayReaderTest
+{
+  public NMEAReplayReaderTest()
+  {
+  }
+
+  /**
+   * @see NMEAReplayReader#read()
+   */
+  @Test
+  public void testReplay() throws Exception
+  {
+    File log = File.createTempFile("replay", ".nmea");
+    log.deleteOnExit();
+    FileOutputStream fos = new FileOutputStream(log);
+    fos.write(("$IIMWV,226.0,R,008.7,N,A*2E\r\n" +
+               "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\r\n" +
+               "$GPZDA,201530.00,04,07,2002,00,00*60\r\n").getBytes("ISO-8859-1"));
+    fos.close();
+
+    final List<String> sentences = new ArrayList<String>();
+    final List<Long> times = new ArrayList<Long>();
+    NMEAReplayReader reader = new NMEAReplayReader(log.getPath(), NMEAReplayReader.AS_FAST_AS_POSSIBLE)
+      {
+        protected void sentenceRead(CharSequence sentence, long time)
+        {
+          sentences.add(sentence.toString());
+          times.add(time);
+        }
+      };
+    reader.getFramer().setEOS("\r\n");
+    reader.run();
+    assertEquals(3, sentences.size());
+    assertEquals("$IIMWV,226.0,R,008.7,N,A*2E", sentences.get(0));
+    assertEquals(-1L, times.get(0).longValue());
+    assertEquals(764426119000L, times.get(1).longValue());  // 1994-03-23 12:35:19 UTC
+    assertEquals(1025813730000L, times.get(2).longValue()); // 2002-07-04 20:15:30 UTC
+  }
+
+  /**
+   * The error goes to the listeners, even when the reader was created without any.
+   * @see NMEAReplayReader#NMEAReplayReader(String, double)
+   */
+  @Test
+  public void testMissingFile() throws Exception
+  {
+    File missing = new File(System.getProperty("java.io.tmpdir"), "missing-" + System.nanoTime() + ".nmea");
+    final List<Throwable> errors = new ArrayList<Throwable>();
+    NMEAReplayReader reader = new NMEAReplayReader(missing.getPath(), NMEAReplayReader.AS_FAST_AS_POSSIBLE);
+    reader.addNMEAListener(new NMEAListener()
+      {
+        public void fireError(Throwable t)
+        {
+          errors.add(t);
+        }
+      });
+    try
+    {
+      reader.run();
+      fail("No such file");
+    }
+    catch (RuntimeException ex)
+    {
+      assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof FileNotFoundException);
+    }
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0) instanceof FileNotFoundException);
+
+    try
+    {
+      new NMEAReplayReader(null, missing.getPath(), NMEAReplayReader.AS_FAST_AS_POSSIBLE).run(); // As documented
+      fail("No such file");
+    }
+    catch (RuntimeException ex)
+    {
+      assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof FileNotFoundException);
+    }
+  }
+
+  /**
+   * @param seconds since 2002-07-04 10:00:00 UTC, the same day
+   */
+  private static String zda(int seconds)
+  {
+    int t = 36000 + seconds;
+    String sentence = String.format("$GPZDA,%02d%02d%02d.00,04,07,2002,00,00", t / 3600, (t / 60) % 60, t % 60);
+    return sentence + String.format("*%02X", NMEAChecksum.xor(sentence, 1, sentence.length()));
+  }
+
+  /**
+   * 50 times faster than the log, with a gap, and a jump back in time.
+   * @see NMEAReplayReader#setSpeed(double)
+   */
+  @Test
+  public void testPace() throws Exception
+  {
+    int[] logTimes   = { 0, 5, 10, 7210, 7215, 1, 6 }; // s
+    long[] expected  = { 0, 100, 200, 200, 300, 300, 400 }; // ms since the first one
+    File log = File.createTempFile("pace", ".nmea");
+    log.deleteOnExit();
+    FileOutputStream fos = new FileOutputStream(log);
+    for (int t : logTimes)
+      fos.write((zda(t) + "\r\n" + "$IIMWV,226.0,R,008.7,N,A*2E\r\n").getBytes("ISO-8859-1"));
+    fos.close();
+
+    final List<Long> wall = new ArrayList<Long>();
+    NMEAReplayReader reader = new NMEAReplayReader(log.getPath(), 50d)
+      {
+        protected void sentenceRead(CharSequence sentence, long time)
+        {
+          if (time != -1L)
+            wall.add(System.nanoTime());
+        }
+      };
+    reader.getFramer().setEOS("\r\n");
+    reader.run();
+    assertEquals(2 * logTimes.length, reader.getSentencesRead());
+    assertEquals(logTimes.length, wall.size());
+    for (int i=1; i<logTimes.length; i++)
+    {
+      long elapsed = (wall.get(i) - wall.get(0)) / 1000000L;
+      assertTrue("#" + i + ": " + elapsed + " ms", elapsed >= expected[i] - 1L);     // Never early
+      assertTrue("#" + i + ": " + elapsed + " ms", elapsed <= expected[i] + 250L);   // Not waiting for the gap
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package ocss.nmea.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class QueuedNMEAListenerTest
+{
+  public QueuedNMEAListenerTest()
+  {
+  }
+
+  /**
+   * Runs the tasks when asked to.
+   */
+  private static class ManualExecutor implements Executor
+  {
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+
+    public void execute(Runnable r)
+    {
+      tasks.add(r);
+    }
+
+    void runAll()
+    {
+      while (!tasks.isEmpty())
+        tasks.remove(0).run();
+    }
+  }
+
+  private static class Recorder extends NMEAListener
+  {
+    final List<String> received = new ArrayList<String>();
+    boolean stopped = false;
+
+    public void dataDetected(NMEAEvent e)
+    {
+      received.add(e.getContent());
+    }
+
+    public void dataRead(NMEAEvent e)
+    {
+      received.add("read " + e.getContent());
+    }
+
+    public void stopReading(NMEAEvent e)
+    {
+      stopped = true;
+      received.add("stop");
+    }
+
+    public void fireError(Throwable t)
+    {
+      received.add(t.getMessage());
+    }
+  }
+
+  /**
+   * The raw chunks do not take the room of the sentences, unless asked for.
+   * @see QueuedNMEAListener#dataRead(NMEAEvent)
+   */
+  @Test
+  public void testDataRead()
+  {
+    ManualExecutor executor = new ManualExecutor();
+    Recorder recorder = new Recorder();
+    QueuedNMEAListener queued = new QueuedNMEAListener(recorder, executor, 2, QueuedNMEAListener.Policy.DROP_OLDEST);
+    queued.dataDetected(new NMEAEvent(this, "S0"));
+    for (int i=0; i<5; i++)
+      queued.dataRead(new NMEAEvent(this, "C" + i));
+    queued.dataDetected(new NMEAEvent(this, "S1"));
+    assertEquals(2, queued.getPending());
+    executor.runAll();
+    assertEquals(0L, queued.getDropped());
+    assertEquals("[S0, S1]", recorder.received.toString());
+
+    recorder = new Recorder();
+    queued = new QueuedNMEAListener(recorder, executor, 2, QueuedNMEAListener.Policy.DROP_OLDEST, 1, true);
+    queued.dataDetected(new NMEAEvent(this, "S0"));
+    queued.dataRead(new NMEAEvent(this, "C0"));
+    queued.dataDetected(new NMEAEvent(this, "S1"));
+    executor.runAll();
+    assertEquals(1L, queued.getDropped());
+    assertEquals("[read C0, S1]", recorder.received.toString());
+  }
+
+  /**
+   * @see QueuedNMEAListener#dataDetected(NMEAEvent)
+   */
+  @Test
+  public void testDropOldest()
+  {
+    ManualExecutor executor = new ManualExecutor();
+    Recorder recorder = new Recorder();
+    QueuedNMEAListener queued = new QueuedNMEAListener(recorder, executor, 3, QueuedNMEAListener.Policy.DROP_OLDEST);
+    for (int i=0; i<5; i++)
+      queued.dataDetected(new NMEAEvent(this, "S" + i));
+    queued.stopReading(new NMEAEvent(this));
+    assertEquals(1, executor.tasks.size()); // One drain scheduled at a time
+    assertEquals(4, queued.getPending());   // The stop is not counted in the capacity
+    executor.runAll();
+    assertEquals(2L, queued.getDropped());
+    assertEquals("[S2, S3, S4, stop]", recorder.received.toString());
+    assertTrue(recorder.stopped);
+    assertEquals(0, queued.getPending());
+  }
+
+  /**
+   * @see QueuedNMEAListener#dataDetected(NMEAEvent)
+   */
+  @Test
+  public void testSample()
+  {
+    ManualExecutor executor = new ManualExecutor();
+    Recorder recorder = new Recorder();
+    QueuedNMEAListener queued = new QueuedNMEAListener(recorder, executor, 2, QueuedNMEAListener.Policy.SAMPLE, 3);
+    for (int i=0; i<8; i++)
+      queued.dataDetected(new NMEAEvent(this, "S" + i));
+    executor.runAll();
+    assertEquals("[S4, S7]", recorder.received.toString());
+    assertEquals(6L, queued.getDropped());
+  }
+
+  /**
+   * The stop and error events are not evicted by the data events coming after them.
+   * @see QueuedNMEAListener#stopReading(NMEAEvent)
+   * @see QueuedNMEAListener#fireError(Throwable)
+   */
+  @Test
+  public void testControlEventsKept()
+  {
+    QueuedNMEAListener.Policy[] policies = { QueuedNMEAListener.Policy.DROP_OLDEST, QueuedNMEAListener.Policy.SAMPLE };
+    for (QueuedNMEAListener.Policy policy : policies)
+    {
+      ManualExecutor executor = new ManualExecutor();
+      Recorder recorder = new Recorder();
+      QueuedNMEAListener queued = new QueuedNMEAListener(recorder, executor, 1, policy, 1);
+      queued.dataDetected(new NMEAEvent(this, "S0"));
+      queued.fireError(new RuntimeException("error"));
+      queued.stopReading(new NMEAEvent(this));
+      for (int i=1; i<5; i++)
+        queued.dataDetected(new NMEAEvent(this, "S" + i));
+      executor.runAll();
+      assertEquals(policy.toString(), "[error, stop, S4]", recorder.received.toString());
+      assertEquals(4L, queued.getDropped());
+      assertEquals(0, queued.getPending());
+    }
+  }
+
+  /**
+   * @see NMEAClient#removeNMEAListener(NMEAListener)
+   */
+  @Test
+  public void testRemove()
+  {
+    List<NMEAListener> listeners = new CopyOnWriteArrayList<NMEAListener>();
+    Recorder recorder = new Recorder();
+    listeners.add(new QueuedNMEAListener(recorder, new ManualExecutor(), 10, QueuedNMEAListener.Policy.BLOCK));
+    assertTrue(QueuedNMEAListener.remove(listeners, recorder));
+    assertTrue(listeners.isEmpty());
+  }
+}
@@ -0,0 +1,33 @@
+package ocss.nmea.api;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SentenceFilterTest
+{
+  public SentenceFilterTest()
+  {
+  }
+
+  /**
+   * @see SentenceFilter#accept(CharSequence)
+   */
+  @Test
+  public void testAccept()
+  {
+    SentenceFilter filter = SentenceFilter.compile("II", new String[] { "MWV", "VHW", "GPRMC" });
+    assertTrue(filter.accept("$IIMWV,226.0,R,008.7,N,A*2E"));
+    assertTrue(filter.accept("$GPRMC,123519,A*00"));    // Fully qualified
+    assertFalse(filter.accept("$WIMWV,226.0,R,008.7,N,A*2E"));
+    assertFalse(filter.accept("$IIRMC,123519,A*00"));
+    assertFalse(filter.accept("$IIMW"));
+
+    SentenceFilter any = SentenceFilter.compile("*", new String[] { "MWV" });
+    assertTrue(any.accept("$WIMWV,226.0,R,008.7,N,A*2E"));
+    assertTrue(any.accept("$IIMWV,226.0,R,008.7,N,A*2E"));
+    assertFalse(any.accept("$IIVHW,,,211.0,M,05.90,N,,*11"));
+
+    assertTrue(SentenceFilter.compile("II", null).accept("$WIXXX"));
+    assertFalse(SentenceFilter.compile("II", new String[0]).accept("$IIMWV"));
+  }
+}
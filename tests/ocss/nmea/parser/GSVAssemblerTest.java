@@ -0,0 +1,96 @@
+package ocss.nmea.parser;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GSVAssemblerTest
+{
+  public GSVAssemblerTest()
+  {
+  }
+
+  private final static String[] CYCLE =
+  {
+    "$GPGSV,3,1,11,03,03,111,00,04,15,270,00,06,01,010,00,13,06,292,00*74",
+    "$GPGSV,3,2,11,14,25,170,00,16,57,208,39,18,67,296,40,19,40,246,00*74",
+    "$GPGSV,3,3,11,22,42,067,42,24,14,311,43,27,05,244,00,,,,*4D"
+  };
+
+  /**
+   * @see GSVAssembler#add(CharSequence)
+   */
+  @Test
+  public void testCycle()
+  {
+    GSVAssembler assembler = new GSVAssembler();
+    assertNull(assembler.add(CYCLE[0]));
+    assertNull(assembler.add(CYCLE[1]));
+    SatellitesInView sats = assembler.add(CYCLE[2]);
+    assertNotNull(sats);
+    assertEquals(11, sats.size());
+    assertEquals(11, sats.getInView());
+    assertEquals(3, sats.getPrn(0));
+    assertEquals(27, sats.getPrn(10));
+    int i = sats.indexOf(24);
+    assertEquals(14, sats.getElevation(i));
+    assertEquals(311, sats.getAzimuth(i));
+    assertEquals(43, sats.getSnr(i));
+    assertEquals(-1, sats.indexOf(5));
+
+    Map<Integer, SVData> legacy = null;
+    for (String s : CYCLE)
+      legacy = StringParsers.parseGSV(s);
+    Map<Integer, SVData> map = sats.toMap();
+    assertEquals(legacy.keySet(), map.keySet());
+    for (Integer prn : legacy.keySet())
+    {
+      assertEquals(legacy.get(prn).getElevation(), map.get(prn).getElevation());
+      assertEquals(legacy.get(prn).getAzimuth(), map.get(prn).getAzimuth());
+      assertEquals(legacy.get(prn).getSnr(), map.get(prn).getSnr());
+    }
+
+    SatellitesInView next = assembler.add("$GPGSV,1,1,01,07,10,100,20*40"); // One sentence cycle
+    assertEquals(1, next.size());
+    assertEquals(7, next.getPrn(0));
+    assertEquals(11, sats.size()); // Not changed by the next cycle
+  }
+
+  /**
+   * @see GSVAssembler#add(CharSequence)
+   */
+  @Test
+  public void testMissingSentence()
+  {
+    GSVAssembler assembler = new GSVAssembler();
+    assertNull(assembler.add(CYCLE[0]));
+    assertNull(assembler.add(CYCLE[2])); // Second one lost
+    assertNull(assembler.add(CYCLE[1])); // Not the beginning of a cycle
+    assertNull(assembler.add(CYCLE[2]));
+    assertNull(assembler.add(CYCLE[0]));
+    assertNull(assembler.add(CYCLE[1]));
+    assertEquals(11, assembler.add(CYCLE[2]).size());
+  }
+
+  /**
+   * @see StringParsers#parseGSV(String)
+   */
+  @Test
+  public void testLegacyPerThread() throws Exception
+  {
+    StringParsers.parseGSV(CYCLE[0]);
+    Thread other = new Thread()
+      {
+        public void run()
+        {
+          StringParsers.parseGSV(CYCLE[0]); // Another cycle, does not reset this one
+          StringParsers.parseGSV(CYCLE[1]);
+        }
+      };
+    other.start();
+    other.join();
+    StringParsers.parseGSV(CYCLE[1]);
+    assertEquals(11, StringParsers.parseGSV(CYCLE[2]).size());
+  }
+}
@@ -0,0 +1,68 @@
+package ocss.nmea.parser;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class InstrumentFrameParserTest
+{
+  public InstrumentFrameParserTest()
+  {
+  }
+
+  /**
+   * @see InstrumentFrameParser#parse(CharSequence, InstrumentFrame)
+   */
+  @Test
+  public void testParse()
+  {
+    InstrumentFrame frame = new InstrumentFrame();
+    InstrumentFrameParser parser = new InstrumentFrameParser();
+    assertTrue(Double.isNaN(frame.getAWS()));
+
+    String rmc = "$IIRMC,220526.00,A,3754.34,N,12223.20,W,3.90,250,,015,E,N*07";
+    assertTrue(parser.parse(rmc, frame));
+    RMC legacy = StringParsers.parseRMC(rmc);
+    assertEquals(legacy.getGp().lat, frame.getLatitude(), 1e-9);
+    assertEquals(legacy.getGp().lng, frame.getLongitude(), 1e-9);
+    assertEquals(3.9, frame.getSOG(), 0d);
+    assertEquals(250d, frame.getCOG(), 0d);
+    assertEquals(15d, frame.getDeclination(), 0d);
+    assertEquals(NMEATime.NO_TIME, frame.getTime()); // No date
+    assertTrue(frame.isUpdated(InstrumentFrame.POSITION | InstrumentFrame.SOG | InstrumentFrame.COG));
+    assertFalse(frame.isUpdated(InstrumentFrame.TIME));
+
+    frame.clearUpdated();
+    assertTrue(parser.parse(StringGenerator.generateMWV("II", 14.5, 300) + "\r\n", frame));
+    assertTrue(parser.parse(StringGenerator.generateMWV("II", 18.2, 45, StringParsers.TRUE_WIND), frame));
+    assertTrue(parser.parse(StringGenerator.generateVHW("II", 6.54, 123), frame));
+    assertTrue(parser.parse(StringGenerator.generateMTA("II", 18.7), frame));
+    assertTrue(parser.parse(StringGenerator.generateMMB("II", 1013.6), frame));
+    assertEquals(InstrumentFrame.AWS | InstrumentFrame.AWA | InstrumentFrame.TWS | InstrumentFrame.TWA |
+                 InstrumentFrame.HDM | InstrumentFrame.BSP | InstrumentFrame.AIR_TEMP | InstrumentFrame.PRESSURE, frame.getUpdated());
+    assertEquals(14.5, frame.getAWS(), 0d);
+    assertEquals(300d, frame.getAWA(), 0d);
+    assertEquals(18.2, frame.getTWS(), 0d);
+    assertEquals(45d, frame.getTWA(), 0d);
+    assertEquals(6.54, frame.getBSP(), 0d);
+    assertEquals(123d, frame.getHDM(), 0d);
+    assertTrue(Double.isNaN(frame.getHDT()));
+    assertEquals(18.7, frame.getAirTemp(), 0d);
+    assertEquals(StringParsers.parseMMB(StringGenerator.generateMMB("II", 1013.6)), frame.getPressure(), 1e-9);
+    assertEquals(3.9, frame.getSOG(), 0d); // Still there
+
+    frame.clearUpdated();
+    assertFalse(parser.parse("$IIRMC,220526.00,A,3754.34,N,12223.20,W,3.90,250,,015,E,N*08", frame)); // Bad checksum
+    assertFalse(parser.parse("$GPRMC,123519,V,,,,,,,230394,,*33", frame)); // Void
+    assertFalse(parser.parse("$PGRMZ,93,f,3*21", frame)); // Proprietary
+    assertFalse(parser.parse("$IIVHW,,,,,,,,*49", frame)); // Empty
+    assertFalse(parser.parse("$IIVTG,,T,,M,,N,,K,N*3B", frame));
+    assertFalse(parser.parse("$IIVWR,,,,,,,,*53", frame));
+    assertEquals(0, frame.getUpdated());
+
+    InstrumentFrame copy = new InstrumentFrame();
+    copy.copyFrom(frame);
+    assertEquals(frame.toString(), copy.toString());
+    copy.reset();
+    assertTrue(Double.isNaN(copy.getLatitude()));
+  }
+}
@@ -0,0 +1,85 @@
+package ocss.nmea.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEABatchParserTest
+{
+  public NMEABatchParserTest()
+  {
+  }
+
+  private final static String[] GSV_CYCLE =
+  {
+    "GPGSV,3,1,11,03,03,111,00,04,15,270,00,06,01,010,00,13,06,292,00",
+    "GPGSV,3,2,11,14,25,170,00,16,57,208,39,18,67,296,40,19,40,246,00",
+    "GPGSV,3,3,11,22,42,067,42,24,14,311,43,27,05,244,00"
+  };
+
+  private static String sentence(String s)
+  {
+    return "$" + s + "*" + String.format("%02X", NMEAChecksum.xor(s, 0, s.length()));
+  }
+
+  /**
+   * @see NMEABatchParser#parse(String)
+   */
+  @Test
+  public void testParse() throws Exception
+  {
+    final int CYCLES = 200;
+    File log = File.createTempFile("batch", ".nmea");
+    log.deleteOnExit();
+    StringBuffer sb = new StringBuffer();
+    for (int i=0; i<CYCLES; i++)
+    {
+      sb.append(sentence("GPRMC,1235" + (i % 60 < 10 ? "0" : "") + (i % 60) + ",A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W")).append("\r\n");
+      for (String gsv : GSV_CYCLE)
+        sb.append(sentence(gsv)).append("\r\n");
+      sb.append("$IIMWV,226.0,R,008.7,N,A*2E\r\n");                 // Not registered
+      sb.append("$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*00\r\n"); // Bad checksum
+    }
+    FileOutputStream fos = new FileOutputStream(log);
+    fos.write(sb.toString().getBytes("ISO-8859-1"));
+    fos.close();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try
+    {
+      NMEABatchParser parser = new NMEABatchParser(executor, 4);
+      parser.register(SentenceType.RMC);
+      parser.register(NMEABatchParser.GSV);
+      parser.setSegmentSize(500L); // GSV cycles across segments
+      NMEABatchParser.Result result = parser.parse(log.getPath());
+
+      assertEquals(CYCLES * 6L, result.getLines());
+      assertEquals((long)CYCLES, result.getInvalid());
+      List<RMC> rmcs = result.get(SentenceType.RMC);
+      assertEquals(CYCLES, rmcs.size());
+      for (int i=0; i<CYCLES; i++) // In order
+        assertEquals((12L * 3600L) + (35L * 60L) + (i % 60), (rmcs.get(i).getRmcDate().getTime() / 1000L) % 86400L);
+      List<SatellitesInView> cycles = result.get(NMEABatchParser.GSV);
+      assertEquals(CYCLES, cycles.size());
+      for (SatellitesInView svs : cycles)
+      {
+        assertEquals(11, svs.size());
+        assertEquals(42, svs.getElevation(svs.indexOf(22)));
+      }
+      List<NMEABatchParser.Entry> entries = result.getEntries();
+      assertEquals(CYCLES * 2, entries.size());
+      for (int i=0; i<entries.size(); i++)
+        assertEquals((6L * (i / 2)) + (i % 2 == 0 ? 1L : 4L), entries.get(i).getLine()); // RMC, then the last GSV
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package ocss.nmea.parser;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEAChecksumTest
+{
+  public NMEAChecksumTest()
+  {
+  }
+
+  private final static String RMC = "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A";
+
+  /**
+   * @see NMEAChecksum#xor(byte[], int, int)
+   */
+  @Test
+  public void testXor() throws Exception
+  {
+    int star = RMC.indexOf('*');
+    byte[] ba = RMC.getBytes("ISO-8859-1");
+    for (int from=1; from<star; from++)
+    {
+      int expected = NMEAChecksum.xor(RMC, from, star);
+      assertEquals(expected, NMEAChecksum.xor(ba, from, star));
+      assertEquals(expected, NMEAChecksum.xor(ByteBuffer.allocateDirect(ba.length).put(ba), from, star));
+    }
+    assertEquals(0x6A, NMEAChecksum.xor(ba, 1, star));
+  }
+
+  /**
+   * @see NMEAChecksum#isValid(CharSequence, int, int)
+   */
+  @Test
+  public void testIsValid() throws Exception
+  {
+    String framed = "xx" + RMC + "\r\nyy";
+    byte[] ba = framed.getBytes("ISO-8859-1");
+    int from = 2, to = framed.indexOf("yy");
+    assertTrue(NMEAChecksum.isValid(framed, from, to));
+    assertTrue(NMEAChecksum.isValid(ba, from, to));
+    assertTrue(NMEAChecksum.isValid(RMC.replace("*6A", "*6a"), 0, RMC.length()));
+    assertFalse(NMEAChecksum.isValid(RMC.replace("*6A", "*6B"), 0, RMC.length()));
+    assertFalse(NMEAChecksum.isValid(RMC.replace("*6A", "*6G"), 0, RMC.length()));
+    assertFalse(NMEAChecksum.isValid(RMC.substring(0, RMC.length() - 3), 0, RMC.length() - 3));
+    assertEquals(0x6A, NMEAChecksum.declared(RMC, 0, RMC.length()));
+    assertEquals(NMEAChecksum.NONE, NMEAChecksum.declared("$GPRMC,", 0, 7));
+  }
+
+  /**
+   * @see StringParsers#validCheckSum(String)
+   */
+  @Test
+  public void testValidCheckSum()
+  {
+    assertTrue(StringParsers.validCheckSum(" " + RMC + "\r\n"));
+    assertTrue(StringParsers.validCheckSum(RMC.replace("*6A", "*06A"))); // Not the usual form, still accepted as before
+    assertFalse(StringParsers.validCheckSum("$*00"));
+    assertFalse(StringParsers.validCheckSum("*00"));
+  }
+}
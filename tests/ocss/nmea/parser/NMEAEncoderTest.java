@@ -0,0 +1,105 @@
+package ocss.nmea.parser;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEAEncoderTest
+{
+  public NMEAEncoderTest()
+  {
+  }
+
+  private static String drain(StringBuilder sb)
+  {
+    String s = sb.toString();
+    sb.setLength(0);
+    return s;
+  }
+
+  /**
+   * @see NMEAEncoder#generateRMC(String, long, double, double, double, double, double)
+   */
+  @Test
+  public void testRMC()
+  {
+    StringBuilder sb = new StringBuilder();
+    NMEAEncoder encoder = new NMEAEncoder().to(sb);
+    encoder.generateRMC("II", 1768480496000L, 37.7489, -122.5070, 6.7, 210.3, 14.0); // 2026-01-15 12:34:56 UTC
+    assertEquals("$IIRMC,123456,A,3744.934,N,12230.420,W,006.7,210.3,150126,014.0,E*7F", drain(sb));
+    encoder.generateRMC("GP", -1000L, -12.5, 5.25, 0, 0, -3.0);
+    assertEquals("$GPRMC,235959,A,1230.000,S,00515.000,E,000.0,000.0,311269,003.0,W*74", drain(sb));
+  }
+
+  /**
+   * @see NMEAEncoder#generateMWV(String, double, int, int)
+   * @see NMEAEncoder#generateMDA(String, double, double, double, double, double, double, double, double, double)
+   */
+  @Test
+  public void testSameAsStringGenerator()
+  {
+    StringBuilder sb = new StringBuilder();
+    NMEAEncoder encoder = new NMEAEncoder().to(sb);
+    Random random = new Random(20261017L);
+    for (int i=0; i<2000; i++)
+    {
+      double a = (random.nextDouble() * 720d) - 360d;
+      double b = random.nextDouble() * 60d;
+      double c = Math.round(random.nextDouble() * 100000d) / 1000d; // Some ties, at 3 decimals and less
+      double d = Math.round(random.nextDouble() * 2000d) / 20d;
+      int dir = random.nextInt(720) - 360;
+
+      encoder.generateMWV("II", b, dir, StringParsers.TRUE_WIND);
+      assertEquals(StringGenerator.generateMWV("II", b, dir, StringParsers.TRUE_WIND), drain(sb));
+      encoder.generateVWT("II", b, a);
+      assertEquals(StringGenerator.gerenateVWT("II", b, a), drain(sb));
+      encoder.generateVHW("II", c, dir + 360);
+      assertEquals(StringGenerator.generateVHW("II", c, dir + 360), drain(sb));
+      encoder.generateHDM("II", dir + 360);
+      assertEquals(StringGenerator.generateHDM("II", dir + 360), drain(sb));
+      encoder.generateMMB("II", 950d + d);
+      assertEquals(StringGenerator.generateMMB("II", 950d + d), drain(sb));
+      encoder.generateMTA("II", a / 10d);
+      assertEquals(StringGenerator.generateMTA("II", a / 10d), drain(sb));
+      encoder.generateVDR("II", d, a + 360d, c);
+      assertEquals(StringGenerator.generateVDR("II", d, a + 360d, c), drain(sb));
+      encoder.generateMWD("II", a + 360d, b, d / 10d);
+      assertEquals(StringGenerator.generateMWD("II", a + 360d, b, d / 10d), drain(sb));
+      encoder.generateMDA("II", 950d + d, a / 10d, c / 5d, d, NMEAEncoder.NO_VALUE, c / 10d, a + 360d, a + 360d, b);
+      assertEquals(StringGenerator.generateMDA("II", 950d + d, a / 10d, c / 5d, d, NMEAEncoder.NO_VALUE, c / 10d, a + 360d, a + 360d, b),
+                   drain(sb));
+      encoder.generateXDR("II", new StringGenerator.XDRElement(StringGenerator.XDRTypes.PRESSURE_B, (950d + d) / 1000d, "BMP"),
+                                new StringGenerator.XDRElement(StringGenerator.XDRTypes.TEMPERATURE, a / 10d, "AIR"));
+      assertEquals(StringGenerator.generateXDR("II", new StringGenerator.XDRElement(StringGenerator.XDRTypes.PRESSURE_B, (950d + d) / 1000d, "BMP"),
+                                                     new StringGenerator.XDRElement(StringGenerator.XDRTypes.TEMPERATURE, a / 10d, "AIR")),
+                   drain(sb));
+    }
+  }
+
+  /**
+   * @see NMEAEncoder#to(ByteBuffer)
+   */
+  @Test
+  public void testByteBuffer()
+  {
+    ByteBuffer bb = ByteBuffer.allocate(40);
+    NMEAEncoder encoder = new NMEAEncoder().setEOS("\r\n").to(bb);
+    encoder.generateMWV("II", 12.34, -20);
+    String mwv = StringGenerator.generateMWV("II", 12.34, -20) + "\r\n";
+    assertEquals(mwv.length(), bb.position());
+    assertEquals(mwv, new String(bb.array(), 0, bb.position()));
+    try
+    {
+      encoder.generateMWV("II", 12.34, -20); // Does not fit
+      fail("Expected a BufferOverflowException");
+    }
+    catch (BufferOverflowException boe)
+    {
+      assertEquals(mwv.length(), bb.position()); // Left as it was
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package ocss.nmea.parser;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEAFieldsTest
+{
+  public NMEAFieldsTest()
+  {
+  }
+
+  private final static String[] SENTENCES =
+  {
+    "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A",
+    "$IIRMC,220526.00,A,3754.34,N,12223.20,W,3.90,250,,015,E,N*07",
+    "$IIVHW,,,123,M,06.540,N,,*6B",               // Trailing empty fields
+    "$GPRMC,123519,V,,,,,,,230394,,*33",
+    "$GPGSV,3,3,11,22,42,067,42,24,14,311,43,27,05,244,00,,,,*4D",
+    "$IIXDR,C,18.5,C,AIR,P,1.0136,B,BARO*1C",
+    "$PGRMZ,93,f,3*21",
+    "$IIHDG,,,,,*",                              // Nothing but empty fields
+    "$IIMTA"                                     // No checksum
+  };
+
+  /**
+   * @see NMEAFields#reset(CharSequence)
+   * @see NMEAFields#splitCount()
+   */
+  @Test
+  public void testSameAsSplit()
+  {
+    NMEAFields fields = new NMEAFields();
+    for (String sentence : SENTENCES)
+    {
+      int star = sentence.indexOf('*');
+      String[] split = (star == -1 ? sentence : sentence.substring(0, star)).split(",");
+      fields.reset(sentence);
+      assertEquals(sentence, split.length, fields.splitCount());
+      for (int i=0; i<split.length; i++)
+      {
+        assertEquals(sentence + " #" + i, split[i], fields.string(i));
+        assertEquals(split[i].length(), fields.length(i));
+        assertEquals(split[i].length() == 0, fields.isEmpty(i));
+        assertTrue(fields.equals(i, split[i]));
+      }
+      int commas = 0;
+      for (int i=0; i<(star == -1 ? sentence.length() : star); i++)
+      {
+        if (sentence.charAt(i) == ',')
+          commas++;
+      }
+      assertEquals(sentence, commas + 1, fields.count()); // The trailing empty fields too
+      for (int i=split.length; i<fields.count(); i++)
+        assertEquals("", fields.string(i));
+      assertTrue(fields.isEmpty(fields.count())); // Missing is empty
+    }
+  }
+
+  /**
+   * @see NMEAFields#reset(CharSequence, int, int)
+   */
+  @Test
+  public void testRange()
+  {
+    String line = "xx$IIMWV,226.0,R,008.7,N,A*2E\r\n";
+    NMEAFields fields = new NMEAFields().reset(line, 2, line.indexOf('*'));
+    assertEquals(6, fields.count());
+    assertEquals("$IIMWV", fields.string(0));
+    assertEquals(2, fields.start(0));
+    assertEquals("A", fields.string(5));
+    assertTrue(fields.is(2, 'R'));
+    assertEquals(226d, fields.parseNMEADouble(1), 0d);
+
+    fields.reset(line, 9, 14); // One field, inside the sentence
+    assertEquals(1, fields.count());
+    assertEquals("226.0", fields.string(0));
+
+    fields.reset(line, 9, 9); // Empty range, one empty field like "".split(",")
+    assertEquals(1, fields.count());
+    assertTrue(fields.isEmpty(0));
+    assertEquals(0, fields.splitCount());
+  }
+
+  /**
+   * @see NMEAFields#string(int)
+   */
+  @Test
+  public void testOutOfRange()
+  {
+    NMEAFields fields = new NMEAFields().reset("$IIVHW,,,123,M,06.540,N,,*6B");
+    int[] bad = { -1, fields.count(), 100 };
+    for (int i : bad)
+    {
+      try
+      {
+        fields.string(i);
+        fail("Field #" + i);
+      }
+      catch (ArrayIndexOutOfBoundsException expected)
+      {
+      }
+    }
+    try
+    {
+      fields.charAt(1, 0); // Empty field
+      fail("Empty field");
+    }
+    catch (StringIndexOutOfBoundsException expected)
+    {
+    }
+  }
+
+  /**
+   * @see NMEAFields#parseInt(int, int, int)
+   */
+  @Test
+  public void testParseIntRange()
+  {
+    NMEAFields fields = new NMEAFields().reset("$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A");
+    assertEquals(12, fields.parseInt(1, 0, 2));
+    assertEquals(35, fields.parseInt(1, 2, 4));
+    assertEquals(19, fields.parseInt(1, 4, 6));
+    assertEquals(94, fields.parseInt(9, 4, 6));
+    assertEquals(123519, fields.parseInt(1));
+    assertEquals(Integer.parseInt("0113"), fields.parseInt(5, 0, 4));
+    int[][] bad = { { 4, 7 }, { -1, 2 }, { 3, 2 } };
+    for (int[] range : bad)
+    {
+      try
+      {
+        fields.parseInt(1, range[0], range[1]);
+        fail("[" + range[0] + ", " + range[1] + "[");
+      }
+      catch (StringIndexOutOfBoundsException expected)
+      {
+      }
+    }
+    try
+    {
+      fields.parseInt(1, 2, 2); // Empty, like Integer.parseInt("")
+      fail("Empty range");
+    }
+    catch (NumberFormatException expected)
+    {
+    }
+    try
+    {
+      fields.parseInt(3); // 4807.038
+      fail("Not an int");
+    }
+    catch (NumberFormatException expected)
+    {
+    }
+  }
+}
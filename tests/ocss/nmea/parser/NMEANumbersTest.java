@@ -0,0 +1,61 @@
+package ocss.nmea.parser;
+
+import java.text.NumberFormat;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEANumbersTest
+{
+  public NMEANumbersTest()
+  {
+  }
+
+  private final static String[] VALUES = { "4807.038", "-28.2", "022.4", "0.1", ".5", "5.", "-0", "12.3abc", "1..2",
+                                           "1,234", "1.5E3", "1E-2", "1.5e3", "12345678901234567890", "9007199254740993",
+                                           "0.30000001192092896" };
+
+  /**
+   * @see NMEANumbers#parseNMEADouble(CharSequence)
+   */
+  @Test
+  public void testParseNMEADouble() throws Exception
+  {
+    NumberFormat nf = NumberFormat.getInstance(Locale.ENGLISH);
+    for (String str : VALUES)
+    {
+      assertEquals(str, Double.doubleToLongBits(nf.parse(str).doubleValue()), Double.doubleToLongBits(NMEANumbers.parseNMEADouble(str)));
+      assertEquals(str, Float.floatToIntBits(nf.parse(str).floatValue()), Float.floatToIntBits(NMEANumbers.parseNMEAFloat(str)));
+    }
+    String[] invalid = { "", "-", ".", "+1", " 1" };
+    for (String str : invalid)
+    {
+      try
+      {
+        NMEANumbers.parseNMEADouble(str);
+        fail("[" + str + "] should not parse");
+      }
+      catch (NumberFormatException nfe) {}
+    }
+  }
+
+  /**
+   * @see NMEANumbers#parseDouble(CharSequence, int, int)
+   */
+  @Test
+  public void testParseDouble()
+  {
+    String data = "$IIMTA,+20.5,C*02";
+    assertEquals(20.5, NMEANumbers.parseDouble(data, 7, 12), 0.0);
+    assertEquals(20.5f, NMEANumbers.parseFloat(data, 7, 12), 0.0f);
+    assertEquals(Float.parseFloat("0.30000001192092896"), NMEANumbers.parseFloat("0.30000001192092896", 0, 19), 0.0f);
+    try
+    {
+      NMEANumbers.parseDouble(data, 7, 14);
+      fail("[+20.5,C] should not parse");
+    }
+    catch (NumberFormatException nfe) {}
+  }
+}
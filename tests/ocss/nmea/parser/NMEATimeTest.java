@@ -0,0 +1,84 @@
+package ocss.nmea.parser;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NMEATimeTest
+{
+  public NMEATimeTest()
+  {
+  }
+
+  /**
+   * @see NMEATime#dayStart(int, int, int)
+   */
+  @Test
+  public void testSameAsCalendar()
+  {
+    Calendar utc = new GregorianCalendar(TimeZone.getTimeZone("Etc/UTC"));
+    Random random = new Random(20261017L);
+    for (int i=0; i<5000; i++)
+    {
+      int year = 1600 + random.nextInt(800);
+      int month = random.nextInt(30) - 8; // Some out of range, rolling over
+      int day = random.nextInt(40) - 4;
+      utc.clear();
+      utc.set(year, month - 1, day);
+      assertEquals(year + "-" + month + "-" + day, utc.getTimeInMillis(), NMEATime.dayStart(year, month, day));
+    }
+  }
+
+  /**
+   * @see NMEATime#epochMillis(CharSequence, int, int, CharSequence, int, int)
+   */
+  @Test
+  public void testRMC()
+  {
+    String rmc = "$GPRMC,235959.6,A,4807.038,N,01131.000,E,022.4,084.4,311226,003.1,W*74";
+    NMEAFields fields = new NMEAFields().reset(rmc);
+    NMEATime time = new NMEATime();
+    long ms = time.epochMillis(rmc, fields.start(1), fields.end(1), rmc, fields.start(9), fields.end(9));
+    Calendar utc = new GregorianCalendar(TimeZone.getTimeZone("Etc/UTC"));
+    utc.clear();
+    utc.set(2027, Calendar.JANUARY, 1); // 23:59:59.6, rounded to the next second, and the next year
+    assertEquals(utc.getTimeInMillis(), ms);
+    assertEquals(utc.getTimeInMillis(), StringParsers.parseRMC(rmc).getRmcDate().getTime());
+    assertEquals(ms, StringParsers.parseRMCtoMillis(rmc));
+    RMCView view = new RMCView();
+    assertTrue(view.reset(rmc));
+    assertEquals(ms, view.getEpochMillis());
+
+    assertEquals(utc.getTimeInMillis() - 1000L, time.ddmmyy(31, 12, 26) + NMEATime.timeOfDay(235959d)); // Same day, cached
+    utc.clear();
+    utc.set(1951, Calendar.JANUARY, 1); // Above 50, 20th century
+    assertEquals(utc.getTimeInMillis(), time.ddmmyy(1, 1, 51));
+  }
+
+  /**
+   * @see StringParsers#durationToDate(String)
+   * @see StringParsers#parseZDAtoMillis(String)
+   */
+  @Test
+  public void testDurationAndZDA()
+  {
+    Calendar utc = new GregorianCalendar(TimeZone.getTimeZone("Etc/UTC"));
+    utc.clear();
+    utc.set(2006, Calendar.MAY, 5, 17, 35, 48);
+    assertEquals(utc.getTimeInMillis(), StringParsers.durationToDate("2006-05-05T17:35:48.000Z"));
+    assertEquals(utc.getTimeInMillis() + 36000000L, StringParsers.durationToDate("2006-05-05T17:35:48.000-10:00"));
+
+    utc.clear();
+    utc.set(2002, Calendar.JULY, 4, 20, 15, 30);
+    assertEquals(utc.getTimeInMillis() + 250L, StringParsers.parseZDAtoMillis("$GPZDA,201530.25,04,07,2002,00,00*67"));
+    assertEquals(NMEATime.NO_TIME, StringParsers.parseZDAtoMillis("$GPZDA,201530.25,04,07,2002,00,00"));    // No checksum
+    assertEquals(NMEATime.NO_TIME, StringParsers.parseZDAtoMillis("$GPZDA,201530.25,04,07,2002,00,00*68")); // Bad checksum
+    assertEquals(NMEATime.NO_TIME, StringParsers.parseZDAtoMillis("$GPZDA,201530.25,04,JUL,2002,00,00*33"));
+    assertEquals(NMEATime.NO_TIME, StringParsers.parseZDAtoMillis("$GPZDA,2015X0.25,04,07,2002,00,00*0C"));
+    assertEquals(NMEATime.NO_TIME, StringParsers.parseZDAtoMillis("$GPZDA,,04,07,2002,00,00*4B"));
+  }
+}
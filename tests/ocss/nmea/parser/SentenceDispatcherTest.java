@@ -0,0 +1,99 @@
+package ocss.nmea.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SentenceDispatcherTest
+{
+  public SentenceDispatcherTest()
+  {
+  }
+
+  private final static String RMC = "$IIRMC,220526.00,A,3754.34,N,12223.20,W,3.90,250,,015,E,N*07";
+
+  private static class Collector<T> extends SentenceSubscriber<T>
+  {
+    final List<T> values = new ArrayList<T>();
+
+    public void sentenceParsed(T value, String sentence)
+    {
+      values.add(value);
+    }
+  }
+
+  /**
+   * @see SentenceDispatcher#dispatch(String)
+   */
+  @Test
+  public void testDispatch()
+  {
+    SentenceDispatcher dispatcher = new SentenceDispatcher();
+    Collector<RMC> first = new Collector<RMC>();
+    Collector<Object> second = new Collector<Object>();
+    dispatcher.subscribe(SentenceType.RMC, first);
+    dispatcher.subscribe(SentenceType.RMC, second);
+    dispatcher.subscribe(SentenceType.RMC, second); // Once is enough
+
+    assertTrue(dispatcher.dispatch(RMC));
+    assertEquals(1L, dispatcher.getParsed());
+    assertEquals(1, first.values.size());
+    assertEquals(1, second.values.size());
+    assertSame(first.values.get(0), second.values.get(0));
+    assertEquals(3.9d, first.values.get(0).getSog(), 1e-9);
+
+    assertFalse(dispatcher.dispatch("$IIMWV,226.0,R,008.7,N,A*2E")); // Nobody subscribed, not parsed
+    assertFalse(dispatcher.dispatch("$PGRMZ,1234,f,3*21"));
+    assertEquals(1L, dispatcher.getParsed());
+
+    dispatcher.unsubscribe(SentenceType.RMC, first);
+    dispatcher.unsubscribe(SentenceType.RMC, second);
+    assertFalse(dispatcher.dispatch(RMC));
+    assertEquals(1, first.values.size());
+  }
+
+  /**
+   * A subscriber that throws does not prevent the others from getting the sentence.
+   * @see SentenceDispatcher#dispatch(String)
+   */
+  @Test
+  public void testThrowingSubscriber()
+  {
+    SentenceDispatcher dispatcher = new SentenceDispatcher();
+    final List<Throwable> failures = new ArrayList<Throwable>();
+    Collector<RMC> first = new Collector<RMC>()
+      {
+        public void sentenceParsed(RMC value, String sentence)
+        {
+          throw new IllegalStateException("Subscriber failed");
+        }
+
+        public void parseFailed(String sentence, Throwable t)
+        {
+          failures.add(t);
+        }
+      };
+    Collector<RMC> second = new Collector<RMC>();
+    dispatcher.subscribe(SentenceType.RMC, first);
+    dispatcher.subscribe(SentenceType.RMC, second);
+    assertTrue(dispatcher.dispatch(RMC));
+    assertEquals(1, second.values.size());
+    assertEquals(1, failures.size());
+    assertEquals("Subscriber failed", failures.get(0).getMessage());
+  }
+
+  /**
+   * @see SentenceType#SentenceType(String)
+   */
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidId()
+  {
+    new SentenceType<String>("Rmc")
+      {
+        public String parse(String sentence)
+        { return sentence; }
+      };
+  }
+}
@@ -0,0 +1,78 @@
+package ocss.nmea.parser;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SentenceViewTest
+{
+  public SentenceViewTest()
+  {
+  }
+
+  /**
+   * @see RMCView
+   */
+  @Test
+  public void testRMC()
+  {
+    String str = "$IIRMC,220526.00,A,3754.34,N,12223.20,W,3.90,250,,015,E,N*07";
+    RMC rmc = StringParsers.parseRMC(str);
+    RMCView view = new RMCView();
+    assertTrue(view.reset(str));
+    assertTrue(view.isActive());
+    assertEquals(rmc.getGp().lat, view.getLatitude(), 1e-9);
+    assertEquals(rmc.getGp().lng, view.getLongitude(), 1e-9);
+    assertEquals(rmc.getSog(), view.getSOG(), 0d);
+    assertEquals(rmc.getCog(), view.getCOG(), 0d);
+    assertEquals(rmc.getDeclination(), view.getDeclination(), 0d);
+
+    assertTrue(view.reset("$GPRMC,123519,V,,,,,,,230394,,*33\r\n"));
+    assertFalse(view.isActive());
+    assertTrue(Double.isNaN(view.getLatitude()));
+    assertTrue(Double.isNaN(view.getSOG()));
+
+    assertFalse(view.reset("$IIRMC,220526.00,A,3754.34,N,12223.20,W,3.90,250,,015,E,N*08")); // Bad checksum
+    assertFalse(view.isValid());
+    assertTrue(Double.isNaN(view.getSOG()));
+    assertFalse(view.reset(StringGenerator.generateHDM("II", 123))); // Not an RMC
+  }
+
+  /**
+   * @see MWVView
+   */
+  @Test
+  public void testMWV()
+  {
+    MWVView view = new MWVView();
+    String str = StringGenerator.generateMWV("II", 12.3, -45);
+    assertTrue(view.reset(str));
+    assertTrue(view.isAvailable());
+    assertEquals(StringParsers.APPARENT_WIND, view.getFlavor());
+    Wind wind = StringParsers.parseMWV(str);
+    assertEquals(wind.angle, view.getAngle(), 0d);
+    assertEquals(wind.speed, view.getSpeed(), 0d);
+    assertEquals('N', view.getSpeedUnit());
+    assertEquals(12.3, view.getSpeedInKnots(), 0d);
+
+    assertTrue(view.reset("$WIMWV,270.0,T,10.0,M,A*12"));
+    assertEquals(StringParsers.TRUE_WIND, view.getFlavor());
+    assertEquals(10.0 * 3.6 / 1.852, view.getSpeedInKnots(), 1e-9);
+  }
+
+  /**
+   * @see VHWView
+   */
+  @Test
+  public void testVHW()
+  {
+    VHWView view = new VHWView();
+    String str = StringGenerator.generateVHW("II", 6.54, 123);
+    assertTrue(view.reset(str));
+    double[] vhw = StringParsers.parseVHW(str);
+    assertEquals(vhw[StringParsers.BSP_in_VHW], view.getSpeed(), 0d);
+    assertEquals(vhw[StringParsers.HDM_in_VHW], view.getHeadingMagnetic(), 0d);
+    assertTrue(Double.isNaN(view.getHeadingTrue()));
+    assertTrue(Double.isNaN(view.getSpeedInKmh()));
+    assertEquals(9, view.getFieldCount());
+  }
+}
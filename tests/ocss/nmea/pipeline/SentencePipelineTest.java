@@ -0,0 +1,152 @@
+package ocss.nmea.pipeline;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SentencePipelineTest
+{
+  public SentencePipelineTest()
+  {
+  }
+
+  /**
+   * Checks that a stage sees every sentence, in order.
+   */
+  private static class Checker extends SentenceHandler
+  {
+    long expected = 0L;
+    long errors = 0L;
+
+    public void onSentence(SentenceSlot slot, long sequence, boolean endOfBatch)
+    {
+      if (sequence != expected || !("$IIXXX," + sequence).contentEquals(slot))
+        errors++;
+      expected++;
+    }
+  }
+
+  /**
+   * @see SentencePipeline#publish(byte[], int, int)
+   */
+  @Test
+  public void testPublish() throws Exception
+  {
+    SentencePipeline pipeline = new SentencePipeline(8, 32); // Small ring, the producer has to wait
+    pipeline.getFramer().setEOS("\r\n");
+    Checker first = new Checker(), second = new Checker();
+    pipeline.addStage(first);
+    pipeline.addStage(second);
+    pipeline.start();
+    int nb = 10000;
+    StringBuilder sb = new StringBuilder();
+    for (int i=0; i<nb; i++)
+      sb.append("$IIXXX,").append(i).append("\r\n");
+    byte[] data = sb.toString().getBytes("ISO-8859-1");
+    pipeline.publish(data, 0, data.length);
+    assertEquals(0L, pipeline.getDropped());
+    assertFalse(pipeline.publish("$IIXXX,This one is much too long for a slot"));
+    assertEquals(1L, pipeline.getDropped());
+    pipeline.halt();
+    assertEquals(nb - 1, pipeline.getCursor());
+    for (Checker checker : new Checker[] { first, second })
+    {
+      assertEquals(nb, checker.expected);
+      assertEquals(0L, checker.errors);
+    }
+  }
+
+  /**
+   * @see SentencePipeline#halt()
+   */
+  @Test(expected=IllegalStateException.class)
+  public void testPublishAfterHalt()
+  {
+    SentencePipeline pipeline = new SentencePipeline(8, 32);
+    pipeline.addStage(new Checker());
+    pipeline.start();
+    assertTrue(pipeline.publish("$IIXXX,0"));
+    pipeline.halt();
+    pipeline.publish("$IIXXX,1");
+  }
+
+  /**
+   * The ring is full, and no stage will ever empty it.
+   * @see SentencePipeline#publish(CharSequence)
+   */
+  @Test(expected=IllegalStateException.class)
+  public void testPublishNotStarted()
+  {
+    SentencePipeline pipeline = new SentencePipeline(8, 32);
+    pipeline.addStage(new Checker());
+    for (int i=0; i<=8; i++)
+      pipeline.publish("$IIXXX," + i);
+  }
+
+  /**
+   * A stage that is never run.
+   * @see SentencePipeline#halt(long)
+   */
+  @Test
+  public void testHaltTimeout()
+  {
+    SentencePipeline pipeline = new SentencePipeline(8, 32);
+    pipeline.addStage(new Checker());
+    pipeline.start(new Executor()
+      {
+        public void execute(Runnable r) // Never runs it
+        {
+        }
+      });
+    pipeline.publish("$IIXXX,0");
+    long before = System.currentTimeMillis();
+    assertFalse(pipeline.halt(100L));
+    long elapsed = System.currentTimeMillis() - before;
+    assertTrue(elapsed + " ms", elapsed >= 100L && elapsed < 5000L);
+  }
+
+  /**
+   * A stage stops, the other one goes on.
+   * @see SentencePipeline#halt()
+   */
+  @Test
+  public void testStoppedStage()
+  {
+    SentencePipeline pipeline = new SentencePipeline(8, 32);
+    Checker checker = new Checker();
+    pipeline.addStage(checker);
+    pipeline.addStage(new SentenceHandler()
+      {
+        public void onSentence(SentenceSlot slot, long sequence, boolean endOfBatch)
+        {
+          throw new IllegalArgumentException("Bad sentence");
+        }
+
+        public void onError(Throwable t, SentenceSlot slot, long sequence)
+        {
+          throw new Error("Stage stopped"); // Out of the stage
+        }
+      });
+    pipeline.start();
+    Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+    Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler()
+      {
+        public void uncaughtException(Thread t, Throwable e)
+        {
+        }
+      });
+    try
+    {
+      for (int i=0; i<100; i++) // Much more than the ring
+        pipeline.publish("$IIXXX," + i);
+      assertTrue(pipeline.halt(5000L));
+      assertEquals(100L, checker.expected);
+      assertEquals(0L, checker.errors);
+    }
+    finally
+    {
+      Thread.setDefaultUncaughtExceptionHandler(handler);
+    }
+  }
+}